@@ -7,9 +7,11 @@ import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
 import io.github.prometheuskr.seqism.gateway.service.GatewayService;
+import io.github.prometheuskr.seqism.gateway.vo.RawJson;
 
 @Slf4j
 @RestController
@@ -22,19 +24,25 @@ public class GatewayController {
     }
 
     @PostMapping("/init")
-    public ResponseEntity<SeqismMessage<Object>> initSeqism(@RequestBody SeqismMessage<Object> message) {
+    public ResponseEntity<SeqismMessage<Object>> initSeqism(@RequestBody SeqismMessage<RawJson> message) {
         return buildResponseEntity(gatewayService.initSeqism(message));
     }
 
     @PostMapping("/next")
-    public ResponseEntity<SeqismMessage<Object>> nextSeqism(@RequestBody SeqismMessage<Object> message) {
+    public ResponseEntity<SeqismMessage<Object>> nextSeqism(@RequestBody SeqismMessage<RawJson> message) {
         return buildResponseEntity(gatewayService.nextSeqism(message));
     }
 
     ResponseEntity<SeqismMessage<Object>> buildResponseEntity(SeqismMessage<Object> message) {
-        HttpStatusCode status = message.getHeader().getStatus() == SeqismMessageStatus.FAILURE
-                ? HttpStatus.INTERNAL_SERVER_ERROR
-                : HttpStatus.OK;
+        ErrorInfo error = message.getHeader().getError();
+        HttpStatusCode status = message.getHeader().getStatus() != SeqismMessageStatus.FAILURE
+                ? HttpStatus.OK
+                : error != null && (ErrorInfo.ERROR_0001_0009.getErrorCode().equals(error.getErrorCode())
+                        || ErrorInfo.ERROR_0001_0007.getErrorCode().equals(error.getErrorCode()))
+                        // a stale tranId of a conversation that ended or timed out, or a next step this gateway
+                        // instance has no route for
+                        ? HttpStatus.CONFLICT
+                        : HttpStatus.INTERNAL_SERVER_ERROR;
 
         return ResponseEntity.status(status).body(message);
     }
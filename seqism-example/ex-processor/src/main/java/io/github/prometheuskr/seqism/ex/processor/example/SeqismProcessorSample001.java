@@ -5,15 +5,15 @@ import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
 import io.github.prometheuskr.seqism.processor.SeqismProcessor;
-import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
 
 @Slf4j
 @Component
 public class SeqismProcessorSample001 extends SeqismProcessor<String, String> {
 
-    public SeqismProcessorSample001(ObjectMapper mapper, ProcessorQueueHelper queueHelper) {
+    public SeqismProcessorSample001(ObjectMapper mapper, ProcessorTransport queueHelper) {
         super(mapper, queueHelper);
     }
 
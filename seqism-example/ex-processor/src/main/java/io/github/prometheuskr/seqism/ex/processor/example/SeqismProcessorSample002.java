@@ -2,9 +2,9 @@ package io.github.prometheuskr.seqism.ex.processor.example;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
 import io.github.prometheuskr.seqism.processor.SeqismProcessor;
-import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,7 +19,7 @@ import org.springframework.stereotype.Component;
 public class SeqismProcessorSample002
         extends SeqismProcessor<SeqismProcessorSample002.Sample002Body, SeqismProcessorSample002.Sample002Body> {
 
-    public SeqismProcessorSample002(ObjectMapper mapper, ProcessorQueueHelper queueHelper) {
+    public SeqismProcessorSample002(ObjectMapper mapper, ProcessorTransport queueHelper) {
         super(mapper, queueHelper);
     }
 
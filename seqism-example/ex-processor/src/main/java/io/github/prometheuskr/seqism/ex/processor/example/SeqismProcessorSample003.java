@@ -3,9 +3,9 @@ package io.github.prometheuskr.seqism.ex.processor.example;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
 import io.github.prometheuskr.seqism.processor.SeqismProcessor;
-import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -21,7 +21,7 @@ import java.util.List;
 public class SeqismProcessorSample003
         extends SeqismProcessor<SeqismProcessorSample003.Sample003Body, SeqismProcessorSample003.Sample003Body> {
 
-    public SeqismProcessorSample003(ObjectMapper mapper, ProcessorQueueHelper queueHelper) {
+    public SeqismProcessorSample003(ObjectMapper mapper, ProcessorTransport queueHelper) {
         super(mapper, queueHelper);
     }
 
@@ -9,16 +9,16 @@ import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
 import io.github.prometheuskr.seqism.processor.SeqismProcessor;
-import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
 
 @Slf4j
 @Component
 public class SeqismProcessorSample004
         extends SeqismProcessor<SeqismProcessorSample004.BodyR, SeqismProcessorSample004.BodyC> {
 
-    public SeqismProcessorSample004(ObjectMapper mapper, ProcessorQueueHelper queueHelper) {
+    public SeqismProcessorSample004(ObjectMapper mapper, ProcessorTransport queueHelper) {
         super(mapper, queueHelper);
     }
 
@@ -0,0 +1,57 @@
+package io.github.prometheuskr.seqism.ex.processor.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.processor.AsyncSeqismProcessor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletionStage;
+
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class SeqismProcessorSample005
+        extends AsyncSeqismProcessor<SeqismProcessorSample005.Sample005Body, SeqismProcessorSample005.Sample005Body> {
+
+    public SeqismProcessorSample005(ObjectMapper mapper, ProcessorTransport queueHelper) {
+        super(mapper, queueHelper);
+    }
+
+    @Override
+    public String getBizCode() {
+        return "Sample005";
+    }
+
+    @Override
+    public Class<Sample005Body> getBodyType() {
+        return Sample005Body.class;
+    }
+
+    @Override
+    public CompletionStage<Void> processAsync(SeqismMessage<Sample005Body> message) {
+        Sample005Body body = new Sample005Body(message.getBody().getLog() + " -> [Sample005] Step1", 1);
+
+        return sendAndReceiveAsync(message.withBody(body))
+                .thenCompose(response -> sendAndReceiveAsync(response.withBody(
+                        new Sample005Body(response.getBody().getLog() + " -> [Sample005] Step2", 2))))
+                .thenCompose(response -> sendAndReceiveAsync(response.withBody(
+                        new Sample005Body(response.getBody().getLog() + " -> [Sample005] Step3", 3))))
+                .thenAccept(response -> sendFinal(response.withBody(
+                        new Sample005Body(response.getBody().getLog() + " -> [Sample005] Done", 4)).toSuccess()));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Sample005Body implements Serializable {
+        private String log;
+        private int step;
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.prometheuskr.seqism.ex.processor.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.processor.GraphSeqismProcessor;
+import io.github.prometheuskr.seqism.processor.graph.StepGraph;
+import io.github.prometheuskr.seqism.processor.graph.StepResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class SeqismProcessorSample006
+        extends GraphSeqismProcessor<SeqismProcessorSample006.Sample006Body, SeqismProcessorSample006.Sample006Body> {
+
+    public SeqismProcessorSample006(ObjectMapper mapper, ProcessorTransport queueHelper) {
+        super(mapper, queueHelper);
+    }
+
+    @Override
+    public String getBizCode() {
+        return "Sample006";
+    }
+
+    @Override
+    public Class<Sample006Body> getBodyType() {
+        return Sample006Body.class;
+    }
+
+    @Override
+    protected StepGraph<Sample006Body, Sample006Body> defineGraph() {
+        return StepGraph.<Sample006Body, Sample006Body>builder()
+                .start("init", this::init, "confirm")
+                .step("confirm", this::confirm, "confirm", "done")
+                .step("done", this::done)
+                .build();
+    }
+
+    StepResult<Sample006Body> init(SeqismMessage<Sample006Body> message) {
+        Sample006Body body = new Sample006Body(message.getBody().getLog() + " -> [Sample006] init", 1, false);
+        return StepResult.next("confirm", message.withBody(body));
+    }
+
+    StepResult<Sample006Body> confirm(SeqismMessage<Sample006Body> message) {
+        Sample006Body body = message.getBody();
+        body.setLog(body.getLog() + " -> [Sample006] confirm");
+        body.setStep(body.getStep() + 1);
+        // Asks again until the client confirms
+        return StepResult.next(body.isConfirmed() ? "done" : "confirm", message.withBody(body));
+    }
+
+    StepResult<Sample006Body> done(SeqismMessage<Sample006Body> message) {
+        Sample006Body body = message.getBody();
+        body.setLog(body.getLog() + " -> [Sample006] done");
+        body.setStep(body.getStep() + 1);
+        return StepResult.complete(message.withBody(body).toSuccess());
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Sample006Body implements Serializable {
+        private String log;
+        private int step;
+        private boolean confirmed;
+    }
+}
@@ -37,6 +37,7 @@ Build-Module "seqism-gateway"
 Build-Module "seqism-processor"
 Build-Module "seqism-gateway-starter"
 Build-Module "seqism-processor-starter"
+Build-Module "seqism-integration-test"
 
 Write-Host "================================================================"
 Write-Host "👌 All Maven modules built successfully."
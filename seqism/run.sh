@@ -47,4 +47,5 @@ build_module "seqism-common"
 build_module "seqism-gateway"
 build_module "seqism-processor"
 build_module "seqism-gateway-starter"
-build_module "seqism-processor-starter"
\ No newline at end of file
+build_module "seqism-processor-starter"
+build_module "seqism-integration-test"
\ No newline at end of file
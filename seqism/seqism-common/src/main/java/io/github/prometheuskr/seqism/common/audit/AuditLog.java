@@ -0,0 +1,559 @@
+package io.github.prometheuskr.seqism.common.audit;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import io.github.prometheuskr.seqism.common.transport.FrameCodec;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+
+/**
+ * Append-only audit log of the steps of the conversations, written asynchronously to memory-mapped segment files.
+ * <p>
+ * {@link #record(AuditPoint, SeqismMessage)} only stamps the step and hands it to a lock-free queue; a single writer
+ * thread encodes the messages with the {@link FrameCodec} and appends them to the current segment, so the exchange
+ * of a step pays for an enqueue and nothing else. When the queue holds {@code queueCapacity} steps further steps are
+ * dropped and counted rather than delaying the conversations. Messages are encoded when written, so a body must not
+ * be modified once its message is sent.
+ * <p>
+ * Segments are files named {@code <name>.<sequence>.seg} in the audit directory, pre-allocated to the segment size
+ * and mapped in memory. A segment is sealed, that is flushed and truncated to its records, once full or when the log
+ * is closed, and a new one is started. Sealed segments older than the retention time are deleted, then the oldest
+ * ones while the segments of the log exceed the retention size. The retention only applies to the segments of the
+ * name of the log, so that the logs sharing a directory do not delete each other's segments.
+ * <p>
+ * Layout of a segment: magic and version, then records, each made of its length, the timestamp, the
+ * {@link AuditPoint}, the business code, transaction ID and status of the header, and the encoded message, padded to
+ * a multiple of four bytes. A length of zero marks the end of the records. The records are read back by
+ * {@link AuditReader}.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * AuditLog auditLog = new AuditLog(Path.of("/var/seqism/audit"), "gateway-1", 64 &lt;&lt; 20, 65536,
+ *         TimeUnit.DAYS.toMillis(7), 0, codec);
+ * auditLog.record(AuditPoint.GATEWAY_REQUEST, message);
+ * </pre>
+ */
+public final class AuditLog implements AutoCloseable {
+    /**
+     * Marks a segment file.
+     */
+    static final int MAGIC = 0x53514155;
+    /**
+     * Version of the layout of the segments.
+     */
+    static final int VERSION = 1;
+    /**
+     * Size of the header of a segment: magic and version.
+     */
+    static final int SEGMENT_HEADER_SIZE = 8;
+    /**
+     * Extension of the segment files.
+     */
+    static final String EXTENSION = ".seg";
+    /**
+     * Byte order of the segments, independent of the platform.
+     */
+    static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+    /**
+     * Time the writer parks when the queue is empty.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * Ordered write of the length of a record, after its content.
+     */
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ORDER);
+    /**
+     * Logger of the audit log.
+     */
+    private static final System.Logger LOG = System.getLogger(AuditLog.class.getName());
+    /**
+     * The log of a disabled audit, recording nothing.
+     */
+    private static final AuditLog DISABLED = new AuditLog();
+
+    /**
+     * A step waiting to be written.
+     *
+     * @param timestamp
+     *            the time the step was recorded
+     * @param point
+     *            where the step was recorded
+     * @param message
+     *            the message of the step
+     */
+    record Entry(long timestamp, AuditPoint point, SeqismMessage<?> message) {}
+
+    /**
+     * The directory of the segments; {@code null} if disabled.
+     */
+    private final Path dir;
+    /**
+     * The name of this log, prefixing its segment files.
+     */
+    private final String name;
+    /**
+     * The size of a new segment in bytes.
+     */
+    private final int segmentSize;
+    /**
+     * The maximum number of steps waiting to be written.
+     */
+    private final int queueCapacity;
+    /**
+     * The age in milliseconds above which sealed segments are deleted; {@code 0} to keep them.
+     */
+    private final long retentionMillis;
+    /**
+     * The size in bytes of the segments of the directory above which the oldest are deleted; {@code 0} for no limit.
+     */
+    private final long retentionBytes;
+    /**
+     * Encodes the messages.
+     */
+    private final FrameCodec codec;
+    /**
+     * The steps waiting to be written.
+     */
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * The number of steps waiting to be written.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    /**
+     * The number of steps written.
+     */
+    private final LongAdder written = new LongAdder();
+    /**
+     * The number of steps dropped because the queue was full or the step could not be written.
+     */
+    private final LongAdder dropped = new LongAdder();
+    /**
+     * The writer thread; {@code null} if disabled.
+     */
+    private final Thread writer;
+    /**
+     * Whether the log accepts steps.
+     */
+    private volatile boolean running;
+
+    /**
+     * The current segment, written by the writer thread only; {@code null} before the first step.
+     */
+    private MappedByteBuffer segment;
+    /**
+     * The file of the current segment.
+     */
+    private Path segmentFile;
+    /**
+     * The offset of the next record in the current segment.
+     */
+    private int position;
+    /**
+     * The sequence number of the current segment.
+     */
+    private long sequence;
+
+    /**
+     * Constructs a disabled log.
+     */
+    private AuditLog() {
+        this.dir = null;
+        this.name = null;
+        this.segmentSize = 0;
+        this.queueCapacity = 0;
+        this.retentionMillis = 0;
+        this.retentionBytes = 0;
+        this.codec = null;
+        this.writer = null;
+    }
+
+    /**
+     * Opens an audit log in the given directory, creating it if needed, and starts its writer thread. New segments
+     * follow the existing segments of the same name.
+     *
+     * @param dir
+     *            the directory of the segments
+     * @param name
+     *            the name of this log, unique among the writers of the directory
+     * @param segmentSize
+     *            the size of a new segment in bytes
+     * @param queueCapacity
+     *            the maximum number of steps waiting to be written
+     * @param retentionMillis
+     *            the age in milliseconds above which sealed segments are deleted; {@code 0} to keep them
+     * @param retentionBytes
+     *            the size in bytes of the segments of this log above which the oldest are deleted; {@code 0} for no
+     *            limit
+     * @param codec
+     *            encodes the messages
+     * @throws IOException
+     *             if the directory cannot be created or listed
+     */
+    public AuditLog(Path dir, String name, int segmentSize, int queueCapacity, long retentionMillis,
+            long retentionBytes, FrameCodec codec) throws IOException {
+        this.dir = dir;
+        this.name = name;
+        this.segmentSize = Math.max(4096, segmentSize);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.retentionMillis = Math.max(0, retentionMillis);
+        this.retentionBytes = Math.max(0, retentionBytes);
+        this.codec = codec;
+
+        Files.createDirectories(dir);
+        this.sequence = segments(name + ".*").stream().mapToLong(AuditLog::sequenceOf).max().orElse(0);
+        this.running = true;
+        this.writer = new Thread(this::run, "seqism-audit-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the log of a disabled audit, recording nothing.
+     *
+     * @return the disabled log
+     */
+    public static AuditLog disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Returns whether this log records steps.
+     *
+     * @return {@code false} for the disabled log
+     */
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Records a step, to be written asynchronously.
+     *
+     * @param point
+     *            where the step is recorded
+     * @param message
+     *            the message of the step; must not be modified afterwards
+     * @return {@code true} if the step was queued, {@code false} if the log is disabled, closed or full
+     */
+    public boolean record(AuditPoint point, SeqismMessage<?> message) {
+        if (!running || message == null) {
+            return false;
+        }
+        if (pending.incrementAndGet() > queueCapacity) {
+            pending.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        queue.offer(new Entry(System.currentTimeMillis(), point, message));
+        return true;
+    }
+
+    /**
+     * Returns the number of steps waiting to be written.
+     *
+     * @return the backlog of the writer
+     */
+    public int getBacklog() {
+        return pending.get();
+    }
+
+    /**
+     * Returns the number of steps written since the log was opened.
+     *
+     * @return the number of written steps
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Returns the number of steps dropped since the log was opened, because the queue was full or the step could not
+     * be written.
+     *
+     * @return the number of dropped steps
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops accepting steps, writes those still queued, seals the current segment and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (writer == null || !running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the queued steps until the log is closed and its queue drained, then seals the current segment.
+     */
+    void run() {
+        while (true) {
+            Entry entry = queue.poll();
+            if (entry == null) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            pending.decrementAndGet();
+            try {
+                write(entry);
+                written.increment();
+            } catch (IOException | RuntimeException e) {
+                dropped.increment();
+                LOG.log(Level.WARNING, "Failed to write the audit record of " + entry.point(), e);
+            }
+        }
+        seal();
+    }
+
+    /**
+     * Appends a step to the current segment, starting a new segment if it does not fit.
+     *
+     * @param entry
+     *            the step to write
+     * @throws IOException
+     *             if a new segment cannot be created
+     */
+    void write(Entry entry) throws IOException {
+        SeqismMessageHeader header = entry.message().getHeader();
+        byte[] bizCode = header != null ? bytes(header.getBizCode()) : null;
+        byte[] tranId = header != null ? bytes(header.getTranId()) : null;
+        byte[] status = header != null && header.getStatus() != null ? bytes(header.getStatus().name()) : null;
+        byte[] frame = codec.encode(entry.message());
+
+        int length = Long.BYTES + 1 + 3 * Short.BYTES + size(bizCode) + size(tranId) + size(status) + Integer.BYTES
+                + frame.length;
+        int recordSize = align(Integer.BYTES + length);
+        if (segment == null || position + recordSize > segment.capacity()) {
+            roll(recordSize);
+        }
+
+        int start = position;
+        segment.position(start + Integer.BYTES);
+        segment.putLong(entry.timestamp());
+        segment.put((byte) entry.point().ordinal());
+        putString(bizCode);
+        putString(tranId);
+        putString(status);
+        segment.putInt(frame.length);
+        segment.put(frame);
+        // Published last, so that a concurrent reader never takes a partial record for a complete one
+        INT.setRelease(segment, start, length);
+        position = start + recordSize;
+    }
+
+    /**
+     * Seals the current segment and starts a new one large enough for the given record, then applies the retention.
+     *
+     * @param recordSize
+     *            the size of the record to write
+     * @throws IOException
+     *             if the segment cannot be created
+     */
+    void roll(int recordSize) throws IOException {
+        seal();
+
+        sequence++;
+        Path file = dir.resolve(String.format("%s.%012d%s", name, sequence, EXTENSION));
+        int size = Math.max(segmentSize, SEGMENT_HEADER_SIZE + recordSize + Integer.BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.order(ORDER);
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segmentFile = file;
+        position = SEGMENT_HEADER_SIZE;
+
+        applyRetention();
+    }
+
+    /**
+     * Flushes the current segment and truncates its file to its records, if there is a current segment.
+     */
+    void seal() {
+        if (segment == null) {
+            return;
+        }
+
+        segment.force();
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+            // The mapping is no longer accessed, so the unused tail can be cut off
+            channel.truncate(position);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to truncate the audit segment " + segmentFile, e);
+        }
+        segment = null;
+        segmentFile = null;
+    }
+
+    /**
+     * Deletes the sealed segments of this log older than the retention time, then the oldest while the segments of
+     * this log exceed the retention size. The current segment, and the segments of other names, are kept.
+     */
+    void applyRetention() {
+        if (retentionMillis == 0 && retentionBytes == 0) {
+            return;
+        }
+
+        try {
+            List<Path> segments = new ArrayList<>(segments(name + ".*"));
+            segments.remove(segmentFile);
+            segments.sort(Comparator.comparingLong(AuditLog::lastModified));
+
+            long expiredBefore = System.currentTimeMillis() - retentionMillis;
+            long total = segmentFile != null ? Files.size(segmentFile) : 0;
+            for (Path file : segments) {
+                total += Files.size(file);
+            }
+            for (Path file : segments) {
+                boolean expired = retentionMillis > 0 && lastModified(file) < expiredBefore;
+                boolean oversized = retentionBytes > 0 && total > retentionBytes;
+                if (!expired && !oversized) {
+                    break;
+                }
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    total -= size;
+                    LOG.log(Level.DEBUG, "Deleted audit segment {0}", file);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to apply the retention of the audit segments of " + dir, e);
+        }
+    }
+
+    /**
+     * Lists the segments of the directory whose names match the given glob, extension excluded.
+     *
+     * @param glob
+     *            the glob of the names
+     * @return the segment files
+     * @throws IOException
+     *             if the directory cannot be listed
+     */
+    List<Path> segments(String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob + EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * Writes a string of the header: its length, {@code -1} for {@code null}, then its bytes.
+     *
+     * @param value
+     *            the UTF-8 bytes of the string; may be {@code null}
+     */
+    private void putString(byte[] value) {
+        segment.putShort((short) (value != null ? value.length : -1));
+        if (value != null) {
+            segment.put(value);
+        }
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a string of the header, truncated to the maximum length of a string.
+     *
+     * @param value
+     *            the string; may be {@code null}
+     * @return the bytes, or {@code null}
+     */
+    private static byte[] bytes(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= Short.MAX_VALUE ? bytes : Arrays.copyOf(bytes, Short.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of bytes of a string of the header.
+     *
+     * @param value
+     *            the bytes of the string; may be {@code null}
+     * @return the number of bytes
+     */
+    private static int size(byte[] value) {
+        return value != null ? value.length : 0;
+    }
+
+    /**
+     * Rounds the size of a record up to a multiple of four bytes, so that the length of every record is aligned.
+     *
+     * @param size
+     *            the size of the record, length included
+     * @return the aligned size
+     */
+    static int align(int size) {
+        return (size + 3) & ~3;
+    }
+
+    /**
+     * Returns the sequence number of a segment file.
+     *
+     * @param file
+     *            the segment file
+     * @return the sequence number, or {@code 0} if the name has none
+     */
+    static long sequenceOf(Path file) {
+        String fileName = file.getFileName().toString();
+        String base = fileName.substring(0, fileName.length() - EXTENSION.length());
+        try {
+            return Long.parseLong(base.substring(base.lastIndexOf('.') + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the last-modified time of a file, or {@code 0} if it cannot be read.
+     *
+     * @param file
+     *            the file
+     * @return the last-modified time in milliseconds since the epoch
+     */
+    static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
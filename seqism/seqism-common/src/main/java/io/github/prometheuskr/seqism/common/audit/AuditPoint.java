@@ -0,0 +1,23 @@
+package io.github.prometheuskr.seqism.common.audit;
+
+/**
+ * The point of the exchange where a step of a conversation was recorded by the {@link AuditLog}.
+ */
+public enum AuditPoint {
+    /**
+     * A step the gateway received from a client and sends to the processors.
+     */
+    GATEWAY_REQUEST,
+    /**
+     * A reply the gateway received from a processor and returns to the client.
+     */
+    GATEWAY_REPLY,
+    /**
+     * A step a processor received from the gateway.
+     */
+    PROCESSOR_RECEIVED,
+    /**
+     * A reply a processor sent to the gateway.
+     */
+    PROCESSOR_SENT
+}
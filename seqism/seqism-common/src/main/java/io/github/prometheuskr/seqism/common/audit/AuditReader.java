@@ -0,0 +1,215 @@
+package io.github.prometheuskr.seqism.common.audit;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Reads back the steps recorded by the {@link AuditLog}s writing to a directory.
+ * <p>
+ * The segments are read with plain file reads, never mapped, so that a segment being written or sealed
+ * concurrently is read up to its last complete record. Records of all the writers of the directory are returned in
+ * timestamp order.
+ * <p>
+ * The reader is also a command-line tool printing the records of a directory, optionally only those of a transaction
+ * or of a business code:
+ *
+ * <pre>
+ * java -cp seqism-common.jar io.github.prometheuskr.seqism.common.audit.AuditReader &lt;dir&gt; [--tranId &lt;id&gt;]
+ *         [--bizCode &lt;code&gt;]
+ * </pre>
+ */
+public final class AuditReader {
+    /**
+     * The directory of the segments.
+     */
+    private final Path dir;
+
+    /**
+     * Constructs a reader of the segments of the given directory.
+     *
+     * @param dir
+     *            the directory of the segments
+     */
+    public AuditReader(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the records of the given transaction.
+     *
+     * @param tranId
+     *            the transaction ID
+     * @return the records, in timestamp order
+     * @throws IOException
+     *             if the segments cannot be read
+     */
+    public List<AuditRecord> findByTranId(String tranId) throws IOException {
+        return query(record -> Objects.equals(record.tranId(), tranId));
+    }
+
+    /**
+     * Returns the records of the given business code.
+     *
+     * @param bizCode
+     *            the business code
+     * @return the records, in timestamp order
+     * @throws IOException
+     *             if the segments cannot be read
+     */
+    public List<AuditRecord> findByBizCode(String bizCode) throws IOException {
+        return query(record -> Objects.equals(record.bizCode(), bizCode));
+    }
+
+    /**
+     * Returns the records matching the given filter.
+     *
+     * @param filter
+     *            selects the records
+     * @return the records, in timestamp order
+     * @throws IOException
+     *             if the segments cannot be read
+     */
+    public List<AuditRecord> query(Predicate<AuditRecord> filter) throws IOException {
+        List<AuditRecord> records = new ArrayList<>();
+        for (Path segment : segments()) {
+            read(segment, filter, records);
+        }
+        records.sort(Comparator.comparingLong(AuditRecord::timestamp));
+        return records;
+    }
+
+    /**
+     * Lists the segments of the directory, in name order.
+     *
+     * @return the segment files
+     * @throws IOException
+     *             if the directory cannot be listed
+     */
+    public List<Path> segments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + AuditLog.EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.naturalOrder());
+        return files;
+    }
+
+    /**
+     * Reads the records of a segment up to its last complete record, adding those matching the filter.
+     *
+     * @param segment
+     *            the segment file
+     * @param filter
+     *            selects the records
+     * @param records
+     *            receives the selected records
+     * @throws IOException
+     *             if the segment cannot be read
+     */
+    void read(Path segment, Predicate<AuditRecord> filter, List<AuditRecord> records) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE)).order(AuditLog.ORDER);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read the whole segment
+            }
+        }
+        buffer.flip();
+        if (buffer.remaining() < AuditLog.SEGMENT_HEADER_SIZE || buffer.getInt(0) != AuditLog.MAGIC) {
+            return;
+        }
+
+        AuditPoint[] points = AuditPoint.values();
+        int position = AuditLog.SEGMENT_HEADER_SIZE;
+        while (position + Integer.BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + Integer.BYTES + length > buffer.limit()) {
+                break;
+            }
+
+            buffer.position(position + Integer.BYTES);
+            long timestamp = buffer.getLong();
+            int point = buffer.get();
+            String bizCode = getString(buffer);
+            String tranId = getString(buffer);
+            String status = getString(buffer);
+            byte[] frame = new byte[buffer.getInt()];
+            buffer.get(frame);
+
+            AuditRecord record = new AuditRecord(timestamp, point >= 0 && point < points.length ? points[point] : null,
+                    bizCode, tranId, status, frame);
+            if (filter.test(record)) {
+                records.add(record);
+            }
+            position += AuditLog.align(Integer.BYTES + length);
+        }
+    }
+
+    /**
+     * Reads a string of the header written by the audit log.
+     *
+     * @param buffer
+     *            the buffer positioned on the string
+     * @return the string, or {@code null}
+     */
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Prints the records of an audit directory, one per line: time, point, business code, transaction ID, status
+     * and the encoded message as text.
+     *
+     * @param args
+     *            the directory, then optionally {@code --tranId <id>} and {@code --bizCode <code>}
+     * @throws IOException
+     *             if the segments cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        PrintStream out = System.out;
+        if (args.length == 0 || args.length % 2 == 0) {
+            out.println("Usage: AuditReader <dir> [--tranId <id>] [--bizCode <code>]");
+            return;
+        }
+
+        Predicate<AuditRecord> filter = record -> true;
+        for (int i = 1; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--tranId":
+                    filter = filter.and(record -> value.equals(record.tranId()));
+                    break;
+                case "--bizCode":
+                    filter = filter.and(record -> value.equals(record.bizCode()));
+                    break;
+                default:
+                    out.println("Unknown option : " + args[i]);
+                    return;
+            }
+        }
+
+        for (AuditRecord record : new AuditReader(Path.of(args[0])).query(filter)) {
+            out.println(Instant.ofEpochMilli(record.timestamp()) + " " + record.point() + " " + record.bizCode() + " "
+                    + record.tranId() + " " + record.status() + " " + record.frameAsText());
+        }
+    }
+}
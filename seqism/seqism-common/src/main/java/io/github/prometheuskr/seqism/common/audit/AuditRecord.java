@@ -0,0 +1,33 @@
+package io.github.prometheuskr.seqism.common.audit;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A step of a conversation read back from the segments of an {@link AuditLog}.
+ * <p>
+ * The header fields are stored apart from the frame, so that records can be selected without decoding their frames.
+ *
+ * @param timestamp
+ *            the time the step was recorded, in milliseconds since the epoch
+ * @param point
+ *            where the step was recorded
+ * @param bizCode
+ *            the business code of the conversation; may be {@code null}
+ * @param tranId
+ *            the transaction ID of the conversation; may be {@code null}
+ * @param status
+ *            the status of the message; may be {@code null}
+ * @param frame
+ *            the message encoded by the codec of the audit log
+ */
+public record AuditRecord(long timestamp, AuditPoint point, String bizCode, String tranId, String status,
+        byte[] frame) {
+    /**
+     * Returns the frame as text, readable when the codec encodes messages as JSON.
+     *
+     * @return the frame decoded as UTF-8
+     */
+    public String frameAsText() {
+        return new String(frame, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.prometheuskr.seqism.common.blob;
+
+/**
+ * Stores the bodies of the messages offloaded from the broker by the claim-check mode, grouped by conversation.
+ * <p>
+ * The sender of a large message puts its encoded body in the store and sends only the returned reference; the
+ * receiver gets the body back by its reference. The store must therefore be shared by the gateway and the processor
+ * instances, for instance through a shared volume. The blobs of a conversation are removed when it completes, and
+ * the blobs of conversations that never complete are purged once older than a time to live. Implementations must
+ * be thread-safe.
+ * <p>
+ * The following implementation is provided:
+ * <ul>
+ * <li>{@link FileBlobStore} - one file per blob in a directory per conversation, read through memory mapping.</li>
+ * </ul>
+ */
+public interface BlobStore {
+    /**
+     * Stores a blob of a conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param bytes
+     *            the content of the blob
+     * @return the reference of the blob, an ASCII string
+     * @throws IllegalStateException
+     *             if the blob cannot be stored
+     */
+    String put(String tranId, byte[] bytes);
+
+    /**
+     * Returns the content of a blob.
+     *
+     * @param reference
+     *            the reference returned by {@link #put(String, byte[])}
+     * @return the content of the blob
+     * @throws IllegalStateException
+     *             if the blob does not exist, was removed or cannot be read
+     */
+    byte[] get(String reference);
+
+    /**
+     * Removes the blobs of a conversation, if any.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     */
+    void remove(String tranId);
+
+    /**
+     * Removes the blobs stored before the given time, left by conversations that never completed.
+     *
+     * @param storedBefore
+     *            the time, in milliseconds since the epoch, before which blobs are removed
+     * @return the number of removed blobs
+     */
+    int purge(long storedBefore);
+}
@@ -0,0 +1,205 @@
+package io.github.prometheuskr.seqism.common.blob;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger.Level;
+import java.net.URLEncoder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * {@link BlobStore} keeping each blob in a file, in a directory per conversation.
+ * <p>
+ * The blobs of a conversation are files named {@code <uuid>.blob} in a directory named after its URL-encoded
+ * transaction ID, so that a conversation is removed with its directory. Each blob is written to a temporary file and
+ * then moved into place, so that a reader never sees a partial blob, and is read back by mapping it in memory. A
+ * directory shared by the hosts of the gateway and the processors, such as a shared volume, lets any instance read
+ * the blobs of the others. The last-modified time of the files is the store time used to purge the blobs.
+ * <p>
+ * The reference of a blob is {@code <conversation directory>/<file name>}; references resolving outside the
+ * directory of the store are rejected.
+ */
+public class FileBlobStore implements BlobStore {
+    /**
+     * The extension of the blob files.
+     */
+    static final String EXTENSION = ".blob";
+
+    /**
+     * Logs the failures to remove blobs.
+     */
+    private static final System.Logger LOG = System.getLogger(FileBlobStore.class.getName());
+
+    /**
+     * The directory of the store.
+     */
+    private final Path dir;
+
+    /**
+     * Constructs a store keeping the blobs in the given directory, creating it if needed.
+     *
+     * @param dir
+     *            the directory of the store
+     * @throws UncheckedIOException
+     *             if the directory cannot be created
+     */
+    public FileBlobStore(Path dir) {
+        this.dir = dir.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String put(String tranId, byte[] bytes) {
+        String conversation = directoryName(tranId);
+        String name = UUID.randomUUID() + EXTENSION;
+        Path temp = null;
+        try {
+            Path conversationDir = Files.createDirectories(dir.resolve(conversation));
+            temp = Files.createTempFile(conversationDir, null, ".tmp");
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, conversationDir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, conversationDir.resolve(name));
+            }
+            return conversation + "/" + name;
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new IllegalStateException("Failed to store a blob of tranId [" + tranId + "]", e);
+        }
+    }
+
+    @Override
+    public byte[] get(String reference) {
+        Path file = fileOf(reference);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Blob too large : " + reference);
+            }
+            byte[] bytes = new byte[(int) size];
+            if (size > 0) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                buffer.get(bytes);
+            }
+            return bytes;
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("Blob not found : " + reference, e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read the blob " + reference, e);
+        }
+    }
+
+    @Override
+    public void remove(String tranId) {
+        Path conversationDir = dir.resolve(directoryName(tranId));
+        if (Files.isDirectory(conversationDir)) {
+            purge(conversationDir, Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public int purge(long storedBefore) {
+        int purged = 0;
+        try (DirectoryStream<Path> conversations = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (Path conversationDir : conversations) {
+                purged += purge(conversationDir, storedBefore);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to list the blobs of " + dir, e);
+        }
+        return purged;
+    }
+
+    /**
+     * Removes the blobs of a conversation stored before the given time, and its directory once empty.
+     *
+     * @param conversationDir
+     *            the directory of the conversation
+     * @param storedBefore
+     *            the time, in milliseconds since the epoch, before which blobs are removed
+     * @return the number of removed blobs
+     */
+    int purge(Path conversationDir, long storedBefore) {
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(conversationDir)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < storedBefore && Files.deleteIfExists(file)
+                            && file.getFileName().toString().endsWith(EXTENSION)) {
+                        purged++;
+                    }
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Failed to remove the blob " + file, e);
+                }
+            }
+            Files.deleteIfExists(conversationDir);
+        } catch (DirectoryNotEmptyException | NoSuchFileException e) {
+            // blobs still to be read, or removed concurrently
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to remove the blobs of " + conversationDir, e);
+        }
+        return purged;
+    }
+
+    /**
+     * Returns the file of a blob.
+     *
+     * @param reference
+     *            the reference of the blob
+     * @return the path of the blob file
+     * @throws IllegalStateException
+     *             if the reference does not designate a blob file of the store
+     */
+    Path fileOf(String reference) {
+        Path file = dir.resolve(reference).normalize();
+        if (!file.startsWith(dir) || file.getNameCount() != dir.getNameCount() + 2
+                || !reference.endsWith(EXTENSION)) {
+            throw new IllegalStateException("Invalid blob reference : " + reference);
+        }
+        return file;
+    }
+
+    /**
+     * Returns the name of the directory of a conversation: its URL-encoded transaction ID, with the dots encoded as
+     * well so that it never designates a parent directory.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return the name of the directory
+     */
+    static String directoryName(String tranId) {
+        return URLEncoder.encode(String.valueOf(tranId), StandardCharsets.UTF_8).replace(".", "%2E");
+    }
+
+    /**
+     * Deletes a temporary file left by a failed store, if any.
+     *
+     * @param temp
+     *            the temporary file; may be {@code null}
+     */
+    void deleteQuietly(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to delete " + temp, e);
+        }
+    }
+}
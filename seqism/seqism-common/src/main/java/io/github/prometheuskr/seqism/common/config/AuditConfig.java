@@ -0,0 +1,86 @@
+package io.github.prometheuskr.seqism.common.config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.audit.AuditReader;
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.transport.JsonFrameCodec;
+
+/**
+ * Base configuration class creating the {@link AuditLog} recording the steps exchanged by a gateway or a processor.
+ * <p>
+ * Auditing is opt-in and configured by the following properties:
+ * <ul>
+ * <li><code>seqism.audit.enabled</code> (defaults to {@code false})</li>
+ * <li><code>seqism.audit.dir</code> (defaults to {@code seqism-audit} under {@code java.io.tmpdir})</li>
+ * <li><code>seqism.audit.segment.size</code> (defaults to {@link SeqismConstant#AUDIT_SEGMENT_SIZE})</li>
+ * <li><code>seqism.audit.queue.capacity</code> (defaults to {@link SeqismConstant#AUDIT_QUEUE_CAPACITY})</li>
+ * <li><code>seqism.audit.retention.ms</code> (defaults to {@code 604800000}, seven days; {@code 0} to keep the
+ * segments)</li>
+ * <li><code>seqism.audit.retention.bytes</code> (defaults to {@code 0}, no limit)</li>
+ * </ul>
+ * The gateway and the processor each extend this class to name the segments of their instances, see
+ * {@link #getSegmentName()}, so that several instances may share the directory. The segments are read back with
+ * {@link AuditReader}.
+ */
+public abstract class AuditConfig {
+    /**
+     * Constructs a new {@code AuditConfig}.
+     */
+    protected AuditConfig() {}
+
+    /**
+     * Returns the name of the segments of this instance, unique among the instances sharing the directory.
+     *
+     * @return the name of the segments, such as {@code gateway-<instance id>}
+     */
+    protected abstract String getSegmentName();
+
+    /**
+     * Creates the {@link AuditLog} of this instance, or the disabled log unless {@code seqism.audit.enabled=true}.
+     * The log is closed with the application context, writing the steps still queued.
+     *
+     * @param enabled
+     *            whether steps are audited, resolved from the property {@code seqism.audit.enabled}
+     * @param dir
+     *            the directory of the segments, resolved from the property {@code seqism.audit.dir}
+     * @param segmentSize
+     *            the size in bytes of a segment, resolved from the property {@code seqism.audit.segment.size}
+     * @param queueCapacity
+     *            the maximum number of steps waiting to be written, resolved from the property
+     *            {@code seqism.audit.queue.capacity}
+     * @param retentionMillis
+     *            the age in milliseconds above which segments are deleted, resolved from the property
+     *            {@code seqism.audit.retention.ms}
+     * @param retentionBytes
+     *            the size in bytes of the segments of this instance above which the oldest are deleted, resolved
+     *            from the property {@code seqism.audit.retention.bytes}
+     * @param objectMapper
+     *            the mapper encoding the messages
+     * @return the audit log
+     * @throws IOException
+     *             if the directory of the segments cannot be created
+     */
+    @Bean(destroyMethod = "close")
+    public AuditLog auditLog(
+            @Value("${seqism.audit.enabled:false}") boolean enabled,
+            @Value("${seqism.audit.dir:${java.io.tmpdir}/seqism-audit}") String dir,
+            @Value("${seqism.audit.segment.size:" + SeqismConstant.AUDIT_SEGMENT_SIZE + "}") int segmentSize,
+            @Value("${seqism.audit.queue.capacity:" + SeqismConstant.AUDIT_QUEUE_CAPACITY + "}") int queueCapacity,
+            @Value("${seqism.audit.retention.ms:604800000}") long retentionMillis,
+            @Value("${seqism.audit.retention.bytes:0}") long retentionBytes,
+            ObjectMapper objectMapper) throws IOException {
+        if (!enabled) {
+            return AuditLog.disabled();
+        }
+        return new AuditLog(Path.of(dir), getSegmentName(), segmentSize, queueCapacity, retentionMillis,
+                retentionBytes, new JsonFrameCodec(objectMapper));
+    }
+}
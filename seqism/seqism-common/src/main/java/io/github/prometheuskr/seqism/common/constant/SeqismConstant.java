@@ -10,8 +10,37 @@ package io.github.prometheuskr.seqism.common.constant;
  * <li>{@link #RECEIVE_TIME_OUT} - Timeout in milliseconds for receiving operations.</li>
  * <li>{@link #QUEUE_DELETE_TIME} - Time in milliseconds after which a queue should be deleted.</li>
  * <li>{@link #SEQISM_STATIC_QUEUE} - Name of the static queue used by Seqism.</li>
+ * <li>{@link #SEQISM_STATIC_EXCHANGE} - Exchange routing the first steps to the sharded static queues.</li>
  * <li>{@link #COMMAND_QUEUE_PREFIX} - Prefix for command queue names.</li>
  * <li>{@link #RESPONSE_QUEUE_PREFIX} - Prefix for response queue names.</li>
+ * <li>{@link #REPLY_QUEUE_PREFIX} - Prefix for the shared reply queue names of gateway instances.</li>
+ * <li>{@link #INBOX_QUEUE_PREFIX} - Prefix for the inbox queue names of processor instances.</li>
+ * <li>{@link #TRANSPORT_RABBITMQ} - Transport type carrying the conversations over RabbitMQ.</li>
+ * <li>{@link #TRANSPORT_IN_JVM} - Transport type carrying the conversations within the JVM.</li>
+ * <li>{@link #TRANSPORT_MMAP} - Transport type carrying the conversations over memory-mapped files of the host.</li>
+ * <li>{@link #MMAP_RING_CAPACITY} - Default number of slots of the memory-mapped rings.</li>
+ * <li>{@link #MMAP_SLOT_SIZE} - Default size in bytes of the slots of the memory-mapped rings.</li>
+ * <li>{@link #TRANSPORT_KAFKA} - Transport type carrying the conversations over Kafka.</li>
+ * <li>{@link #SEQISM_STATIC_TOPIC} - Topic carrying the first steps of the conversations over Kafka.</li>
+ * <li>{@link #SEQISM_COMMAND_TOPIC} - Topic carrying the next steps of the conversations over Kafka.</li>
+ * <li>{@link #SEQISM_RESPONSE_TOPIC} - Topic carrying the replies of the processors over Kafka.</li>
+ * <li>{@link #SEQISM_PROCESSOR_GROUP} - Consumer group of the processors on the static topic.</li>
+ * <li>{@link #SEQISM_GATEWAY_GROUP} - Consumer group of the gateways on the response topic.</li>
+ * <li>{@link #REPLY_PARTITION_HEADER} - Kafka header carrying the partition a step is replied to.</li>
+ * <li>{@link #MAX_PRIORITY} - Highest priority of the conversations.</li>
+ * <li>{@link #CODEC_JSON} - Codec encoding the messages as JSON, the default.</li>
+ * <li>{@link #CODEC_SMILE} - Codec encoding the messages as Smile, the binary JSON of Jackson.</li>
+ * <li>{@link #CODEC_CBOR} - Codec encoding the messages as CBOR.</li>
+ * <li>{@link #COMPRESSION_THRESHOLD} - Default size in bytes from which the messages are compressed.</li>
+ * <li>{@link #COMPRESSION_MAX_SIZE} - Default largest size in bytes of a message once decompressed.</li>
+ * <li>{@link #BIZ_CODE_HEADER} - AMQP header carrying the business code of a message.</li>
+ * <li>{@link #TRAN_ID_HEADER} - AMQP header carrying the transaction ID of a message.</li>
+ * <li>{@link #STATUS_HEADER} - AMQP header carrying the status of a message.</li>
+ * <li>{@link #DELTA_HEADER} - AMQP header marking a message whose body is delta encoded.</li>
+ * <li>{@link #DELTA_TTL} - Default time to live of the last body of a delta encoded conversation.</li>
+ * <li>{@link #DELTA_MAX_CONVERSATIONS} - Default number of delta encoded conversations whose last body is kept.</li>
+ * <li>{@link #CLAIM_CHECK_HEADER} - AMQP header carrying the reference of a message offloaded to the blob store.</li>
+ * <li>{@link #CLAIM_CHECK_THRESHOLD} - Default size in bytes from which the messages are offloaded.</li>
  * </ul>
  */
 public class SeqismConstant {
@@ -31,6 +60,11 @@ public class SeqismConstant {
      * or task processing systems.
      */
     public static final String SEQISM_STATIC_QUEUE = "seqism-static-queue";
+    /**
+     * The name of the direct exchange routing the first steps to the sharded static queues, each bound with its own
+     * name as routing key.
+     */
+    public static final String SEQISM_STATIC_EXCHANGE = "seqism-static-exchange";
     /**
      * Prefix used for naming command queues in the Seqism system.
      * This constant is typically appended with a specific identifier to form the
@@ -43,6 +77,137 @@ public class SeqismConstant {
      * by prepending this prefix to the specific queue identifier.
      */
     public static final String RESPONSE_QUEUE_PREFIX = "seqism-response-queue.";
+    /**
+     * Prefix used for naming the shared reply queue owned by each gateway instance.
+     * The gateway instance ID is appended to this prefix to form the full queue name.
+     */
+    public static final String REPLY_QUEUE_PREFIX = "seqism-reply-queue.";
+    /**
+     * Prefix used for naming the inbox queue owned by each processor instance.
+     * The processor instance ID is appended to this prefix to form the full queue name.
+     */
+    public static final String INBOX_QUEUE_PREFIX = "seqism-inbox-queue.";
+    /**
+     * Value of the {@code seqism.transport.type} property selecting the RabbitMQ transport, the default.
+     */
+    public static final String TRANSPORT_RABBITMQ = "rabbitmq";
+    /**
+     * Value of the {@code seqism.transport.type} property selecting the in-JVM transport, for a gateway and
+     * processors running in the same process.
+     */
+    public static final String TRANSPORT_IN_JVM = "in-jvm";
+    /**
+     * Value of the {@code seqism.transport.type} property selecting the memory-mapped file transport, for a gateway
+     * and processors running as separate processes on the same host.
+     */
+    public static final String TRANSPORT_MMAP = "mmap";
+    /**
+     * Default number of slots of the rings of the memory-mapped file transport.
+     */
+    public static final int MMAP_RING_CAPACITY = 1024;
+    /**
+     * Default size in bytes of the slots of the rings of the memory-mapped file transport.
+     */
+    public static final int MMAP_SLOT_SIZE = 65536;
+    /**
+     * Value of the {@code seqism.transport.type} property selecting the Kafka transport.
+     */
+    public static final String TRANSPORT_KAFKA = "kafka";
+    /**
+     * The name of the Kafka topic carrying the first steps of the conversations, the counterpart of
+     * {@link #SEQISM_STATIC_QUEUE}.
+     */
+    public static final String SEQISM_STATIC_TOPIC = "seqism-static-topic";
+    /**
+     * The name of the Kafka topic carrying the next steps of the conversations, keyed by transaction ID.
+     */
+    public static final String SEQISM_COMMAND_TOPIC = "seqism-command-topic";
+    /**
+     * The name of the Kafka topic carrying the replies of the processors, keyed by transaction ID.
+     */
+    public static final String SEQISM_RESPONSE_TOPIC = "seqism-response-topic";
+    /**
+     * The Kafka consumer group sharing the static topic between the processor instances.
+     */
+    public static final String SEQISM_PROCESSOR_GROUP = "seqism-processor";
+    /**
+     * The Kafka consumer group sharing the partitions of the response topic between the gateway instances, so that
+     * each instance reads the replies sent to its own partitions only.
+     */
+    public static final String SEQISM_GATEWAY_GROUP = "seqism-gateway";
+    /**
+     * Kafka header carrying the partition of the response topic read by the gateway instance waiting for the reply of
+     * a step.
+     */
+    public static final String REPLY_PARTITION_HEADER = "seqism-reply-partition";
+    /**
+     * The highest priority a conversation may have, and the default {@code x-max-priority} of the queues shared by
+     * conversations. RabbitMQ advises against priorities above ten.
+     */
+    public static final int MAX_PRIORITY = 9;
+    /**
+     * Default size in bytes of the segments of the audit log.
+     */
+    public static final int AUDIT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /**
+     * Default number of steps waiting to be written to the audit log, above which steps are dropped.
+     */
+    public static final int AUDIT_QUEUE_CAPACITY = 65536;
+    /**
+     * Value of the {@code seqism.codec.default} property encoding the messages as JSON, the default.
+     */
+    public static final String CODEC_JSON = "json";
+    /**
+     * Value of the {@code seqism.codec.default} property encoding the messages as Smile.
+     */
+    public static final String CODEC_SMILE = "smile";
+    /**
+     * Value of the {@code seqism.codec.default} property encoding the messages as CBOR.
+     */
+    public static final String CODEC_CBOR = "cbor";
+    /**
+     * Default size in bytes from which the encoded messages are compressed, when compression is enabled.
+     */
+    public static final int COMPRESSION_THRESHOLD = 16384;
+    /**
+     * Default largest size in bytes of a compressed message once decompressed, so that a small message cannot expand
+     * without bound in the memory of its receiver.
+     */
+    public static final int COMPRESSION_MAX_SIZE = 67108864;
+    /**
+     * AMQP header carrying the business code of a message, so that it can be routed before its body is decoded.
+     */
+    public static final String BIZ_CODE_HEADER = "seqism-biz-code";
+    /**
+     * AMQP header carrying the transaction ID of a message.
+     */
+    public static final String TRAN_ID_HEADER = "seqism-tran-id";
+    /**
+     * AMQP header carrying the status of a message.
+     */
+    public static final String STATUS_HEADER = "seqism-status";
+    /**
+     * AMQP header marking a message whose body is a JSON Patch against the body of the previous step, so that it is
+     * not decoded into the body type of its processor.
+     */
+    public static final String DELTA_HEADER = "seqism-delta";
+    /**
+     * Default time to live (in milliseconds) of the last body of a delta encoded conversation.
+     */
+    public static final long DELTA_TTL = 600000;
+    /**
+     * Default number of delta encoded conversations whose last body is kept.
+     */
+    public static final int DELTA_MAX_CONVERSATIONS = 10000;
+    /**
+     * AMQP header carrying the reference in the blob store of a message whose body was offloaded, the claim check.
+     */
+    public static final String CLAIM_CHECK_HEADER = "seqism-claim-check";
+    /**
+     * Default size in bytes from which the encoded messages are offloaded to the blob store, when the claim-check
+     * mode is enabled.
+     */
+    public static final int CLAIM_CHECK_THRESHOLD = 1048576;
 
     /**
      * Utility class containing constants for the Seqism application.
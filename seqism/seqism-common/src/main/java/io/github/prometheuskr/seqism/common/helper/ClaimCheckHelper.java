@@ -0,0 +1,246 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import java.lang.System.Logger.Level;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.prometheuskr.seqism.common.blob.BlobStore;
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+
+/**
+ * Helper class offloading the large encoded messages to a {@link BlobStore}, so that only a reference goes through
+ * the broker (the claim-check pattern).
+ * <p>
+ * An encoded message whose size reaches the threshold is put in the store, and the message sent carries its
+ * reference in the {@link SeqismConstant#CLAIM_CHECK_HEADER} header instead of its body. The receiver gets the body
+ * back from the store when it decodes the message. The blobs of a conversation are removed once its final reply is
+ * received, and the blobs of conversations that never complete are purged once older than the time to live, by a
+ * single daemon thread.
+ * <p>
+ * The disabled helper, returned by {@link #disabled()}, offloads nothing and cannot resolve references.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * ClaimCheckHelper claimCheck = new ClaimCheckHelper(new FileBlobStore(dir), 1 &lt;&lt; 20, 600000, 60000);
+ * if (claimCheck.shouldOffload(body.length)) {
+ *     String reference = claimCheck.offload(tranId, body);
+ * }
+ * </pre>
+ */
+public class ClaimCheckHelper implements AutoCloseable {
+    /**
+     * Logs the purges.
+     */
+    private static final System.Logger LOG = System.getLogger(ClaimCheckHelper.class.getName());
+
+    /**
+     * The store of the offloaded messages; {@code null} if disabled.
+     */
+    private final BlobStore store;
+    /**
+     * The size in bytes from which the messages are offloaded.
+     */
+    private final int threshold;
+    /**
+     * The time to live of the blobs in milliseconds.
+     */
+    private final long ttl;
+    /**
+     * Runs the purges; {@code null} if disabled or the blobs are kept.
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Number of messages offloaded.
+     */
+    private final LongAdder offloadedCount = new LongAdder();
+    /**
+     * Total size in bytes of the messages offloaded.
+     */
+    private final LongAdder offloadedBytes = new LongAdder();
+    /**
+     * Number of messages resolved.
+     */
+    private final LongAdder resolvedCount = new LongAdder();
+
+    /**
+     * Constructs a new {@code ClaimCheckHelper} and schedules the purges.
+     *
+     * @param store
+     *            the store of the offloaded messages, shared by the gateway and the processors; {@code null} to
+     *            disable the claim-check mode
+     * @param threshold
+     *            the size in bytes from which the encoded messages are offloaded, for instance
+     *            {@link SeqismConstant#CLAIM_CHECK_THRESHOLD}
+     * @param ttl
+     *            the time to live of the blobs in milliseconds; {@code 0} to keep them until their conversation
+     *            completes
+     * @param purgeInterval
+     *            the interval between two purges in milliseconds
+     */
+    public ClaimCheckHelper(BlobStore store, int threshold, long ttl, long purgeInterval) {
+        this.store = store;
+        this.threshold = Math.max(0, threshold);
+        this.ttl = ttl;
+
+        if (store != null && ttl > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "seqism-blob-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, purgeInterval);
+            scheduler.scheduleWithFixedDelay(this::purge, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns the disabled helper, which offloads nothing.
+     *
+     * @return a disabled helper
+     */
+    public static ClaimCheckHelper disabled() {
+        return new ClaimCheckHelper(null, Integer.MAX_VALUE, 0, 0);
+    }
+
+    /**
+     * Returns whether the claim-check mode is enabled.
+     *
+     * @return {@code true} if the messages reaching the threshold are offloaded
+     */
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    /**
+     * Returns whether an encoded message of the given size is to be offloaded.
+     *
+     * @param length
+     *            the size in bytes of the encoded message
+     * @return {@code true} if the claim-check mode is enabled and the size reaches the threshold
+     */
+    public boolean shouldOffload(int length) {
+        return store != null && length >= threshold;
+    }
+
+    /**
+     * Offloads an encoded message of a conversation to the store.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param bytes
+     *            the encoded message
+     * @return the reference of the message in the store
+     * @throws IllegalStateException
+     *             if the claim-check mode is disabled or the message cannot be stored
+     */
+    public String offload(String tranId, byte[] bytes) {
+        String reference = requireStore().put(tranId, bytes);
+        offloadedCount.increment();
+        offloadedBytes.add(bytes.length);
+        return reference;
+    }
+
+    /**
+     * Gets an offloaded message back from the store.
+     *
+     * @param reference
+     *            the reference of the message in the store
+     * @return the encoded message
+     * @throws IllegalStateException
+     *             if the claim-check mode is disabled, or the message was removed or cannot be read
+     */
+    public byte[] resolve(String reference) {
+        byte[] bytes = requireStore().get(reference);
+        resolvedCount.increment();
+        return bytes;
+    }
+
+    /**
+     * Removes the offloaded messages of a completed conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     */
+    public void complete(String tranId) {
+        if (store != null && tranId != null) {
+            store.remove(tranId);
+        }
+    }
+
+    /**
+     * Purges the offloaded messages older than the time to live.
+     *
+     * @return the number of purged messages
+     */
+    public int purge() {
+        if (store == null || ttl <= 0) {
+            return 0;
+        }
+        try {
+            int purged = store.purge(System.currentTimeMillis() - ttl);
+            if (purged > 0) {
+                LOG.log(Level.INFO, "Purged {0} expired blobs", purged);
+            }
+            return purged;
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Failed to purge the expired blobs", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the number of messages offloaded.
+     *
+     * @return the number of offloaded messages
+     */
+    public long getOffloadedCount() {
+        return offloadedCount.sum();
+    }
+
+    /**
+     * Returns the total size of the messages offloaded, which did not go through the broker.
+     *
+     * @return the size in bytes of the offloaded messages
+     */
+    public long getOffloadedBytes() {
+        return offloadedBytes.sum();
+    }
+
+    /**
+     * Returns the number of offloaded messages resolved.
+     *
+     * @return the number of resolved messages
+     */
+    public long getResolvedCount() {
+        return resolvedCount.sum();
+    }
+
+    /**
+     * Stops the purges.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the store, if the claim-check mode is enabled.
+     *
+     * @return the store
+     * @throws IllegalStateException
+     *             if the claim-check mode is disabled
+     */
+    BlobStore requireStore() {
+        if (store == null) {
+            throw new IllegalStateException("Claim-check mode is disabled");
+        }
+        return store;
+    }
+}
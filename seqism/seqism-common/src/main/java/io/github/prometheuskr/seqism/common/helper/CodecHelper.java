@@ -0,0 +1,118 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Helper class resolving the codec, and so the content type, with which the messages of a business code are sent to
+ * the broker.
+ * <p>
+ * The codecs are {@link SeqismConstant#CODEC_JSON}, {@link SeqismConstant#CODEC_SMILE} and
+ * {@link SeqismConstant#CODEC_CBOR}. A business code is encoded with the codec configured for it, otherwise with the
+ * default codec. The codecs of the business codes are configured as a comma-separated list of
+ * {@code <bizCode>:<codec>} entries.
+ * <p>
+ * Only the sender picks the codec: the receiver decodes each message by its content type, so that a gateway and
+ * processors configured with different codecs still understand each other, as long as both support the codec.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * CodecHelper helper = new CodecHelper("json", "BIZ001:smile,BIZ002:cbor");
+ * String contentType = helper.getContentType(message); // application/x-jackson-smile for BIZ001
+ * </pre>
+ */
+public class CodecHelper {
+    /**
+     * The content type of the messages encoded as JSON.
+     */
+    public static final String JSON_CONTENT_TYPE = "application/json";
+    /**
+     * The content type of the messages encoded as Smile.
+     */
+    public static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+    /**
+     * The content type of the messages encoded as CBOR.
+     */
+    public static final String CBOR_CONTENT_TYPE = "application/cbor";
+
+    /**
+     * The content type of the business codes without a configured codec.
+     */
+    private final String defaultContentType;
+    /**
+     * The content types of the configured codecs, keyed by business code.
+     */
+    private final Map<String, String> bizCodeContentTypes = new HashMap<>();
+
+    /**
+     * Constructs a new {@code CodecHelper}.
+     *
+     * @param defaultCodec
+     *            the codec of the business codes without a configured codec; {@code null} or blank for JSON
+     * @param bizCodeCodecs
+     *            the codecs of the business codes, as {@code <bizCode>:<codec>} entries separated by commas; may be
+     *            {@code null} or blank
+     * @throws IllegalArgumentException
+     *             if a codec is unknown or an entry is malformed
+     */
+    public CodecHelper(String defaultCodec, String bizCodeCodecs) {
+        this.defaultContentType = defaultCodec == null || defaultCodec.isBlank()
+                ? JSON_CONTENT_TYPE
+                : getContentType(defaultCodec.trim());
+
+        if (bizCodeCodecs == null || bizCodeCodecs.isBlank()) {
+            return;
+        }
+        for (String entry : bizCodeCodecs.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Malformed bizCode entry : " + entry);
+            }
+            bizCodeContentTypes.put(entry.substring(0, separator).trim(),
+                    getContentType(entry.substring(separator + 1).trim()));
+        }
+    }
+
+    /**
+     * Returns the content type of a codec.
+     *
+     * @param codec
+     *            the codec, one of {@link SeqismConstant#CODEC_JSON}, {@link SeqismConstant#CODEC_SMILE} or
+     *            {@link SeqismConstant#CODEC_CBOR}
+     * @return the content type of the messages encoded with the codec
+     * @throws IllegalArgumentException
+     *             if the codec is unknown
+     */
+    public static String getContentType(String codec) {
+        switch (codec) {
+            case SeqismConstant.CODEC_JSON:
+                return JSON_CONTENT_TYPE;
+            case SeqismConstant.CODEC_SMILE:
+                return SMILE_CONTENT_TYPE;
+            case SeqismConstant.CODEC_CBOR:
+                return CBOR_CONTENT_TYPE;
+            default:
+                throw new IllegalArgumentException("Unknown codec : " + codec);
+        }
+    }
+
+    /**
+     * Returns the content type with which a message is sent: that of the codec configured for its business code,
+     * otherwise that of the default codec.
+     *
+     * @param message
+     *            the message to send
+     * @return the content type of the message
+     */
+    public String getContentType(SeqismMessage<?> message) {
+        String bizCode = message.getHeader() != null ? message.getHeader().getBizCode() : null;
+        if (bizCode != null) {
+            return bizCodeContentTypes.getOrDefault(bizCode, defaultContentType);
+        }
+        return defaultContentType;
+    }
+}
@@ -0,0 +1,605 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.DefaultJackson2JavaTypeMapper;
+import org.springframework.amqp.support.converter.Jackson2JavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SmartMessageConverter;
+import org.springframework.core.ParameterizedTypeReference;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+/**
+ * Message converter encoding each {@link SeqismMessage} with the codec of its business code, and decoding each
+ * message received by its content type.
+ * <p>
+ * The codecs are Jackson converters sharing the same type handling as the {@code Jackson2JsonMessageConverter} used
+ * so far: JSON, and the binary formats Smile and CBOR, which carry the same data in fewer bytes and with less parsing.
+ * The type of a message received is resolved from the conversion hint, a {@link JavaType} or a
+ * {@link ParameterizedTypeReference}, otherwise from the inferred type of the listener argument or the type headers.
+ * The readers of the types are cached, so that decoding a message straight into the body type of its processor
+ * costs no more than decoding it into a map. The codec of a message is resolved by the {@link CodecHelper}; other
+ * objects are always encoded as JSON. A message received without a known content type is decoded as JSON.
+ * <p>
+ * The business code, transaction ID and status of each {@link SeqismMessage} sent are also carried as the headers
+ * {@link SeqismConstant#BIZ_CODE_HEADER}, {@link SeqismConstant#TRAN_ID_HEADER} and
+ * {@link SeqismConstant#STATUS_HEADER}, so that a listener can route a message before decoding its body.
+ * <p>
+ * Encoded messages reaching the threshold of the {@link PayloadCompressor} are then compressed and marked by their
+ * content encoding, and compressed messages received are decompressed before being decoded, so that compression is
+ * transparent to the senders and listeners.
+ * <p>
+ * Finally, in the claim-check mode, the messages still reaching the threshold of the {@link ClaimCheckHelper} are
+ * offloaded to its blob store: the message sent carries the reference of its body in the
+ * {@link SeqismConstant#CLAIM_CHECK_HEADER} header and an empty body, so that the broker and the consumers sharing
+ * its queues only handle a few bytes. The body is read back from the store only when the message is decoded. Once
+ * a message ending a conversation is decoded, the blobs of the conversation are removed.
+ * <p>
+ * The type headers of a message may only name the classes of {@value #SEQISM_PACKAGE}, of the packages the
+ * application adds, see {@link #CodecMessageConverter(CodecHelper, PayloadCompressor, ClaimCheckHelper, Collection)},
+ * and of their subpackages; the types given by a conversion hint or by the listener argument are not restricted.
+ * <p>
+ * The listener methods taking the AMQP {@link Message} itself decode the message into the type they choose, so they
+ * name the {@link #undecoded()} converter, which leaves the message as it is, instead of this one.
+ */
+public class CodecMessageConverter implements SmartMessageConverter {
+    /**
+     * The attribute of the deserialization context holding the encoded bytes being decoded, so that a deserializer
+     * may copy a value as it is instead of reading it.
+     */
+    public static final String SOURCE_ATTRIBUTE = "seqism-source";
+    /**
+     * The package of the Seqism classes, whose type headers are always trusted.
+     */
+    public static final String SEQISM_PACKAGE = "io.github.prometheuskr.seqism";
+
+    /**
+     * Resolves the content type of the messages sent.
+     */
+    private final CodecHelper codecHelper;
+    /**
+     * Compresses the large messages sent and decompresses the compressed messages received.
+     */
+    private final PayloadCompressor compressor;
+    /**
+     * Offloads the large messages sent to the blob store and resolves the offloaded messages received.
+     */
+    private final ClaimCheckHelper claimCheck;
+    /**
+     * The JSON converter, decoding the messages of unknown content types.
+     */
+    private final JacksonConverter json;
+    /**
+     * The converters, keyed by content type.
+     */
+    private final Map<String, JacksonConverter> converters;
+    /**
+     * The converter leaving the messages received undecoded.
+     */
+    private final MessageConverter undecoded = new UndecodedConverter();
+
+    /**
+     * Constructs a new {@code CodecMessageConverter}.
+     *
+     * @param codecHelper
+     *            the helper resolving the codec of the messages sent
+     * @param compressor
+     *            the compressor of the messages
+     */
+    public CodecMessageConverter(CodecHelper codecHelper, PayloadCompressor compressor) {
+        this(codecHelper, compressor, ClaimCheckHelper.disabled());
+    }
+
+    /**
+     * Constructs a new {@code CodecMessageConverter} offloading the large messages to a blob store.
+     *
+     * @param codecHelper
+     *            the helper resolving the codec of the messages sent
+     * @param compressor
+     *            the compressor of the messages
+     * @param claimCheck
+     *            the helper offloading the large messages to the blob store
+     */
+    public CodecMessageConverter(CodecHelper codecHelper, PayloadCompressor compressor, ClaimCheckHelper claimCheck) {
+        this(codecHelper, compressor, claimCheck, List.of());
+    }
+
+    /**
+     * Constructs a new {@code CodecMessageConverter} offloading the large messages to a blob store and trusting the
+     * type headers of more packages.
+     *
+     * @param codecHelper
+     *            the helper resolving the codec of the messages sent
+     * @param compressor
+     *            the compressor of the messages
+     * @param claimCheck
+     *            the helper offloading the large messages to the blob store
+     * @param trustedPackages
+     *            the packages, besides {@value #SEQISM_PACKAGE}, whose classes and those of their subpackages may
+     *            be named by the type headers of the messages received, such as the packages of the bodies
+     */
+    public CodecMessageConverter(CodecHelper codecHelper, PayloadCompressor compressor, ClaimCheckHelper claimCheck,
+            Collection<String> trustedPackages) {
+        this.codecHelper = codecHelper;
+        this.compressor = compressor;
+        this.claimCheck = claimCheck;
+
+        List<String> packages = new ArrayList<>();
+        packages.add(SEQISM_PACKAGE);
+        trustedPackages.stream().map(String::trim).filter(name -> !name.isEmpty()).forEach(packages::add);
+        String[] trusted = packages.toArray(String[]::new);
+
+        this.json = converter(new JsonFactory(), CodecHelper.JSON_CONTENT_TYPE, StandardCharsets.UTF_8.name(),
+                trusted);
+        this.converters = Map.of(CodecHelper.JSON_CONTENT_TYPE, json,
+                CodecHelper.SMILE_CONTENT_TYPE,
+                converter(new SmileFactory(), CodecHelper.SMILE_CONTENT_TYPE, null, trusted),
+                CodecHelper.CBOR_CONTENT_TYPE,
+                converter(new CBORFactory(), CodecHelper.CBOR_CONTENT_TYPE, null, trusted));
+    }
+
+    /**
+     * Creates a converter for a Jackson format, configured as the {@code Jackson2JsonMessageConverter}: unknown
+     * properties are ignored and the type headers are resolved for the trusted packages only.
+     * <p>
+     * The Spring AMQP Jackson converters decode bytes through a {@link String} unless the content type has a charset,
+     * which a binary format cannot go through, so the converters are built on the mapper directly.
+     *
+     * @param factory
+     *            the factory of the format
+     * @param contentType
+     *            the content type of the format
+     * @param contentEncoding
+     *            the content encoding of the format; {@code null} for a binary format
+     * @param trustedPackages
+     *            the packages whose classes may be named by the type headers
+     * @return the converter
+     */
+    static JacksonConverter converter(JsonFactory factory, String contentType, String contentEncoding,
+            String... trustedPackages) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return new JacksonConverter(mapper, contentType, contentEncoding, new TrustedTypeMapper(trustedPackages));
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        return toMessage(object, messageProperties, null);
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties, Type genericType)
+            throws MessageConversionException {
+        Message message = encoderFor(object).toMessage(object, messageProperties, genericType);
+        if (object instanceof SeqismMessage<?> seqismMessage && seqismMessage.getHeader() != null) {
+            setHeaders(seqismMessage.getHeader(), messageProperties);
+            return offload(compress(message), seqismMessage.getHeader().getTranId());
+        }
+        return compress(message);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        return fromMessage(message, null);
+    }
+
+    @Override
+    public Object fromMessage(Message message, Object conversionHint) throws MessageConversionException {
+        Message decompressed = decompress(resolve(message));
+        Object object = decoderFor(decompressed).fromMessage(decompressed, conversionHint);
+        complete(message.getMessageProperties());
+        return object;
+    }
+
+    /**
+     * Returns the converter of the listener methods taking the AMQP {@link Message} itself: it encodes the messages
+     * sent as this converter does, but hands the messages received over undecoded, so that the listener decodes
+     * them, once, into the type it chooses. A listener names it with the {@code messageConverter} attribute of its
+     * {@code @RabbitListener} annotation.
+     *
+     * @return the converter leaving the messages received undecoded
+     */
+    public MessageConverter undecoded() {
+        return undecoded;
+    }
+
+    /**
+     * Carries the business code, transaction ID and status of a message as headers of the AMQP message, and marks
+     * the message whose body is delta encoded.
+     *
+     * @param header
+     *            the header of the message sent
+     * @param messageProperties
+     *            the properties of the AMQP message
+     */
+    static void setHeaders(SeqismMessageHeader header, MessageProperties messageProperties) {
+        if (header.getBizCode() != null) {
+            messageProperties.setHeader(SeqismConstant.BIZ_CODE_HEADER, header.getBizCode());
+        }
+        if (header.getTranId() != null) {
+            messageProperties.setHeader(SeqismConstant.TRAN_ID_HEADER, header.getTranId());
+        }
+        if (header.getStatus() != null) {
+            messageProperties.setHeader(SeqismConstant.STATUS_HEADER, header.getStatus().name());
+        }
+        if (Boolean.TRUE.equals(header.getDelta())) {
+            messageProperties.setHeader(SeqismConstant.DELTA_HEADER, true);
+        }
+    }
+
+    /**
+     * Compresses an encoded message if it reaches the threshold and compression makes it smaller.
+     *
+     * @param message
+     *            the encoded message
+     * @return the message, compressed or not
+     */
+    Message compress(Message message) {
+        if (!compressor.shouldCompress(message.getBody().length)) {
+            return message;
+        }
+        byte[] compressed = compressor.compress(message.getBody());
+        if (compressed == null) {
+            return message;
+        }
+
+        MessageProperties properties = message.getMessageProperties();
+        properties.setContentEncoding(PayloadCompressor.toCompressedEncoding(properties.getContentEncoding()));
+        properties.setContentLength(compressed.length);
+        return new Message(compressed, properties);
+    }
+
+    /**
+     * Decompresses a message received if its content encoding marks it as compressed. The message received is left
+     * unchanged.
+     *
+     * @param message
+     *            the message received
+     * @return the message, decompressed
+     * @throws MessageConversionException
+     *             if the message is not a valid compressed message
+     */
+    Message decompress(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        if (!PayloadCompressor.isCompressed(properties.getContentEncoding())) {
+            return message;
+        }
+
+        byte[] decompressed;
+        try {
+            decompressed = compressor.decompress(message.getBody());
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException("Failed to decompress Message content", e);
+        }
+        return MessageBuilder.withBody(decompressed)
+                .copyProperties(properties)
+                .setContentEncoding(PayloadCompressor.toDecompressedEncoding(properties.getContentEncoding()))
+                .setContentLength(decompressed.length)
+                .build();
+    }
+
+    /**
+     * Offloads an encoded message of a conversation to the blob store if it reaches the threshold.
+     *
+     * @param message
+     *            the encoded message, compressed or not
+     * @param tranId
+     *            the transaction ID of the conversation; {@code null} to never offload the message
+     * @return the message, or the message carrying the reference of its body
+     * @throws MessageConversionException
+     *             if the message cannot be stored
+     */
+    Message offload(Message message, String tranId) {
+        if (tranId == null || !claimCheck.shouldOffload(message.getBody().length)) {
+            return message;
+        }
+
+        String reference;
+        try {
+            reference = claimCheck.offload(tranId, message.getBody());
+        } catch (IllegalStateException e) {
+            throw new MessageConversionException("Failed to offload Message content", e);
+        }
+        MessageProperties properties = message.getMessageProperties();
+        properties.setHeader(SeqismConstant.CLAIM_CHECK_HEADER, reference);
+        properties.setContentLength(0);
+        return new Message(new byte[0], properties);
+    }
+
+    /**
+     * Reads back the body of a message offloaded to the blob store. The message received is left unchanged.
+     *
+     * @param message
+     *            the message received
+     * @return the message with its body
+     * @throws MessageConversionException
+     *             if the body cannot be read from the store
+     */
+    Message resolve(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Object reference = properties.getHeader(SeqismConstant.CLAIM_CHECK_HEADER);
+        if (reference == null) {
+            return message;
+        }
+
+        byte[] body;
+        try {
+            body = claimCheck.resolve(reference.toString());
+        } catch (IllegalStateException e) {
+            throw new MessageConversionException("Failed to resolve Message content " + reference, e);
+        }
+        return MessageBuilder.withBody(body)
+                .copyProperties(properties)
+                .removeHeader(SeqismConstant.CLAIM_CHECK_HEADER)
+                .setContentLength(body.length)
+                .build();
+    }
+
+    /**
+     * Removes the blobs of a conversation once a message ending it is decoded, as told by the
+     * {@link SeqismConstant#STATUS_HEADER} header.
+     *
+     * @param properties
+     *            the properties of the message decoded
+     */
+    void complete(MessageProperties properties) {
+        Object status = properties.getHeader(SeqismConstant.STATUS_HEADER);
+        if (claimCheck.isEnabled() && status != null
+                && !SeqismMessageStatus.IN_PROGRESS.name().equals(status.toString())) {
+            Object tranId = properties.getHeader(SeqismConstant.TRAN_ID_HEADER);
+            claimCheck.complete(tranId != null ? tranId.toString() : null);
+        }
+    }
+
+    /**
+     * Returns the converter encoding an object: that of the codec of its business code for a {@link SeqismMessage},
+     * the JSON one otherwise.
+     *
+     * @param object
+     *            the object to encode
+     * @return the converter
+     */
+    JacksonConverter encoderFor(Object object) {
+        if (object instanceof SeqismMessage<?> message) {
+            return converters.getOrDefault(codecHelper.getContentType(message), json);
+        }
+        return json;
+    }
+
+    /**
+     * Returns the converter decoding a message received: that of its content type, parameters ignored, or the JSON
+     * one if the content type is missing or unknown.
+     *
+     * @param message
+     *            the message received
+     * @return the converter
+     */
+    JacksonConverter decoderFor(Message message) {
+        String contentType = message.getMessageProperties().getContentType();
+        if (contentType == null) {
+            return json;
+        }
+        int parameters = contentType.indexOf(';');
+        if (parameters >= 0) {
+            contentType = contentType.substring(0, parameters);
+        }
+        return converters.getOrDefault(contentType.trim(), json);
+    }
+
+    /**
+     * Converter encoding the messages sent as the enclosing converter, and leaving the messages received undecoded.
+     */
+    final class UndecodedConverter implements MessageConverter {
+        /**
+         * Constructs a new {@code UndecodedConverter}.
+         */
+        UndecodedConverter() {}
+
+        @Override
+        public Message toMessage(Object object, MessageProperties messageProperties)
+                throws MessageConversionException {
+            return CodecMessageConverter.this.toMessage(object, messageProperties);
+        }
+
+        @Override
+        public Object fromMessage(Message message) throws MessageConversionException {
+            return message;
+        }
+    }
+
+    /**
+     * Type mapper resolving the type headers only for the classes of the trusted packages and of their subpackages.
+     * The {@link DefaultJackson2JavaTypeMapper} trusts the classes of the listed packages only, not of their
+     * subpackages, which would have to be listed one by one.
+     */
+    static final class TrustedTypeMapper extends DefaultJackson2JavaTypeMapper {
+        /**
+         * The trusted packages, as prefixes of the class names.
+         */
+        private final List<String> prefixes = new ArrayList<>(List.of("java.util.", "java.lang."));
+
+        /**
+         * Constructs a new {@code TrustedTypeMapper}.
+         *
+         * @param trustedPackages
+         *            the packages whose classes, and those of their subpackages, may be named by the type headers
+         */
+        TrustedTypeMapper(String... trustedPackages) {
+            for (String trustedPackage : trustedPackages) {
+                prefixes.add(trustedPackage + ".");
+            }
+            // the check of the default mapper is replaced by that of the packages and their subpackages
+            setTrustedPackages("*");
+        }
+
+        /**
+         * Resolves the type of a message, from the inferred type of the listener argument if any, or else from the
+         * type headers.
+         *
+         * @param properties
+         *            the properties of the message
+         * @return the type of the message
+         * @throws MessageConversionException
+         *             if the type comes from type headers naming a class out of the trusted packages
+         */
+        @Override
+        public JavaType toJavaType(MessageProperties properties) {
+            if (getInferredType(properties) == null) {
+                checkTrusted(retrieveHeaderAsString(properties, getClassIdFieldName()));
+                checkTrusted(retrieveHeaderAsString(properties, getContentClassIdFieldName()));
+                checkTrusted(retrieveHeaderAsString(properties, getKeyClassIdFieldName()));
+            }
+            return super.toJavaType(properties);
+        }
+
+        /**
+         * Checks that a type header names a class of the trusted packages.
+         *
+         * @param className
+         *            the class named by the header; {@code null} if the header is missing
+         * @throws MessageConversionException
+         *             if the class is out of the trusted packages
+         */
+        void checkTrusted(String className) {
+            if (className == null || getIdClassMapping().containsKey(className)) {
+                return;
+            }
+            for (String prefix : prefixes) {
+                if (className.startsWith(prefix)) {
+                    return;
+                }
+            }
+            throw new MessageConversionException("The class '" + className + "' is not in the trusted packages");
+        }
+    }
+
+    /**
+     * Converter encoding objects with a Jackson format.
+     */
+    static final class JacksonConverter {
+        /**
+         * The mapper of the format.
+         */
+        private final ObjectMapper mapper;
+        /**
+         * The content type of the format.
+         */
+        private final String contentType;
+        /**
+         * The content encoding of the format; {@code null} for a binary format.
+         */
+        private final String contentEncoding;
+        /**
+         * Writes and resolves the type of the messages.
+         */
+        private final Jackson2JavaTypeMapper typeMapper;
+        /**
+         * The readers of the types decoded so far.
+         */
+        private final Map<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+
+        /**
+         * Constructs a new {@code JacksonConverter}.
+         *
+         * @param mapper
+         *            the mapper of the format
+         * @param contentType
+         *            the content type of the format
+         * @param contentEncoding
+         *            the content encoding of the format; {@code null} for a binary format
+         * @param typeMapper
+         *            writes and resolves the type of the messages
+         */
+        JacksonConverter(ObjectMapper mapper, String contentType, String contentEncoding,
+                Jackson2JavaTypeMapper typeMapper) {
+            this.mapper = mapper;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.typeMapper = typeMapper;
+        }
+
+        /**
+         * Encodes an object, recording its type in the type headers.
+         *
+         * @param object
+         *            the object to encode
+         * @param messageProperties
+         *            the properties of the AMQP message
+         * @param genericType
+         *            the type of the object; {@code null} for its class
+         * @return the AMQP message
+         * @throws MessageConversionException
+         *             if the object cannot be encoded
+         */
+        Message toMessage(Object object, MessageProperties messageProperties, Type genericType) {
+            byte[] bytes;
+            try {
+                bytes = mapper.writeValueAsBytes(object);
+            } catch (IOException e) {
+                throw new MessageConversionException("Failed to convert Message content", e);
+            }
+            messageProperties.setContentType(contentType);
+            if (contentEncoding != null) {
+                messageProperties.setContentEncoding(contentEncoding);
+            }
+            messageProperties.setContentLength(bytes.length);
+            typeMapper.fromJavaType(mapper.constructType(genericType != null ? genericType : object.getClass()),
+                    messageProperties);
+            return new Message(bytes, messageProperties);
+        }
+
+        /**
+         * Decodes a message into the type given by the conversion hint, or else by its properties. The body of the
+         * message is available to the deserializers as the {@link #SOURCE_ATTRIBUTE} attribute.
+         *
+         * @param message
+         *            the message received
+         * @param conversionHint
+         *            a {@link JavaType} or a {@link ParameterizedTypeReference}; may be {@code null}
+         * @return the decoded object
+         * @throws MessageConversionException
+         *             if the message cannot be decoded, or its type headers name a class out of the trusted packages
+         */
+        Object fromMessage(Message message, Object conversionHint) {
+            JavaType type;
+            if (conversionHint instanceof JavaType javaType) {
+                type = javaType;
+            } else if (conversionHint instanceof ParameterizedTypeReference<?> reference) {
+                type = mapper.constructType(reference.getType());
+            } else {
+                type = typeMapper.toJavaType(message.getMessageProperties());
+            }
+
+            try {
+                return readers.computeIfAbsent(type, mapper::readerFor)
+                        .withAttribute(SOURCE_ATTRIBUTE, message.getBody())
+                        .readValue(message.getBody());
+            } catch (IOException e) {
+                throw new MessageConversionException("Failed to convert Message content", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+/**
+ * Helper class delta encoding the bodies of the conversations between steps.
+ * <p>
+ * Each step of a delta encoded conversation, in either direction, carries the next step sequence number in its
+ * header ({@code seq}). A step whose header is marked {@code delta} carries a JSON Patch (RFC 6902) against the body
+ * of the previous step instead of its full body, so that a step changing one field of a large body carries that
+ * field only. The patches are made of {@code add}, {@code remove} and {@code replace} operations; arrays are patched
+ * element by element, so that an element appended to a list is carried alone.
+ * <p>
+ * The last full body of each conversation is kept, with its step sequence number, until the conversation ends or
+ * for a time to live, and the number of conversations kept is bounded. A step is delta encoded only against a body
+ * kept, and only when the patch does not replace the whole body; otherwise the full body is sent. A delta encoded
+ * step received whose previous body is not known, because it expired or was kept by another instance, is rejected
+ * with the error given to the helper, so that the sender sends it again with its full body. A receiver that can
+ * answer the step without ending the conversation rejects it with {@link #toMissingBase(SeqismMessage)}.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * DeltaHelper.Encoded encoded = deltaHelper.encode(message);
+ * SeqismMessage&lt;Object&gt; reply = deltaHelper.decode(send(encoded.message()), encoded.body());
+ * </pre>
+ */
+public class DeltaHelper {
+    /**
+     * The last full body of a conversation.
+     *
+     * @param seq
+     *            the step sequence number of the body
+     * @param body
+     *            the body, as a tree
+     * @param expiresAt
+     *            the time (epoch milliseconds) after which the body is forgotten
+     */
+    public record Snapshot(long seq, JsonNode body, long expiresAt) {}
+
+    /**
+     * A step encoded for sending.
+     *
+     * @param message
+     *            the message to send, delta encoded or not
+     * @param body
+     *            the full body of the step, against which its reply is patched; {@code null} if the conversation is
+     *            not delta encoded
+     */
+    public record Encoded(SeqismMessage<Object> message, Snapshot body) {}
+
+    /**
+     * Whether the conversations are delta encoded.
+     */
+    private final boolean enabled;
+    /**
+     * The time to live (in milliseconds) of the last body of a conversation.
+     */
+    private final long ttl;
+    /**
+     * The number of conversations whose last body is kept.
+     */
+    private final int maxConversations;
+    /**
+     * The mapper converting the bodies to trees and back.
+     */
+    private final ObjectMapper mapper;
+    /**
+     * The error rejecting a delta encoded step whose previous body is not known.
+     */
+    private final ErrorInfo missingBaseError;
+    /**
+     * The last full body of each conversation, by transaction ID.
+     */
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code DeltaHelper}.
+     *
+     * @param enabled
+     *            whether the conversations are delta encoded
+     * @param ttl
+     *            the time to live (in milliseconds) of the last body of a conversation, for instance
+     *            {@link SeqismConstant#DELTA_TTL}
+     * @param maxConversations
+     *            the number of conversations whose last body is kept, for instance
+     *            {@link SeqismConstant#DELTA_MAX_CONVERSATIONS}
+     * @param mapper
+     *            the mapper converting the bodies to trees and back
+     * @param missingBaseError
+     *            the error rejecting a delta encoded step whose previous body is not known
+     */
+    public DeltaHelper(boolean enabled, long ttl, int maxConversations, ObjectMapper mapper,
+            ErrorInfo missingBaseError) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.maxConversations = maxConversations;
+        this.mapper = mapper;
+        this.missingBaseError = missingBaseError;
+    }
+
+    /**
+     * Returns whether the conversations are delta encoded.
+     *
+     * @return {@code true} if the conversations are delta encoded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns whether a message is the rejection of a delta encoded step by a receiver not knowing its previous
+     * body, whether it ended the conversation or not.
+     *
+     * @param message
+     *            a message received
+     * @param error
+     *            the error of the rejection
+     * @return {@code true} if the step was rejected for its previous body
+     */
+    public static boolean isMissingBase(SeqismMessage<?> message, ErrorInfo error) {
+        return message.getHeader().getError() != null
+                && error.getErrorCode().equals(message.getHeader().getError().getErrorCode());
+    }
+
+    /**
+     * Creates the rejection of a delta encoded step whose previous body is not known, which leaves the conversation
+     * in progress so that the sender can send the step again with its full body. The rejection carries the error
+     * given to the helper, no body and no step sequence number, so that it is sent as is.
+     *
+     * @param message
+     *            the step rejected
+     * @return the rejection, in progress
+     */
+    public SeqismMessage<Object> toMissingBase(SeqismMessage<?> message) {
+        SeqismMessageHeader header = message.getHeader();
+        return new SeqismMessage<>(new SeqismMessageHeader(header.getBizCode(), header.getTranId(),
+                SeqismMessageStatus.IN_PROGRESS, missingBaseError, header.getRoute(), header.getPriority(), null,
+                null, header.getStepSeq()), null);
+    }
+
+    /**
+     * Encodes a step to send: numbers it after the last body of its conversation and, when a patch against that body
+     * does not replace it entirely, replaces its body by the patch. A step of a conversation whose last body is not
+     * known is sent with its full body, numbered by its header; a step without a number is sent as is. The full body
+     * becomes the last body of the conversation, unless the step ends it.
+     *
+     * @param message
+     *            the step to send
+     * @return the message to send and the full body of the step
+     */
+    @SuppressWarnings("unchecked")
+    public Encoded encode(SeqismMessage<?> message) {
+        String tranId = message.getHeader().getTranId();
+        Snapshot previous = get(tranId);
+        Long seq = previous != null ? Long.valueOf(previous.seq() + 1) : message.getHeader().getSeq();
+        if (seq == null) {
+            return new Encoded((SeqismMessage<Object>) message, null);
+        }
+
+        JsonNode body = toTree(message.getBody());
+        Snapshot snapshot = remember(message, seq, body);
+        ArrayNode patch = previous != null && message.getBody() != null ? diff(previous.body(), body) : null;
+        SeqismMessage<Object> encoded = patch != null
+                ? message.withBody((Object) patch).withSeq(seq, true)
+                : ((SeqismMessage<Object>) message).withSeq(seq, false);
+        return new Encoded(encoded, snapshot);
+    }
+
+    /**
+     * Decodes a step received: applies its patch to the given body, or to the last body of its conversation, and
+     * keeps the full body as the last body of the conversation, unless the step ends it.
+     *
+     * @param message
+     *            the step received
+     * @param base
+     *            the full body of the step it answers; {@code null} for the last body of the conversation
+     * @return the step with its full body
+     * @throws SeqismException
+     *             if the step is delta encoded and the body it patches is not known
+     */
+    public SeqismMessage<Object> decode(SeqismMessage<?> message, Snapshot base) {
+        SeqismMessage<Object> resolved = resolve(message, base);
+        Long seq = resolved.getHeader().getSeq();
+        if (seq == null) {
+            snapshots.remove(resolved.getHeader().getTranId());
+        } else {
+            remember(resolved, seq, toTree(resolved.getBody()));
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolves the full body of a step received, without keeping it.
+     *
+     * @param message
+     *            the step received
+     * @param base
+     *            the full body of the step it answers; {@code null} for the last body of the conversation
+     * @return the step with its full body, as a tree if it was delta encoded
+     * @throws SeqismException
+     *             if the step is delta encoded and the body it patches is not known
+     */
+    @SuppressWarnings("unchecked")
+    public SeqismMessage<Object> resolve(SeqismMessage<?> message, Snapshot base) {
+        if (!Boolean.TRUE.equals(message.getHeader().getDelta())) {
+            return (SeqismMessage<Object>) message;
+        }
+
+        Long seq = message.getHeader().getSeq();
+        Snapshot previous = base != null ? base : get(message.getHeader().getTranId());
+        if (seq == null || previous == null || previous.seq() != seq - 1) {
+            throw new SeqismException(missingBaseError);
+        }
+        try {
+            return message.withBody((Object) apply(previous.body(), toTree(message.getBody()))).withSeq(seq, false);
+        } catch (IllegalArgumentException e) {
+            throw new SeqismException(missingBaseError.addMessage(e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the last full body of a conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return the last full body, or {@code null} if it is not known or expired
+     */
+    public Snapshot get(String tranId) {
+        Snapshot snapshot = tranId != null ? snapshots.get(tranId) : null;
+        if (snapshot != null && snapshot.expiresAt() < System.currentTimeMillis()) {
+            snapshots.remove(tranId, snapshot);
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Forgets the last full body of a conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     */
+    public void forget(String tranId) {
+        if (tranId != null) {
+            snapshots.remove(tranId);
+        }
+    }
+
+    /**
+     * Converts a full body to the given type.
+     *
+     * @param <R>
+     *            the type of the body
+     * @param body
+     *            the full body, as a tree or not
+     * @param bodyType
+     *            the type of the body; {@code null} to keep the body as is
+     * @return the body, of the given type
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R toBody(Object body, Class<R> bodyType) {
+        if (bodyType == null || bodyType.isInstance(body)) {
+            return (R) body;
+        }
+        return mapper.convertValue(body, bodyType);
+    }
+
+    /**
+     * Keeps the full body of a step as the last body of its conversation, or forgets the last body if the step ends
+     * the conversation. A body is not kept once the number of conversations kept is reached, after the expired ones
+     * are forgotten.
+     *
+     * @param message
+     *            the step
+     * @param seq
+     *            the step sequence number of the body
+     * @param body
+     *            the full body, as a tree
+     * @return the full body of the step
+     */
+    Snapshot remember(SeqismMessage<?> message, long seq, JsonNode body) {
+        String tranId = message.getHeader().getTranId();
+        Snapshot snapshot = new Snapshot(seq, body, System.currentTimeMillis() + ttl);
+        if (tranId == null) {
+            return snapshot;
+        }
+        if (message.getHeader().getStatus() != SeqismMessageStatus.IN_PROGRESS) {
+            snapshots.remove(tranId);
+            return snapshot;
+        }
+
+        if (snapshots.size() >= maxConversations && !snapshots.containsKey(tranId)) {
+            long now = System.currentTimeMillis();
+            snapshots.values().removeIf(s -> s.expiresAt() < now);
+            if (snapshots.size() >= maxConversations) {
+                return snapshot;
+            }
+        }
+        snapshots.put(tranId, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Converts a body to a tree.
+     *
+     * @param body
+     *            the body; may be {@code null}
+     * @return the body as a tree
+     */
+    JsonNode toTree(Object body) {
+        if (body == null) {
+            return mapper.nullNode();
+        }
+        return body instanceof JsonNode node ? node : mapper.valueToTree(body);
+    }
+
+    /**
+     * Computes the JSON Patch turning a body into another.
+     *
+     * @param source
+     *            the previous body
+     * @param target
+     *            the next body
+     * @return the patch, or {@code null} if it replaces the whole body
+     */
+    ArrayNode diff(JsonNode source, JsonNode target) {
+        ArrayNode patch = mapper.createArrayNode();
+        if (!diff(source, target, "", patch)) {
+            return null;
+        }
+        return patch;
+    }
+
+    /**
+     * Appends the operations turning a node into another to a patch.
+     *
+     * @param source
+     *            the previous node
+     * @param target
+     *            the next node
+     * @param path
+     *            the JSON Pointer of the node
+     * @param patch
+     *            the patch
+     * @return {@code false} if the node is the whole body and must be replaced
+     */
+    boolean diff(JsonNode source, JsonNode target, String path, ArrayNode patch) {
+        if (source.equals(target)) {
+            return true;
+        }
+
+        if (source.isObject() && target.isObject()) {
+            Iterator<String> names = source.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (!target.has(name)) {
+                    patch.addObject().put("op", "remove").put("path", path + "/" + escape(name));
+                }
+            }
+            Iterator<Map.Entry<String, JsonNode>> fields = target.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String fieldPath = path + "/" + escape(field.getKey());
+                JsonNode previous = source.get(field.getKey());
+                if (previous == null) {
+                    patch.addObject().put("op", "add").put("path", fieldPath).set("value", field.getValue());
+                } else {
+                    diff(previous, field.getValue(), fieldPath, patch);
+                }
+            }
+            return true;
+        }
+
+        if (source.isArray() && target.isArray()) {
+            int common = Math.min(source.size(), target.size());
+            for (int i = 0; i < common; i++) {
+                diff(source.get(i), target.get(i), path + "/" + i, patch);
+            }
+            for (int i = common; i < target.size(); i++) {
+                patch.addObject().put("op", "add").put("path", path + "/-").set("value", target.get(i));
+            }
+            for (int i = source.size() - 1; i >= common; i--) {
+                patch.addObject().put("op", "remove").put("path", path + "/" + i);
+            }
+            return true;
+        }
+
+        if (path.isEmpty()) {
+            return false;
+        }
+        patch.addObject().put("op", "replace").put("path", path).set("value", target);
+        return true;
+    }
+
+    /**
+     * Applies a JSON Patch made of {@code add}, {@code remove} and {@code replace} operations to a body.
+     *
+     * @param source
+     *            the previous body, left unchanged
+     * @param patch
+     *            the patch
+     * @return the next body
+     * @throws IllegalArgumentException
+     *             if the patch is not an array of valid operations on the body
+     */
+    JsonNode apply(JsonNode source, JsonNode patch) {
+        if (!patch.isArray()) {
+            throw new IllegalArgumentException("Invalid patch : not an array");
+        }
+
+        JsonNode result = source.deepCopy();
+        for (JsonNode operation : patch) {
+            String op = operation.path("op").asText();
+            List<String> tokens = parse(operation.path("path").asText());
+            JsonNode value = operation.get("value");
+            if (tokens.isEmpty()) {
+                if (!op.equals("replace") || value == null) {
+                    throw new IllegalArgumentException("Invalid patch operation : " + operation);
+                }
+                result = value;
+                continue;
+            }
+
+            JsonNode parent = result;
+            for (String token : tokens.subList(0, tokens.size() - 1)) {
+                parent = parent.isArray() ? parent.get(index(token, parent.size() - 1)) : parent.get(token);
+                if (parent == null) {
+                    throw new IllegalArgumentException("Invalid patch path : " + operation);
+                }
+            }
+            applyOperation(op, parent, tokens.get(tokens.size() - 1), value, operation);
+        }
+        return result;
+    }
+
+    /**
+     * Applies an operation to the member of a node.
+     *
+     * @param op
+     *            the operation: {@code add}, {@code remove} or {@code replace}
+     * @param parent
+     *            the node holding the member
+     * @param token
+     *            the name or index of the member
+     * @param value
+     *            the value of the operation; {@code null} for {@code remove}
+     * @param operation
+     *            the operation, for the error messages
+     * @throws IllegalArgumentException
+     *             if the operation is invalid
+     */
+    void applyOperation(String op, JsonNode parent, String token, JsonNode value, JsonNode operation) {
+        if (!op.equals("remove") && value == null) {
+            throw new IllegalArgumentException("Invalid patch operation : " + operation);
+        }
+
+        if (parent instanceof ObjectNode object) {
+            if (!op.equals("add") && !object.has(token)) {
+                throw new IllegalArgumentException("Invalid patch path : " + operation);
+            }
+            switch (op) {
+                case "add":
+                case "replace":
+                    object.set(token, value);
+                    break;
+                case "remove":
+                    object.remove(token);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid patch operation : " + operation);
+            }
+        } else if (parent instanceof ArrayNode array) {
+            switch (op) {
+                case "add":
+                    if (token.equals("-")) {
+                        array.add(value);
+                    } else {
+                        array.insert(index(token, array.size()), value);
+                    }
+                    break;
+                case "replace":
+                    array.set(index(token, array.size() - 1), value);
+                    break;
+                case "remove":
+                    array.remove(index(token, array.size() - 1));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid patch operation : " + operation);
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid patch path : " + operation);
+        }
+    }
+
+    /**
+     * Parses a JSON Pointer into its reference tokens.
+     *
+     * @param pointer
+     *            the JSON Pointer
+     * @return the unescaped reference tokens; empty for the whole body
+     * @throws IllegalArgumentException
+     *             if the pointer is invalid
+     */
+    static List<String> parse(String pointer) {
+        List<String> tokens = new ArrayList<>();
+        if (pointer.isEmpty()) {
+            return tokens;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("Invalid patch path : " + pointer);
+        }
+        for (String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+
+    /**
+     * Escapes a member name as a reference token of a JSON Pointer.
+     *
+     * @param name
+     *            the member name
+     * @return the reference token
+     */
+    static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * Parses the index of an array element.
+     *
+     * @param token
+     *            the reference token
+     * @param max
+     *            the highest valid index
+     * @return the index
+     * @throws IllegalArgumentException
+     *             if the token is not an index up to {@code max}
+     */
+    static int index(String token, int max) {
+        try {
+            int index = Integer.parseInt(token);
+            if (index >= 0 && index <= max) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid patch index : " + token);
+    }
+}
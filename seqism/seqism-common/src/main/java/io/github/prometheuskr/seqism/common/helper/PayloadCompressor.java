@@ -0,0 +1,393 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+
+/**
+ * Helper class compressing the encoded messages whose size reaches a threshold, with deflate.
+ * <p>
+ * A compressed message is marked by its content encoding: {@link #ENCODING}, followed by the former content encoding
+ * of the message after a colon, as the compressing post processors of Spring AMQP do. Only the messages reaching the
+ * threshold are compressed, and only when compression makes them smaller; a message whose content encoding does not
+ * start with {@link #ENCODING} is passed through. Decompression does not depend on the configuration of the receiver,
+ * except for the largest size a message may reach once decompressed: a message inflating beyond it is rejected, so
+ * that a few kilobytes of deflate cannot exhaust the memory of the receiver.
+ * <p>
+ * Deflate of the JDK is the only algorithm supported; faster algorithms such as LZ4 would need a third-party library
+ * on both sides and are not offered. {@link Deflater#BEST_SPEED}, the default level, is the closest trade-off.
+ * <p>
+ * The {@link Deflater} and {@link Inflater} instances, which hold native memory, and their working buffers are pooled
+ * and reused across messages. The compressor counts the bytes before and after compression and the CPU time spent
+ * compressing and decompressing, when the runtime measures the CPU time of threads, the elapsed time otherwise.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * PayloadCompressor compressor = new PayloadCompressor(true, 16384, Deflater.BEST_SPEED);
+ * if (compressor.shouldCompress(body.length)) {
+ *     byte[] compressed = compressor.compress(body); // null if not smaller
+ * }
+ * </pre>
+ */
+public class PayloadCompressor {
+    /**
+     * The content encoding of the compressed messages.
+     */
+    public static final String ENCODING = "deflate";
+
+    /**
+     * The size in bytes of the working buffers.
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * A pooled deflater with its working buffer.
+     *
+     * @param deflater
+     *            the deflater
+     * @param buffer
+     *            the working buffer
+     */
+    record PooledDeflater(Deflater deflater, byte[] buffer) {}
+
+    /**
+     * A pooled inflater with its working buffer.
+     *
+     * @param inflater
+     *            the inflater
+     * @param buffer
+     *            the working buffer
+     */
+    record PooledInflater(Inflater inflater, byte[] buffer) {}
+
+    /**
+     * Measures the CPU time of the current thread.
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Whether the messages are compressed.
+     */
+    private final boolean enabled;
+    /**
+     * The size in bytes from which the messages are compressed.
+     */
+    private final int threshold;
+    /**
+     * The compression level.
+     */
+    private final int level;
+    /**
+     * The largest size in bytes of a message once decompressed.
+     */
+    private final int maxSize;
+    /**
+     * Whether the CPU time of the current thread is measured.
+     */
+    private final boolean cpuTime;
+    /**
+     * The idle deflaters.
+     */
+    private final Queue<PooledDeflater> deflaters = new ConcurrentLinkedQueue<>();
+    /**
+     * The idle inflaters.
+     */
+    private final Queue<PooledInflater> inflaters = new ConcurrentLinkedQueue<>();
+    /**
+     * Number of messages compressed.
+     */
+    private final LongAdder compressedCount = new LongAdder();
+    /**
+     * Number of messages reaching the threshold left uncompressed since compression did not make them smaller.
+     */
+    private final LongAdder incompressibleCount = new LongAdder();
+    /**
+     * Number of messages decompressed.
+     */
+    private final LongAdder decompressedCount = new LongAdder();
+    /**
+     * Total size in bytes of the messages compressed, before compression.
+     */
+    private final LongAdder bytesIn = new LongAdder();
+    /**
+     * Total size in bytes of the messages compressed, after compression.
+     */
+    private final LongAdder bytesOut = new LongAdder();
+    /**
+     * Total time in nanoseconds spent compressing.
+     */
+    private final LongAdder compressNanos = new LongAdder();
+    /**
+     * Total time in nanoseconds spent decompressing.
+     */
+    private final LongAdder decompressNanos = new LongAdder();
+
+    /**
+     * Constructs a new {@code PayloadCompressor} decompressing the messages up to
+     * {@link SeqismConstant#COMPRESSION_MAX_SIZE} bytes.
+     *
+     * @param enabled
+     *            whether the messages are compressed; messages are decompressed in any case
+     * @param threshold
+     *            the size in bytes from which the messages are compressed, for instance
+     *            {@link SeqismConstant#COMPRESSION_THRESHOLD}
+     * @param level
+     *            the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+     *            {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IllegalArgumentException
+     *             if the compression level is invalid
+     */
+    public PayloadCompressor(boolean enabled, int threshold, int level) {
+        this(enabled, threshold, level, SeqismConstant.COMPRESSION_MAX_SIZE);
+    }
+
+    /**
+     * Constructs a new {@code PayloadCompressor}.
+     *
+     * @param enabled
+     *            whether the messages are compressed; messages are decompressed in any case
+     * @param threshold
+     *            the size in bytes from which the messages are compressed, for instance
+     *            {@link SeqismConstant#COMPRESSION_THRESHOLD}
+     * @param level
+     *            the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+     *            {@link Deflater#DEFAULT_COMPRESSION}
+     * @param maxSize
+     *            the largest size in bytes of a message once decompressed, for instance
+     *            {@link SeqismConstant#COMPRESSION_MAX_SIZE}
+     * @throws IllegalArgumentException
+     *             if the compression level or the largest size is invalid
+     */
+    public PayloadCompressor(boolean enabled, int threshold, int level, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid decompressed size limit : " + maxSize);
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level : " + level);
+        }
+        this.enabled = enabled;
+        this.threshold = Math.max(0, threshold);
+        this.level = level;
+        this.maxSize = maxSize;
+        this.cpuTime = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+    }
+
+    /**
+     * Returns whether the messages are compressed.
+     *
+     * @return {@code true} if the messages reaching the threshold are compressed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns whether an encoded message of the given size is to be compressed.
+     *
+     * @param length
+     *            the size in bytes of the encoded message
+     * @return {@code true} if compression is enabled and the size reaches the threshold
+     */
+    public boolean shouldCompress(int length) {
+        return enabled && length >= threshold;
+    }
+
+    /**
+     * Returns whether a message of the given content encoding is compressed.
+     *
+     * @param contentEncoding
+     *            the content encoding of the message; may be {@code null}
+     * @return {@code true} if the message was compressed by a {@code PayloadCompressor}
+     */
+    public static boolean isCompressed(String contentEncoding) {
+        return contentEncoding != null
+                && (contentEncoding.equals(ENCODING) || contentEncoding.startsWith(ENCODING + ":"));
+    }
+
+    /**
+     * Returns the content encoding of a compressed message.
+     *
+     * @param contentEncoding
+     *            the content encoding of the message before compression; may be {@code null}
+     * @return the content encoding marking the message as compressed
+     */
+    public static String toCompressedEncoding(String contentEncoding) {
+        return contentEncoding != null ? ENCODING + ":" + contentEncoding : ENCODING;
+    }
+
+    /**
+     * Returns the content encoding of a compressed message once decompressed.
+     *
+     * @param contentEncoding
+     *            the content encoding of the compressed message
+     * @return the content encoding of the message before compression, {@code null} if it had none
+     */
+    public static String toDecompressedEncoding(String contentEncoding) {
+        return contentEncoding.length() > ENCODING.length() ? contentEncoding.substring(ENCODING.length() + 1) : null;
+    }
+
+    /**
+     * Compresses an encoded message.
+     *
+     * @param bytes
+     *            the encoded message
+     * @return the compressed message, or {@code null} if compression does not make it smaller
+     */
+    public byte[] compress(byte[] bytes) {
+        long start = now();
+        PooledDeflater pooled = deflaters.poll();
+        if (pooled == null) {
+            pooled = new PooledDeflater(new Deflater(level), new byte[BUFFER_SIZE]);
+        }
+
+        try {
+            Deflater deflater = pooled.deflater();
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+            while (!deflater.finished() && out.size() < bytes.length) {
+                out.write(pooled.buffer(), 0, deflater.deflate(pooled.buffer()));
+            }
+
+            if (!deflater.finished() || out.size() >= bytes.length) {
+                incompressibleCount.increment();
+                return null;
+            }
+            compressedCount.increment();
+            bytesIn.add(bytes.length);
+            bytesOut.add(out.size());
+            return out.toByteArray();
+        } finally {
+            pooled.deflater().reset();
+            deflaters.offer(pooled);
+            compressNanos.add(now() - start);
+        }
+    }
+
+    /**
+     * Decompresses a message compressed by {@link #compress(byte[])}.
+     *
+     * @param bytes
+     *            the compressed message
+     * @return the encoded message
+     * @throws IllegalArgumentException
+     *             if the message is not a valid deflate stream, or inflates beyond the largest size of a message
+     */
+    public byte[] decompress(byte[] bytes) {
+        long start = now();
+        PooledInflater pooled = inflaters.poll();
+        if (pooled == null) {
+            pooled = new PooledInflater(new Inflater(), new byte[BUFFER_SIZE]);
+        }
+
+        try {
+            Inflater inflater = pooled.inflater();
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(bytes.length * 4L, maxSize));
+            while (!inflater.finished()) {
+                int length = inflater.inflate(pooled.buffer());
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed message");
+                }
+                if (out.size() + length > maxSize) {
+                    throw new IllegalArgumentException(
+                            "Compressed message exceeds " + maxSize + " bytes once decompressed");
+                }
+                out.write(pooled.buffer(), 0, length);
+            }
+            decompressedCount.increment();
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed message", e);
+        } finally {
+            pooled.inflater().reset();
+            inflaters.offer(pooled);
+            decompressNanos.add(now() - start);
+        }
+    }
+
+    /**
+     * Returns the current time, in CPU time of the current thread when measured.
+     *
+     * @return the current time in nanoseconds
+     */
+    long now() {
+        return cpuTime ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Returns the number of messages compressed.
+     *
+     * @return the number of compressed messages
+     */
+    public long getCompressedCount() {
+        return compressedCount.sum();
+    }
+
+    /**
+     * Returns the number of messages reaching the threshold left uncompressed since compression did not make them
+     * smaller.
+     *
+     * @return the number of incompressible messages
+     */
+    public long getIncompressibleCount() {
+        return incompressibleCount.sum();
+    }
+
+    /**
+     * Returns the number of messages decompressed.
+     *
+     * @return the number of decompressed messages
+     */
+    public long getDecompressedCount() {
+        return decompressedCount.sum();
+    }
+
+    /**
+     * Returns the compression ratio of the messages compressed so far: their total size before compression divided
+     * by their total size after.
+     *
+     * @return the compression ratio, {@code 1} if no message was compressed
+     */
+    public double getCompressionRatio() {
+        long out = bytesOut.sum();
+        return out > 0 ? (double) bytesIn.sum() / out : 1;
+    }
+
+    /**
+     * Returns the total time spent compressing, incompressible messages included.
+     *
+     * @return the compression time in milliseconds
+     */
+    public double getCompressMillis() {
+        return compressNanos.sum() / 1_000_000.0;
+    }
+
+    /**
+     * Returns the total time spent decompressing.
+     *
+     * @return the decompression time in milliseconds
+     */
+    public double getDecompressMillis() {
+        return decompressNanos.sum() / 1_000_000.0;
+    }
+
+    /**
+     * Returns whether the times are CPU times of the compressing threads rather than elapsed times.
+     *
+     * @return {@code true} if the CPU time of threads is measured
+     */
+    public boolean isCpuTime() {
+        return cpuTime;
+    }
+}
@@ -0,0 +1,165 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+
+/**
+ * Helper class resolving the priority of the conversations.
+ * <p>
+ * The priority of a conversation is, in order of precedence:
+ * <ul>
+ * <li>the priority carried by its {@link SeqismMessageHeader}, set by the client to override the configured one;</li>
+ * <li>the priority configured for its business code;</li>
+ * <li>the default priority.</li>
+ * </ul>
+ * Priorities range from {@code 0}, the lowest, to the maximum priority; values out of range are clamped. The
+ * priorities of the business codes are configured as a comma-separated list of {@code <bizCode>:<priority>} entries.
+ * <p>
+ * The maximum priority is also the {@code x-max-priority} argument of the queues shared by conversations, so that
+ * the broker delivers the messages of higher priorities first.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * PriorityHelper helper = new PriorityHelper(true, 9, 0, "BIZ001:9,BIZ002:1");
+ * int priority = helper.getPriority(header); // 9 for BIZ001 unless the header carries a priority
+ * </pre>
+ */
+public class PriorityHelper {
+    /**
+     * The queue argument enabling message priorities on a RabbitMQ queue.
+     */
+    public static final String MAX_PRIORITY_ARGUMENT = "x-max-priority";
+
+    /**
+     * Whether conversations are prioritized.
+     */
+    private final boolean enabled;
+    /**
+     * The highest priority.
+     */
+    private final int maxPriority;
+    /**
+     * The priority of the business codes without a configured priority.
+     */
+    private final int defaultPriority;
+    /**
+     * The configured priorities, keyed by business code.
+     */
+    private final Map<String, Integer> bizCodePriorities = new HashMap<>();
+
+    /**
+     * Constructs a new {@code PriorityHelper}.
+     *
+     * @param enabled
+     *            whether conversations are prioritized
+     * @param maxPriority
+     *            the highest priority, between {@code 1} and {@link SeqismConstant#MAX_PRIORITY}
+     * @param defaultPriority
+     *            the priority of the business codes without a configured priority
+     * @param bizCodePriorities
+     *            the priorities of the business codes, as {@code <bizCode>:<priority>} entries separated by commas;
+     *            may be {@code null} or blank
+     * @throws IllegalArgumentException
+     *             if an entry is malformed
+     */
+    public PriorityHelper(boolean enabled, int maxPriority, int defaultPriority, String bizCodePriorities) {
+        this.enabled = enabled;
+        this.maxPriority = Math.max(1, Math.min(maxPriority, SeqismConstant.MAX_PRIORITY));
+        this.defaultPriority = clamp(defaultPriority);
+
+        parseBizCodeValues(bizCodePriorities)
+                .forEach((bizCode, priority) -> this.bizCodePriorities.put(bizCode, clamp(priority)));
+    }
+
+    /**
+     * Parses per business code settings given as {@code <bizCode>:<value>} entries separated by commas.
+     *
+     * @param entries
+     *            the entries; may be {@code null} or blank
+     * @return the values keyed by business code, empty if there is no entry
+     * @throws IllegalArgumentException
+     *             if an entry is malformed
+     */
+    public static Map<String, Integer> parseBizCodeValues(String entries) {
+        Map<String, Integer> values = new HashMap<>();
+        if (entries == null || entries.isBlank()) {
+            return values;
+        }
+
+        for (String entry : entries.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Malformed bizCode entry : " + entry);
+            }
+            try {
+                values.put(entry.substring(0, separator).trim(),
+                        Integer.parseInt(entry.substring(separator + 1).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed bizCode entry : " + entry, e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns whether conversations are prioritized.
+     *
+     * @return {@code true} if conversations are prioritized
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the highest priority.
+     *
+     * @return the maximum priority
+     */
+    public int getMaxPriority() {
+        return maxPriority;
+    }
+
+    /**
+     * Returns the priority of the conversation of the given header: the priority carried by the header, if any,
+     * otherwise the priority configured for its business code, otherwise the default priority.
+     *
+     * @param header
+     *            the header of a message of the conversation
+     * @return the priority of the conversation, between {@code 0} and the maximum priority
+     */
+    public int getPriority(SeqismMessageHeader header) {
+        if (header.getPriority() != null) {
+            return clamp(header.getPriority());
+        }
+        if (header.getBizCode() != null) {
+            return bizCodePriorities.getOrDefault(header.getBizCode(), defaultPriority);
+        }
+        return defaultPriority;
+    }
+
+    /**
+     * Returns the arguments declaring a queue shared by conversations: the maximum priority when conversations are
+     * prioritized, none otherwise.
+     *
+     * @return the queue arguments
+     */
+    public Map<String, Object> getQueueArguments() {
+        return enabled ? Map.of(MAX_PRIORITY_ARGUMENT, maxPriority) : Collections.emptyMap();
+    }
+
+    /**
+     * Clamps a priority between {@code 0} and the maximum priority.
+     *
+     * @param priority
+     *            the priority
+     * @return the clamped priority
+     */
+    int clamp(int priority) {
+        return Math.max(0, Math.min(priority, maxPriority));
+    }
+}
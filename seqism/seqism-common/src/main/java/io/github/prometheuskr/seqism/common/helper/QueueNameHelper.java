@@ -1,5 +1,10 @@
 package io.github.prometheuskr.seqism.common.helper;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+
 /**
  * Helper class for constructing queue names used in messaging or task processing systems.
  * <p>
@@ -9,8 +14,17 @@ package io.github.prometheuskr.seqism.common.helper;
  * <li><b>staticQueueName</b>: The fixed name of a static queue.</li>
  * <li><b>commandQueuePrefix</b>: The base prefix for command queues, to which a transaction ID is appended.</li>
  * <li><b>responseQueuePrefix</b>: The base prefix for response queues, to which a transaction ID is appended.</li>
+ * <li><b>replyQueuePrefix</b>: The base prefix for shared reply queues, to which a gateway instance ID is
+ * appended.</li>
+ * <li><b>inboxQueuePrefix</b>: The base prefix for inbox queues, to which a processor instance ID is appended.</li>
  * </ul>
  * <p>
+ * A transaction ID of the form {@code <slot>:<id>} belongs to a conversation running on a leased queue pair; its
+ * command and response queues are named after the slot instead of the whole transaction ID.
+ * <p>
+ * With sharded static queues the first steps of each business code go to {@code <staticQueueName>.<bizCode>.<shard>}
+ * instead of the static queue, the shard being chosen by hash of the transaction ID.
+ * <p>
  * Example usage:
  * 
  * <pre>
@@ -20,6 +34,11 @@ package io.github.prometheuskr.seqism.common.helper;
  * </pre>
  */
 public class QueueNameHelper {
+    /**
+     * Separates the slot of a leased queue pair from the rest of a pooled transaction ID.
+     */
+    private static final char SLOT_SEPARATOR = ':';
+
     /**
      * The name of the static queue associated with this instance.
      * This value is assigned at construction time and does not change.
@@ -37,9 +56,19 @@ public class QueueNameHelper {
      * from other types of queues within the system.
      */
     private final String responseQueuePrefix;
+    /**
+     * Prefix used for naming the shared reply queue of each gateway instance.
+     */
+    private final String replyQueuePrefix;
+    /**
+     * Prefix used for naming the inbox queue of each processor instance.
+     */
+    private final String inboxQueuePrefix;
 
     /**
-     * Constructs a new {@code QueueNameHelper} with the specified queue names.
+     * Constructs a new {@code QueueNameHelper} with the specified queue names, using
+     * {@link SeqismConstant#REPLY_QUEUE_PREFIX} and {@link SeqismConstant#INBOX_QUEUE_PREFIX}
+     * as the reply and inbox queue prefixes.
      *
      * @param staticQueueName
      *            the name of the static queue
@@ -49,9 +78,31 @@ public class QueueNameHelper {
      *            the name of the response queue
      */
     public QueueNameHelper(String staticQueueName, String commandQueuePrefix, String responseQueuePrefix) {
+        this(staticQueueName, commandQueuePrefix, responseQueuePrefix, SeqismConstant.REPLY_QUEUE_PREFIX,
+                SeqismConstant.INBOX_QUEUE_PREFIX);
+    }
+
+    /**
+     * Constructs a new {@code QueueNameHelper} with the specified queue names.
+     *
+     * @param staticQueueName
+     *            the name of the static queue
+     * @param commandQueuePrefix
+     *            the name of the command queue
+     * @param responseQueuePrefix
+     *            the name of the response queue
+     * @param replyQueuePrefix
+     *            the prefix of the shared reply queues of gateway instances
+     * @param inboxQueuePrefix
+     *            the prefix of the inbox queues of processor instances
+     */
+    public QueueNameHelper(String staticQueueName, String commandQueuePrefix, String responseQueuePrefix,
+            String replyQueuePrefix, String inboxQueuePrefix) {
         this.staticQueueName = staticQueueName;
         this.commandQueuePrefix = commandQueuePrefix;
         this.responseQueuePrefix = responseQueuePrefix;
+        this.replyQueuePrefix = replyQueuePrefix;
+        this.inboxQueuePrefix = inboxQueuePrefix;
     }
 
     /**
@@ -64,24 +115,148 @@ public class QueueNameHelper {
     }
 
     /**
-     * Generates the command queue name by appending the given transaction ID to the command queue prefix.
+     * Generates the name of a sharded static queue by appending the business code and the shard to the static queue
+     * name.
+     *
+     * @param bizCode
+     *            the business code served by the queue
+     * @param shard
+     *            the shard of the queue, from {@code 0} to the number of shards minus one
+     * @return the name of the sharded static queue
+     */
+    public String getStaticQueueName(String bizCode, int shard) {
+        return staticQueueName + "." + bizCode + "." + shard;
+    }
+
+    /**
+     * Checks whether the given name is the name of the static queue or of a sharded static queue.
+     *
+     * @param queueName
+     *            the queue name to check
+     * @return {@code true} if the name is the static queue name, or starts with it followed by {@code '.'}
+     */
+    public boolean isStaticQueueName(String queueName) {
+        return queueName != null
+                && (queueName.equals(staticQueueName) || queueName.startsWith(staticQueueName + "."));
+    }
+
+    /**
+     * Selects the shard of a sharded static queue a conversation is sent to.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param shards
+     *            the number of shards per business code
+     * @return the shard, from {@code 0} to {@code shards - 1}
+     */
+    public int getShard(String tranId, int shards) {
+        return shards > 1 ? Math.floorMod(tranId.hashCode(), shards) : 0;
+    }
+
+    /**
+     * Generates the command queue name by appending the queue key of the given transaction ID to the command queue
+     * prefix.
      *
      * @param tranId
      *            the transaction ID to be appended to the command queue prefix
      * @return the full command queue name for the specified transaction
      */
     public String getCommandQueueName(String tranId) {
-        return commandQueuePrefix + tranId;
+        return commandQueuePrefix + getQueueKey(tranId);
     }
 
     /**
-     * Generates the response queue name by appending the given transaction ID to the response queue prefix.
+     * Generates the response queue name by appending the queue key of the given transaction ID to the response queue
+     * prefix.
      *
      * @param tranId
      *            the transaction ID to be appended to the response queue prefix
      * @return the full response queue name for the specified transaction ID
      */
     public String getResponseQueueName(String tranId) {
-        return responseQueuePrefix + tranId;
+        return responseQueuePrefix + getQueueKey(tranId);
+    }
+
+    /**
+     * Builds the transaction ID of a conversation running on the queue pair of the given slot.
+     *
+     * @param slot
+     *            the key of the leased queue pair; must not contain {@code ':'}
+     * @param tranId
+     *            the unique transaction ID of the conversation
+     * @return the pooled transaction ID, of the form {@code <slot>:<tranId>}
+     */
+    public String getPooledTranId(String slot, String tranId) {
+        return slot + SLOT_SEPARATOR + tranId;
+    }
+
+    /**
+     * Returns the key naming the queues of the given transaction: the slot of a pooled transaction ID,
+     * or the transaction ID itself.
+     *
+     * @param tranId
+     *            the transaction ID
+     * @return the queue key of the transaction
+     */
+    public String getQueueKey(String tranId) {
+        int separator = tranId.indexOf(SLOT_SEPARATOR);
+        return separator < 0 ? tranId : tranId.substring(0, separator);
+    }
+
+    /**
+     * Returns the names of the queues dedicated to the given transaction.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param commandQueue
+     *            whether the conversation has its own command queue
+     * @param responseQueue
+     *            whether the conversation has its own response queue
+     * @return the names of the requested queues, command queue first
+     */
+    public List<String> getConversationQueueNames(String tranId, boolean commandQueue, boolean responseQueue) {
+        List<String> queueNames = new ArrayList<>(2);
+
+        if (commandQueue) {
+            queueNames.add(getCommandQueueName(tranId));
+        }
+        if (responseQueue) {
+            queueNames.add(getResponseQueueName(tranId));
+        }
+        return queueNames;
+    }
+
+    /**
+     * Generates the shared reply queue name by appending the given gateway instance ID to the reply queue prefix.
+     *
+     * @param instanceId
+     *            the ID of the gateway instance owning the reply queue
+     * @return the full reply queue name for the specified gateway instance
+     */
+    public String getReplyQueueName(String instanceId) {
+        return replyQueuePrefix + instanceId;
+    }
+
+    /**
+     * Generates the inbox queue name by appending the given processor instance ID to the inbox queue prefix.
+     *
+     * @param instanceId
+     *            the ID of the processor instance owning the inbox queue
+     * @return the full inbox queue name for the specified processor instance
+     */
+    public String getInboxQueueName(String instanceId) {
+        return inboxQueuePrefix + instanceId;
+    }
+
+    /**
+     * Checks whether the given name is the name of a processor inbox queue.
+     *
+     * @param queueName
+     *            the queue name to check
+     * @return {@code true} if the name starts with the inbox queue prefix and names an instance
+     */
+    public boolean isInboxQueueName(String queueName) {
+        return queueName != null && queueName.length() > inboxQueuePrefix.length()
+                && queueName.startsWith(inboxQueuePrefix);
     }
 }
\ No newline at end of file
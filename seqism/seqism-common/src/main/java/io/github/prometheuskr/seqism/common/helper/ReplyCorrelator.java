@@ -0,0 +1,169 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Correlates replies arriving on a shared channel with the callers waiting for them, keyed by transaction ID.
+ * <p>
+ * A caller registers its transaction ID before sending a request, then waits on the returned future. The single
+ * consumer of the shared channel hands every reply to {@link #complete(String, Object)}, which wakes the matching
+ * caller. Replies for which no caller is waiting (late replies after a timeout, or unknown transaction IDs) are
+ * rejected so that the consumer can log and discard them.
+ * <p>
+ * Callers that must not block a thread while waiting use {@link #awaitAsync(String, CompletableFuture, long)}
+ * instead of {@link #await(String, CompletableFuture, long)}.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * CompletableFuture&lt;SeqismMessage&lt;?&gt;&gt; pending = correlator.register(tranId);
+ * send(message);
+ * SeqismMessage&lt;?&gt; reply = correlator.await(tranId, pending, 5000);
+ * </pre>
+ *
+ * @param <T>
+ *            the type of the replies being correlated
+ */
+public class ReplyCorrelator<T> {
+    /**
+     * Futures of the callers currently waiting for a reply, keyed by transaction ID.
+     */
+    private final Map<String, CompletableFuture<T>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an empty {@code ReplyCorrelator}.
+     */
+    public ReplyCorrelator() {}
+
+    /**
+     * Registers a caller waiting for the reply of the given transaction.
+     * <p>
+     * Must be called before the request is sent, so that a fast reply cannot arrive before the caller is known.
+     *
+     * @param tranId
+     *            the transaction ID the reply will be correlated with
+     * @return the future completed when the reply arrives
+     */
+    public CompletableFuture<T> register(String tranId) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        pending.put(tranId, future);
+        return future;
+    }
+
+    /**
+     * Hands a reply to the caller waiting for the given transaction.
+     *
+     * @param tranId
+     *            the transaction ID of the reply
+     * @param reply
+     *            the reply to deliver
+     * @return {@code true} if a caller was waiting for the reply, {@code false} if the reply should be discarded
+     */
+    public boolean complete(String tranId, T reply) {
+        CompletableFuture<T> future = tranId != null ? pending.remove(tranId) : null;
+        return future != null && future.complete(reply);
+    }
+
+    /**
+     * Fails the caller waiting for the given transaction with the specified exception.
+     *
+     * @param tranId
+     *            the transaction ID of the waiting caller
+     * @param cause
+     *            the exception to raise in the waiting caller
+     * @return {@code true} if a caller was waiting, {@code false} otherwise
+     */
+    public boolean fail(String tranId, Throwable cause) {
+        CompletableFuture<T> future = tranId != null ? pending.remove(tranId) : null;
+        return future != null && future.completeExceptionally(cause);
+    }
+
+    /**
+     * Removes the caller registered for the given transaction without delivering a reply.
+     *
+     * @param tranId
+     *            the transaction ID of the caller to remove
+     */
+    public void cancel(String tranId) {
+        pending.remove(tranId);
+    }
+
+    /**
+     * Waits for the reply of the given transaction.
+     * <p>
+     * The registration is always removed when this method returns, so a reply arriving after the timeout is
+     * rejected by {@link #complete(String, Object)}.
+     *
+     * @param tranId
+     *            the transaction ID the caller registered with
+     * @param future
+     *            the future returned by {@link #register(String)}
+     * @param timeoutMillis
+     *            the maximum time to wait, in milliseconds
+     * @return the reply, or {@code null} if no reply arrived within the timeout or the caller was interrupted
+     * @throws RuntimeException
+     *             the exception the caller was failed with via {@link #fail(String, Throwable)}
+     */
+    public T await(String tranId, CompletableFuture<T> future, long timeoutMillis) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            pending.remove(tranId, future);
+        }
+    }
+
+    /**
+     * Waits for the reply of the given transaction without blocking, up to the given timeout.
+     * <p>
+     * The registration is removed once the returned future completes, so a reply arriving after the timeout is
+     * rejected by {@link #complete(String, Object)}. The returned future completes on the common pool, never on the
+     * thread of the consumer handing the reply over, so that callers may chain work to it freely.
+     *
+     * @param tranId
+     *            the transaction ID the caller registered with
+     * @param future
+     *            the future returned by {@link #register(String)}
+     * @param timeoutMillis
+     *            the maximum time to wait, in milliseconds
+     * @return a future completing with the reply, with {@code null} if no reply arrived within the timeout, or
+     *         exceptionally if the caller was failed via {@link #fail(String, Throwable)}
+     */
+    public CompletableFuture<T> awaitAsync(String tranId, CompletableFuture<T> future, long timeoutMillis) {
+        return future.completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((reply, e) -> pending.remove(tranId, future));
+    }
+
+    /**
+     * Tells whether a caller is waiting for the reply of the given transaction, so that readers of a shared
+     * channel can skip the replies of other instances without decoding them.
+     *
+     * @param tranId
+     *            the transaction ID of the reply
+     * @return {@code true} if a caller is waiting for the reply
+     */
+    public boolean isPending(String tranId) {
+        return tranId != null && pending.containsKey(tranId);
+    }
+
+    /**
+     * Returns the number of callers currently waiting for a reply.
+     *
+     * @return the number of pending replies
+     */
+    public int size() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Converts {@link SeqismMessage} objects to and from the bytes carried by transports that cross process boundaries
+ * without a broker-side message converter.
+ * <p>
+ * The gateway and processor modules use the {@link JsonFrameCodec}, backed by their Jackson {@code ObjectMapper}.
+ */
+public interface FrameCodec {
+    /**
+     * Encodes a message.
+     *
+     * @param message
+     *            the message to encode
+     * @return the encoded message
+     */
+    byte[] encode(SeqismMessage<?> message);
+
+    /**
+     * Decodes a message encoded by {@link #encode(SeqismMessage)}.
+     *
+     * @param bytes
+     *            the encoded message
+     * @return the decoded message, with an untyped body
+     */
+    SeqismMessage<Object> decode(byte[] bytes);
+}
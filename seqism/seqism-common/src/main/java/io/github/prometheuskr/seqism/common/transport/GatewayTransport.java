@@ -0,0 +1,41 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Gateway side of a transport carrying the steps of Seqism conversations between the gateway and the processors.
+ * <p>
+ * The gateway starts a conversation with {@link #sendAndReceiveInit(SeqismMessage)}, which hands the first step to
+ * any processor, and continues it with {@link #sendAndReceiveNext(SeqismMessage)}, which hands each next step to the
+ * processor running the conversation. Both block until the processor replies or the receive timeout of the
+ * transport elapses.
+ *
+ * @see ProcessorTransport
+ */
+public interface GatewayTransport {
+    /**
+     * Sends the first step of a new conversation and waits for the reply of the processor.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the first step, carrying the transaction ID of the new conversation
+     * @return the reply of the processor, or {@code null} if no reply was received within the timeout
+     */
+    <R, C> SeqismMessage<C> sendAndReceiveInit(SeqismMessage<R> message);
+
+    /**
+     * Sends the next step of a running conversation and waits for the reply of the processor.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the next step, carrying the transaction ID of the conversation
+     * @return the reply of the processor, or {@code null} if no reply was received within the timeout
+     */
+    <R, C> SeqismMessage<C> sendAndReceiveNext(SeqismMessage<R> message);
+}
@@ -0,0 +1,199 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+import io.github.prometheuskr.seqism.common.helper.ReplyCorrelator;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Transport handing {@link SeqismMessage} objects between a gateway and processors running in the same JVM.
+ * <p>
+ * Messages are passed by reference: there is no serialization and no broker. The first step of a conversation is
+ * handed to the subscribed processor dispatcher on the calling thread, and every other step is handed over to the
+ * side waiting for it through a {@link ReplyCorrelator}, which keeps the waiting callers in a concurrent map of
+ * futures keyed by transaction ID. Since objects are shared, neither side may modify a message once sent.
+ * <p>
+ * A single instance, {@link #shared()}, connects the gateway and processor modules of the JVM. Each side obtains a
+ * view with its own receive timeout through {@link #gateway(long)} and {@link #processor(long)}.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * InJvmTransport.shared().subscribe(dispatcher::handle);
+ * GatewayTransport transport = InJvmTransport.shared().gateway(5000);
+ * SeqismMessage&lt;?&gt; reply = transport.sendAndReceiveInit(message);
+ * </pre>
+ */
+public class InJvmTransport {
+    /**
+     * The instance connecting the gateway and processor modules of this JVM.
+     */
+    private static final InJvmTransport SHARED = new InJvmTransport();
+
+    /**
+     * Replies of the processors, handed to the gateway callers waiting for them.
+     */
+    private final ReplyCorrelator<SeqismMessage<Object>> toGateway = new ReplyCorrelator<>();
+    /**
+     * Next steps sent by the gateway, handed to the processors waiting for them.
+     */
+    private final ReplyCorrelator<SeqismMessage<Object>> toProcessor = new ReplyCorrelator<>();
+    /**
+     * Dispatches the first step of every conversation to a processor; {@code null} until a processor subscribes.
+     */
+    private volatile Consumer<SeqismMessage<Object>> dispatcher;
+
+    /**
+     * Constructs an {@code InJvmTransport} with no subscribed processor.
+     */
+    public InJvmTransport() {}
+
+    /**
+     * Returns the instance connecting the gateway and processor modules of this JVM.
+     *
+     * @return the shared {@code InJvmTransport}
+     */
+    public static InJvmTransport shared() {
+        return SHARED;
+    }
+
+    /**
+     * Subscribes the dispatcher receiving the first step of every conversation. The dispatcher must return quickly,
+     * handing the step over to another thread, since it runs on the thread of the gateway caller.
+     *
+     * @param dispatcher
+     *            the dispatcher of the processor module
+     */
+    public void subscribe(Consumer<SeqismMessage<Object>> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Returns the gateway side of this transport.
+     *
+     * @param receiveTimeout
+     *            the maximum time, in milliseconds, to wait for the reply of a processor
+     * @return the gateway view of this transport
+     */
+    public GatewayTransport gateway(long receiveTimeout) {
+        return new GatewayTransport() {
+            @Override
+            public <R, C> SeqismMessage<C> sendAndReceiveInit(SeqismMessage<R> message) {
+                Consumer<SeqismMessage<Object>> target = dispatcher;
+                if (target == null) {
+                    throw new SeqismException(ErrorInfo.ERROR_0001_0003);
+                }
+
+                return sendAndReceive(message, target::accept, receiveTimeout);
+            }
+
+            @Override
+            public <R, C> SeqismMessage<C> sendAndReceiveNext(SeqismMessage<R> message) {
+                return sendAndReceive(message, step -> {
+                    if (!toProcessor.complete(step.getHeader().getTranId(), step)) {
+                        throw new SeqismException(ErrorInfo.ERROR_0001_0003);
+                    }
+                }, receiveTimeout);
+            }
+        };
+    }
+
+    /**
+     * Returns the processor side of this transport.
+     *
+     * @param receiveTimeout
+     *            the maximum time, in milliseconds, to wait for the next step of a conversation
+     * @return the processor view of this transport
+     */
+    public ProcessorTransport processor(long receiveTimeout) {
+        return new ProcessorTransport() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message) {
+                String tranId = message.getHeader().getTranId();
+                CompletableFuture<SeqismMessage<Object>> pending = toProcessor.register(tranId);
+
+                if (!toGateway.complete(tranId, (SeqismMessage<Object>) message)) {
+                    toProcessor.cancel(tranId);
+                    throw new SeqismException(ErrorInfo.ERROR_0002_0004);
+                }
+
+                SeqismMessage<Object> next = toProcessor.await(tranId, pending, receiveTimeout);
+                if (next == null) {
+                    throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+                }
+                return (SeqismMessage<R>) (SeqismMessage<?>) next;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message) {
+                String tranId = message.getHeader().getTranId();
+                CompletableFuture<SeqismMessage<Object>> pending = toProcessor.register(tranId);
+
+                if (!toGateway.complete(tranId, (SeqismMessage<Object>) message)) {
+                    toProcessor.cancel(tranId);
+                    return CompletableFuture.failedFuture(new SeqismException(ErrorInfo.ERROR_0002_0004));
+                }
+
+                return toProcessor.awaitAsync(tranId, pending, receiveTimeout).thenApply(next -> {
+                    if (next == null) {
+                        throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+                    }
+                    return (SeqismMessage<R>) (SeqismMessage<?>) next;
+                });
+            }
+
+            /**
+             * {@inheritDoc}
+             * <p>
+             * A final reply for which the gateway no longer waits is dropped, as it would be on an expired queue.
+             */
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> void sendFinal(SeqismMessage<T> message) {
+                toGateway.complete(message.getHeader().getTranId(), (SeqismMessage<Object>) message);
+            }
+
+            @Override
+            public void subscribe(Consumer<SeqismMessage<Object>> dispatcher) {
+                InJvmTransport.this.subscribe(dispatcher);
+            }
+        };
+    }
+
+    /**
+     * Registers the gateway caller for the reply of the conversation, hands the step over and waits for the reply.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the step to hand over
+     * @param handOver
+     *            hands the step over to the processor side
+     * @param receiveTimeout
+     *            the maximum time, in milliseconds, to wait for the reply
+     * @return the reply, or {@code null} if no reply was received within the timeout
+     */
+    @SuppressWarnings("unchecked")
+    <R, C> SeqismMessage<C> sendAndReceive(SeqismMessage<R> message, Consumer<SeqismMessage<Object>> handOver,
+            long receiveTimeout) {
+        String tranId = message.getHeader().getTranId();
+        CompletableFuture<SeqismMessage<Object>> pending = toGateway.register(tranId);
+
+        try {
+            handOver.accept((SeqismMessage<Object>) message);
+        } catch (RuntimeException e) {
+            toGateway.cancel(tranId);
+            throw e;
+        }
+
+        return (SeqismMessage<C>) (SeqismMessage<?>) toGateway.await(tranId, pending, receiveTimeout);
+    }
+}
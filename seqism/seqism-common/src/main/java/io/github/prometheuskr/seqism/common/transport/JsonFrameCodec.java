@@ -0,0 +1,53 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * A {@link FrameCodec} encoding messages as JSON with a Jackson {@code ObjectMapper}, shared by the gateway and the
+ * processor modules.
+ */
+public class JsonFrameCodec implements FrameCodec {
+    /**
+     * The type of the decoded messages.
+     */
+    private static final TypeReference<SeqismMessage<Object>> MESSAGE_TYPE = new TypeReference<>() {};
+
+    /**
+     * The mapper encoding the messages.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructs a new {@code JsonFrameCodec}.
+     *
+     * @param objectMapper
+     *            the mapper of the application
+     */
+    public JsonFrameCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public byte[] encode(SeqismMessage<?> message) {
+        try {
+            return objectMapper.writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public SeqismMessage<Object> decode(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, MESSAGE_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+
+/**
+ * Reads the records sent to the partitions of a Kafka topic that this instance owns, the Kafka counterpart of an
+ * inbox queue.
+ * <p>
+ * The instances reading the topic share a consumer group, so that Kafka assigns each partition to a single instance;
+ * an instance advertises one of its partitions, see {@link #partition()}, and the records meant for it are sent to
+ * that partition. The topic therefore needs at least as many partitions as instances.
+ * <p>
+ * Each partition assigned is positioned at its end, and the position is resolved before the assignment completes, so
+ * that a record sent once {@link #start()} returned, or once the partition is advertised, is never skipped. Records
+ * left on a partition by a previous owner are not read.
+ */
+@Slf4j
+public class KafkaInbox implements AutoCloseable {
+    /**
+     * Maximum time, in milliseconds, to wait for the first partitions to be assigned, which includes joining the
+     * consumer group.
+     */
+    static final long ASSIGNMENT_TIMEOUT = 60000;
+
+    /**
+     * The topic read.
+     */
+    private final String topic;
+    /**
+     * The partitions of the topic assigned to this instance.
+     */
+    private final NavigableSet<Integer> partitions = new ConcurrentSkipListSet<>();
+    /**
+     * Completed once the first partitions are assigned and positioned.
+     */
+    private final CompletableFuture<Void> assigned = new CompletableFuture<>();
+    /**
+     * Reads the topic.
+     */
+    private final KafkaMessageListenerContainer<String, byte[]> container;
+
+    /**
+     * Constructs an inbox reading the given topic within the given consumer group; call {@link #start()} to start
+     * reading.
+     *
+     * @param consumerFactory
+     *            the factory of the consumer reading the topic
+     * @param topic
+     *            the topic
+     * @param groupId
+     *            the consumer group shared by the instances reading the topic
+     * @param listener
+     *            receives the records read
+     */
+    public KafkaInbox(ConsumerFactory<String, byte[]> consumerFactory, String topic, String groupId,
+            MessageListener<String, byte[]> listener) {
+        this.topic = topic;
+
+        ContainerProperties properties = new ContainerProperties(topic);
+        properties.setGroupId(groupId);
+        properties.setMessageListener(listener);
+        properties.setConsumerRebalanceListener(new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> assignment) {
+                assign(consumer, assignment);
+            }
+
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+                revoked.forEach(partition -> partitions.remove(partition.partition()));
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> lost) {
+                lost.forEach(partition -> partitions.remove(partition.partition()));
+            }
+        });
+        this.container = new KafkaMessageListenerContainer<>(consumerFactory, properties);
+    }
+
+    /**
+     * Starts reading the topic and waits for the first partitions to be assigned to this instance.
+     *
+     * @throws IllegalStateException
+     *             if no partition is assigned within {@link #ASSIGNMENT_TIMEOUT}, such as when the topic does not
+     *             exist or has fewer partitions than instances
+     */
+    public void start() {
+        container.start();
+        try {
+            assigned.get(ASSIGNMENT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            container.stop();
+            throw new IllegalStateException("Interrupted while waiting for a partition of Kafka topic " + topic, e);
+        } catch (ExecutionException | TimeoutException e) {
+            container.stop();
+            throw new IllegalStateException("No partition of Kafka topic " + topic + " assigned within "
+                    + ASSIGNMENT_TIMEOUT + " ms; it needs a partition per instance", e);
+        }
+    }
+
+    /**
+     * Positions the partitions assigned at their end, resolving the positions, then advertises them.
+     *
+     * @param consumer
+     *            the consumer the partitions are assigned to
+     * @param assignment
+     *            the partitions assigned
+     */
+    void assign(Consumer<?, ?> consumer, Collection<TopicPartition> assignment) {
+        if (assignment.isEmpty()) {
+            return;
+        }
+        // seekToEnd is lazy: position() resolves it, so that no record sent from now on is skipped
+        consumer.seekToEnd(assignment);
+        assignment.forEach(consumer::position);
+        assignment.forEach(partition -> partitions.add(partition.partition()));
+        log.debug("Assigned partitions {} of Kafka topic [{}]", assignment, topic);
+        assigned.complete(null);
+    }
+
+    /**
+     * Returns the partition the records meant for this instance are sent to.
+     *
+     * @return the lowest partition assigned to this instance, or {@code null} if none is assigned, as during a
+     *         rebalance
+     */
+    public Integer partition() {
+        return partitions.isEmpty() ? null : partitions.first();
+    }
+
+    /**
+     * Stops reading the topic, giving its partitions back to the other instances.
+     */
+    @Override
+    public void close() {
+        container.stop();
+    }
+
+    /**
+     * Returns the partition carried by a header of a record.
+     *
+     * @param record
+     *            the record
+     * @param name
+     *            the name of the header
+     * @return the partition, or {@code null} if the record has no such header or it is not a partition
+     */
+    public static Integer partitionOf(ConsumerRecord<?, ?> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? parsePartition(new String(header.value(), StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * Parses a partition number.
+     *
+     * @param value
+     *            the text of the partition number; may be {@code null}
+     * @return the partition, or {@code null} if the text is not a partition number
+     */
+    public static Integer parsePartition(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            int partition = Integer.parseInt(value);
+            return partition >= 0 ? partition : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
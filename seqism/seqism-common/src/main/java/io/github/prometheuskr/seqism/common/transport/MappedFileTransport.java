@@ -0,0 +1,577 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.ReplyCorrelator;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+/**
+ * Transport exchanging {@link SeqismMessage} frames between a gateway and processors running as separate processes
+ * on the same host, through {@link MappedRing}s in a shared directory.
+ * <p>
+ * The directory holds one ring shared by all processes and one ring per instance:
+ * <ul>
+ * <li>{@code static.ring} - the first steps of all conversations, offered by every gateway and polled by every
+ * processor.</li>
+ * <li>{@code gw-<instance>.ring} - the replies to one gateway instance, polled by that instance only.</li>
+ * <li>{@code proc-<instance>.ring} - the next steps for one processor instance, polled by that instance only.</li>
+ * </ul>
+ * Every frame starts with the name of the ring of its sender, so that processors reply to the gateway instance that
+ * sent the latest step. Processors put the name of their own ring in the {@code route} of the header of their
+ * replies, which the gateway instance remembers by transaction ID for the route timeout given to
+ * {@link #gateway(String, long, long)}, so that it sends the next step to the right processor. The route of the steps
+ * sent by the client is ignored.
+ * <p>
+ * Each instance ring is polled by a single thread that demultiplexes the frames by transaction ID to the callers
+ * waiting for them through a {@link ReplyCorrelator}. Callers wait up to the receive timeout given to
+ * {@link #gateway(String, long, long)} or {@link #processor(String, long)}; offering to a full ring is retried
+ * within the same timeout. A message whose frame exceeds the slots of the target ring is not sent and fails with
+ * {@link ErrorInfo#ERROR_0001_0008} on the gateway and {@link ErrorInfo#ERROR_0002_0009} on the processors.
+ * <p>
+ * The rings of the instances are deleted when the transport is closed; the static ring is kept.
+ */
+public class MappedFileTransport implements AutoCloseable {
+    /**
+     * Name of the ring carrying the first steps.
+     */
+    static final String STATIC_RING = "static";
+    /**
+     * Prefix of the ring names of gateway instances.
+     */
+    static final String GATEWAY_RING_PREFIX = "gw-";
+    /**
+     * Prefix of the ring names of processor instances.
+     */
+    static final String PROCESSOR_RING_PREFIX = "proc-";
+    /**
+     * Extension of the ring files.
+     */
+    private static final String RING_SUFFIX = ".ring";
+    /**
+     * Characters allowed in ring names, which are used as file names.
+     */
+    private static final Pattern RING_NAME = Pattern.compile("[A-Za-z0-9._-]{1,200}");
+    /**
+     * Number of remembered routes above which expired routes are pruned.
+     */
+    private static final int ROUTES_PRUNE_THRESHOLD = 1024;
+    /**
+     * Number of empty polls a reader spins before parking.
+     */
+    private static final int IDLE_SPINS = 100;
+    /**
+     * Time a reader or a producer facing a full ring parks, in nanoseconds.
+     */
+    private static final long IDLE_PARK_NANOS = 50_000;
+    /**
+     * Logs the frames that cannot be handled.
+     */
+    private static final System.Logger LOG = System.getLogger(MappedFileTransport.class.getName());
+
+    /**
+     * The directory of the rings.
+     */
+    private final Path directory;
+    /**
+     * Number of slots of the rings created by this transport.
+     */
+    private final int capacity;
+    /**
+     * Size of the slots of the rings created by this transport.
+     */
+    private final int slotSize;
+    /**
+     * Encodes and decodes the messages.
+     */
+    private final FrameCodec codec;
+    /**
+     * Rings opened by this transport, keyed by name.
+     */
+    private final Map<String, MappedRing> rings = new ConcurrentHashMap<>();
+    /**
+     * Rings owned by this transport, deleted on close.
+     */
+    private final List<MappedRing> ownedRings = new CopyOnWriteArrayList<>();
+    /**
+     * Threads polling the rings of this transport.
+     */
+    private final List<Thread> readers = new CopyOnWriteArrayList<>();
+    /**
+     * Whether the readers keep polling.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a transport over the rings of the given directory.
+     *
+     * @param directory
+     *            the directory of the rings, shared by the processes of the host
+     * @param capacity
+     *            the number of slots of the rings created by this transport
+     * @param slotSize
+     *            the size in bytes of the slots of the rings created by this transport, which bounds the size of a
+     *            frame
+     * @param codec
+     *            the codec of the messages
+     */
+    public MappedFileTransport(Path directory, int capacity, int slotSize, FrameCodec codec) {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.slotSize = slotSize;
+        this.codec = codec;
+    }
+
+    /**
+     * Returns the gateway side of this transport, creating the ring of the gateway instance and starting its reader.
+     *
+     * @param instanceId
+     *            the ID of the gateway instance
+     * @param receiveTimeout
+     *            the maximum time, in milliseconds, to wait for the reply of a processor
+     * @param routeTimeout
+     *            the time, in milliseconds, the route of a conversation is remembered after its last reply, for
+     *            instance {@link SeqismConstant#QUEUE_DELETE_TIME}
+     * @return the gateway view of this transport, which closes the transport when closed
+     */
+    public GatewayView gateway(String instanceId, long receiveTimeout, long routeTimeout) {
+        return new GatewayView(GATEWAY_RING_PREFIX + instanceId, receiveTimeout, routeTimeout);
+    }
+
+    /**
+     * Returns the processor side of this transport, creating the ring of the processor instance and starting its
+     * reader. The static ring is polled once a dispatcher subscribes.
+     *
+     * @param instanceId
+     *            the ID of the processor instance
+     * @param receiveTimeout
+     *            the maximum time, in milliseconds, to wait for the next step of a conversation
+     * @return the processor view of this transport, which closes the transport when closed
+     */
+    public ProcessorView processor(String instanceId, long receiveTimeout) {
+        return new ProcessorView(PROCESSOR_RING_PREFIX + instanceId, receiveTimeout);
+    }
+
+    /**
+     * Gateway side of the transport.
+     */
+    public final class GatewayView implements GatewayTransport, AutoCloseable {
+        /**
+         * Name of the ring of this gateway instance.
+         */
+        private final String ringName;
+        /**
+         * Maximum time, in milliseconds, to wait for a reply.
+         */
+        private final long receiveTimeout;
+        /**
+         * Time, in milliseconds, a route is remembered after the last reply of its conversation.
+         */
+        private final long routeTimeout;
+        /**
+         * Hands the replies read from the ring of this instance to the callers waiting for them.
+         */
+        private final ReplyCorrelator<SeqismMessage<Object>> replyCorrelator = new ReplyCorrelator<>();
+        /**
+         * The rings of the processor instances waiting for the next step of each conversation, keyed by transaction
+         * ID, with the time in milliseconds after which they are forgotten.
+         */
+        private final Map<String, Map.Entry<String, Long>> routes = new ConcurrentHashMap<>();
+
+        /**
+         * Creates the ring of the gateway instance and starts its reader.
+         */
+        GatewayView(String ringName, long receiveTimeout, long routeTimeout) {
+            this.ringName = ringName;
+            this.receiveTimeout = receiveTimeout;
+            this.routeTimeout = routeTimeout;
+            startReader(createRing(ringName), (sender, message) -> replyCorrelator
+                    .complete(message.getHeader().getTranId(), message));
+        }
+
+        @Override
+        public <R, C> SeqismMessage<C> sendAndReceiveInit(SeqismMessage<R> message) {
+            return sendAndReceive(createRing(STATIC_RING), message);
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * The step is sent to the ring of the processor instance that sent the previous reply of the conversation; a
+         * conversation without a known route is rejected with {@link ErrorInfo#ERROR_0001_0007}, and a route whose
+         * ring no longer exists with {@link ErrorInfo#ERROR_0001_0003}.
+         */
+        @Override
+        public <R, C> SeqismMessage<C> sendAndReceiveNext(SeqismMessage<R> message) {
+            String tranId = message.getHeader().getTranId();
+            Map.Entry<String, Long> route = routes.get(tranId);
+            if (route == null || route.getValue() <= System.currentTimeMillis()) {
+                throw new SeqismException(ErrorInfo.ERROR_0001_0007);
+            }
+            MappedRing ring = openRing(route.getKey());
+            if (ring == null) {
+                throw new SeqismException(ErrorInfo.ERROR_0001_0003);
+            }
+
+            return sendAndReceive(ring, message.withRoute(route.getKey()));
+        }
+
+        /**
+         * Registers the caller for the reply, offers the step to the given ring and waits for the reply.
+         */
+        @SuppressWarnings("unchecked")
+        private <R, C> SeqismMessage<C> sendAndReceive(MappedRing ring, SeqismMessage<R> message) {
+            String tranId = message.getHeader().getTranId();
+            byte[] frame = encodeFrame(ring, ringName, message, ErrorInfo.ERROR_0001_0008);
+            CompletableFuture<SeqismMessage<Object>> pending = replyCorrelator.register(tranId);
+
+            if (!offer(ring, frame, receiveTimeout)) {
+                replyCorrelator.cancel(tranId);
+                throw new SeqismException(ErrorInfo.ERROR_0001_0004);
+            }
+
+            SeqismMessage<Object> reply = replyCorrelator.await(tranId, pending, receiveTimeout);
+            rememberRoute(tranId, reply);
+            return (SeqismMessage<C>) (SeqismMessage<?>) reply;
+        }
+
+        /**
+         * Remembers the ring of the processor instance given by an {@code IN_PROGRESS} reply for the next step of its
+         * conversation, and forgets the route of a conversation that ended or timed out.
+         */
+        private void rememberRoute(String tranId, SeqismMessage<?> reply) {
+            String route = reply != null ? reply.getHeader().getRoute() : null;
+            if (reply == null || reply.getHeader().getStatus() != SeqismMessageStatus.IN_PROGRESS || route == null
+                    || !route.startsWith(PROCESSOR_RING_PREFIX)) {
+                routes.remove(tranId);
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (routes.size() > ROUTES_PRUNE_THRESHOLD) {
+                routes.values().removeIf(entry -> entry.getValue() <= now);
+            }
+            routes.put(tranId, Map.entry(route, now + routeTimeout));
+        }
+
+        @Override
+        public void close() {
+            MappedFileTransport.this.close();
+        }
+    }
+
+    /**
+     * Processor side of the transport.
+     */
+    public final class ProcessorView implements ProcessorTransport, AutoCloseable {
+        /**
+         * Name of the ring of this processor instance.
+         */
+        private final String ringName;
+        /**
+         * Maximum time, in milliseconds, to wait for a next step.
+         */
+        private final long receiveTimeout;
+        /**
+         * The ring of the gateway instance that sent the latest step of each conversation, keyed by transaction ID.
+         */
+        private final Map<String, String> replyRings = new ConcurrentHashMap<>();
+        /**
+         * Hands the next steps read from the ring of this instance to the processors waiting for them.
+         */
+        private final ReplyCorrelator<SeqismMessage<Object>> inboxCorrelator = new ReplyCorrelator<>();
+
+        /**
+         * Creates the ring of the processor instance and starts its reader.
+         */
+        ProcessorView(String ringName, long receiveTimeout) {
+            this.ringName = ringName;
+            this.receiveTimeout = receiveTimeout;
+            startReader(createRing(ringName), (sender, message) -> {
+                replyRings.put(message.getHeader().getTranId(), sender);
+                inboxCorrelator.complete(message.getHeader().getTranId(), message);
+            });
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Starts polling the static ring; must be called once.
+         */
+        @Override
+        public void subscribe(Consumer<SeqismMessage<Object>> dispatcher) {
+            startReader(createRing(STATIC_RING), (sender, message) -> {
+                replyRings.put(message.getHeader().getTranId(), sender);
+                dispatcher.accept(message);
+            });
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message) {
+            String tranId = message.getHeader().getTranId();
+            MappedRing ring = replyRing(tranId);
+            byte[] frame = ring != null ? encodeReply(ring, message.withRoute(ringName)) : null;
+            CompletableFuture<SeqismMessage<Object>> pending = inboxCorrelator.register(tranId);
+
+            if (frame == null || !offer(ring, frame, receiveTimeout)) {
+                inboxCorrelator.cancel(tranId);
+                throw new SeqismException(ErrorInfo.ERROR_0002_0004);
+            }
+
+            SeqismMessage<Object> next = inboxCorrelator.await(tranId, pending, receiveTimeout);
+            if (next == null) {
+                throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+            }
+            return (SeqismMessage<R>) (SeqismMessage<?>) next;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message) {
+            String tranId = message.getHeader().getTranId();
+            MappedRing ring = replyRing(tranId);
+            byte[] frame;
+            try {
+                frame = ring != null ? encodeReply(ring, message.withRoute(ringName)) : null;
+            } catch (SeqismException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<SeqismMessage<Object>> pending = inboxCorrelator.register(tranId);
+
+            if (frame == null || !offer(ring, frame, receiveTimeout)) {
+                inboxCorrelator.cancel(tranId);
+                return CompletableFuture.failedFuture(new SeqismException(ErrorInfo.ERROR_0002_0004));
+            }
+
+            return inboxCorrelator.awaitAsync(tranId, pending, receiveTimeout).thenApply(next -> {
+                if (next == null) {
+                    throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+                }
+                return (SeqismMessage<R>) (SeqismMessage<?>) next;
+            });
+        }
+
+        @Override
+        public <T> void sendFinal(SeqismMessage<T> message) {
+            try {
+                MappedRing ring = replyRing(message.getHeader().getTranId());
+                if (ring == null || !offer(ring, encodeReply(ring, message), receiveTimeout)) {
+                    throw new SeqismException(ErrorInfo.ERROR_0002_0004);
+                }
+            } finally {
+                replyRings.remove(message.getHeader().getTranId());
+            }
+        }
+
+        /**
+         * Returns the ring of the gateway instance that sent the latest step of the conversation, or {@code null} if
+         * it is unknown or no longer exists.
+         */
+        private MappedRing replyRing(String tranId) {
+            String replyRing = replyRings.get(tranId);
+            return replyRing != null ? openRing(replyRing) : null;
+        }
+
+        /**
+         * Encodes a reply for the given ring of a gateway instance.
+         */
+        private byte[] encodeReply(MappedRing ring, SeqismMessage<?> message) {
+            return encodeFrame(ring, ringName, message, ErrorInfo.ERROR_0002_0009);
+        }
+
+        @Override
+        public void close() {
+            MappedFileTransport.this.close();
+        }
+    }
+
+    /**
+     * Stops the readers and deletes the rings owned by this transport.
+     */
+    @Override
+    public void close() {
+        running = false;
+        readers.forEach(Thread::interrupt);
+
+        for (MappedRing ring : ownedRings) {
+            ring.close();
+            try {
+                Files.deleteIfExists(ring.getFile());
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to delete ring " + ring.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Opens, creating it if needed, the ring of the given name.
+     *
+     * @param name
+     *            the name of the ring
+     * @return the ring
+     * @throws UncheckedIOException
+     *             if the ring cannot be created
+     */
+    MappedRing createRing(String name) {
+        return rings.computeIfAbsent(name, key -> {
+            try {
+                MappedRing ring = MappedRing.create(ringFile(key), capacity, slotSize);
+                if (!STATIC_RING.equals(key)) {
+                    ownedRings.add(ring);
+                }
+                return ring;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Opens the existing ring of the given name.
+     *
+     * @param name
+     *            the name of the ring
+     * @return the ring, or {@code null} if the name is invalid or no such ring exists
+     */
+    MappedRing openRing(String name) {
+        if (!RING_NAME.matcher(name).matches()) {
+            return null;
+        }
+
+        MappedRing ring = rings.get(name);
+        if (ring == null) {
+            try {
+                ring = MappedRing.open(ringFile(name));
+            } catch (IOException e) {
+                return null;
+            }
+            MappedRing raced = rings.putIfAbsent(name, ring);
+            ring = raced != null ? raced : ring;
+        }
+        return ring;
+    }
+
+    /**
+     * Offers a frame to the given ring, retrying while the ring is full.
+     *
+     * @param ring
+     *            the target ring
+     * @param frame
+     *            the frame, as encoded by {@link #encodeFrame(MappedRing, String, SeqismMessage, ErrorInfo)}
+     * @param timeout
+     *            the maximum time, in milliseconds, to wait for a free slot
+     * @return {@code true} if the frame was offered, {@code false} if the ring stayed full or the slot of the frame
+     *         was skipped as stalled
+     */
+    boolean offer(MappedRing ring, byte[] frame, long timeout) {
+        long deadline = System.nanoTime() + timeout * 1_000_000;
+        try {
+            while (!ring.offer(frame)) {
+                if (System.nanoTime() - deadline > 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            return true;
+        } catch (IllegalStateException e) {
+            LOG.log(Level.WARNING, "Frame lost in " + ring.getFile(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Starts a thread polling the given ring and handing each decoded frame to the handler.
+     *
+     * @param ring
+     *            the ring to poll
+     * @param handler
+     *            receives the name of the ring of the sender and the message of each frame
+     */
+    void startReader(MappedRing ring, BiConsumer<String, SeqismMessage<Object>> handler) {
+        Thread reader = new Thread(() -> {
+            int idle = 0;
+            while (running) {
+                byte[] frame = ring.poll();
+                if (frame == null) {
+                    if (++idle > IDLE_SPINS) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                    continue;
+                }
+
+                idle = 0;
+                try {
+                    int nameLength = frame[0] & 0xFF;
+                    String sender = new String(frame, 1, nameLength, StandardCharsets.US_ASCII);
+                    handler.accept(sender, codec.decode(Arrays.copyOfRange(frame, 1 + nameLength, frame.length)));
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Discarded frame read from " + ring.getFile(), e);
+                }
+            }
+        }, "seqism-mmap-" + ring.getFile().getFileName());
+        reader.setDaemon(true);
+        reader.start();
+        readers.add(reader);
+    }
+
+    /**
+     * Encodes a frame for the given ring: the length and name of the ring of the sender, then the encoded message.
+     *
+     * @param ring
+     *            the target ring
+     * @param sender
+     *            the name of the ring of the sender
+     * @param message
+     *            the message to send
+     * @param tooLarge
+     *            the error raised if the frame exceeds the slots of the ring
+     * @return the frame
+     * @throws SeqismException
+     *             with the given error if the frame exceeds the slots of the ring
+     */
+    byte[] encodeFrame(MappedRing ring, String sender, SeqismMessage<?> message, ErrorInfo tooLarge) {
+        byte[] name = sender.getBytes(StandardCharsets.US_ASCII);
+        byte[] body = codec.encode(message);
+
+        int length = 1 + name.length + body.length;
+        if (length > ring.maxFrameSize()) {
+            LOG.log(Level.WARNING, "Frame of {0} bytes exceeds the slots of {1}", length, ring.getFile());
+            throw new SeqismException(tooLarge.addMessage(length + " > " + ring.maxFrameSize() + " bytes"));
+        }
+        return ByteBuffer.allocate(length)
+                .put((byte) name.length)
+                .put(name)
+                .put(body)
+                .array();
+    }
+
+    /**
+     * Returns the file of the ring of the given name.
+     */
+    private Path ringFile(String name) {
+        return directory.resolve(name + RING_SUFFIX);
+    }
+}
@@ -0,0 +1,394 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded multi-producer/multi-consumer queue of byte frames stored in a memory-mapped file, shared by the
+ * processes of a host.
+ * <p>
+ * The ring follows the array queue design of Dmitry Vyukov: every slot carries a sequence number telling producers
+ * and consumers whether it is free or filled for their position, and positions are claimed by compare-and-set on the
+ * mapped memory. No lock is taken once the ring is initialized, so any number of threads of any number of processes
+ * may offer and poll frames concurrently.
+ * <p>
+ * Layout of the file:
+ * <ul>
+ * <li>header: magic, capacity and slot size, then the enqueue and dequeue positions on cache lines of their
+ * own.</li>
+ * <li>{@code capacity} slots of {@code slotSize} bytes: sequence number, frame length, frame bytes.</li>
+ * </ul>
+ * A process dying between claiming a slot and publishing or releasing it would otherwise wedge the ring:
+ * <ul>
+ * <li>A producer dying after claiming a position leaves its slot unpublished, and the consumers wait at that
+ * position. A consumer finding the same unpublished position claimed for longer than the stall timeout skips it.</li>
+ * <li>A consumer dying after claiming a position leaves its slot unreleased, and the producers find the ring full
+ * once they come around to it. A producer finding the same unreleased slot for longer than the stall timeout
+ * reclaims it.</li>
+ * </ul>
+ * Slots are published and released by compare-and-set, so a process resuming after its slot was skipped or reclaimed
+ * notices it: a late producer gets an {@link IllegalStateException} and a late consumer drops the frame it read.
+ * The frame of a skipped or reclaimed slot is lost. The stall timeout ({@value #DEFAULT_STALL_TIMEOUT_MILLIS} ms by
+ * default, see {@link #setStallTimeout(long)}) must be far longer than any pause of a live process, as a process
+ * paused for longer may still write into a slot reused by another.
+ */
+public final class MappedRing implements AutoCloseable {
+    /**
+     * Marks an initialized ring file.
+     */
+    private static final int MAGIC = 0x5351524D;
+    /**
+     * Offset of the capacity in the header.
+     */
+    private static final int CAPACITY_OFFSET = 8;
+    /**
+     * Offset of the slot size in the header.
+     */
+    private static final int SLOT_SIZE_OFFSET = 16;
+    /**
+     * Offset of the next position to enqueue.
+     */
+    private static final int ENQUEUE_OFFSET = 64;
+    /**
+     * Offset of the next position to dequeue.
+     */
+    private static final int DEQUEUE_OFFSET = 128;
+    /**
+     * Size of the header.
+     */
+    private static final int HEADER_SIZE = 192;
+    /**
+     * Size of the sequence number and frame length at the start of each slot.
+     */
+    private static final int SLOT_HEADER_SIZE = 16;
+    /**
+     * Atomic access to the longs of the mapped memory.
+     */
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+    /**
+     * Atomic access to the ints of the mapped memory.
+     */
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    /**
+     * Default time, in milliseconds, after which a slot claimed and neither published nor released is given up.
+     */
+    public static final long DEFAULT_STALL_TIMEOUT_MILLIS = 10_000;
+    /**
+     * Logs the slots given up.
+     */
+    private static final System.Logger LOG = System.getLogger(MappedRing.class.getName());
+
+    /**
+     * Tracks, within this process, how long a position has been found stalled.
+     */
+    private static final class StallWatch {
+        /**
+         * The position found stalled, {@code -1} for none.
+         */
+        private long pos = -1;
+        /**
+         * The {@link System#nanoTime()} at which the position was first found stalled.
+         */
+        private long since;
+
+        /**
+         * Records that the given position is found stalled.
+         *
+         * @param pos
+         *            the stalled position
+         * @param timeoutNanos
+         *            the stall timeout in nanoseconds
+         * @return {@code true} if the position has been found stalled for longer than the timeout
+         */
+        synchronized boolean isStalled(long pos, long timeoutNanos) {
+            long now = System.nanoTime();
+            if (this.pos != pos) {
+                this.pos = pos;
+                this.since = now;
+                return false;
+            }
+            return now - since >= timeoutNanos;
+        }
+    }
+
+    /**
+     * The file of the ring.
+     */
+    private final Path file;
+    /**
+     * The mapped memory of the ring.
+     */
+    private final MappedByteBuffer buffer;
+    /**
+     * Number of slots, a power of two.
+     */
+    private final int capacity;
+    /**
+     * Size of each slot in bytes.
+     */
+    private final int slotSize;
+    /**
+     * Tracks the unpublished slot the consumers of this process wait at.
+     */
+    private final StallWatch consumerStall = new StallWatch();
+    /**
+     * Tracks the unreleased slot the producers of this process wait at.
+     */
+    private final StallWatch producerStall = new StallWatch();
+    /**
+     * Time, in nanoseconds, after which a stalled slot is given up.
+     */
+    private volatile long stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_STALL_TIMEOUT_MILLIS);
+
+    /**
+     * Constructs a ring over mapped memory already initialized.
+     */
+    private MappedRing(Path file, MappedByteBuffer buffer, int capacity, int slotSize) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.slotSize = slotSize;
+    }
+
+    /**
+     * Opens the ring stored in the given file, creating and initializing it if the file does not exist yet. The
+     * capacity and slot size of an existing ring are kept.
+     *
+     * @param file
+     *            the file of the ring
+     * @param capacity
+     *            the number of slots of a new ring, rounded up to a power of two
+     * @param slotSize
+     *            the size in bytes of each slot of a new ring, frame length included, rounded up to a multiple of 8
+     * @return the opened ring
+     * @throws IOException
+     *             if the file cannot be created or mapped
+     */
+    public static MappedRing create(Path file, int capacity, int slotSize) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        return map(file, true, Integer.highestOneBit(Math.max(2, capacity) * 2 - 1),
+                (Math.max(64, slotSize) + 7) & ~7);
+    }
+
+    /**
+     * Opens the existing ring stored in the given file.
+     *
+     * @param file
+     *            the file of the ring
+     * @return the opened ring
+     * @throws NoSuchFileException
+     *             if no ring exists in the file
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    public static MappedRing open(Path file) throws IOException {
+        return map(file, false, 0, 0);
+    }
+
+    /**
+     * Maps the ring stored in the given file under an exclusive file lock, initializing it if needed.
+     */
+    private static MappedRing map(Path file, boolean create, int newCapacity, int newSlotSize) throws IOException {
+        StandardOpenOption[] options = create
+                ? new StandardOpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE }
+                : new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+
+        try (FileChannel channel = FileChannel.open(file, options); FileLock lock = channel.lock()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+            boolean initialized = channel.size() >= HEADER_SIZE && channel.read(header, 0) == HEADER_SIZE
+                    && header.getInt(0) == MAGIC;
+            if (!initialized && !create) {
+                throw new NoSuchFileException(file.toString(), null, "ring not initialized");
+            }
+
+            int capacity = initialized ? (int) header.getLong(CAPACITY_OFFSET) : newCapacity;
+            int slotSize = initialized ? (int) header.getLong(SLOT_SIZE_OFFSET) : newSlotSize;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * slotSize);
+            buffer.order(ByteOrder.nativeOrder());
+
+            if (!initialized) {
+                buffer.putLong(CAPACITY_OFFSET, capacity);
+                buffer.putLong(SLOT_SIZE_OFFSET, slotSize);
+                buffer.putLong(ENQUEUE_OFFSET, 0);
+                buffer.putLong(DEQUEUE_OFFSET, 0);
+                for (int i = 0; i < capacity; i++) {
+                    buffer.putLong(HEADER_SIZE + i * slotSize, i);
+                }
+                INT.setRelease(buffer, 0, MAGIC);
+                buffer.force();
+            }
+            return new MappedRing(file, buffer, capacity, slotSize);
+        }
+    }
+
+    /**
+     * Adds a frame to the ring.
+     *
+     * @param frame
+     *            the frame to add
+     * @return {@code true} if the frame was added, {@code false} if the ring is full
+     * @throws IllegalArgumentException
+     *             if the frame is larger than {@link #maxFrameSize()}
+     * @throws IllegalStateException
+     *             if the slot claimed for the frame was skipped as stalled before the frame was published
+     */
+    public boolean offer(byte[] frame) {
+        if (frame.length > maxFrameSize()) {
+            throw new IllegalArgumentException("Frame of " + frame.length + " bytes exceeds " + maxFrameSize());
+        }
+
+        long pos = (long) LONG.getVolatile(buffer, ENQUEUE_OFFSET);
+        while (true) {
+            int slot = slotOffset(pos);
+            long dif = (long) LONG.getAcquire(buffer, slot) - pos;
+
+            if (dif == 0) {
+                if (LONG.compareAndSet(buffer, ENQUEUE_OFFSET, pos, pos + 1)) {
+                    buffer.putInt(slot + 8, frame.length);
+                    buffer.put(slot + SLOT_HEADER_SIZE, frame);
+                    if (!LONG.compareAndSet(buffer, slot, pos, pos + 1)) {
+                        throw new IllegalStateException("Slot of position " + pos + " skipped as stalled");
+                    }
+                    return true;
+                }
+            } else if (dif < 0 && !reclaimUnreleased(pos, slot)) {
+                return false;
+            }
+            pos = (long) LONG.getVolatile(buffer, ENQUEUE_OFFSET);
+        }
+    }
+
+    /**
+     * Removes the oldest frame of the ring.
+     *
+     * @return the frame, or {@code null} if the ring is empty
+     */
+    public byte[] poll() {
+        long pos = (long) LONG.getVolatile(buffer, DEQUEUE_OFFSET);
+        while (true) {
+            int slot = slotOffset(pos);
+            long dif = (long) LONG.getAcquire(buffer, slot) - (pos + 1);
+
+            if (dif == 0) {
+                if (LONG.compareAndSet(buffer, DEQUEUE_OFFSET, pos, pos + 1)) {
+                    byte[] frame = new byte[buffer.getInt(slot + 8)];
+                    buffer.get(slot + SLOT_HEADER_SIZE, frame);
+                    if (LONG.compareAndSet(buffer, slot, pos + 1, pos + capacity)) {
+                        return frame;
+                    }
+                    // reclaimed as stalled while being read: the frame may have been overwritten
+                }
+            } else if (dif < 0) {
+                if (!skipUnpublished(pos, slot)) {
+                    return null;
+                }
+            } else if (dif == capacity - 1) {
+                // skipped by a consumer that died before moving past it
+                LONG.compareAndSet(buffer, DEQUEUE_OFFSET, pos, pos + 1);
+            }
+            pos = (long) LONG.getVolatile(buffer, DEQUEUE_OFFSET);
+        }
+    }
+
+    /**
+     * Skips the slot of a position claimed by a producer and left unpublished for longer than the stall timeout,
+     * releasing it for the next lap. Called by consumers finding the slot of the next position unpublished.
+     *
+     * @param pos
+     *            the next position to dequeue
+     * @param slot
+     *            the offset of its slot
+     * @return {@code true} if the slot was skipped, {@code false} if the ring is empty or the producer may still
+     *         publish
+     */
+    private boolean skipUnpublished(long pos, int slot) {
+        if ((long) LONG.getVolatile(buffer, ENQUEUE_OFFSET) <= pos || !consumerStall.isStalled(pos, stallTimeoutNanos)
+                || !LONG.compareAndSet(buffer, slot, pos, pos + capacity)) {
+            return false;
+        }
+        LONG.compareAndSet(buffer, DEQUEUE_OFFSET, pos, pos + 1);
+        LOG.log(Level.WARNING, "Skipped the unpublished slot of position {0} in {1}", pos, file);
+        return true;
+    }
+
+    /**
+     * Reclaims the slot of a position claimed by a consumer and left unreleased for longer than the stall timeout,
+     * dropping its frame. Called by producers finding the slot of the next position full.
+     *
+     * @param pos
+     *            the next position to enqueue
+     * @param slot
+     *            the offset of its slot
+     * @return {@code true} if the slot was reclaimed, {@code false} if the ring is full or the consumer may still
+     *         release the slot
+     */
+    private boolean reclaimUnreleased(long pos, int slot) {
+        long previous = pos - capacity;
+        if ((long) LONG.getVolatile(buffer, DEQUEUE_OFFSET) <= previous
+                || !producerStall.isStalled(pos, stallTimeoutNanos)
+                || !LONG.compareAndSet(buffer, slot, previous + 1, pos)) {
+            return false;
+        }
+        LOG.log(Level.WARNING, "Reclaimed the unreleased slot of position {0} in {1}", previous, file);
+        return true;
+    }
+
+    /**
+     * Sets the time after which a slot claimed and neither published nor released is given up by the producers and
+     * consumers of this process.
+     *
+     * @param millis
+     *            the stall timeout in milliseconds, {@value #DEFAULT_STALL_TIMEOUT_MILLIS} by default
+     */
+    public void setStallTimeout(long millis) {
+        this.stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Returns the largest frame this ring accepts.
+     *
+     * @return the maximum frame size in bytes
+     */
+    public int maxFrameSize() {
+        return slotSize - SLOT_HEADER_SIZE;
+    }
+
+    /**
+     * Returns the file of this ring.
+     *
+     * @return the file of the ring
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Flushes the ring to its file. The mapping itself is released once the ring is garbage collected.
+     */
+    @Override
+    public void close() {
+        buffer.force();
+    }
+
+    /**
+     * Returns the offset of the slot of the given position.
+     */
+    private int slotOffset(long pos) {
+        return HEADER_SIZE + (int) (pos & (capacity - 1)) * slotSize;
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Processor side of a transport carrying the steps of Seqism conversations between the gateway and the processors.
+ * <p>
+ * A processor answers a step either with {@link #sendAndReceiveOrThrow(SeqismMessage)}, which asks the client for
+ * the next step and waits for it, or with {@link #sendFinal(SeqismMessage)}, which ends the conversation.
+ * {@link #sendAndReceiveAsync(SeqismMessage)} asks for the next step without holding a thread while waiting, and
+ * {@link #sendDetached(SeqismMessage)}, where supported, asks for it without waiting at all: the next step then goes
+ * to any processor instance.
+ * <p>
+ * The overloads taking the body type let a transport decode the next step straight into that type; transports that
+ * cannot return a body still to be converted by the caller.
+ * <p>
+ * Transports delivering the first steps of the conversations by themselves hand them to the dispatcher registered
+ * with {@link #subscribe(Consumer)}.
+ *
+ * @see GatewayTransport
+ */
+public interface ProcessorTransport {
+    /**
+     * Sends an intermediate reply of the conversation and waits for its next step.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the intermediate reply, carrying the transaction ID of the conversation
+     * @return the next step of the conversation
+     * @throws SeqismException
+     *             if the reply cannot be sent or no next step was received within the timeout
+     */
+    <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message);
+
+    /**
+     * Sends an intermediate reply of the conversation and waits for its next step, decoding its body into the given
+     * type where the transport supports it.
+     * <p>
+     * The default implementation ignores the body type and delegates to {@link #sendAndReceiveOrThrow(SeqismMessage)}:
+     * the body of the next step may then be of another type, such as a map, to be converted by the caller.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the intermediate reply, carrying the transaction ID of the conversation
+     * @param bodyType
+     *            the type of the body of the next step
+     * @return the next step of the conversation
+     * @throws SeqismException
+     *             if the reply cannot be sent or no next step was received within the timeout
+     */
+    default <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message, Class<R> bodyType) {
+        return sendAndReceiveOrThrow(message);
+    }
+
+    /**
+     * Sends an intermediate reply of the conversation and returns a stage completing with its next step, without
+     * blocking the calling thread while waiting.
+     * <p>
+     * The default implementation waits for the next step with {@link #sendAndReceiveOrThrow(SeqismMessage)} on the
+     * calling thread and returns a completed stage. Transports with a blocking receive should override it, waiting
+     * on threads of their own rather than on a shared pool such as the common pool, whose threads also run the
+     * continuations of the stages.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the intermediate reply, carrying the transaction ID of the conversation
+     * @return a stage completing with the next step of the conversation, or exceptionally with a
+     *         {@link SeqismException} if the reply cannot be sent or no next step was received within the timeout
+     */
+    default <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message) {
+        try {
+            return CompletableFuture.completedFuture(sendAndReceiveOrThrow(message));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Sends an intermediate reply of the conversation and returns a stage completing with its next step, its body
+     * decoded into the given type where the transport supports it.
+     * <p>
+     * The default implementation ignores the body type and delegates to {@link #sendAndReceiveAsync(SeqismMessage)}:
+     * the body of the next step may then be of another type, such as a map, to be converted by the caller.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the intermediate reply, carrying the transaction ID of the conversation
+     * @param bodyType
+     *            the type of the body of the next step
+     * @return a stage completing with the next step of the conversation, or exceptionally with a
+     *         {@link SeqismException} if the reply cannot be sent or no next step was received within the timeout
+     */
+    default <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message,
+            Class<R> bodyType) {
+        return sendAndReceiveAsync(message);
+    }
+
+    /**
+     * Returns whether this transport can send an intermediate reply with {@link #sendDetached(SeqismMessage)}.
+     * <p>
+     * The default implementation returns {@code false}.
+     *
+     * @return {@code true} if the next steps of a conversation can be taken by any processor instance
+     */
+    default boolean canSendDetached() {
+        return false;
+    }
+
+    /**
+     * Sends an intermediate reply of the conversation without waiting for its next step. The next step is routed to
+     * the entry shared by the processor instances, so that whichever instance takes it resumes the conversation as
+     * recorded by its checkpoint.
+     * <p>
+     * The default implementation throws {@link UnsupportedOperationException}, for transports whose next steps go
+     * to the processor instance that sent the reply.
+     *
+     * @param <T>
+     *            the type of the payload contained in the message
+     * @param message
+     *            the intermediate reply, carrying the transaction ID and the business code of the conversation
+     * @throws SeqismException
+     *             if the reply cannot be sent
+     * @throws UnsupportedOperationException
+     *             if {@link #canSendDetached()} returns {@code false}
+     */
+    default <T> void sendDetached(SeqismMessage<T> message) {
+        throw new UnsupportedOperationException("Transport cannot send detached replies");
+    }
+
+    /**
+     * Sends the final reply of the conversation.
+     *
+     * @param <T>
+     *            the type of the payload contained in the message
+     * @param message
+     *            the final reply, carrying the transaction ID of the conversation
+     */
+    <T> void sendFinal(SeqismMessage<T> message);
+
+    /**
+     * Registers the dispatcher receiving the first step of every conversation. The dispatcher must return quickly,
+     * handing the step over to another thread.
+     * <p>
+     * The default implementation does nothing, for transports whose first steps are delivered by a listener of the
+     * messaging framework.
+     *
+     * @param dispatcher
+     *            the dispatcher of the processor module
+     */
+    default void subscribe(Consumer<SeqismMessage<Object>> dispatcher) {}
+}
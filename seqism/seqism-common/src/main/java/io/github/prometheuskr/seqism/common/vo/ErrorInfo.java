@@ -104,6 +104,45 @@ public class ErrorInfo implements Serializable {
      */
     public static ErrorInfo ERROR_0001_0005 = new ErrorInfo("00010005",
             "GW Error : Failed to receive message from MQ");
+    /**
+     * Represents an error indicating that a delta encoded step was received and the body it patches is not known,
+     * so that the step must be sent again with its full body.
+     * <p>
+     * Error Code: 00010006<br>
+     * Message: "GW Error : Delta base not found, full body required"
+     */
+    public static ErrorInfo ERROR_0001_0006 = new ErrorInfo("00010006",
+            "GW Error : Delta base not found, full body required");
+    /**
+     * Represents an error indicating that a next step was received and the gateway knows no route to the processor
+     * instance waiting for it, because the conversation ended, its route expired or its previous reply was received
+     * by another gateway instance and the client echoed no route signed with {@code seqism.queue.route.key}. Without
+     * that key, gateway instances behind a load balancer need sticky sessions.
+     * <p>
+     * Error Code: 00010007<br>
+     * Message: "GW Error : Route of the conversation not found"
+     */
+    public static ErrorInfo ERROR_0001_0007 = new ErrorInfo("00010007",
+            "GW Error : Route of the conversation not found");
+    /**
+     * Represents an error indicating that a step was not sent because it is larger than the transport can carry,
+     * such as the slots of the memory-mapped transport.
+     * <p>
+     * Error Code: 00010008<br>
+     * Message: "GW Error : Message exceeds the maximum frame size"
+     */
+    public static ErrorInfo ERROR_0001_0008 = new ErrorInfo("00010008",
+            "GW Error : Message exceeds the maximum frame size");
+    /**
+     * Represents an error indicating that a next step was received under a pooled transaction ID whose conversation
+     * no longer leases its queues, because it ended or timed out and the queues may since be leased to another
+     * conversation. The client sent a stale transaction ID.
+     * <p>
+     * Error Code: 00010009<br>
+     * Message: "GW Error : Conversation no longer holds its queues"
+     */
+    public static ErrorInfo ERROR_0001_0009 = new ErrorInfo("00010009",
+            "GW Error : Conversation no longer holds its queues");
 
     // BizProcessor Error
     /**
@@ -152,4 +191,50 @@ public class ErrorInfo implements Serializable {
      */
     public static ErrorInfo ERROR_0002_0005 = new ErrorInfo("00020005",
             "BP Error : Failed to receive message from MQ");
+    /**
+     * Represents an error indicating that the bulkhead of the business code is full, so that the conversation was
+     * rejected without being processed.
+     * <p>
+     * Error Code: 00020006<br>
+     * Description: BP Error : Bulkhead of bizCode is full
+     */
+    public static ErrorInfo ERROR_0002_0006 = new ErrorInfo("00020006",
+            "BP Error : Bulkhead of bizCode is full");
+    /**
+     * Represents an error indicating that the next step of a resumable conversation arrived and no checkpoint of the
+     * conversation was found, because it expired or was saved to a store this instance does not share.
+     * <p>
+     * Error Code: 00020007<br>
+     * Description: BP Error : Conversation state not found
+     */
+    public static ErrorInfo ERROR_0002_0007 = new ErrorInfo("00020007",
+            "BP Error : Conversation state not found");
+    /**
+     * Represents an error indicating that a delta encoded step was received and the body it patches is not known,
+     * so that the step must be sent again with its full body.
+     * <p>
+     * Error Code: 00020008<br>
+     * Description: BP Error : Delta base not found, full body required
+     */
+    public static ErrorInfo ERROR_0002_0008 = new ErrorInfo("00020008",
+            "BP Error : Delta base not found, full body required");
+    /**
+     * Represents an error indicating that a reply was not sent because it is larger than the transport can carry,
+     * such as the slots of the memory-mapped transport.
+     * <p>
+     * Error Code: 00020009<br>
+     * Description: BP Error : Message exceeds the maximum frame size
+     */
+    public static ErrorInfo ERROR_0002_0009 = new ErrorInfo("00020009",
+            "BP Error : Message exceeds the maximum frame size");
+    /**
+     * Represents an error indicating that the processor had no room for the conversation: the limit of in-flight
+     * conversations was reached and none completed within the acquire timeout, or every thread waiting for the next
+     * steps of asynchronous conversations was busy.
+     * <p>
+     * Error Code: 00020010<br>
+     * Description: BP Error : Too many conversations in flight
+     */
+    public static ErrorInfo ERROR_0002_0010 = new ErrorInfo("00020010",
+            "BP Error : Too many conversations in flight");
 }
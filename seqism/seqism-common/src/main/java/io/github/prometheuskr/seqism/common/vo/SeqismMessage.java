@@ -61,7 +61,9 @@ public class SeqismMessage<T> implements Serializable {
      * @return a new {@code SeqismMessage} instance with the business code excluded.
      */
     public SeqismMessage<T> copyMessageExcludeBizCode() {
-        return of(new SeqismMessageHeader(null, header.getTranId(), SeqismMessageStatus.IN_PROGRESS, null), body);
+        return of(new SeqismMessageHeader(null, header.getTranId(), SeqismMessageStatus.IN_PROGRESS, null,
+                header.getRoute(), header.getPriority(), header.getSeq(), header.getDelta(), header.getStepSeq()),
+                body);
     }
 
     /**
@@ -129,6 +131,56 @@ public class SeqismMessage<T> implements Serializable {
         return of(header.toFailure(errorInfo.addMessage(message)), null);
     }
 
+    /**
+     * Returns a new {@code SeqismMessage} instance whose header carries the specified route,
+     * while retaining the current body.
+     *
+     * @param route
+     *            the routing token of the processor instance owning the conversation; may be {@code null}
+     * @return a new {@code SeqismMessage} with the updated route and the same body
+     */
+    public SeqismMessage<T> withRoute(String route) {
+        return of(header.withRoute(route), body);
+    }
+
+    /**
+     * Returns a new {@code SeqismMessage} instance whose header carries the specified priority,
+     * while retaining the current body.
+     *
+     * @param priority
+     *            the priority of the conversation; may be {@code null}
+     * @return a new {@code SeqismMessage} with the updated priority and the same body
+     */
+    public SeqismMessage<T> withPriority(Integer priority) {
+        return of(header.withPriority(priority), body);
+    }
+
+    /**
+     * Returns a new {@code SeqismMessage} instance whose header carries the specified step sequence number and delta
+     * flag, while retaining the current body.
+     *
+     * @param seq
+     *            the step sequence number of the body; may be {@code null}
+     * @param delta
+     *            whether the body is a JSON Patch against the body of the previous step; may be {@code null}
+     * @return a new {@code SeqismMessage} with the updated step sequence number and the same body
+     */
+    public SeqismMessage<T> withSeq(Long seq, Boolean delta) {
+        return of(header.withSeq(seq, delta), body);
+    }
+
+    /**
+     * Returns a new {@code SeqismMessage} instance whose header carries the specified step sequence number of a
+     * resumable conversation, while retaining the current body.
+     *
+     * @param stepSeq
+     *            the step sequence number of the resumable conversation; may be {@code null}
+     * @return a new {@code SeqismMessage} with the updated step sequence number and the same body
+     */
+    public SeqismMessage<T> withStepSeq(Long stepSeq) {
+        return of(header.withStepSeq(stepSeq), body);
+    }
+
     /**
      * Returns a new {@code SeqismMessage} instance with the specified body and the existing header.
      *
@@ -1,13 +1,16 @@
 package io.github.prometheuskr.seqism.common.vo;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
 /**
  * Represents the header information for a Seqism message, encapsulating business code,
- * transaction ID, message status, and error details.
+ * transaction ID, message status, error details, the route and the priority of the conversation, the step
+ * sequence number of the body when bodies are delta encoded, and the step sequence number of a resumable
+ * conversation.
  * <p>
  * This class is immutable and provides utility methods to create new instances
  * with updated status or error information.
@@ -40,6 +43,37 @@ public class SeqismMessageHeader implements Serializable {
      * This field is {@code null} if no error is present.
      */
     private final ErrorInfo error;
+    /**
+     * Opaque routing token identifying the inbox of the processor instance that owns the conversation.
+     * It is set by the processor and echoed back by the client, so that the next steps of the conversation
+     * reach the same processor instance. This field is {@code null} when the conversation is routed by
+     * transaction ID.
+     */
+    private final String route;
+    /**
+     * Priority of the conversation, overriding the priority configured for its business code. It is set by the
+     * gateway on the first step and echoed back by the client like the route. This field is {@code null} when the
+     * configured priority applies.
+     */
+    private final Integer priority;
+    /**
+     * Sequence number of the body of this step within the conversation, when bodies are delta encoded. Each step
+     * of the conversation, in either direction, takes the next number. This field is {@code null} when the
+     * conversation is not delta encoded.
+     */
+    private final Long seq;
+    /**
+     * Whether the body is a JSON Patch against the body of the step numbered {@code seq - 1} rather than a full
+     * body. This field is {@code null} or {@code false} for a full body.
+     */
+    private final Boolean delta;
+    /**
+     * Sequence number of the step of a resumable conversation, counted from {@code 1} for the step after the first.
+     * It is set by the processor on each detached reply and echoed back by the client like the priority, so that the
+     * processor instance resuming the conversation can tell the step its checkpoint waits for from a stale or
+     * duplicated one. This field is {@code null} for the first step and when the conversation is not resumable.
+     */
+    private final Long stepSeq;
 
     /**
      * Default constructor for {@code SeqismMessageHeader}.
@@ -51,6 +85,87 @@ public class SeqismMessageHeader implements Serializable {
         this(null, null, SeqismMessageStatus.FAILURE, null);
     }
 
+    /**
+     * Constructs a new {@code SeqismMessageHeader} without a route.
+     *
+     * @param bizCode
+     *            the business code associated with the message
+     * @param tranId
+     *            the transaction ID for the message
+     * @param status
+     *            the status of the message
+     * @param error
+     *            the error information, if any, associated with the message
+     */
+    public SeqismMessageHeader(String bizCode, String tranId, SeqismMessageStatus status, ErrorInfo error) {
+        this(bizCode, tranId, status, error, null);
+    }
+
+    /**
+     * Constructs a new {@code SeqismMessageHeader} without a priority.
+     *
+     * @param bizCode
+     *            the business code associated with the message
+     * @param tranId
+     *            the transaction ID for the message
+     * @param status
+     *            the status of the message
+     * @param error
+     *            the error information, if any, associated with the message
+     * @param route
+     *            the routing token of the processor instance owning the conversation, if any
+     */
+    public SeqismMessageHeader(String bizCode, String tranId, SeqismMessageStatus status, ErrorInfo error,
+            String route) {
+        this(bizCode, tranId, status, error, route, null);
+    }
+
+    /**
+     * Constructs a new {@code SeqismMessageHeader} without a step sequence number.
+     *
+     * @param bizCode
+     *            the business code associated with the message
+     * @param tranId
+     *            the transaction ID for the message
+     * @param status
+     *            the status of the message
+     * @param error
+     *            the error information, if any, associated with the message
+     * @param route
+     *            the routing token of the processor instance owning the conversation, if any
+     * @param priority
+     *            the priority of the conversation, if any
+     */
+    public SeqismMessageHeader(String bizCode, String tranId, SeqismMessageStatus status, ErrorInfo error,
+            String route, Integer priority) {
+        this(bizCode, tranId, status, error, route, priority, null, null);
+    }
+
+    /**
+     * Constructs a new {@code SeqismMessageHeader} without a step sequence number of a resumable conversation.
+     *
+     * @param bizCode
+     *            the business code associated with the message
+     * @param tranId
+     *            the transaction ID for the message
+     * @param status
+     *            the status of the message
+     * @param error
+     *            the error information, if any, associated with the message
+     * @param route
+     *            the routing token of the processor instance owning the conversation, if any
+     * @param priority
+     *            the priority of the conversation, if any
+     * @param seq
+     *            the step sequence number of the body, if any
+     * @param delta
+     *            whether the body is a JSON Patch against the body of the previous step, if any
+     */
+    public SeqismMessageHeader(String bizCode, String tranId, SeqismMessageStatus status, ErrorInfo error,
+            String route, Integer priority, Long seq, Boolean delta) {
+        this(bizCode, tranId, status, error, route, priority, seq, delta, null);
+    }
+
     /**
      * Creates a new {@code SeqismMessageHeader} instance representing the "in progress" state,
      * using the current transaction ID.
@@ -64,13 +179,18 @@ public class SeqismMessageHeader implements Serializable {
     /**
      * Creates a new {@link SeqismMessageHeader} instance with the specified transaction ID
      * and sets the message status to {@code IN_PROGRESS}, preserving the current business code.
+     * When the transaction ID changes a new conversation starts, so the route and the step sequence numbers are
+     * cleared; the priority is kept.
      *
      * @param tranId
      *            the transaction ID to associate with the new message header
      * @return a new {@link SeqismMessageHeader} with the updated transaction ID and status set to {@code IN_PROGRESS}
      */
     SeqismMessageHeader toInProgress(String tranId) {
-        return of(bizCode, tranId, SeqismMessageStatus.IN_PROGRESS);
+        if (!Objects.equals(tranId, this.tranId)) {
+            return of(bizCode, tranId, SeqismMessageStatus.IN_PROGRESS, null, null, priority, null, null, null);
+        }
+        return of(bizCode, tranId, SeqismMessageStatus.IN_PROGRESS, null, route, priority, seq, delta, stepSeq);
     }
 
     /**
@@ -80,19 +200,68 @@ public class SeqismMessageHeader implements Serializable {
      * @return a {@code SeqismMessageHeader} representing a successful message status
      */
     SeqismMessageHeader toSuccess() {
-        return of(bizCode, tranId, SeqismMessageStatus.SUCCESS);
+        return of(bizCode, tranId, SeqismMessageStatus.SUCCESS, null, route, priority, seq, delta, stepSeq);
     }
 
     /**
      * Creates a new {@code SeqismMessageHeader} instance representing a failure state,
-     * using the current business code and transaction ID, and the provided error information.
+     * using the current business code and transaction ID, and the provided error information. A failure carries no
+     * body, so it is not delta encoded.
      *
      * @param errorInfo
      *            the error information to associate with the failure message header
      * @return a new {@code SeqismMessageHeader} with status set to {@code FAILURE} and the specified error information
      */
     SeqismMessageHeader toFailure(ErrorInfo errorInfo) {
-        return of(bizCode, tranId, SeqismMessageStatus.FAILURE, errorInfo);
+        return of(bizCode, tranId, SeqismMessageStatus.FAILURE, errorInfo, route, priority, seq, null, stepSeq);
+    }
+
+    /**
+     * Returns a new {@code SeqismMessageHeader} instance identical to this one, but with the specified route.
+     *
+     * @param route
+     *            the routing token of the processor instance owning the conversation; may be {@code null}
+     * @return a {@code SeqismMessageHeader} carrying the specified route
+     */
+    SeqismMessageHeader withRoute(String route) {
+        return of(bizCode, tranId, status, error, route, priority, seq, delta, stepSeq);
+    }
+
+    /**
+     * Returns a new {@code SeqismMessageHeader} instance identical to this one, but with the specified priority.
+     *
+     * @param priority
+     *            the priority of the conversation; may be {@code null}
+     * @return a {@code SeqismMessageHeader} carrying the specified priority
+     */
+    SeqismMessageHeader withPriority(Integer priority) {
+        return of(bizCode, tranId, status, error, route, priority, seq, delta, stepSeq);
+    }
+
+    /**
+     * Returns a new {@code SeqismMessageHeader} instance identical to this one, but with the specified step sequence
+     * number and delta flag.
+     *
+     * @param seq
+     *            the step sequence number of the body; may be {@code null}
+     * @param delta
+     *            whether the body is a JSON Patch against the body of the previous step; may be {@code null}
+     * @return a {@code SeqismMessageHeader} carrying the specified step sequence number
+     */
+    SeqismMessageHeader withSeq(Long seq, Boolean delta) {
+        return of(bizCode, tranId, status, error, route, priority, seq, delta, stepSeq);
+    }
+
+    /**
+     * Returns a new {@code SeqismMessageHeader} instance identical to this one, but with the specified step sequence
+     * number of a resumable conversation.
+     *
+     * @param stepSeq
+     *            the step sequence number of the resumable conversation; may be {@code null}
+     * @return a {@code SeqismMessageHeader} carrying the specified step sequence number
+     */
+    SeqismMessageHeader withStepSeq(Long stepSeq) {
+        return of(bizCode, tranId, status, error, route, priority, seq, delta, stepSeq);
     }
 
     /**
@@ -130,4 +299,33 @@ public class SeqismMessageHeader implements Serializable {
     static SeqismMessageHeader of(String bizCode, String tranId, SeqismMessageStatus status, ErrorInfo errorInfo) {
         return new SeqismMessageHeader(bizCode, tranId, status, errorInfo);
     }
+
+    /**
+     * Creates a new instance of {@link SeqismMessageHeader} with the specified business code, transaction ID,
+     * message status, error information, route, priority, step sequence numbers and delta flag.
+     *
+     * @param bizCode
+     *            the business code associated with the message
+     * @param tranId
+     *            the transaction ID for the message
+     * @param status
+     *            the status of the message
+     * @param errorInfo
+     *            the error information, if any, associated with the message
+     * @param route
+     *            the routing token of the processor instance owning the conversation, if any
+     * @param priority
+     *            the priority of the conversation, if any
+     * @param seq
+     *            the step sequence number of the body, if any
+     * @param delta
+     *            whether the body is a JSON Patch against the body of the previous step, if any
+     * @param stepSeq
+     *            the step sequence number of the resumable conversation, if any
+     * @return a new {@link SeqismMessageHeader} instance containing the provided details
+     */
+    static SeqismMessageHeader of(String bizCode, String tranId, SeqismMessageStatus status, ErrorInfo errorInfo,
+            String route, Integer priority, Long seq, Boolean delta, Long stepSeq) {
+        return new SeqismMessageHeader(bizCode, tranId, status, errorInfo, route, priority, seq, delta, stepSeq);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package io.github.prometheuskr.seqism.common.audit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.transport.JsonFrameCodec;
+
+class AuditLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsExpiredSegmentsOfOtherLogsSharingDirectory() throws IOException {
+        Path own = expiredSegment("gateway-1", 1);
+        Path other = expiredSegment("gateway-2", 1);
+
+        try (AuditLog log = new AuditLog(dir, "gateway-1", 4096, 16, 1_000, 0,
+                new JsonFrameCodec(new ObjectMapper()))) {
+            log.applyRetention();
+        }
+
+        assertFalse(Files.exists(own));
+        assertTrue(Files.exists(other));
+    }
+
+    private Path expiredSegment(String name, long sequence) throws IOException {
+        Path file = dir.resolve(String.format("%s.%012d%s", name, sequence, AuditLog.EXTENSION));
+        Files.write(file, new byte[16]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        return file;
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.prometheuskr.seqism.common.blob;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileBlobStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBlobsBackByReference() {
+        FileBlobStore store = new FileBlobStore(dir);
+        byte[] bytes = "payload".getBytes(StandardCharsets.UTF_8);
+
+        String first = store.put("tran-1", bytes);
+        String second = store.put("tran-1", new byte[0]);
+
+        assertNotEquals(first, second);
+        assertArrayEquals(bytes, store.get(first));
+        assertArrayEquals(new byte[0], store.get(second));
+    }
+
+    @Test
+    void keepsBlobsOfConversationInDirectoryOfItsEncodedTranId() throws IOException {
+        FileBlobStore store = new FileBlobStore(dir);
+
+        String reference = store.put("../tran/1", new byte[] { 1 });
+
+        assertTrue(reference.startsWith("%2E%2E%2Ftran%2F1/"));
+        assertTrue(Files.isRegularFile(dir.resolve(reference)));
+        try (Stream<Path> files = Files.list(dir.resolve("%2E%2E%2Ftran%2F1"))) {
+            assertEquals(1, files.count(), "no temporary file left");
+        }
+    }
+
+    @Test
+    void removesBlobsOfConversation() {
+        FileBlobStore store = new FileBlobStore(dir);
+        String ended = store.put("tran-1", new byte[] { 1 });
+        String running = store.put("tran-2", new byte[] { 2 });
+
+        store.remove("tran-1");
+        store.remove("unknown");
+
+        assertThrows(IllegalStateException.class, () -> store.get(ended));
+        assertFalse(Files.exists(dir.resolve("tran-1")));
+        assertArrayEquals(new byte[] { 2 }, store.get(running));
+    }
+
+    @Test
+    void purgesBlobsStoredBeforeGivenTime() throws IOException {
+        FileBlobStore store = new FileBlobStore(dir);
+        String expired = store.put("tran-1", new byte[] { 1 });
+        String recent = store.put("tran-2", new byte[] { 2 });
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(dir.resolve(expired), FileTime.fromMillis(now - 60_000));
+
+        assertEquals(1, store.purge(now - 30_000));
+
+        assertFalse(Files.exists(dir.resolve("tran-1")));
+        assertArrayEquals(new byte[] { 2 }, store.get(recent));
+    }
+
+    @Test
+    void rejectsReferencesOutsideStore() {
+        FileBlobStore store = new FileBlobStore(dir);
+        store.put("tran-1", new byte[] { 1 });
+
+        assertThrows(IllegalStateException.class, () -> store.get("../outside.blob"));
+        assertThrows(IllegalStateException.class, () -> store.get("tran-1/../../outside.blob"));
+        assertThrows(IllegalStateException.class, () -> store.get("tran-1.blob"));
+        assertThrows(IllegalStateException.class, () -> store.get("tran-1/missing.txt"));
+        assertThrows(IllegalStateException.class, () -> store.get("tran-1/missing.blob"));
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import io.github.prometheuskr.seqism.common.blob.FileBlobStore;
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+class ClaimCheckHelperTest {
+    private static final int THRESHOLD = 256;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void offloadsMessagesFromThreshold() {
+        try (ClaimCheckHelper helper = new ClaimCheckHelper(new FileBlobStore(dir), THRESHOLD, 0, 0)) {
+            assertTrue(helper.isEnabled());
+            assertFalse(helper.shouldOffload(THRESHOLD - 1));
+            assertTrue(helper.shouldOffload(THRESHOLD));
+
+            byte[] bytes = new byte[THRESHOLD];
+            String reference = helper.offload("tran-1", bytes);
+            assertArrayEquals(bytes, helper.resolve(reference));
+            assertEquals(1, helper.getOffloadedCount());
+            assertEquals(THRESHOLD, helper.getOffloadedBytes());
+            assertEquals(1, helper.getResolvedCount());
+
+            helper.complete("tran-1");
+            assertThrows(IllegalStateException.class, () -> helper.resolve(reference));
+        }
+    }
+
+    @Test
+    void offloadsNothingWhenDisabled() {
+        try (ClaimCheckHelper helper = ClaimCheckHelper.disabled()) {
+            assertFalse(helper.isEnabled());
+            assertFalse(helper.shouldOffload(Integer.MAX_VALUE));
+            assertThrows(IllegalStateException.class, () -> helper.offload("tran-1", new byte[1]));
+            assertEquals(0, helper.purge());
+            helper.complete("tran-1");
+        }
+    }
+
+    @Test
+    void purgesBlobsOlderThanTimeToLive() throws IOException {
+        try (ClaimCheckHelper helper = new ClaimCheckHelper(new FileBlobStore(dir), THRESHOLD, 60_000, 3_600_000)) {
+            String expired = helper.offload("tran-1", new byte[] { 1 });
+            String recent = helper.offload("tran-2", new byte[] { 2 });
+            Files.setLastModifiedTime(dir.resolve(expired), FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+
+            assertEquals(1, helper.purge());
+            assertArrayEquals(new byte[] { 2 }, helper.resolve(recent));
+        }
+    }
+
+    @Test
+    void carriesLargeBodiesThroughBlobStore() {
+        try (ClaimCheckHelper helper = new ClaimCheckHelper(new FileBlobStore(dir), THRESHOLD, 0, 0)) {
+            CodecMessageConverter converter = new CodecMessageConverter(
+                    new CodecHelper(SeqismConstant.CODEC_JSON, ""), new PayloadCompressor(false, 0, 1), helper);
+
+            Message small = converter.toMessage(message(SeqismMessageStatus.IN_PROGRESS, "small"),
+                    new MessageProperties());
+            assertNull(small.getMessageProperties().getHeader(SeqismConstant.CLAIM_CHECK_HEADER));
+
+            String large = "x".repeat(THRESHOLD);
+            Message step = converter.toMessage(message(SeqismMessageStatus.IN_PROGRESS, large),
+                    new MessageProperties());
+            Object reference = step.getMessageProperties().getHeader(SeqismConstant.CLAIM_CHECK_HEADER);
+            assertNotNull(reference);
+            assertTrue(step.getBody().length < THRESHOLD);
+            assertEquals(large, assertInstanceOf(SeqismMessage.class, converter.fromMessage(step)).getBody());
+
+            // the blobs of the conversation are removed once a message ending it is decoded
+            Message last = converter.toMessage(message(SeqismMessageStatus.SUCCESS, large), new MessageProperties());
+            assertEquals(large, assertInstanceOf(SeqismMessage.class, converter.fromMessage(last)).getBody());
+            assertThrows(MessageConversionException.class, () -> converter.fromMessage(step));
+        }
+    }
+
+    private static SeqismMessage<Object> message(SeqismMessageStatus status, Object body) {
+        return new SeqismMessage<>(new SeqismMessageHeader("TEST", "tran-1", status, null), body);
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+class CodecMessageConverterTest {
+    private final CodecHelper codecHelper = new CodecHelper(SeqismConstant.CODEC_JSON, "CBOR:cbor");
+    private final PayloadCompressor compressor = new PayloadCompressor(false, 0, 1);
+
+    @Test
+    void decodesSeqismMessageByItsTypeHeaders() {
+        CodecMessageConverter converter = new CodecMessageConverter(codecHelper, compressor);
+
+        for (String bizCode : List.of("JSON", "CBOR")) {
+            Message message = converter.toMessage(message(bizCode, Map.of("name", "seqism")), new MessageProperties());
+            assertEquals(bizCode, message.getMessageProperties().getHeader(SeqismConstant.BIZ_CODE_HEADER));
+
+            SeqismMessage<?> decoded = assertInstanceOf(SeqismMessage.class, converter.fromMessage(message));
+            assertEquals("tran-1", decoded.getHeader().getTranId());
+            assertEquals(Map.of("name", "seqism"), decoded.getBody());
+        }
+    }
+
+    @Test
+    void rejectsTypeHeadersOfUntrustedPackages() {
+        CodecMessageConverter converter = new CodecMessageConverter(codecHelper, compressor);
+        Message message = converter.toMessage(new Point(1, 2), new MessageProperties());
+
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(message));
+        // a type given by the receiver is not restricted
+        assertEquals(new Point(1, 2),
+                converter.fromMessage(message, TypeFactory.defaultInstance().constructType(Point.class)));
+    }
+
+    @Test
+    void trustsTypeHeadersOfConfiguredPackages() {
+        CodecMessageConverter converter = new CodecMessageConverter(codecHelper, compressor,
+                ClaimCheckHelper.disabled(), List.of(" java.awt ", ""));
+        Message message = converter.toMessage(new Point(1, 2), new MessageProperties());
+
+        assertEquals(new Point(1, 2), converter.fromMessage(message));
+    }
+
+    @Test
+    void leavesMessagesReceivedByUndecodedConverterAsTheyAre() {
+        CodecMessageConverter converter = new CodecMessageConverter(codecHelper, compressor);
+        Message message = converter.undecoded().toMessage(message("CBOR", "body"), new MessageProperties());
+
+        assertEquals(CodecHelper.CBOR_CONTENT_TYPE, message.getMessageProperties().getContentType());
+        assertSame(message, converter.undecoded().fromMessage(message));
+    }
+
+    private static SeqismMessage<Object> message(String bizCode, Object body) {
+        return new SeqismMessage<>(new SeqismMessageHeader(bizCode, "tran-1", SeqismMessageStatus.IN_PROGRESS, null),
+                body);
+    }
+}
@@ -0,0 +1,175 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+class DeltaHelperTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final DeltaHelper sender = helper(100);
+    private final DeltaHelper receiver = helper(100);
+
+    @Test
+    void sendsChangedFieldsOnlyAfterFirstStep() {
+        Map<String, Object> first = Map.of("name", "seqism", "items", List.of(1, 2), "large", "x".repeat(1000));
+        DeltaHelper.Encoded step1 = sender.encode(step("tran-1", first, 0L));
+        assertEquals(Boolean.FALSE, step1.message().getHeader().getDelta());
+        assertEquals(0L, step1.message().getHeader().getSeq());
+        assertEquals(first, receiver.decode(step1.message(), null).getBody());
+
+        Map<String, Object> second = Map.of("name", "seqism", "items", List.of(1, 2, 3), "large", "x".repeat(1000));
+        DeltaHelper.Encoded step2 = sender.encode(step("tran-1", second, null));
+        assertEquals(Boolean.TRUE, step2.message().getHeader().getDelta());
+        assertEquals(1L, step2.message().getHeader().getSeq());
+        JsonNode patch = (JsonNode) step2.message().getBody();
+        assertEquals(mapper.valueToTree(List.of(Map.of("op", "add", "path", "/items/-", "value", 3))), patch);
+
+        SeqismMessage<Object> decoded = receiver.decode(step2.message(), null);
+        assertEquals(Boolean.FALSE, decoded.getHeader().getDelta());
+        assertEquals(second, receiver.toBody(decoded.getBody(), Map.class));
+        assertEquals(1L, receiver.get("tran-1").seq());
+    }
+
+    @Test
+    void roundTripsAddRemoveAndReplaceOperations() {
+        JsonNode source = tree("{\"a\":1,\"b\":{\"c\":[1,2,3],\"d\":\"x\"},\"e/f\":true,\"g~h\":null}");
+        JsonNode target = tree("{\"a\":2,\"b\":{\"c\":[1,5],\"i\":[]},\"e/f\":true,\"g~h\":{\"j\":1}}");
+
+        JsonNode patch = sender.diff(source, target);
+        assertNotNull(patch);
+        assertEquals(target, sender.apply(source, patch));
+        assertEquals(tree("{\"a\":1,\"b\":{\"c\":[1,2,3],\"d\":\"x\"},\"e/f\":true,\"g~h\":null}"), source);
+    }
+
+    @Test
+    void sendsFullBodyReplacingWholeBody() {
+        sender.encode(step("tran-1", Map.of("a", 1), 0L));
+        DeltaHelper.Encoded encoded = sender.encode(step("tran-1", List.of(1), null));
+
+        assertEquals(Boolean.FALSE, encoded.message().getHeader().getDelta());
+        assertEquals(1L, encoded.message().getHeader().getSeq());
+        assertEquals(List.of(1), encoded.message().getBody());
+    }
+
+    @Test
+    void sendsUnnumberedStepAsIs() {
+        SeqismMessage<?> message = step("tran-1", Map.of("a", 1), null);
+        DeltaHelper.Encoded encoded = sender.encode(message);
+
+        assertSame(message, encoded.message());
+        assertNull(encoded.body());
+        assertNull(sender.get("tran-1"));
+    }
+
+    @Test
+    void rejectsDeltaWhoseBaseIsNotKnown() {
+        sender.encode(step("tran-1", Map.of("a", 1), 0L));
+        DeltaHelper.Encoded step2 = sender.encode(step("tran-1", Map.of("a", 2), null));
+
+        SeqismException e = assertThrows(SeqismException.class, () -> receiver.decode(step2.message(), null));
+        assertEquals(ErrorInfo.ERROR_0002_0008.getErrorCode(), e.getErrorInfo().getErrorCode());
+        SeqismMessage<Object> failure = step2.message().toFailure(e.getErrorInfo());
+        assertTrue(DeltaHelper.isMissingBase(failure, ErrorInfo.ERROR_0002_0008));
+        assertFalse(DeltaHelper.isMissingBase(failure, ErrorInfo.ERROR_0002_0002));
+    }
+
+    @Test
+    void rejectsDeltaWithoutEndingConversation() {
+        Map<String, Object> second = Map.of("a", 2);
+        sender.encode(step("tran-1", Map.of("a", 1), 0L));
+        DeltaHelper.Encoded step2 = sender.encode(step("tran-1", second, null));
+
+        SeqismMessage<Object> rejection = receiver.toMissingBase(step2.message());
+        assertEquals(SeqismMessageStatus.IN_PROGRESS, rejection.getHeader().getStatus());
+        assertTrue(DeltaHelper.isMissingBase(rejection, ErrorInfo.ERROR_0002_0008));
+        assertNull(rejection.getBody());
+        assertSame(rejection, receiver.encode(rejection).message());
+
+        SeqismMessage<Object> resent = step("tran-1", second, step2.body().seq());
+        assertEquals(second, receiver.decode(resent, null).getBody());
+        assertEquals(step2.body().seq(), receiver.get("tran-1").seq());
+    }
+
+    @Test
+    void patchesReplyAgainstBodySent() {
+        DeltaHelper.Encoded sent = sender.encode(step("tran-1", Map.of("a", 1), 0L));
+        receiver.decode(sent.message(), null);
+        DeltaHelper.Encoded reply = receiver.encode(step("tran-1", Map.of("a", 1, "b", 2), null));
+
+        assertEquals(Boolean.TRUE, reply.message().getHeader().getDelta());
+        assertEquals(Map.of("a", 1, "b", 2),
+                sender.toBody(sender.decode(reply.message(), sent.body()).getBody(), Map.class));
+    }
+
+    @Test
+    void forgetsConversationOnceItEnds() {
+        sender.encode(step("tran-1", Map.of("a", 1), 0L));
+        assertNotNull(sender.get("tran-1"));
+
+        sender.encode(message("tran-1", SeqismMessageStatus.SUCCESS, Map.of("a", 2), null));
+        assertNull(sender.get("tran-1"));
+    }
+
+    @Test
+    void boundsConversationsKept() {
+        DeltaHelper helper = helper(1);
+        helper.encode(step("tran-1", Map.of("a", 1), 0L));
+        helper.encode(step("tran-2", Map.of("a", 1), 0L));
+
+        assertNotNull(helper.get("tran-1"));
+        assertNull(helper.get("tran-2"));
+    }
+
+    @Test
+    void rejectsInvalidPatches() {
+        JsonNode source = tree("{\"a\":[1]}");
+
+        assertThrows(IllegalArgumentException.class, () -> sender.apply(source, tree("{}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> sender.apply(source, tree("[{\"op\":\"replace\",\"path\":\"/b\",\"value\":1}]")));
+        assertThrows(IllegalArgumentException.class,
+                () -> sender.apply(source, tree("[{\"op\":\"remove\",\"path\":\"/a/1\"}]")));
+        assertThrows(IllegalArgumentException.class,
+                () -> sender.apply(source, tree("[{\"op\":\"move\",\"path\":\"/a\",\"value\":1}]")));
+        assertThrows(IllegalArgumentException.class,
+                () -> sender.apply(source, tree("[{\"op\":\"add\",\"path\":\"a\",\"value\":1}]")));
+    }
+
+    private DeltaHelper helper(int maxConversations) {
+        return new DeltaHelper(true, 60_000, maxConversations, mapper, ErrorInfo.ERROR_0002_0008);
+    }
+
+    private JsonNode tree(String json) {
+        try {
+            return mapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static SeqismMessage<Object> step(String tranId, Object body, Long seq) {
+        return message(tranId, SeqismMessageStatus.IN_PROGRESS, body, seq);
+    }
+
+    private static SeqismMessage<Object> message(String tranId, SeqismMessageStatus status, Object body, Long seq) {
+        return new SeqismMessage<>(new SeqismMessageHeader("TEST", tranId, status, null), body).withSeq(seq, null);
+    }
+}
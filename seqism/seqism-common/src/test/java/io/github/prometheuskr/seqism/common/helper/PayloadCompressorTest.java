@@ -0,0 +1,119 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+class PayloadCompressorTest {
+    private static final int THRESHOLD = 1024;
+
+    @Test
+    void compressesMessagesFromThreshold() {
+        PayloadCompressor compressor = new PayloadCompressor(true, THRESHOLD, Deflater.BEST_SPEED);
+
+        assertFalse(compressor.shouldCompress(THRESHOLD - 1));
+        assertTrue(compressor.shouldCompress(THRESHOLD));
+        assertTrue(compressor.shouldCompress(THRESHOLD + 1));
+        assertFalse(new PayloadCompressor(false, THRESHOLD, Deflater.BEST_SPEED).shouldCompress(THRESHOLD));
+    }
+
+    @Test
+    void roundTripsMessagesAroundThreshold() {
+        PayloadCompressor compressor = new PayloadCompressor(true, THRESHOLD, Deflater.BEST_SPEED);
+
+        for (int length : new int[] { THRESHOLD - 1, THRESHOLD, THRESHOLD + 1 }) {
+            byte[] bytes = json(length);
+            byte[] compressed = compressor.compress(bytes);
+
+            assertNotNull(compressed);
+            assertTrue(compressed.length < bytes.length);
+            assertArrayEquals(bytes, compressor.decompress(compressed));
+        }
+        assertEquals(3, compressor.getCompressedCount());
+        assertEquals(3, compressor.getDecompressedCount());
+        assertTrue(compressor.getCompressionRatio() > 1);
+    }
+
+    @Test
+    void roundTripsMessagesLargerThanWorkingBuffer() {
+        PayloadCompressor compressor = new PayloadCompressor(true, THRESHOLD, Deflater.BEST_COMPRESSION);
+        byte[] bytes = json(PayloadCompressor.BUFFER_SIZE * 8 + 1);
+
+        // twice, with the pooled deflater and inflater reset in between
+        assertArrayEquals(bytes, compressor.decompress(compressor.compress(bytes)));
+        assertArrayEquals(bytes, compressor.decompress(compressor.compress(bytes)));
+    }
+
+    @Test
+    void leavesIncompressibleMessagesUncompressed() {
+        PayloadCompressor compressor = new PayloadCompressor(true, THRESHOLD, Deflater.BEST_SPEED);
+        byte[] bytes = new byte[THRESHOLD];
+        new Random(42).nextBytes(bytes);
+
+        assertNull(compressor.compress(bytes));
+        assertEquals(1, compressor.getIncompressibleCount());
+        assertEquals(0, compressor.getCompressedCount());
+    }
+
+    @Test
+    void rejectsInvalidCompressedMessages() {
+        PayloadCompressor compressor = new PayloadCompressor(true, THRESHOLD, Deflater.BEST_SPEED);
+        byte[] compressed = compressor.compress(json(THRESHOLD));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> compressor.decompress(Arrays.copyOf(compressed, compressed.length / 2)));
+        assertThrows(IllegalArgumentException.class, () -> compressor.decompress(json(16)));
+        assertThrows(IllegalArgumentException.class, () -> new PayloadCompressor(true, THRESHOLD, 10));
+    }
+
+    @Test
+    void rejectsMessagesInflatingBeyondMaxSize() {
+        PayloadCompressor compressor = new PayloadCompressor(true, THRESHOLD, Deflater.BEST_COMPRESSION, 4 * THRESHOLD);
+        // a deflate bomb in miniature: a few hundred bytes inflating to far beyond the limit
+        byte[] bomb = compressor.compress(new byte[PayloadCompressor.BUFFER_SIZE * 16]);
+        assertTrue(bomb.length < THRESHOLD);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> compressor.decompress(bomb));
+        assertTrue(e.getMessage().contains(String.valueOf(4 * THRESHOLD)));
+        assertEquals(0, compressor.getDecompressedCount());
+
+        // the pooled inflater is reset and still decompresses the messages within the limit
+        byte[] bytes = json(4 * THRESHOLD);
+        assertArrayEquals(bytes, compressor.decompress(compressor.compress(bytes)));
+        assertThrows(IllegalArgumentException.class, () -> new PayloadCompressor(true, THRESHOLD, 1, 0));
+    }
+
+    @Test
+    void marksContentEncodingOfCompressedMessages() {
+        assertEquals("deflate", PayloadCompressor.toCompressedEncoding(null));
+        assertEquals("deflate:utf-8", PayloadCompressor.toCompressedEncoding("utf-8"));
+        assertTrue(PayloadCompressor.isCompressed("deflate:utf-8"));
+        assertFalse(PayloadCompressor.isCompressed("deflated"));
+        assertFalse(PayloadCompressor.isCompressed(null));
+        assertNull(PayloadCompressor.toDecompressedEncoding("deflate"));
+        assertEquals("utf-8", PayloadCompressor.toDecompressedEncoding("deflate:utf-8"));
+    }
+
+    /**
+     * Returns a repetitive JSON document of the given size in bytes, as the encoded messages usually are.
+     */
+    private static byte[] json(int length) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() < length; i++) {
+            json.append("{\"id\":").append(i % 10).append(",\"name\":\"seqism\"},");
+        }
+        json.setLength(length - 1);
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
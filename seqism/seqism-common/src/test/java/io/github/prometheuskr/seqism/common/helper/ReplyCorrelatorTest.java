@@ -0,0 +1,120 @@
+package io.github.prometheuskr.seqism.common.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class ReplyCorrelatorTest {
+    private final ReplyCorrelator<String> correlator = new ReplyCorrelator<>();
+
+    @Test
+    void handsReplyToWaitingCaller() throws Exception {
+        CompletableFuture<String> pending = correlator.register("tran-1");
+        assertTrue(correlator.isPending("tran-1"));
+
+        ExecutorService consumer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> completed = consumer.submit(() -> correlator.complete("tran-1", "reply"));
+            assertEquals("reply", correlator.await("tran-1", pending, 5_000));
+            assertTrue(completed.get(5, TimeUnit.SECONDS));
+        } finally {
+            consumer.shutdownNow();
+        }
+        assertEquals(0, correlator.size());
+    }
+
+    @Test
+    void rejectsRepliesWithoutWaitingCaller() {
+        assertFalse(correlator.complete("unknown", "reply"));
+        assertFalse(correlator.complete(null, "reply"));
+        assertFalse(correlator.isPending(null));
+    }
+
+    @Test
+    void rejectsLateReplyAfterTimeout() {
+        CompletableFuture<String> pending = correlator.register("tran-1");
+
+        assertNull(correlator.await("tran-1", pending, 10));
+        assertFalse(correlator.isPending("tran-1"));
+        assertFalse(correlator.complete("tran-1", "late"));
+    }
+
+    @Test
+    void keepsRegistrationOfNewerCallerWhenOlderTimesOut() {
+        CompletableFuture<String> older = correlator.register("tran-1");
+        CompletableFuture<String> newer = correlator.register("tran-1");
+
+        assertNull(correlator.await("tran-1", older, 1));
+        assertTrue(correlator.isPending("tran-1"));
+        assertTrue(correlator.complete("tran-1", "reply"));
+        assertEquals("reply", newer.join());
+    }
+
+    @Test
+    void raisesFailureInWaitingCaller() {
+        CompletableFuture<String> pending = correlator.register("tran-1");
+        IllegalArgumentException cause = new IllegalArgumentException("broken");
+
+        assertTrue(correlator.fail("tran-1", cause));
+        assertSame(cause, assertThrows(IllegalArgumentException.class,
+                () -> correlator.await("tran-1", pending, 5_000)));
+        assertFalse(correlator.fail("tran-1", cause));
+    }
+
+    @Test
+    void cancelsRegistration() {
+        correlator.register("tran-1");
+        correlator.cancel("tran-1");
+
+        assertFalse(correlator.isPending("tran-1"));
+        assertFalse(correlator.complete("tran-1", "reply"));
+    }
+
+    @Test
+    void completesAsyncWaitOffTheConsumerThread() throws Exception {
+        CompletableFuture<String> pending = correlator.register("tran-1");
+        AtomicReference<Thread> completedOn = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        correlator.awaitAsync("tran-1", pending, 5_000).thenAccept(reply -> {
+            completedOn.set(Thread.currentThread());
+            done.countDown();
+        });
+
+        assertTrue(correlator.complete("tran-1", "reply"));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNotEquals(Thread.currentThread(), completedOn.get());
+    }
+
+    @Test
+    void completesAsyncWaitWithNullOnTimeout() throws Exception {
+        CompletableFuture<String> pending = correlator.register("tran-1");
+
+        assertNull(correlator.awaitAsync("tran-1", pending, 10).get(5, TimeUnit.SECONDS));
+        assertFalse(correlator.complete("tran-1", "late"));
+    }
+
+    @Test
+    void completesAsyncWaitExceptionallyOnFailure() {
+        CompletableFuture<String> pending = correlator.register("tran-1");
+        CompletableFuture<String> reply = correlator.awaitAsync("tran-1", pending, 5_000);
+
+        correlator.fail("tran-1", new IllegalStateException("broken"));
+        CompletionException e = assertThrows(CompletionException.class, reply::join);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+
+class KafkaInboxTest {
+    static final String TOPIC = "test-inbox";
+
+    @Test
+    void positionsAssignedPartitionsAtTheirEndBeforeAdvertisingThem() {
+        KafkaInbox inbox = new KafkaInbox(new DefaultKafkaConsumerFactory<>(Map.of()), TOPIC, "test-group",
+                record -> {});
+        MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        List<TopicPartition> assignment = List.of(new TopicPartition(TOPIC, 3), new TopicPartition(TOPIC, 1));
+        consumer.assign(assignment);
+        consumer.updateEndOffsets(Map.of(assignment.get(0), 42L, assignment.get(1), 7L));
+
+        assertNull(inbox.partition());
+        inbox.assign(consumer, assignment);
+
+        // the reset to the end is resolved, not left to the next poll
+        assertEquals(42L, consumer.position(assignment.get(0)));
+        assertEquals(7L, consumer.position(assignment.get(1)));
+        assertEquals(1, inbox.partition());
+    }
+
+    @Test
+    void readsPartitionFromHeader() {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(TOPIC, 0, 0, "tran-1", new byte[0]);
+        assertNull(KafkaInbox.partitionOf(record, "partition"));
+
+        record.headers().add("partition", "2".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, KafkaInbox.partitionOf(record, "partition"));
+    }
+
+    @Test
+    void refusesTextThatIsNotPartition() {
+        assertEquals(0, KafkaInbox.parsePartition("0"));
+        assertNull(KafkaInbox.parsePartition(null));
+        assertNull(KafkaInbox.parsePartition("-1"));
+        assertNull(KafkaInbox.parsePartition("seqism-inbox-queue.processor-1"));
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.prometheuskr.seqism.common.transport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedRingTest {
+    /**
+     * Offset of the next position to enqueue in the header of the ring file.
+     */
+    private static final int ENQUEUE_OFFSET = 64;
+    /**
+     * Offset of the next position to dequeue in the header of the ring file.
+     */
+    private static final int DEQUEUE_OFFSET = 128;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void offersAndPollsInOrder() throws IOException {
+        try (MappedRing ring = MappedRing.create(dir.resolve("fifo.ring"), 4, 128)) {
+            assertNull(ring.poll());
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(bytes("frame-" + i)));
+            }
+            assertFalse(ring.offer(bytes("overflow")));
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals("frame-" + i, string(ring.poll()));
+            }
+            assertNull(ring.poll());
+        }
+    }
+
+    @Test
+    void reopensExistingRingWithItsFrames() throws IOException {
+        Path file = dir.resolve("shared.ring");
+        try (MappedRing producer = MappedRing.create(file, 8, 256)) {
+            producer.offer(bytes("kept"));
+        }
+
+        try (MappedRing consumer = MappedRing.open(file)) {
+            assertEquals(256 - 16, consumer.maxFrameSize());
+            assertEquals("kept", string(consumer.poll()));
+        }
+        assertThrows(NoSuchFileException.class, () -> MappedRing.open(dir.resolve("missing.ring")));
+    }
+
+    @Test
+    void rejectsFramesLargerThanSlots() throws IOException {
+        try (MappedRing ring = MappedRing.create(dir.resolve("small.ring"), 2, 64)) {
+            assertTrue(ring.offer(new byte[ring.maxFrameSize()]));
+            assertThrows(IllegalArgumentException.class, () -> ring.offer(new byte[ring.maxFrameSize() + 1]));
+        }
+    }
+
+    @Test
+    void skipsSlotOfProducerThatDiedBeforePublishing() throws Exception {
+        Path file = dir.resolve("producer.ring");
+        try (MappedRing ring = MappedRing.create(file, 4, 128)) {
+            ring.setStallTimeout(50);
+            // a producer claims position 0 and dies before publishing it
+            header(file).putLong(ENQUEUE_OFFSET, 1);
+            assertTrue(ring.offer(bytes("after")));
+
+            assertNull(ring.poll());
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertEquals("after", string(ring.poll()));
+
+            // the skipped slot is free again on the next lap
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(bytes("lap-" + i)));
+            }
+            for (int i = 0; i < 4; i++) {
+                assertEquals("lap-" + i, string(ring.poll()));
+            }
+        }
+    }
+
+    @Test
+    void reclaimsSlotOfConsumerThatDiedBeforeReleasing() throws Exception {
+        Path file = dir.resolve("consumer.ring");
+        try (MappedRing ring = MappedRing.create(file, 2, 128)) {
+            ring.setStallTimeout(50);
+            assertTrue(ring.offer(bytes("lost")));
+            assertTrue(ring.offer(bytes("second")));
+            // a consumer claims position 0 and dies before releasing its slot
+            header(file).putLong(DEQUEUE_OFFSET, 1);
+
+            assertFalse(ring.offer(bytes("third")));
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertTrue(ring.offer(bytes("third")));
+
+            assertEquals("second", string(ring.poll()));
+            assertEquals("third", string(ring.poll()));
+            assertNull(ring.poll());
+        }
+    }
+
+    @Test
+    void doesNotSkipSlotsWithinStallTimeout() throws Exception {
+        Path file = dir.resolve("slow.ring");
+        try (MappedRing ring = MappedRing.create(file, 4, 128)) {
+            header(file).putLong(ENQUEUE_OFFSET, 1);
+
+            for (int i = 0; i < 3; i++) {
+                assertNull(ring.poll());
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    void deliversEveryFrameOnceToConcurrentConsumers() throws Exception {
+        int producers = 4;
+        int frames = 2_000;
+        try (MappedRing ring = MappedRing.create(dir.resolve("mpmc.ring"), 64, 64)) {
+            List<String> received = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(producers * frames);
+            ExecutorService pool = Executors.newFixedThreadPool(producers * 2);
+            try {
+                for (int p = 0; p < producers; p++) {
+                    int producer = p;
+                    pool.execute(() -> {
+                        for (int i = 0; i < frames; i++) {
+                            byte[] frame = bytes(producer + ":" + i);
+                            while (!ring.offer(frame)) {
+                                Thread.onSpinWait();
+                            }
+                        }
+                    });
+                    pool.execute(() -> {
+                        while (done.getCount() > 0) {
+                            byte[] frame = ring.poll();
+                            if (frame != null) {
+                                received.add(string(frame));
+                                done.countDown();
+                            }
+                        }
+                    });
+                }
+                assertTrue(done.await(30, TimeUnit.SECONDS));
+            } finally {
+                pool.shutdownNow();
+            }
+
+            assertEquals(producers * frames, received.size());
+            assertEquals(producers * frames, received.stream().distinct().count());
+        }
+    }
+
+    @Test
+    void copiesFrameContents() throws IOException {
+        try (MappedRing ring = MappedRing.create(dir.resolve("copy.ring"), 2, 64)) {
+            byte[] frame = { 1, 2, 3 };
+            ring.offer(frame);
+            frame[0] = 9;
+            assertArrayEquals(new byte[] { 1, 2, 3 }, ring.poll());
+        }
+    }
+
+    /**
+     * Maps the header of a ring file, to stand for a process dying in the middle of an operation.
+     */
+    private static MappedByteBuffer header(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, 192);
+            header.order(ByteOrder.nativeOrder());
+            return header;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] frame) {
+        return frame != null ? new String(frame, StandardCharsets.UTF_8) : null;
+    }
+}
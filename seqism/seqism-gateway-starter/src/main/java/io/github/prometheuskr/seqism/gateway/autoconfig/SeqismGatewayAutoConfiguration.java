@@ -3,8 +3,15 @@ package io.github.prometheuskr.seqism.gateway.autoconfig;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
+import io.github.prometheuskr.seqism.gateway.config.GatewayAuditConfig;
+import io.github.prometheuskr.seqism.gateway.config.KafkaConfig;
+import io.github.prometheuskr.seqism.gateway.config.MetricsConfig;
 import io.github.prometheuskr.seqism.gateway.config.RabbitConfig;
+import io.github.prometheuskr.seqism.gateway.config.TransportConfig;
+import io.github.prometheuskr.seqism.gateway.endpoint.GatewayReplyListener;
+import io.github.prometheuskr.seqism.gateway.helper.ConversationQueuePool;
 import io.github.prometheuskr.seqism.gateway.helper.GateWayQueueHelper;
+import io.github.prometheuskr.seqism.gateway.helper.QueueReaper;
 import io.github.prometheuskr.seqism.gateway.service.GatewayService;
 
 /**
@@ -15,6 +22,13 @@ import io.github.prometheuskr.seqism.gateway.service.GatewayService;
  * <li>{@link RabbitConfig} - Configuration for RabbitMQ integration.</li>
  * <li>{@link GateWayQueueHelper} - Helper utilities for gateway queue operations.</li>
  * <li>{@link GatewayService} - Core service for gateway functionality.</li>
+ * <li>{@link GatewayReplyListener} - Consumer of the shared reply queue of this gateway instance.</li>
+ * <li>{@link ConversationQueuePool} - Pool of pre-declared queue pairs leased to conversations.</li>
+ * <li>{@link QueueReaper} - Background deletion of the queues of ended conversations.</li>
+ * <li>{@link TransportConfig} - Selection of the transport used by the gateway.</li>
+ * <li>{@link KafkaConfig} - Kafka transport of the gateway.</li>
+ * <li>{@link GatewayAuditConfig} - Opt-in audit log of the exchanged steps.</li>
+ * <li>{@link MetricsConfig} - Micrometer meters of the gateway, when Micrometer is present.</li>
  * </ul>
  * <p>
  * This class is automatically detected and applied by Spring Boot's auto-configuration mechanism.
@@ -23,7 +37,14 @@ import io.github.prometheuskr.seqism.gateway.service.GatewayService;
 @Import({
         RabbitConfig.class,
         GateWayQueueHelper.class,
-        GatewayService.class
+        GatewayService.class,
+        GatewayReplyListener.class,
+        ConversationQueuePool.class,
+        QueueReaper.class,
+        TransportConfig.class,
+        KafkaConfig.class,
+        GatewayAuditConfig.class,
+        MetricsConfig.class
 })
 public class SeqismGatewayAutoConfiguration {
     /**
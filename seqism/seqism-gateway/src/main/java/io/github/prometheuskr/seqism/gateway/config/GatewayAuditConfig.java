@@ -0,0 +1,38 @@
+package io.github.prometheuskr.seqism.gateway.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.config.AuditConfig;
+
+/**
+ * Configuration class creating the {@link AuditLog} recording the steps exchanged by the gateway, see
+ * {@link AuditConfig} for its properties.
+ * <p>
+ * The segments of this instance are named after {@code gateway-<instance id>}.
+ */
+@Configuration
+public class GatewayAuditConfig extends AuditConfig {
+    /**
+     * The ID of this gateway instance.
+     */
+    private final String instanceId;
+
+    /**
+     * Constructs a new {@code GatewayAuditConfig}.
+     *
+     * @param instanceId
+     *            the ID of this gateway instance, resolved from the property {@code seqism.gateway.instance.id}
+     *            or defaults to a random UUID
+     */
+    public GatewayAuditConfig(
+            @Value("${seqism.gateway.instance.id:#{T(java.util.UUID).randomUUID().toString()}}") String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    @Override
+    protected String getSegmentName() {
+        return "gateway-" + instanceId;
+    }
+}
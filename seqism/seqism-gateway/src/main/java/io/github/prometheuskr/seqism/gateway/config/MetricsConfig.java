@@ -0,0 +1,103 @@
+package io.github.prometheuskr.seqism.gateway.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.github.prometheuskr.seqism.gateway.helper.ConversationQueuePool;
+import io.github.prometheuskr.seqism.gateway.helper.QueueReaper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Configuration class binding the counters of the gateway to Micrometer.
+ * <p>
+ * The binders are only created when Micrometer is on the classpath, and the meters are only registered when the
+ * application has a {@code MeterRegistry}, as with Spring Boot Actuator. Otherwise the counters remain available
+ * through the getters of the components.
+ * <p>
+ * The meters are named after the properties configuring the component they observe:
+ * <ul>
+ * <li><code>seqism.queue.pool.*</code>: the {@link ConversationQueuePool}</li>
+ * <li><code>seqism.queue.reaper.*</code>: the {@link QueueReaper}</li>
+ * </ul>
+ */
+@Configuration
+@ConditionalOnClass(MeterBinder.class)
+public class MetricsConfig {
+    /**
+     * Default constructor for the {@code MetricsConfig} class.
+     * Initializes a new instance of the configuration without any parameters.
+     */
+    public MetricsConfig() {}
+
+    /**
+     * Binds the size and the lease counters of the {@link ConversationQueuePool}.
+     *
+     * @param pool
+     *            the pool of conversation queues
+     * @return the binder of the pool meters
+     */
+    @Bean
+    public MeterBinder conversationQueuePoolMetrics(ConversationQueuePool pool) {
+        return registry -> {
+            Gauge.builder("seqism.queue.pool.idle", pool, ConversationQueuePool::getIdleCount)
+                    .description("Idle pooled queue slots")
+                    .register(registry);
+            Gauge.builder("seqism.queue.pool.leased", pool, ConversationQueuePool::getLeasedCount)
+                    .description("Leased pooled queue slots")
+                    .register(registry);
+            Gauge.builder("seqism.queue.pool.quarantined", pool, ConversationQueuePool::getQuarantinedCount)
+                    .description("Pooled queue slots set aside after a timeout")
+                    .register(registry);
+            Gauge.builder("seqism.queue.pool.size", pool, ConversationQueuePool::getSize)
+                    .description("Pooled queue slots, idle, leased and quarantined")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.pool.hits", pool, ConversationQueuePool::getHitCount)
+                    .description("Leases served by an idle slot")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.pool.misses", pool, ConversationQueuePool::getMissCount)
+                    .description("Leases that declared a new slot")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.pool.waits", pool, ConversationQueuePool::getWaitCount)
+                    .description("Leases that waited for a slot to be released")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.pool.wait.time", pool, ConversationQueuePool::getWaitTimeMillis)
+                    .description("Time leases spent waiting for a slot")
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.pool.exhausted", pool, ConversationQueuePool::getExhaustedCount)
+                    .description("Leases that fell back to dedicated queues")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.pool.refreshes", pool, ConversationQueuePool::getRefreshCount)
+                    .description("Idle slots re-declared when leased")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.pool.quarantines", pool, ConversationQueuePool::getQuarantineCount)
+                    .description("Slots quarantined after their conversation timed out")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Binds the backlog and the deletion counters of the {@link QueueReaper}.
+     *
+     * @param reaper
+     *            the reaper of the conversation queues
+     * @return the binder of the reaper meters
+     */
+    @Bean
+    public MeterBinder queueReaperMetrics(QueueReaper reaper) {
+        return registry -> {
+            Gauge.builder("seqism.queue.reaper.backlog", reaper, QueueReaper::getBacklog)
+                    .description("Queues waiting to be deleted")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.reaper.deleted", reaper, QueueReaper::getDeletedCount)
+                    .description("Queues deleted")
+                    .register(registry);
+            FunctionCounter.builder("seqism.queue.reaper.abandoned", reaper, QueueReaper::getAbandonedCount)
+                    .description("Queues given up and left to expire")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,202 @@
+package io.github.prometheuskr.seqism.gateway.config;
+
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.DeltaHelper;
+import io.github.prometheuskr.seqism.common.helper.PriorityHelper;
+import io.github.prometheuskr.seqism.common.transport.FrameCodec;
+import io.github.prometheuskr.seqism.common.transport.GatewayTransport;
+import io.github.prometheuskr.seqism.common.transport.InJvmTransport;
+import io.github.prometheuskr.seqism.common.transport.JsonFrameCodec;
+import io.github.prometheuskr.seqism.common.transport.MappedFileTransport;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.gateway.helper.KafkaGatewayTransport;
+import io.github.prometheuskr.seqism.gateway.helper.GateWayQueueHelper;
+
+/**
+ * Configuration class selecting the {@link GatewayTransport} used by the gateway.
+ * <p>
+ * The transport is selected by the property {@code seqism.transport.type}:
+ * <ul>
+ * <li>{@link SeqismConstant#TRANSPORT_RABBITMQ} (default) - {@link GateWayQueueHelper}, over RabbitMQ.</li>
+ * <li>{@link SeqismConstant#TRANSPORT_IN_JVM} - {@link InJvmTransport#shared()}, for processors running in the
+ * same process.</li>
+ * <li>{@link SeqismConstant#TRANSPORT_MMAP} - {@link MappedFileTransport}, for processors running as separate
+ * processes on the same host.</li>
+ * <li>{@link SeqismConstant#TRANSPORT_KAFKA} - {@link KafkaGatewayTransport}, created by {@link KafkaConfig}.</li>
+ * </ul>
+ * The memory-mapped file transport is configured by the following properties:
+ * <ul>
+ * <li><code>seqism.transport.mmap.dir</code> (defaults to {@code seqism} under {@code java.io.tmpdir})</li>
+ * <li><code>seqism.transport.mmap.capacity</code> (defaults to {@link SeqismConstant#MMAP_RING_CAPACITY})</li>
+ * <li><code>seqism.transport.mmap.slot.size</code> (defaults to {@link SeqismConstant#MMAP_SLOT_SIZE})</li>
+ * </ul>
+ * It also creates the {@link PriorityHelper} resolving the priority of the conversations, which the gateway stamps
+ * on the first step of each conversation whatever the transport, and the {@link DeltaHelper} delta encoding the
+ * steps of the conversations.
+ */
+@Configuration
+public class TransportConfig {
+    /**
+     * Default constructor for the {@code TransportConfig} class.
+     * Initializes a new instance of the configuration without any parameters.
+     */
+    public TransportConfig() {}
+
+    /**
+     * Creates the {@link GatewayTransport} selected by {@code seqism.transport.type}.
+     * <p>
+     * The bean is primary, so that it is the one injected wherever a {@link GatewayTransport} is required. The
+     * memory-mapped file transport is closed with the application context, deleting the ring of this instance.
+     *
+     * @param transportType
+     *            the transport type, resolved from the property {@code seqism.transport.type} or defaults to
+     *            {@link SeqismConstant#TRANSPORT_RABBITMQ}
+     * @param messageReceiveTimeout
+     *            the timeout (in milliseconds) for receiving replies, resolved from the property
+     *            {@code seqism.queue.receive.timeout} or defaults to {@link SeqismConstant#RECEIVE_TIME_OUT}
+     * @param queueDeleteTimeout
+     *            the time (in milliseconds) the route of a conversation is remembered, resolved from the property
+     *            {@code seqism.queue.delete.timeout} or defaults to {@link SeqismConstant#QUEUE_DELETE_TIME}, as for
+     *            the RabbitMQ transport
+     * @param instanceId
+     *            the ID of this gateway instance, resolved from the property {@code seqism.gateway.instance.id}
+     *            or defaults to a random UUID
+     * @param mmapDir
+     *            the directory of the rings, resolved from the property {@code seqism.transport.mmap.dir}
+     * @param mmapCapacity
+     *            the number of slots of the rings, resolved from the property {@code seqism.transport.mmap.capacity}
+     * @param mmapSlotSize
+     *            the size in bytes of the slots of the rings, resolved from the property
+     *            {@code seqism.transport.mmap.slot.size}
+     * @param queueHelper
+     *            the RabbitMQ transport
+     * @param kafkaTransport
+     *            provides the Kafka transport, created only when selected and only available when spring-kafka is on
+     *            the classpath
+     * @param objectMapper
+     *            the mapper encoding the frames of the memory-mapped file transport
+     * @return the selected {@link GatewayTransport}
+     * @throws IllegalStateException
+     *             if the transport type is unknown, or is Kafka and spring-kafka is not on the classpath
+     */
+    @Bean
+    @Primary
+    public GatewayTransport gatewayTransport(
+            @Value("${seqism.transport.type:" + SeqismConstant.TRANSPORT_RABBITMQ + "}") String transportType,
+            @Value("${seqism.queue.receive.timeout:" + SeqismConstant.RECEIVE_TIME_OUT
+                    + "}") long messageReceiveTimeout,
+            @Value("${seqism.queue.delete.timeout:" + SeqismConstant.QUEUE_DELETE_TIME + "}") long queueDeleteTimeout,
+            @Value("${seqism.gateway.instance.id:#{T(java.util.UUID).randomUUID().toString()}}") String instanceId,
+            @Value("${seqism.transport.mmap.dir:${java.io.tmpdir}/seqism}") String mmapDir,
+            @Value("${seqism.transport.mmap.capacity:" + SeqismConstant.MMAP_RING_CAPACITY + "}") int mmapCapacity,
+            @Value("${seqism.transport.mmap.slot.size:" + SeqismConstant.MMAP_SLOT_SIZE + "}") int mmapSlotSize,
+            GateWayQueueHelper queueHelper, @Qualifier("kafkaGatewayTransport") ObjectProvider<GatewayTransport> kafkaTransport,
+            ObjectMapper objectMapper) {
+        switch (transportType) {
+            case SeqismConstant.TRANSPORT_RABBITMQ:
+                return queueHelper;
+            case SeqismConstant.TRANSPORT_IN_JVM:
+                return InJvmTransport.shared().gateway(messageReceiveTimeout);
+            case SeqismConstant.TRANSPORT_MMAP:
+                return new MappedFileTransport(Path.of(mmapDir), mmapCapacity, mmapSlotSize,
+                        frameCodec(objectMapper)).gateway(instanceId, messageReceiveTimeout, queueDeleteTimeout);
+            case SeqismConstant.TRANSPORT_KAFKA:
+                return kafkaTransport(kafkaTransport);
+            default:
+                throw new IllegalStateException("Unknown seqism.transport.type : " + transportType);
+        }
+    }
+
+    /**
+     * Creates the {@link PriorityHelper} resolving the priority of the conversations.
+     *
+     * @param enabled
+     *            whether conversations are prioritized, resolved from the property {@code seqism.priority.enabled}
+     *            or defaults to {@code false}
+     * @param maxPriority
+     *            the highest priority, resolved from the property {@code seqism.priority.max} or defaults to
+     *            {@link SeqismConstant#MAX_PRIORITY}
+     * @param defaultPriority
+     *            the priority of the business codes without a configured priority, resolved from the property
+     *            {@code seqism.priority.default} or defaults to {@code 0}
+     * @param bizCodePriorities
+     *            the priorities of the business codes as {@code <bizCode>:<priority>} entries separated by commas,
+     *            resolved from the property {@code seqism.priority.biz-codes}
+     * @return a configured {@link PriorityHelper} instance
+     */
+    @Bean
+    public PriorityHelper priorityHelper(
+            @Value("${seqism.priority.enabled:false}") boolean enabled,
+            @Value("${seqism.priority.max:" + SeqismConstant.MAX_PRIORITY + "}") int maxPriority,
+            @Value("${seqism.priority.default:0}") int defaultPriority,
+            @Value("${seqism.priority.biz-codes:}") String bizCodePriorities) {
+        return new PriorityHelper(enabled, maxPriority, defaultPriority, bizCodePriorities);
+    }
+
+    /**
+     * Creates the {@link DeltaHelper} delta encoding the steps of the conversations, between the gateway and the
+     * processors whatever the transport, and with the clients opting in. Delta encoding must be enabled on the
+     * processors too.
+     *
+     * @param enabled
+     *            whether the conversations are delta encoded, resolved from the property
+     *            {@code seqism.delta.enabled} or defaults to {@code false}
+     * @param ttl
+     *            the time to live (in milliseconds) of the last body of a conversation, resolved from the property
+     *            {@code seqism.delta.ttl} or defaults to {@link SeqismConstant#DELTA_TTL}
+     * @param maxConversations
+     *            the number of conversations whose last body is kept, resolved from the property
+     *            {@code seqism.delta.max-conversations} or defaults to {@link SeqismConstant#DELTA_MAX_CONVERSATIONS}
+     * @param objectMapper
+     *            the mapper converting the bodies to trees and back
+     * @return a configured {@link DeltaHelper} instance
+     */
+    @Bean
+    public DeltaHelper deltaHelper(
+            @Value("${seqism.delta.enabled:false}") boolean enabled,
+            @Value("${seqism.delta.ttl:" + SeqismConstant.DELTA_TTL + "}") long ttl,
+            @Value("${seqism.delta.max-conversations:" + SeqismConstant.DELTA_MAX_CONVERSATIONS
+                    + "}") int maxConversations,
+            ObjectMapper objectMapper) {
+        return new DeltaHelper(enabled, ttl, maxConversations, objectMapper, ErrorInfo.ERROR_0001_0006);
+    }
+
+    /**
+     * Returns the Kafka transport, which {@link KafkaConfig} only creates when spring-kafka is on the classpath.
+     *
+     * @param kafkaTransport
+     *            provides the Kafka transport
+     * @return the Kafka transport
+     * @throws IllegalStateException
+     *             if spring-kafka is not on the classpath
+     */
+    static GatewayTransport kafkaTransport(ObjectProvider<GatewayTransport> kafkaTransport) {
+        GatewayTransport transport = kafkaTransport.getIfAvailable();
+        if (transport == null) {
+            throw new IllegalStateException("seqism.transport.type=kafka requires spring-kafka on the classpath");
+        }
+        return transport;
+    }
+
+    /**
+     * Creates a {@link FrameCodec} encoding messages as JSON with the given mapper.
+     *
+     * @param objectMapper
+     *            the mapper of the application
+     * @return the codec
+     */
+    static FrameCodec frameCodec(ObjectMapper objectMapper) {
+        return new JsonFrameCodec(objectMapper);
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.prometheuskr.seqism.gateway.endpoint;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import io.github.prometheuskr.seqism.gateway.helper.GateWayQueueHelper;
+
+/**
+ * Single consumer of the shared reply queue owned by this gateway instance.
+ * <p>
+ * Every reply sent by processors to the reply queue is handed to {@link GateWayQueueHelper}, which wakes the caller
+ * waiting for the reply's transaction. The listener only starts when the shared reply mode is enabled with
+ * {@code seqism.queue.reply.shared=true}. The replies are received undecoded, so that {@link GateWayQueueHelper}
+ * decodes them into its reply type, as it does for the replies it receives itself.
+ */
+@Component
+public class GatewayReplyListener {
+    /**
+     * Helper correlating the received replies with the callers waiting for them.
+     */
+    private final GateWayQueueHelper queueHelper;
+
+    /**
+     * Constructs a new {@code GatewayReplyListener} with the specified {@link GateWayQueueHelper}.
+     *
+     * @param queueHelper
+     *            the helper used to hand replies to the waiting callers
+     */
+    GatewayReplyListener(GateWayQueueHelper queueHelper) {
+        this.queueHelper = queueHelper;
+    }
+
+    /**
+     * Handles a reply received on the shared reply queue of this gateway instance.
+     *
+     * @param message
+     *            the AMQP message of the reply received from a processor, whose {@code correlation-id} holds its
+     *            transaction ID
+     */
+    @RabbitListener(queues = "#{@gatewayReplyQueue.name}", autoStartup = "${seqism.queue.reply.shared:false}",
+            messageConverter = "undecodedMessageConverter")
+    public void handleReply(Message message) {
+        queueHelper.handleReply(message);
+    }
+}
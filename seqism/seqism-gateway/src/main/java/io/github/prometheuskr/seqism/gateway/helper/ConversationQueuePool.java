@@ -0,0 +1,717 @@
+package io.github.prometheuskr.seqism.gateway.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.QueueNameHelper;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pool of pre-declared command/response queue pairs leased to conversations for their lifetime.
+ * <p>
+ * Each queue pair is named after a slot key owned by this gateway instance. A conversation leasing a slot runs under
+ * a pooled transaction ID ({@code <slot>:<id>}, see {@link QueueNameHelper#getPooledTranId(String, String)}), so
+ * gateway and processors resolve the queues of the slot without knowing about the pool. When the conversation ends
+ * the slot goes back to the pool instead of being deleted, which keeps {@code queue.declare} and
+ * {@code queue.delete} off the hot path while every conversation still has queues of its own.
+ * <p>
+ * The pool is elastic:
+ * <ul>
+ * <li>At startup, and whenever it shrinks below it, the pool is filled up to {@code min} idle slots in the
+ * background.</li>
+ * <li>A lease finding no idle slot declares a new one, up to {@code max} slots in total. Beyond that it waits up to
+ * {@code wait.timeout} for a slot to be released, then falls back to dedicated queues.</li>
+ * <li>Idle slots above {@code min} that were not used for {@code idle.timeout} are deleted.</li>
+ * <li>Leased slots whose conversation was abandoned for {@code seqism.queue.delete.timeout} are reclaimed.</li>
+ * <li>Slots whose conversation timed out are quarantined rather than released, see {@link #quarantine(String)}, and
+ * reclaimed as abandoned ones.</li>
+ * </ul>
+ * Reclaimed slots are purged before they are leased again, so that the messages left over by their conversation do
+ * not reach the next one. A slot remembers the pooled transaction ID of the conversation leasing it: a stale pooled
+ * transaction ID, whose slot was released, reclaimed or leased again since, neither keeps the slot alive nor gives it
+ * back, see {@link #touch(String)}.
+ * Pooled queues are declared with an {@code x-expires} of twice the longer of both timeouts, so that the slots of a
+ * gateway instance that is gone are removed by the broker. Idle slots are not re-declared in the background: a slot
+ * left unused for half of that expiration is re-declared when it is leased, and discarded in favour of a new slot if
+ * that fails, so that the broker only sees declarations for slots that may actually have expired.
+ * <p>
+ * Hit, miss, wait, exhaustion, refresh and quarantine counters are exposed for monitoring and bound to Micrometer when it is
+ * present, see {@code MetricsConfig}.
+ * <p>
+ * The pool is configurable via application properties:
+ * <ul>
+ * <li><b>seqism.queue.pool.enabled</b>: Whether conversations lease pooled queues (default: {@code false}).</li>
+ * <li><b>seqism.queue.pool.min</b>: Number of idle slots kept ready (default: {@code 8}).</li>
+ * <li><b>seqism.queue.pool.max</b>: Maximum number of slots, idle and leased (default: {@code 128}).</li>
+ * <li><b>seqism.queue.pool.idle.timeout</b>: Time in milliseconds after which an idle slot above {@code min} is
+ * deleted (default: {@code 60000}).</li>
+ * <li><b>seqism.queue.pool.wait.timeout</b>: Time in milliseconds a lease waits for a slot when the pool is
+ * exhausted (default: {@code 100}).</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class ConversationQueuePool {
+    /**
+     * A queue pair of the pool.
+     */
+    static final class Slot {
+        /**
+         * The key naming the queues of the slot.
+         */
+        private final String key;
+        /**
+         * The last time, in milliseconds, the slot was leased, used or released.
+         */
+        private volatile long lastUsed = System.currentTimeMillis();
+        /**
+         * The pooled transaction ID of the conversation leasing the slot; {@code null} while the slot is not leased.
+         */
+        private volatile String tranId;
+
+        Slot(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Used to declare and delete the queues of the slots.
+     */
+    private final RabbitAdmin rabbitAdmin;
+    /**
+     * Resolves the queue names of the slots.
+     */
+    private final QueueNameHelper queueNameHelper;
+    /**
+     * Whether conversations lease pooled queues.
+     */
+    private final boolean enabled;
+    /**
+     * Number of idle slots kept ready.
+     */
+    private final int min;
+    /**
+     * Maximum number of slots, idle and leased.
+     */
+    private final int max;
+    /**
+     * Time in milliseconds after which an idle slot above {@code min} is deleted.
+     */
+    private final long idleTimeout;
+    /**
+     * Time in milliseconds a lease waits for a slot when the pool is exhausted.
+     */
+    private final long waitTimeout;
+    /**
+     * Time in milliseconds after which a leased slot of an abandoned conversation, or a quarantined slot, is
+     * reclaimed; never shorter than the receive timeout.
+     */
+    private final long leaseTimeout;
+    /**
+     * Whether the slots have a command queue; omitted in shared reply mode.
+     */
+    private final boolean commandQueue;
+    /**
+     * Whether the slots have a response queue; omitted when processors own inbox queues.
+     */
+    private final boolean responseQueue;
+    /**
+     * Prefix of the slot keys, unique to this gateway instance.
+     */
+    private final String poolId = UUID.randomUUID().toString();
+    /**
+     * Sequence of the slot keys.
+     */
+    private final AtomicInteger sequence = new AtomicInteger();
+    /**
+     * Number of slots, idle, leased and quarantined.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * Idle slots, most recently released first, so that rarely used slots age out at the tail.
+     */
+    private final BlockingDeque<Slot> idle = new LinkedBlockingDeque<>();
+    /**
+     * Leased slots, keyed by slot key.
+     */
+    private final Map<String, Slot> leased = new ConcurrentHashMap<>();
+    /**
+     * Slots whose conversation timed out, keyed by slot key.
+     */
+    private final Map<String, Slot> quarantined = new ConcurrentHashMap<>();
+    /**
+     * Runs the background maintenance of the pool; {@code null} when the pool is disabled.
+     */
+    private final ScheduledExecutorService maintenance;
+
+    /**
+     * Number of leases served by an idle slot.
+     */
+    private final LongAdder hitCount = new LongAdder();
+    /**
+     * Number of leases that declared a new slot.
+     */
+    private final LongAdder missCount = new LongAdder();
+    /**
+     * Number of leases that had to wait for a slot to be released.
+     */
+    private final LongAdder waitCount = new LongAdder();
+    /**
+     * Total time, in milliseconds, leases spent waiting for a slot.
+     */
+    private final LongAdder waitTimeMillis = new LongAdder();
+    /**
+     * Number of leases that fell back to dedicated queues.
+     */
+    private final LongAdder exhaustedCount = new LongAdder();
+    /**
+     * Number of leased slots re-declared because their queues may have expired.
+     */
+    private final LongAdder refreshCount = new LongAdder();
+    /**
+     * Number of slots quarantined because their conversation timed out.
+     */
+    private final LongAdder quarantineCount = new LongAdder();
+
+    /**
+     * Constructs a new {@code ConversationQueuePool} and, when enabled, schedules its background maintenance.
+     *
+     * @param rabbitAdmin
+     *            the {@link RabbitAdmin} used to declare and delete the queues of the slots.
+     * @param queueNameHelper
+     *            the {@link QueueNameHelper} used to resolve the queue names of the slots.
+     * @param enabled
+     *            whether conversations lease pooled queues, injected from the property
+     *            {@code seqism.queue.pool.enabled} or defaults to {@code false}.
+     * @param min
+     *            the number of idle slots kept ready, injected from the property {@code seqism.queue.pool.min}.
+     * @param max
+     *            the maximum number of slots, injected from the property {@code seqism.queue.pool.max}.
+     * @param idleTimeout
+     *            the idle time (in milliseconds) after which a slot above {@code min} is deleted, injected from the
+     *            property {@code seqism.queue.pool.idle.timeout}.
+     * @param waitTimeout
+     *            the time (in milliseconds) a lease waits when the pool is exhausted, injected from the property
+     *            {@code seqism.queue.pool.wait.timeout}.
+     * @param queueDeleteTimeout
+     *            the time (in milliseconds) after which an abandoned conversation gives its slot back, injected from
+     *            the property {@code seqism.queue.delete.timeout}.
+     * @param messageReceiveTimeout
+     *            the timeout (in milliseconds) for receiving messages, injected from the property
+     *            {@code seqism.queue.receive.timeout}; slots are not reclaimed before it elapses.
+     * @param sharedReplyQueue
+     *            whether the shared reply mode is enabled, injected from the property
+     *            {@code seqism.queue.reply.shared}.
+     * @param inboxQueue
+     *            whether processors own inbox queues, injected from the property {@code seqism.queue.inbox.enabled}.
+     */
+    public ConversationQueuePool(
+            RabbitAdmin rabbitAdmin,
+            QueueNameHelper queueNameHelper,
+            @Value("${seqism.queue.pool.enabled:false}") boolean enabled,
+            @Value("${seqism.queue.pool.min:8}") int min,
+            @Value("${seqism.queue.pool.max:128}") int max,
+            @Value("${seqism.queue.pool.idle.timeout:60000}") long idleTimeout,
+            @Value("${seqism.queue.pool.wait.timeout:100}") long waitTimeout,
+            @Value("${seqism.queue.delete.timeout:" + SeqismConstant.QUEUE_DELETE_TIME + "}") long queueDeleteTimeout,
+            @Value("${seqism.queue.receive.timeout:" + SeqismConstant.RECEIVE_TIME_OUT
+                    + "}") long messageReceiveTimeout,
+            @Value("${seqism.queue.reply.shared:false}") boolean sharedReplyQueue,
+            @Value("${seqism.queue.inbox.enabled:false}") boolean inboxQueue) {
+        this.rabbitAdmin = rabbitAdmin;
+        this.queueNameHelper = queueNameHelper;
+        this.commandQueue = !sharedReplyQueue;
+        this.responseQueue = !inboxQueue;
+        // nothing to pool when neither queue of a conversation is declared
+        this.enabled = enabled && (commandQueue || responseQueue);
+        this.min = Math.max(0, min);
+        this.max = Math.max(this.min, max);
+        this.idleTimeout = idleTimeout;
+        this.waitTimeout = waitTimeout;
+        this.leaseTimeout = Math.max(queueDeleteTimeout, messageReceiveTimeout);
+
+        if (this.enabled) {
+            long period = Math.max(1000, Math.min(idleTimeout, leaseTimeout) / 2);
+            maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "seqism-queue-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+            maintenance.scheduleWithFixedDelay(this::maintain, 0, period, TimeUnit.MILLISECONDS);
+        } else {
+            maintenance = null;
+        }
+    }
+
+    /**
+     * Leases a queue pair for a new conversation.
+     *
+     * @param tranId
+     *            the transaction ID generated for the conversation
+     * @return the pooled transaction ID the conversation runs under, or {@code null} if the pool is disabled or
+     *         exhausted, in which case the conversation uses dedicated queues
+     */
+    public String lease(String tranId) {
+        if (!enabled) {
+            return null;
+        }
+
+        Slot slot = refresh(idle.pollFirst());
+        if (slot != null) {
+            hitCount.increment();
+        } else if ((slot = createSlot()) != null) {
+            missCount.increment();
+        } else {
+            slot = awaitSlot();
+        }
+        if (slot == null) {
+            exhaustedCount.increment();
+            log.warn("Queue pool exhausted, using dedicated queues : [{}]", tranId);
+            return null;
+        }
+
+        slot.lastUsed = System.currentTimeMillis();
+        slot.tranId = queueNameHelper.getPooledTranId(slot.key, tranId);
+        leased.put(slot.key, slot);
+        return slot.tranId;
+    }
+
+    /**
+     * Records activity of the conversation, so that its slot is not reclaimed while it is in use.
+     * <p>
+     * A pooled transaction ID naming a slot of this pool that it does not lease any more, because its conversation
+     * ended or timed out and the slot may since be leased to another conversation, is refused: the caller must not
+     * send a step to the queues of the slot.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return {@code false} if the transaction ID names a slot of this pool that it does not lease, {@code true}
+     *         otherwise, including for the conversations on dedicated queues or on the slots of another pool
+     */
+    public boolean touch(String tranId) {
+        if (!enabled) {
+            return true;
+        }
+
+        String key = queueNameHelper.getQueueKey(tranId);
+        Slot slot = leased.get(key);
+        if (slot != null && tranId.equals(slot.tranId)) {
+            slot.lastUsed = System.currentTimeMillis();
+            return true;
+        }
+        return !isSlotKey(key, tranId);
+    }
+
+    /**
+     * Returns whether a transaction ID is a pooled one naming a slot of this pool, leased or not.
+     *
+     * @param key
+     *            the queue key of the transaction ID
+     * @param tranId
+     *            the transaction ID
+     * @return {@code true} if the transaction ID names a slot of this pool
+     */
+    boolean isSlotKey(String key, String tranId) {
+        return !key.equals(tranId) && key.startsWith(poolId + "-");
+    }
+
+    /**
+     * Removes the lease of a slot held by the given transaction ID.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return the slot leased by the transaction ID, or {@code null} if it leases none
+     */
+    Slot unlease(String tranId) {
+        String key = queueNameHelper.getQueueKey(tranId);
+        Slot slot = leased.get(key);
+        if (slot == null || !tranId.equals(slot.tranId) || !leased.remove(key, slot)) {
+            return null;
+        }
+        slot.tranId = null;
+        return slot;
+    }
+
+    /**
+     * Gives the slot of an ended conversation back to the pool.
+     * <p>
+     * The conversation ended with a reply to its last step, so that it left no message in the queues. The slot of a
+     * conversation that timed out is quarantined instead, see {@link #quarantine(String)}.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return {@code true} if the conversation ran on a slot of this pool, {@code false} if its queues must be
+     *         deleted by the caller; a stale pooled transaction ID leaves the slot as it is
+     */
+    public boolean release(String tranId) {
+        if (!enabled) {
+            return false;
+        }
+
+        Slot slot = unlease(tranId);
+        if (slot == null) {
+            return isSlotKey(queueNameHelper.getQueueKey(tranId), tranId);
+        }
+
+        slot.lastUsed = System.currentTimeMillis();
+        idle.offerFirst(slot);
+        return true;
+    }
+
+    /**
+     * Sets the slot of a timed-out conversation aside instead of giving it back to the pool.
+     * <p>
+     * The processor of the conversation may still be waiting on the response queue of the slot, or may reply to its
+     * command queue later, and would then take or answer the steps of the next conversation leasing the slot. The
+     * slot is therefore quarantined for {@code seqism.queue.delete.timeout}, at least for
+     * {@code seqism.queue.receive.timeout}, and purged before it is leased again.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return {@code true} if the conversation ran on a slot of this pool, {@code false} if its queues must be
+     *         deleted by the caller; a stale pooled transaction ID leaves the slot as it is
+     */
+    public boolean quarantine(String tranId) {
+        if (!enabled) {
+            return false;
+        }
+
+        Slot slot = unlease(tranId);
+        if (slot == null) {
+            return isSlotKey(queueNameHelper.getQueueKey(tranId), tranId);
+        }
+
+        slot.lastUsed = System.currentTimeMillis();
+        quarantined.put(slot.key, slot);
+        quarantineCount.increment();
+        log.warn("Quarantined pooled queues of a timed-out conversation : [{}]", tranId);
+        return true;
+    }
+
+    /**
+     * Declares a new slot if the pool has not reached its maximum size.
+     *
+     * @return the new slot, or {@code null} if the pool is full or the queues could not be declared
+     */
+    Slot createSlot() {
+        if (size.incrementAndGet() > max) {
+            size.decrementAndGet();
+            return null;
+        }
+
+        Slot slot = new Slot(poolId + "-" + sequence.incrementAndGet());
+        try {
+            declareQueues(slot);
+            return slot;
+        } catch (AmqpException e) {
+            size.decrementAndGet();
+            log.error("Failed to declare pooled queues : [{}]", slot.key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Re-declares the queues of an idle slot that was left unused for half of their expiration, since the broker may
+     * have removed them by then. A slot whose queues cannot be re-declared is discarded.
+     *
+     * @param slot
+     *            the idle slot about to be leased, may be {@code null}
+     * @return the slot, or {@code null} if it was {@code null} or discarded
+     */
+    Slot refresh(Slot slot) {
+        if (slot == null || System.currentTimeMillis() - slot.lastUsed < getExpires() / 2) {
+            return slot;
+        }
+
+        refreshCount.increment();
+        try {
+            declareQueues(slot);
+            return slot;
+        } catch (AmqpException e) {
+            size.decrementAndGet();
+            log.warn("Discarded pooled queues that could not be re-declared : [{}]", slot.key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Waits for a slot to be released when the pool is exhausted.
+     *
+     * @return the released slot, or {@code null} if none was released within the wait timeout
+     */
+    Slot awaitSlot() {
+        waitCount.increment();
+        long start = System.currentTimeMillis();
+        try {
+            return refresh(idle.pollFirst(waitTimeout, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            waitTimeMillis.add(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Reclaims abandoned leases and quarantined slots, deletes idle slots above the minimum and fills the pool up to
+     * its minimum. The remaining idle slots are left alone; they are re-declared when leased, see
+     * {@link #refresh(Slot)}.
+     */
+    void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+
+            leased.values().removeIf(slot -> {
+                if (now - slot.lastUsed < leaseTimeout) {
+                    return false;
+                }
+                log.warn("Reclaimed abandoned pooled queues : [{}]", slot.key);
+                slot.tranId = null;
+                reclaim(slot);
+                return true;
+            });
+            quarantined.values().removeIf(slot -> {
+                if (now - slot.lastUsed < leaseTimeout) {
+                    return false;
+                }
+                log.debug("Reclaimed quarantined pooled queues : [{}]", slot.key);
+                reclaim(slot);
+                return true;
+            });
+
+            Iterator<Slot> tail = idle.descendingIterator();
+            while (tail.hasNext() && idle.size() > min) {
+                Slot slot = tail.next();
+                if (now - slot.lastUsed >= idleTimeout && idle.removeLastOccurrence(slot)) {
+                    deleteQueues(slot);
+                }
+            }
+
+            while (idle.size() < min) {
+                Slot slot = createSlot();
+                if (slot == null) {
+                    break;
+                }
+                idle.offerLast(slot);
+            }
+        } catch (RuntimeException e) {
+            log.error("Queue pool maintenance failed", e);
+        }
+    }
+
+    /**
+     * Purges the queues of a reclaimed slot, whose conversation may have left messages behind, and gives the slot back
+     * to the pool. A slot whose queues cannot be purged is discarded.
+     *
+     * @param slot
+     *            the reclaimed slot
+     */
+    void reclaim(Slot slot) {
+        try {
+            getQueueNames(slot).forEach(rabbitAdmin::purgeQueue);
+        } catch (AmqpException e) {
+            size.decrementAndGet();
+            log.warn("Discarded pooled queues that could not be purged : [{}]", slot.key, e);
+            return;
+        }
+        slot.lastUsed = System.currentTimeMillis();
+        idle.offerLast(slot);
+    }
+
+    /**
+     * Deletes the queues of the idle slots and stops the background maintenance.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (maintenance == null) {
+            return;
+        }
+
+        maintenance.shutdownNow();
+        Slot slot;
+        while ((slot = idle.pollFirst()) != null) {
+            try {
+                deleteQueues(slot);
+            } catch (AmqpException e) {
+                log.warn("Failed to delete pooled queues : [{}]", slot.key, e);
+            }
+        }
+    }
+
+    /**
+     * Declares, or re-declares to refresh their expiration, the queues of the given slot.
+     *
+     * @param slot
+     *            the slot whose queues are declared
+     */
+    void declareQueues(Slot slot) {
+        long expires = getExpires();
+
+        for (String queueName : getQueueNames(slot)) {
+            Queue queue = QueueBuilder.durable(queueName)
+                    .withArgument("x-expires", expires)
+                    .build();
+            rabbitAdmin.declareQueue(queue);
+        }
+    }
+
+    /**
+     * Returns the {@code x-expires} of the pooled queues: twice the longer of the idle and lease timeouts.
+     *
+     * @return the expiration in milliseconds
+     */
+    long getExpires() {
+        return 2 * Math.max(idleTimeout, leaseTimeout);
+    }
+
+    /**
+     * Deletes the queues of the given slot.
+     *
+     * @param slot
+     *            the slot whose queues are deleted
+     */
+    void deleteQueues(Slot slot) {
+        size.decrementAndGet();
+        getQueueNames(slot).forEach(rabbitAdmin::deleteQueue);
+        log.debug("Deleted pooled queues : [{}]", slot.key);
+    }
+
+    /**
+     * Returns the names of the queues of the given slot.
+     *
+     * @param slot
+     *            the slot
+     * @return the names of the queues of the slot
+     */
+    List<String> getQueueNames(Slot slot) {
+        return queueNameHelper.getConversationQueueNames(slot.key, commandQueue, responseQueue);
+    }
+
+    /**
+     * Returns whether conversations lease pooled queues.
+     *
+     * @return {@code true} if the pool is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of leases served by an idle slot.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of leases that declared a new slot.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of leases that had to wait for a slot to be released.
+     *
+     * @return the wait count
+     */
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    /**
+     * Returns the total time, in milliseconds, leases spent waiting for a slot.
+     *
+     * @return the total wait time
+     */
+    public long getWaitTimeMillis() {
+        return waitTimeMillis.sum();
+    }
+
+    /**
+     * Returns the number of leases that fell back to dedicated queues.
+     *
+     * @return the exhaustion count
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount.sum();
+    }
+
+    /**
+     * Returns the number of leased slots re-declared because their queues may have expired.
+     *
+     * @return the refresh count
+     */
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    /**
+     * Returns the number of slots quarantined because their conversation timed out.
+     *
+     * @return the quarantine count
+     */
+    public long getQuarantineCount() {
+        return quarantineCount.sum();
+    }
+
+    /**
+     * Returns the number of slots, idle, leased and quarantined.
+     *
+     * @return the slot count
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of idle slots.
+     *
+     * @return the idle slot count
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of leased slots.
+     *
+     * @return the leased slot count
+     */
+    public int getLeasedCount() {
+        return leased.size();
+    }
+
+    /**
+     * Returns the number of quarantined slots.
+     *
+     * @return the quarantined slot count
+     */
+    public int getQuarantinedCount() {
+        return quarantined.size();
+    }
+}
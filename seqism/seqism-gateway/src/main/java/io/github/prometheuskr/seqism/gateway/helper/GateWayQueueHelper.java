@@ -2,25 +2,42 @@ package io.github.prometheuskr.seqism.gateway.helper;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.SmartMessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 
 import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
 import io.github.prometheuskr.seqism.common.helper.QueueNameHelper;
+import io.github.prometheuskr.seqism.common.helper.ReplyCorrelator;
+import io.github.prometheuskr.seqism.common.transport.GatewayTransport;
 import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
 import io.github.prometheuskr.seqism.common.vo.SeqismException;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.gateway.vo.RawJson;
 
 /**
  * Helper class for managing RabbitMQ queues and message exchange within the gateway.
  * <p>
+ * This is the RabbitMQ implementation of {@link GatewayTransport}.
+ * <p>
  * GateWayQueueHelper provides utility methods to:
  * <ul>
  * <li>Declare and delete command/response queues dynamically based on transaction IDs.</li>
@@ -37,22 +54,78 @@ import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
  * <li>Creating queues for a transaction using {@link #createQueues(SeqismMessage)}.</li>
  * <li>Sending a message and waiting for a response using {@link #sendAndReceiveInit(SeqismMessage)} or
  * {@link #sendAndReceiveNext(SeqismMessage)}.</li>
- * <li>Automatically deleting queues when no longer needed or when message processing is complete.</li>
+ * <li>Automatically deleting queues when no longer needed or when message processing is complete. Deletions are
+ * handed to the {@link QueueReaper}, so the final response is returned without waiting for the broker.</li>
  * </ol>
  * <p>
+ * In shared reply mode ({@code seqism.queue.reply.shared=true}) no command queue is declared per conversation.
+ * Instead every outgoing message carries the name of this gateway instance's reply queue as its {@code reply-to}
+ * property and the transaction ID as its {@code correlation-id}. Processors send their replies to that queue, and
+ * its single consumer hands each reply to the waiting caller through {@link #handleReply(SeqismMessage, String)}.
+ * This only replaces the command queue, on which the gateway waits: the response queue, on which the processor
+ * waits for the next steps, is still declared per conversation. Only along with inbox queues does a conversation
+ * declare no queue at all.
+ * <p>
+ * When processors own inbox queues ({@code seqism.queue.inbox.enabled=true}) no response queue is declared per
+ * conversation. Processors put their inbox queue in the {@code route} of the header of their replies, this gateway
+ * remembers it by transaction ID, and the next steps are sent straight to the inbox queue of that processor
+ * instance. Resumable conversations put a static queue in the route instead, so that their next steps go to
+ * whichever processor instance takes them. The route of the steps sent by the client is ignored and replaced by the
+ * remembered one, so that clients need not echo it and cannot steer a conversation to another queue. Without a
+ * {@link RouteSigner} key the next step of a conversation must therefore reach the gateway instance that received its
+ * previous reply, which requires sticky sessions in front of several gateway instances; any other instance fails the
+ * step with {@link ErrorInfo#ERROR_0001_0007}. With a key shared by the gateway instances
+ * ({@code seqism.queue.route.key}) the replies hand the client a signed route, which any instance verifies and
+ * follows when it does not remember the route of the conversation.
+ * <p>
+ * When the {@link ConversationQueuePool} is enabled ({@code seqism.queue.pool.enabled=true}) a new conversation
+ * leases a pre-declared queue pair and runs under the pooled transaction ID of that pair; the pair is given back to
+ * the pool instead of being deleted when the conversation ends. A pair whose conversation timed out, on the gateway
+ * or on the processor, is quarantined instead, since a message of the conversation may be left over on it or its
+ * processor may still wait on it, and purged before it is leased again.
+ * <p>
+ * When conversation queues are created lazily ({@code seqism.queue.lazy.enabled=true}) the first step is sent
+ * over RabbitMQ direct reply-to and no queue is declared, so a single-step conversation costs no queue operation at
+ * all. Only when the processor asks for a next step are the queues created: the processor declares the response
+ * queue before replying, and this gateway declares the command queue on receipt of the {@code IN_PROGRESS} reply.
+ * The queue pool is not used in this mode.
+ * <p>
+ * Queues this gateway declared, checked or saw a processor wait on are remembered as live for
+ * {@code seqism.queue.delete.timeout}, so that sending to them skips the passive declare that checks for their
+ * existence. Queues of ended conversations and targets that did not answer are forgotten.
+ * <p>
+ * In passthrough mode ({@code seqism.passthrough.enabled=true}) the body of the replies is decoded as {@link RawJson}
+ * instead of maps and lists: only the header is bound, and the body is written as it is to the HTTP response. Along
+ * with requests bound as {@code SeqismMessage<RawJson>}, the body is never materialized by the gateway.
+ * <p>
  * Queue expiration and message receive timeouts are configurable via application properties:
  * <ul>
  * <li><b>seqism.queue.delete.timeout</b>: Queue expiration time in milliseconds (default:
  * {@link SeqismConstant#QUEUE_DELETE_TIME}).</li>
  * <li><b>seqism.queue.receive.timeout</b>: Message receive timeout in milliseconds (default:
  * {@link SeqismConstant#RECEIVE_TIME_OUT}).</li>
+ * <li><b>seqism.queue.reply.shared</b>: Whether replies are received on the shared reply queue of this gateway
+ * instance instead of a command queue per conversation (default: {@code false}).</li>
+ * <li><b>seqism.queue.inbox.enabled</b>: Whether processors receive the next steps on their inbox queues instead
+ * of a response queue per conversation (default: {@code false}).</li>
+ * <li><b>seqism.queue.lazy.enabled</b>: Whether the first step is sent over direct reply-to and the conversation
+ * queues are created only when a next step is needed (default: {@code false}).</li>
+ * <li><b>seqism.passthrough.enabled</b>: Whether the body of the replies is decoded as {@link RawJson} (default:
+ * {@code false}).</li>
+ * <li><b>seqism.queue.route.key</b>: The key signing the routes handed to the clients, see {@link RouteSigner}
+ * (default: empty, routes are not signed).</li>
  * </ul>
  * <p>
  * All operations are logged for debugging and traceability.
  */
 @Slf4j
 @Component
-public class GateWayQueueHelper {
+public class GateWayQueueHelper implements GatewayTransport {
+    /**
+     * Number of remembered live queues above which expired entries are pruned.
+     */
+    private static final int LIVE_QUEUES_PRUNE_THRESHOLD = 1024;
+
     /**
      * An instance of {@link RabbitAdmin} used to manage AMQP resources such as queues, exchanges, and bindings
      * within the RabbitMQ broker. This helper facilitates administrative operations like declaring or deleting
@@ -65,6 +138,11 @@ public class GateWayQueueHelper {
      * such as publishing and consuming messages within the gateway.
      */
     private final RabbitTemplate rabbitTemplate;
+    /**
+     * The {@code publisherTemplate} publishing the steps, so that publisher confirms and a separate publisher
+     * connection apply to the publishes only while receives stay on {@link #rabbitTemplate}.
+     */
+    private final RabbitTemplate publisherTemplate;
     /**
      * Helper class responsible for generating and managing queue names within the gateway.
      * Used to ensure consistent naming conventions for message queues.
@@ -81,6 +159,72 @@ public class GateWayQueueHelper {
      * value may indicate an indefinite wait, depending on implementation.
      */
     private final long messageReceiveTimeout;
+    /**
+     * Whether replies are received on the shared reply queue of this gateway instance
+     * instead of a command queue per conversation.
+     */
+    private final boolean sharedReplyQueue;
+    /**
+     * The name of the shared reply queue owned by this gateway instance.
+     */
+    private final String replyQueueName;
+    /**
+     * Whether processors receive the next steps on their inbox queues instead of a response queue per conversation.
+     */
+    private final boolean inboxQueue;
+    /**
+     * Whether the first step is sent over direct reply-to and the conversation queues are created lazily.
+     */
+    private final boolean lazyQueues;
+    /**
+     * Hands replies arriving on the shared reply queue to the callers waiting for them.
+     */
+    private final ReplyCorrelator<SeqismMessage<Object>> replyCorrelator = new ReplyCorrelator<>();
+    /**
+     * Leases pre-declared queue pairs to conversations, when enabled.
+     */
+    private final ConversationQueuePool conversationQueuePool;
+    /**
+     * Deletes the queues of ended conversations in the background.
+     */
+    private final QueueReaper queueReaper;
+    /**
+     * Queues known to exist, mapped to the time in milliseconds until which they are assumed to exist.
+     */
+    private final Map<String, Long> liveQueues = new ConcurrentHashMap<>();
+    /**
+     * The routes of the next steps given by the processors, keyed by transaction ID.
+     */
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    /**
+     * Whether publishes are confirmed by the broker.
+     */
+    private final boolean publisherConfirms;
+    /**
+     * Maximum time in milliseconds to wait for a publisher confirm.
+     */
+    private final long confirmTimeout;
+    /**
+     * Whether the first steps go to sharded static queues through the static exchange.
+     */
+    private final boolean shardedQueues;
+    /**
+     * The exchange routing the first steps to the sharded static queues.
+     */
+    private final String staticExchange;
+    /**
+     * Number of sharded static queues per business code.
+     */
+    private final int shards;
+    /**
+     * The type the replies are decoded into: with a {@link RawJson} body in passthrough mode, an untyped one
+     * otherwise.
+     */
+    private final ParameterizedTypeReference<? extends SeqismMessage<?>> replyType;
+    /**
+     * Signs the routes handed to the clients and verifies those they echo back.
+     */
+    private final RouteSigner routeSigner;
 
     /**
      * Constructs a new {@code GateWayQueueHelper} instance with the specified dependencies and configuration values.
@@ -89,6 +233,8 @@ public class GateWayQueueHelper {
      *            the {@link RabbitAdmin} instance used for managing AMQP resources.
      * @param rabbitTemplate
      *            the {@link RabbitTemplate} instance used for sending and receiving messages.
+     * @param publisherTemplate
+     *            the {@code publisherTemplate} used for publishing the steps, with confirms when enabled.
      * @param queueNameHelper
      *            the {@link QueueNameHelper} used for generating and managing queue names.
      * @param queueDeleteTimeout
@@ -97,19 +243,91 @@ public class GateWayQueueHelper {
      * @param messageReceiveTimeout
      *            the timeout (in milliseconds) for receiving messages, injected from the property
      *            {@code seqism.queue.receive.timeout} or defaults to {@code SeqismConstant.RECEIVE_TIME_OUT}.
+     * @param gatewayReplyQueue
+     *            the shared reply queue owned by this gateway instance.
+     * @param sharedReplyQueue
+     *            whether the shared reply mode is enabled, injected from the property
+     *            {@code seqism.queue.reply.shared} or defaults to {@code false}.
+     * @param inboxQueue
+     *            whether processors own inbox queues, injected from the property
+     *            {@code seqism.queue.inbox.enabled} or defaults to {@code false}.
+     * @param lazyQueues
+     *            whether the conversation queues are created lazily, injected from the property
+     *            {@code seqism.queue.lazy.enabled} or defaults to {@code false}.
+     * @param conversationQueuePool
+     *            the {@link ConversationQueuePool} leasing pre-declared queue pairs to conversations.
+     * @param queueReaper
+     *            the {@link QueueReaper} deleting the queues of ended conversations.
+     * @param publisherConfirms
+     *            whether publishes are confirmed by the broker, injected from the property
+     *            {@code seqism.publisher.confirms.enabled} or defaults to {@code false}.
+     * @param confirmTimeout
+     *            the maximum time (in milliseconds) to wait for a publisher confirm, injected from the property
+     *            {@code seqism.publisher.confirm.timeout} or defaults to {@code SeqismConstant.RECEIVE_TIME_OUT}.
+     * @param shardedQueues
+     *            whether the first steps go to sharded static queues, injected from the property
+     *            {@code seqism.queue.sharding.enabled} or defaults to {@code false}.
+     * @param staticExchange
+     *            the exchange routing the first steps to the sharded static queues, injected from the property
+     *            {@code seqism.queue.sharding.exchange} or defaults to {@code SeqismConstant.SEQISM_STATIC_EXCHANGE}.
+     * @param shards
+     *            the number of sharded static queues per business code, injected from the property
+     *            {@code seqism.queue.sharding.shards} or defaults to {@code 1}.
+     * @param passthrough
+     *            whether the body of the replies is decoded as {@link RawJson}, injected from the property
+     *            {@code seqism.passthrough.enabled} or defaults to {@code false}.
+     * @param routeSigner
+     *            the {@link RouteSigner} signing the routes handed to the clients.
      */
     public GateWayQueueHelper(
             RabbitAdmin rabbitAdmin,
             RabbitTemplate rabbitTemplate,
+            @Qualifier("publisherTemplate") RabbitTemplate publisherTemplate,
             QueueNameHelper queueNameHelper,
             @Value("${seqism.queue.delete.timeout:" + SeqismConstant.QUEUE_DELETE_TIME + "}") long queueDeleteTimeout,
             @Value("${seqism.queue.receive.timeout:" + SeqismConstant.RECEIVE_TIME_OUT
-                    + "}") long messageReceiveTimeout) {
+                    + "}") long messageReceiveTimeout,
+            @Qualifier("gatewayReplyQueue") Queue gatewayReplyQueue,
+            @Value("${seqism.queue.reply.shared:false}") boolean sharedReplyQueue,
+            @Value("${seqism.queue.inbox.enabled:false}") boolean inboxQueue,
+            @Value("${seqism.queue.lazy.enabled:false}") boolean lazyQueues,
+            ConversationQueuePool conversationQueuePool,
+            QueueReaper queueReaper,
+            @Value("${seqism.publisher.confirms.enabled:false}") boolean publisherConfirms,
+            @Value("${seqism.publisher.confirm.timeout:" + SeqismConstant.RECEIVE_TIME_OUT
+                    + "}") long confirmTimeout,
+            @Value("${seqism.queue.sharding.enabled:false}") boolean shardedQueues,
+            @Value("${seqism.queue.sharding.exchange:" + SeqismConstant.SEQISM_STATIC_EXCHANGE
+                    + "}") String staticExchange,
+            @Value("${seqism.queue.sharding.shards:1}") int shards,
+            @Value("${seqism.passthrough.enabled:false}") boolean passthrough,
+            RouteSigner routeSigner) {
         this.rabbitAdmin = rabbitAdmin;
         this.rabbitTemplate = rabbitTemplate;
+        this.publisherTemplate = publisherTemplate;
         this.queueNameHelper = queueNameHelper;
         this.queueDeleteTimeout = queueDeleteTimeout;
         this.messageReceiveTimeout = messageReceiveTimeout;
+        this.replyQueueName = gatewayReplyQueue.getName();
+        this.sharedReplyQueue = sharedReplyQueue;
+        this.inboxQueue = inboxQueue;
+        this.lazyQueues = lazyQueues;
+        this.conversationQueuePool = conversationQueuePool;
+        this.queueReaper = queueReaper;
+        this.publisherConfirms = publisherConfirms;
+        this.confirmTimeout = confirmTimeout;
+        this.shardedQueues = shardedQueues;
+        this.staticExchange = staticExchange;
+        this.shards = Math.max(1, shards);
+        this.replyType = passthrough
+                ? new ParameterizedTypeReference<SeqismMessage<RawJson>>() {}
+                : new ParameterizedTypeReference<SeqismMessage<Object>>() {};
+        this.routeSigner = routeSigner;
+
+        if (sharedReplyQueue && !inboxQueue && !lazyQueues) {
+            log.info("Shared reply queue [{}] replaces the command queues only, a response queue is still declared "
+                    + "per conversation unless seqism.queue.inbox.enabled=true", replyQueueName);
+        }
     }
 
     /**
@@ -118,10 +336,14 @@ public class GateWayQueueHelper {
      * This method performs the following steps:
      * <ol>
      * <li>Logs the outgoing message for debugging purposes.</li>
-     * <li>Creates the necessary queues for message processing.</li>
-     * <li>Sends the message to a static queue determined by {@code queueNameHelper}.</li>
+     * <li>Leases a pooled queue pair, rewriting the transaction ID accordingly, or creates the necessary queues for
+     * message processing.</li>
+     * <li>Sends the message to the static queue, or to the sharded static queue of its business code, see
+     * {@link #getStaticQueueName(SeqismMessage)}.</li>
      * <li>Waits for and returns the response message.</li>
      * </ol>
+     * When conversation queues are created lazily the message is sent over direct reply-to instead, see
+     * {@link #sendAndReceiveDirect(String, String, SeqismMessage)}.
      *
      * @param <R>
      *            the type of the response message payload
@@ -131,14 +353,54 @@ public class GateWayQueueHelper {
      *            the message to send
      * @return the response message received
      */
-
+    @Override
     public <R, C> SeqismMessage<C> sendAndReceiveInit(SeqismMessage<R> message) {
+        if (lazyQueues) {
+            log.debug("Sending message : [{}]", message);
+            return sendAndReceiveDirect(getStaticExchange(), getStaticQueueName(message), message);
+        }
+
+        String pooledTranId = conversationQueuePool.lease(message.getHeader().getTranId());
+        if (pooledTranId != null) {
+            message = message.toInProgress(pooledTranId);
+        }
         log.debug("Sending message : [{}]", message);
 
-        createQueues(message);
+        if (pooledTranId == null) {
+            createQueues(message);
+        }
 
-        send(queueNameHelper.getStaticQueueName(), message);
-        return receive(message);
+        return sendAndReceive(getStaticExchange(), getStaticQueueName(message), message);
+    }
+
+    /**
+     * Returns the name of the queue the first step of the given conversation is sent to.
+     * <p>
+     * With sharded static queues ({@code seqism.queue.sharding.enabled=true}) this is the queue of the business
+     * code of the message and of the shard selected by hash of its transaction ID; it exists only while a
+     * processor serving the business code is running. Otherwise this is the static queue.
+     *
+     * @param message
+     *            the first step of the conversation
+     * @return the name of the target queue
+     */
+    String getStaticQueueName(SeqismMessage<?> message) {
+        if (!shardedQueues) {
+            return queueNameHelper.getStaticQueueName();
+        }
+
+        int shard = queueNameHelper.getShard(message.getHeader().getTranId(), shards);
+        return queueNameHelper.getStaticQueueName(message.getHeader().getBizCode(), shard);
+    }
+
+    /**
+     * Returns the exchange the first steps are published to: the static exchange with sharded static queues, the
+     * exchange of the template otherwise.
+     *
+     * @return the name of the exchange
+     */
+    String getStaticExchange() {
+        return shardedQueues ? staticExchange : rabbitTemplate.getExchange();
     }
 
     /**
@@ -147,6 +409,14 @@ public class GateWayQueueHelper {
      * <p>
      * This method logs the outgoing message, sends it to the appropriate response queue,
      * and then calls {@link #receive(SeqismMessage)} to wait for and return the next message.
+     * If the previous reply of the processor carried a route, the message is sent to the inbox queue of that
+     * processor instance instead, or to the static queue of a resumable conversation, from which any processor
+     * instance may take it. The route is the one remembered by this gateway, or else the route of the header of the
+     * message if {@link RouteSigner} verifies it; the header is overwritten with the route followed. When processors
+     * own inbox queues and no route is remembered for the transaction nor verified, the message is rejected with
+     * {@link ErrorInfo#ERROR_0001_0007}. A stale pooled transaction ID, whose queues were
+     * given back to the pool and may be leased to another conversation since, is rejected with
+     * {@link ErrorInfo#ERROR_0001_0009}, see {@link ConversationQueuePool#touch(String)}.
      *
      * @param <R>
      *            the type of the response message payload
@@ -156,12 +426,326 @@ public class GateWayQueueHelper {
      *            the message to send and await a response for
      * @return the next {@link SeqismMessage} received in response
      */
+    @Override
     public <R, C> SeqismMessage<C> sendAndReceiveNext(SeqismMessage<R> message) {
+        String tranId = message.getHeader().getTranId();
+        if (!conversationQueuePool.touch(tranId)) {
+            log.warn("Pooled queues no longer leased by tranId [{}]", tranId);
+            throw new SeqismException(ErrorInfo.ERROR_0001_0009);
+        }
+        adoptSignedRoute(tranId, message.getHeader().getRoute());
+        String queueName = getNextQueueName(tranId);
+        if (queueName == null) {
+            log.warn("No route known for tranId [{}]", tranId);
+            throw new SeqismException(ErrorInfo.ERROR_0001_0007);
+        }
+
+        message = message.withRoute(getRoute(tranId));
         log.debug("Sending message : [{}]", message);
+        return sendAndReceive(queueName, message);
+    }
+
+    /**
+     * Returns the name of the queue the next step of the given conversation is sent to: the inbox or static queue
+     * of the route remembered for the transaction, or else its response queue.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return the name of the queue the next step is sent to, or {@code null} if processors own inbox queues and no
+     *         route is remembered for the transaction
+     */
+    String getNextQueueName(String tranId) {
+        String route = getRoute(tranId);
+        if (route != null) {
+            return route;
+        }
+        return inboxQueue ? null : queueNameHelper.getResponseQueueName(tranId);
+    }
+
+    /**
+     * Returns the route remembered for the given conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return the inbox or static queue the processor asked the next step to be sent to, or {@code null} if none
+     */
+    String getRoute(String tranId) {
+        Route route = routes.get(tranId);
+        if (route == null) {
+            return null;
+        }
+        if (route.expiry() <= System.currentTimeMillis()) {
+            routes.remove(tranId, route);
+            return null;
+        }
+        return route.queueName();
+    }
+
+    /**
+     * Remembers the route given by an {@code IN_PROGRESS} reply for the next step of its conversation, and forgets
+     * the route of a conversation that ended. A route that names neither an inbox queue nor a static queue is
+     * ignored. When routes are signed, the route of the reply is replaced by its signed form, which the client
+     * echoes back so that any gateway instance can route the next step.
+     *
+     * @param <C>
+     *            the type of the reply payload
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param reply
+     *            the reply of the processor
+     * @return the reply to hand to the client
+     */
+    <C> SeqismMessage<C> rememberRoute(String tranId, SeqismMessage<C> reply) {
+        String route = reply.getHeader().getRoute();
+        if (reply.getHeader().getStatus() != SeqismMessageStatus.IN_PROGRESS || route == null) {
+            routes.remove(tranId);
+            return reply;
+        }
+        if (!queueNameHelper.isInboxQueueName(route) && !queueNameHelper.isStaticQueueName(route)) {
+            log.warn("Ignored route [{}] of tranId [{}]", route, tranId);
+            routes.remove(tranId);
+            return reply;
+        }
+
+        long expiry = putRoute(tranId, route);
+        return routeSigner.isEnabled() ? reply.withRoute(routeSigner.sign(tranId, route, expiry)) : reply;
+    }
+
+    /**
+     * Remembers the route of a conversation whose previous reply another gateway instance received, from the signed
+     * route echoed by the client. Nothing is done if a route is remembered for the conversation, or if the route
+     * is not verified by the {@link RouteSigner} or names neither an inbox queue nor a static queue.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param signedRoute
+     *            the route of the header of the step sent by the client; may be {@code null}
+     */
+    void adoptSignedRoute(String tranId, String signedRoute) {
+        if (getRoute(tranId) != null) {
+            return;
+        }
+        String route = routeSigner.verify(tranId, signedRoute);
+        if (route != null && (queueNameHelper.isInboxQueueName(route) || queueNameHelper.isStaticQueueName(route))) {
+            log.debug("Adopted signed route [{}] of tranId [{}]", route, tranId);
+            putRoute(tranId, route);
+        }
+    }
+
+    /**
+     * Remembers the route of a conversation for {@code seqism.queue.delete.timeout}.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param route
+     *            the inbox or static queue the next step is sent to
+     * @return the time, in milliseconds since the epoch, until which the route is remembered
+     */
+    long putRoute(String tranId, String route) {
+        long now = System.currentTimeMillis();
+        if (routes.size() > LIVE_QUEUES_PRUNE_THRESHOLD) {
+            routes.values().removeIf(entry -> entry.expiry() <= now);
+        }
+        long expiry = now + this.queueDeleteTimeout;
+        routes.put(tranId, new Route(route, expiry));
+        return expiry;
+    }
+
+    /**
+     * Sends the message to the specified queue and waits for the reply of its transaction.
+     * <p>
+     * In shared reply mode the caller is registered with the reply correlator before the message is sent, so that a
+     * fast reply cannot be missed; otherwise the reply is received from the command queue of the conversation.
+     * <p>
+     * An {@code IN_PROGRESS} reply means the processor now waits on the queue of the next step, which is therefore
+     * remembered as live. Without a reply the target queue is forgotten, so that the next send checks it again.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param queueName
+     *            the name of the target queue
+     * @param message
+     *            the message to send
+     * @return the reply received, or {@code null} if no reply was received within the timeout
+     */
+    <R, C> SeqismMessage<C> sendAndReceive(String queueName, SeqismMessage<R> message) {
+        return sendAndReceive(rabbitTemplate.getExchange(), queueName, message);
+    }
+
+    /**
+     * Sends the message to the specified queue through the given exchange, which routes it by the name of the
+     * queue, and waits for the reply of its transaction.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param exchange
+     *            the exchange the message is published to
+     * @param queueName
+     *            the name of the target queue, used as routing key
+     * @param message
+     *            the message to send
+     * @return the reply received, or {@code null} if no reply was received within the timeout
+     * @see #sendAndReceive(String, SeqismMessage)
+     */
+    <R, C> SeqismMessage<C> sendAndReceive(String exchange, String queueName, SeqismMessage<R> message) {
+        SeqismMessage<C> reply;
+
+        if (!sharedReplyQueue) {
+            send(exchange, queueName, message);
+            reply = receive(message);
+        } else {
+            String tranId = message.getHeader().getTranId();
+            CompletableFuture<SeqismMessage<Object>> pending = replyCorrelator.register(tranId);
+            try {
+                send(exchange, queueName, message);
+            } catch (RuntimeException e) {
+                replyCorrelator.cancel(tranId);
+                throw e;
+            }
+            reply = receiveShared(tranId, pending);
+        }
+
+        String tranId = message.getHeader().getTranId();
+        if (reply == null) {
+            liveQueues.remove(queueName);
+            routes.remove(tranId);
+        } else {
+            reply = rememberRoute(tranId, reply);
+            markNextLive(tranId, reply);
+        }
+        return reply;
+    }
+
+    /**
+     * Sends the message to the specified queue over RabbitMQ direct reply-to and waits for the reply, without any
+     * conversation queue.
+     * <p>
+     * The message is published by the {@code publisherTemplate}, so that with publisher confirms the first step is
+     * confirmed like the others: a message nacked, or returned because the queue does not exist, fails once its reply
+     * did not arrive, see {@link #awaitConfirm(String, CorrelationData)}.
+     * <p>
+     * If the reply is {@code IN_PROGRESS} the processor has already declared the response queue, and the command
+     * queue is declared here unless replies go to the shared reply queue, so that the next steps run on dedicated
+     * queues as usual.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param exchange
+     *            the exchange the message is published to
+     * @param queueName
+     *            the name of the target queue, used as routing key
+     * @param message
+     *            the message to send
+     * @return the reply received, or {@code null} if no reply was received within the timeout
+     * @throws SeqismException
+     *             if the queue does not exist or if an AMQP error occurs
+     */
+    <R, C> SeqismMessage<C> sendAndReceiveDirect(String exchange, String queueName, SeqismMessage<R> message) {
         String tranId = message.getHeader().getTranId();
+        ParameterizedTypeReference<SeqismMessage<C>> typeRef = replyType();
+
+        CorrelationData correlation = publisherConfirms ? new CorrelationData(tranId) : null;
+        SeqismMessage<C> reply;
+        try {
+            checkQueue(queueName);
+            reply = publisherTemplate.convertSendAndReceiveAsType(exchange, queueName, message, amqpMessage -> {
+                amqpMessage.getMessageProperties().setCorrelationId(tranId);
+                amqpMessage.getMessageProperties().setPriority(message.getHeader().getPriority());
+                return amqpMessage;
+            }, correlation, typeRef);
+        } catch (AmqpException e) {
+            throw new SeqismException(ErrorInfo.ERROR_0001_0004, e);
+        }
+        log.debug("Received message : [{}]", reply);
+
+        if (reply == null) {
+            awaitConfirm(queueName, correlation);
+            return null;
+        }
+        reply = rememberRoute(tranId, reply);
+        if (reply.getHeader().getStatus() == SeqismMessageStatus.IN_PROGRESS) {
+            if (!sharedReplyQueue) {
+                String commandQueue = queueNameHelper.getCommandQueueName(tranId);
+                try {
+                    declareQueue(commandQueue);
+                } catch (AmqpException e) {
+                    throw new SeqismException(ErrorInfo.ERROR_0001_0005, e);
+                }
+                markLive(commandQueue);
+            }
+            markNextLive(tranId, reply);
+        }
+        return reply;
+    }
+
+    /**
+     * Remembers as live the queue of the next step asked by an {@code IN_PROGRESS} reply, on which the processor now
+     * waits.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param reply
+     *            the reply of the processor
+     */
+    void markNextLive(String tranId, SeqismMessage<?> reply) {
+        if (reply.getHeader().getStatus() != SeqismMessageStatus.IN_PROGRESS) {
+            return;
+        }
+        String nextQueue = getNextQueueName(tranId);
+        if (nextQueue != null) {
+            markLive(nextQueue);
+        }
+    }
+
+    /**
+     * Hands a reply received on the shared reply queue to the caller waiting for it.
+     * <p>
+     * The reply is correlated by its {@code correlation-id}, falling back to the transaction ID of its header.
+     * Replies for which no caller is waiting, such as replies arriving after the receive timeout, are discarded.
+     *
+     * @param reply
+     *            the reply received on the shared reply queue
+     * @param correlationId
+     *            the {@code correlation-id} of the reply; may be {@code null}
+     */
+    public void handleReply(SeqismMessage<Object> reply, String correlationId) {
+        String tranId = correlationId != null ? correlationId : reply.getHeader().getTranId();
+
+        if (!replyCorrelator.complete(tranId, reply)) {
+            log.warn("Discarded reply with no waiting caller : [{}]", reply);
+        }
+    }
+
+    /**
+     * Decodes a reply received on the shared reply queue into the reply type, and hands it to the caller waiting for
+     * it, see {@link #handleReply(SeqismMessage, String)}.
+     *
+     * @param amqpMessage
+     *            the AMQP message of the reply
+     */
+    @SuppressWarnings("unchecked")
+    public void handleReply(Message amqpMessage) {
+        SmartMessageConverter converter = (SmartMessageConverter) rabbitTemplate.getMessageConverter();
+        SeqismMessage<Object> reply = (SeqismMessage<Object>) converter.fromMessage(amqpMessage, replyType);
+        handleReply(reply, amqpMessage.getMessageProperties().getCorrelationId());
+    }
 
-        send(queueNameHelper.getResponseQueueName(tranId), message);
-        return receive(message);
+    /**
+     * Returns the type the replies are decoded into.
+     *
+     * @param <C>
+     *            the type of the reply payload
+     * @return the reply type
+     */
+    @SuppressWarnings("unchecked")
+    <C> ParameterizedTypeReference<SeqismMessage<C>> replyType() {
+        return (ParameterizedTypeReference<SeqismMessage<C>>) (ParameterizedTypeReference<?>) replyType;
     }
 
     /**
@@ -169,19 +753,72 @@ public class GateWayQueueHelper {
      * <p>
      * This method generates queue names based on the transaction ID extracted from the message header,
      * declares both the command and response queues, and logs their creation.
+     * Queues replaced by the shared reply queue or by processor inbox queues are not declared.
      *
      * @param message
      *            the {@link SeqismMessage} containing the transaction information used to generate queue names
      */
     void createQueues(SeqismMessage<?> message) {
-        String tranId = message.getHeader().getTranId();
+        List<String> queueNames = getConversationQueueNames(message.getHeader().getTranId());
 
-        String commandQueue = queueNameHelper.getCommandQueueName(tranId);
-        String responseQueue = queueNameHelper.getResponseQueueName(tranId);
+        queueNames.forEach(this::declareQueue);
+        queueNames.forEach(this::markLive);
+        log.debug("Created queues : {}", queueNames);
+    }
 
-        declareQueue(commandQueue);
-        declareQueue(responseQueue);
-        log.debug("Created queues : [{}], [{}]", commandQueue, responseQueue);
+    /**
+     * Hands the command and response queues of the given transaction to the reaper for deletion, or gives them back
+     * to the pool if they were leased. Leased queues of a conversation that timed out are quarantined rather than
+     * given back, see {@link ConversationQueuePool#quarantine(String)}.
+     *
+     * @param tranId
+     *            the transaction ID whose queues are deleted
+     * @param reply
+     *            the last reply of the conversation, or {@code null} if none was received within the timeout
+     */
+    void deleteQueues(String tranId, SeqismMessage<?> reply) {
+        routes.remove(tranId);
+        if (isTimedOut(reply) ? conversationQueuePool.quarantine(tranId) : conversationQueuePool.release(tranId)) {
+            log.debug("Released pooled queues : [{}]", tranId);
+            return;
+        }
+
+        List<String> queueNames = getConversationQueueNames(tranId);
+
+        queueNames.forEach(liveQueues::remove);
+        queueReaper.delete(queueNames);
+        log.debug("Deleting queues : {}", queueNames);
+    }
+
+    /**
+     * Returns whether a conversation ended on a timeout: no reply was received, or the processor gave up waiting for
+     * the next step with {@link ErrorInfo#ERROR_0002_0003}, in which case the step sent meanwhile is left over.
+     *
+     * @param reply
+     *            the last reply of the conversation; may be {@code null}
+     * @return {@code true} if a message of the conversation may still be in flight
+     */
+    static boolean isTimedOut(SeqismMessage<?> reply) {
+        if (reply == null) {
+            return true;
+        }
+        ErrorInfo error = reply.getHeader().getError();
+        return reply.getHeader().getStatus() == SeqismMessageStatus.FAILURE && error != null
+                && ErrorInfo.ERROR_0002_0003.getErrorCode().equals(error.getErrorCode());
+    }
+
+    /**
+     * Returns the names of the queues dedicated to the given transaction.
+     * <p>
+     * The command queue is omitted in shared reply mode and the response queue is omitted when processors own inbox
+     * queues, so the list is empty when both modes are enabled.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return the names of the queues dedicated to the conversation
+     */
+    List<String> getConversationQueueNames(String tranId) {
+        return queueNameHelper.getConversationQueueNames(tranId, !sharedReplyQueue, !inboxQueue);
     }
 
     /**
@@ -198,15 +835,67 @@ public class GateWayQueueHelper {
         rabbitAdmin.declareQueue(queue);
     }
 
+    /**
+     * Remembers the given queue as live for {@code seqism.queue.delete.timeout}, the time after which an unused
+     * conversation queue expires.
+     *
+     * @param queueName
+     *            the name of the queue known to exist
+     */
+    void markLive(String queueName) {
+        long now = System.currentTimeMillis();
+
+        if (liveQueues.size() > LIVE_QUEUES_PRUNE_THRESHOLD) {
+            liveQueues.values().removeIf(expiry -> expiry <= now);
+        }
+        liveQueues.put(queueName, now + this.queueDeleteTimeout);
+    }
+
+    /**
+     * Returns whether the given queue is remembered as live.
+     *
+     * @param queueName
+     *            the name of the queue
+     * @return {@code true} if the queue is known to exist, {@code false} if its existence must be checked
+     */
+    boolean isLive(String queueName) {
+        Long expiry = liveQueues.get(queueName);
+        return expiry != null && expiry > System.currentTimeMillis();
+    }
+
+    /**
+     * Checks that the given queue exists, unless it is remembered as live.
+     *
+     * @param queueName
+     *            the name of the queue
+     * @throws SeqismException
+     *             with {@link ErrorInfo#ERROR_0001_0003} if the queue does not exist
+     */
+    void checkQueue(String queueName) {
+        if (!isLive(queueName)) {
+            if (rabbitAdmin.getQueueProperties(queueName) == null) {
+                throw new SeqismException(ErrorInfo.ERROR_0001_0003);
+            }
+            markLive(queueName);
+        }
+    }
+
     /**
      * Sends a {@link SeqismMessage} to the specified queue.
      * <p>
-     * Checks if the queue exists before sending the message. If the queue does not exist,
+     * Unless the queue is remembered as live, checks if the queue exists before sending the message. If the queue
+     * does not exist,
      * throws a {@link SeqismException} with {@link ErrorInfo#ERROR_0001_0003}. If an AMQP-related
      * error occurs during sending, throws a {@link SeqismException} with {@link ErrorInfo#ERROR_0001_0004}.
+     * The message carries the transaction ID as its {@code correlation-id}, the priority of the conversation, if any,
+     * as its {@code priority} and, in shared reply mode, the reply queue of this gateway instance as its
+     * {@code reply-to}. With publisher confirms the send waits for the
+     * confirm of the broker, see {@link #awaitConfirm(String, CorrelationData)}.
      *
+     * @param exchange
+     *            the exchange the message is published to
      * @param queueName
-     *            the name of the target queue
+     *            the name of the target queue, used as routing key
      * @param message
      *            the message to send
      * @param <T>
@@ -214,25 +903,74 @@ public class GateWayQueueHelper {
      * @throws SeqismException
      *             if the queue does not exist or if an AMQP error occurs
      */
-    @SuppressWarnings("unused")
-    <T> void send(String queueName, SeqismMessage<T> message) {
+    <T> void send(String exchange, String queueName, SeqismMessage<T> message) {
+        CorrelationData correlation = publisherConfirms ? new CorrelationData(message.getHeader().getTranId()) : null;
         try {
-            if (rabbitAdmin.getQueueProperties(queueName) == null) {
-                throw new SeqismException(ErrorInfo.ERROR_0001_0003);
-            }
+            checkQueue(queueName);
 
-            rabbitTemplate.convertAndSend(queueName, message);
+            publisherTemplate.convertAndSend(exchange, queueName, message, amqpMessage -> {
+                amqpMessage.getMessageProperties().setCorrelationId(message.getHeader().getTranId());
+                amqpMessage.getMessageProperties().setPriority(message.getHeader().getPriority());
+                if (sharedReplyQueue) {
+                    amqpMessage.getMessageProperties().setReplyTo(replyQueueName);
+                }
+                return amqpMessage;
+            }, correlation);
         } catch (AmqpException e) {
             throw new SeqismException(ErrorInfo.ERROR_0001_0004, e);
         }
+        awaitConfirm(queueName, correlation);
+    }
+
+    /**
+     * Waits for the broker to confirm a publish.
+     * <p>
+     * A message returned as unroutable means that the queue no longer exists: the queue is forgotten as live and
+     * {@link ErrorInfo#ERROR_0001_0003} is raised. A nacked or unconfirmed message raises
+     * {@link ErrorInfo#ERROR_0001_0004}.
+     *
+     * @param queueName
+     *            the name of the target queue
+     * @param correlation
+     *            the correlation of the publish; {@code null} without publisher confirms
+     * @throws SeqismException
+     *             if the message was lost
+     */
+    void awaitConfirm(String queueName, CorrelationData correlation) {
+        if (correlation == null) {
+            return;
+        }
+
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlation.getFuture().get(confirmTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SeqismException(ErrorInfo.ERROR_0001_0004, e);
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("Unconfirmed message to queue [{}] : {}", queueName, correlation.getId());
+            throw new SeqismException(ErrorInfo.ERROR_0001_0004, e);
+        }
+
+        if (correlation.getReturned() != null) {
+            log.error("Returned message to queue [{}] : {}", queueName, correlation.getReturned().getReplyText());
+            liveQueues.remove(queueName);
+            throw new SeqismException(ErrorInfo.ERROR_0001_0003);
+        }
+        if (!confirm.isAck()) {
+            log.error("Nacked message to queue [{}] : {}", queueName, confirm.getReason());
+            throw new SeqismException(ErrorInfo.ERROR_0001_0004);
+        }
     }
 
     /**
      * Receives a message from the specified command queue using the provided {@link SeqismMessage} as a reference.
      * Attempts to convert the received message to the appropriate type using a {@link ParameterizedTypeReference}.
      * If no message is received within the timeout or the message status is not {@code IN_PROGRESS},
-     * deletes both the command and response queues associated with the transaction ID.
-     * 
+     * deletes the queues associated with the transaction ID, see {@link #deleteQueues(String, SeqismMessage)}.
+     * Replies of another transaction, sent late to a pooled queue by the processor of a previous conversation, are
+     * discarded: no caller waits for them any more.
+     *
      * @param <R>
      *            the type of the response message payload
      * @param <C>
@@ -247,19 +985,22 @@ public class GateWayQueueHelper {
         String tranId = message.getHeader().getTranId();
 
         String commandQueue = queueNameHelper.getCommandQueueName(tranId);
-        String responseQueue = queueNameHelper.getResponseQueueName(tranId);
 
-        ParameterizedTypeReference<SeqismMessage<C>> typeRef = new ParameterizedTypeReference<SeqismMessage<C>>() {};
+        ParameterizedTypeReference<SeqismMessage<C>> typeRef = replyType();
 
         try {
+            long deadline = System.currentTimeMillis() + this.messageReceiveTimeout;
             SeqismMessage<C> receivedMsg //
                     = rabbitTemplate.receiveAndConvert(commandQueue, this.messageReceiveTimeout, typeRef);
+            while (receivedMsg != null && !tranId.equals(receivedMsg.getHeader().getTranId())) {
+                log.warn("Discarded message of another transaction : [{}]", receivedMsg);
+                long remaining = deadline - System.currentTimeMillis();
+                receivedMsg = remaining > 0 ? rabbitTemplate.receiveAndConvert(commandQueue, remaining, typeRef) : null;
+            }
             log.debug("Received message : [{}]", receivedMsg);
 
             if (receivedMsg == null || receivedMsg.getHeader().getStatus() != SeqismMessageStatus.IN_PROGRESS) {
-                rabbitAdmin.deleteQueue(commandQueue);
-                rabbitAdmin.deleteQueue(responseQueue);
-                log.debug("Deleted queues : [{}], [{}]", commandQueue, responseQueue);
+                deleteQueues(tranId, receivedMsg);
             }
 
             return receivedMsg;
@@ -267,4 +1008,46 @@ public class GateWayQueueHelper {
             throw new SeqismException(ErrorInfo.ERROR_0001_0005, e);
         }
     }
+
+    /**
+     * Waits for the reply of the given transaction on the shared reply queue.
+     * If no reply is received within the timeout or the reply status is not {@code IN_PROGRESS},
+     * deletes the queues associated with the transaction ID.
+     *
+     * @param <C>
+     *            the type of the command message payload
+     * @param tranId
+     *            the transaction ID the caller registered with
+     * @param pending
+     *            the future registered with the reply correlator
+     * @return the received {@link SeqismMessage}, or {@code null} if no message was received
+     * @throws SeqismException
+     *             if an AMQP error occurs while deleting the queues
+     */
+    @SuppressWarnings("unchecked")
+    <C> SeqismMessage<C> receiveShared(String tranId, CompletableFuture<SeqismMessage<Object>> pending) {
+        SeqismMessage<C> receivedMsg = (SeqismMessage<C>) (SeqismMessage<?>) replyCorrelator.await(tranId, pending,
+                this.messageReceiveTimeout);
+        log.debug("Received message : [{}]", receivedMsg);
+
+        try {
+            if (receivedMsg == null || receivedMsg.getHeader().getStatus() != SeqismMessageStatus.IN_PROGRESS) {
+                deleteQueues(tranId, receivedMsg);
+            }
+
+            return receivedMsg;
+        } catch (AmqpException e) {
+            throw new SeqismException(ErrorInfo.ERROR_0001_0005, e);
+        }
+    }
+
+    /**
+     * The route of the next step of a conversation.
+     *
+     * @param queueName
+     *            the inbox or static queue the next step is sent to
+     * @param expiry
+     *            the time in milliseconds after which the route is forgotten
+     */
+    record Route(String queueName, long expiry) {}
 }
\ No newline at end of file
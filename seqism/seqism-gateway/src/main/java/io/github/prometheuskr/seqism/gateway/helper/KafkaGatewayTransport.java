@@ -0,0 +1,189 @@
+package io.github.prometheuskr.seqism.gateway.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.MessageListener;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.ReplyCorrelator;
+import io.github.prometheuskr.seqism.common.transport.FrameCodec;
+import io.github.prometheuskr.seqism.common.transport.GatewayTransport;
+import io.github.prometheuskr.seqism.common.transport.KafkaInbox;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Kafka implementation of {@link GatewayTransport}.
+ * <p>
+ * The first step of a conversation is sent to the static topic, consumed by the processor consumer group, and the
+ * next steps to the command topic. Replies come back on the response topic. Every record is keyed by transaction ID,
+ * so that all the records of a conversation land on the same partition and stay ordered, without any topic per
+ * conversation.
+ * <p>
+ * The gateway instances share the partitions of the response topic through one consumer group, see
+ * {@link KafkaInbox}, so that each instance reads its own partitions only; the response topic needs at least as many
+ * partitions as gateway instances. Every step carries the partition of this instance in its
+ * {@link SeqismConstant#REPLY_PARTITION_HEADER} header, the processor sends the reply there, and the reply is handed
+ * to the waiting caller through a {@link ReplyCorrelator}. A next step goes to the partition of the command topic the
+ * processor instance waiting for it put in the route of its reply, so that the gateway keeps no route of its own and
+ * any gateway instance can send the next step.
+ * <p>
+ * Records carry the {@link SeqismMessage} encoded by a {@link FrameCodec}.
+ */
+@Slf4j
+public class KafkaGatewayTransport implements GatewayTransport, AutoCloseable {
+    /**
+     * Sends the steps of the conversations.
+     */
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    /**
+     * Encodes and decodes the messages.
+     */
+    private final FrameCodec codec;
+    /**
+     * The topic of the first steps.
+     */
+    private final String staticTopic;
+    /**
+     * The topic of the next steps.
+     */
+    private final String commandTopic;
+    /**
+     * Maximum time, in milliseconds, to wait for a send acknowledgment and for a reply.
+     */
+    private final long receiveTimeout;
+    /**
+     * Hands the replies read from the response topic to the callers waiting for them.
+     */
+    private final ReplyCorrelator<SeqismMessage<Object>> replyCorrelator = new ReplyCorrelator<>();
+    /**
+     * Reads the partitions of the response topic owned by this instance.
+     */
+    private final KafkaInbox replyInbox;
+
+    /**
+     * Constructs the transport and starts reading the response topic.
+     *
+     * @param producerFactory
+     *            the factory of the producers sending the steps
+     * @param consumerFactory
+     *            the factory of the consumer reading the replies
+     * @param codec
+     *            the codec of the messages
+     * @param staticTopic
+     *            the topic of the first steps
+     * @param commandTopic
+     *            the topic of the next steps
+     * @param responseTopic
+     *            the topic of the replies
+     * @param groupId
+     *            the consumer group of the gateway instances on the response topic
+     * @param receiveTimeout
+     *            the maximum time, in milliseconds, to wait for a send acknowledgment and for a reply
+     * @throws IllegalStateException
+     *             if no partition of the response topic is assigned to this instance
+     */
+    public KafkaGatewayTransport(ProducerFactory<String, byte[]> producerFactory,
+            ConsumerFactory<String, byte[]> consumerFactory, FrameCodec codec, String staticTopic,
+            String commandTopic, String responseTopic, String groupId, long receiveTimeout) {
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        this.codec = codec;
+        this.staticTopic = staticTopic;
+        this.commandTopic = commandTopic;
+        this.receiveTimeout = receiveTimeout;
+
+        this.replyInbox = new KafkaInbox(consumerFactory, responseTopic, groupId,
+                (MessageListener<String, byte[]>) this::handleReply);
+        this.replyInbox.start();
+    }
+
+    @Override
+    public <R, C> SeqismMessage<C> sendAndReceiveInit(SeqismMessage<R> message) {
+        return sendAndReceive(staticTopic, null, message);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The step is sent to the partition of the command topic named by its route, or by transaction ID if it has
+     * none.
+     */
+    @Override
+    public <R, C> SeqismMessage<C> sendAndReceiveNext(SeqismMessage<R> message) {
+        return sendAndReceive(commandTopic, KafkaInbox.parsePartition(message.getHeader().getRoute()), message);
+    }
+
+    /**
+     * Registers the caller for the reply, sends the step to the given topic and waits for the reply.
+     *
+     * @param topic
+     *            the target topic
+     * @param partition
+     *            the target partition, or {@code null} to choose it by transaction ID
+     * @param message
+     *            the step to send
+     * @return the reply, or {@code null} if no reply was received within the timeout
+     * @throws SeqismException
+     *             if the step cannot be sent, or no partition of the response topic is assigned to this instance
+     */
+    @SuppressWarnings("unchecked")
+    private <R, C> SeqismMessage<C> sendAndReceive(String topic, Integer partition, SeqismMessage<R> message) {
+        String tranId = message.getHeader().getTranId();
+        Integer replyPartition = replyInbox.partition();
+        if (replyPartition == null) {
+            log.error("No partition of the response topic assigned to this gateway instance");
+            throw new SeqismException(ErrorInfo.ERROR_0001_0004);
+        }
+        CompletableFuture<SeqismMessage<Object>> pending = replyCorrelator.register(tranId);
+
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, partition, tranId, codec.encode(message));
+        record.headers().add(SeqismConstant.REPLY_PARTITION_HEADER,
+                replyPartition.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            kafkaTemplate.send(record).get(receiveTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            replyCorrelator.cancel(tranId);
+            throw new SeqismException(ErrorInfo.ERROR_0001_0004);
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            log.error("Failed to send message to topic [{}] : {}", topic, e.getMessage());
+            replyCorrelator.cancel(tranId);
+            throw new SeqismException(ErrorInfo.ERROR_0001_0004);
+        }
+
+        return (SeqismMessage<C>) (SeqismMessage<?>) replyCorrelator.await(tranId, pending, receiveTimeout);
+    }
+
+    /**
+     * Hands a reply read from the response topic to the caller waiting for it, if any.
+     *
+     * @param record
+     *            the record of the reply
+     */
+    void handleReply(ConsumerRecord<String, byte[]> record) {
+        if (!replyCorrelator.isPending(record.key())
+                || !replyCorrelator.complete(record.key(), codec.decode(record.value()))) {
+            log.trace("Skipped reply of tranId [{}]", record.key());
+        }
+    }
+
+    /**
+     * Stops reading the response topic.
+     */
+    @Override
+    public void close() {
+        replyInbox.close();
+    }
+}
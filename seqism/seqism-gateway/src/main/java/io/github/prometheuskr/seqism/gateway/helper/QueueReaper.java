@@ -0,0 +1,259 @@
+package io.github.prometheuskr.seqism.gateway.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Deletes the queues of ended conversations in the background, so that final responses are returned without waiting
+ * for the broker.
+ * <p>
+ * Queue names handed to {@link #delete(Collection)} are queued and deleted by a single worker thread, in batches
+ * sharing one channel. A batch that fails is retried after a delay, up to a maximum number of attempts; queues that
+ * still cannot be deleted are left to their {@code x-expires}, which removes them once unused for
+ * {@code seqism.queue.delete.timeout}. The same safety net covers queues still pending when the gateway stops.
+ * <p>
+ * The number of pending deletions is exposed as {@link #getBacklog()} for monitoring, along with the deleted and
+ * abandoned counters, and bound to Micrometer when it is present, see {@code MetricsConfig}.
+ * <p>
+ * The reaper is configurable via application properties:
+ * <ul>
+ * <li><b>seqism.queue.reaper.enabled</b>: Whether queues are deleted in the background; when disabled they are
+ * deleted on the calling thread (default: {@code true}).</li>
+ * <li><b>seqism.queue.reaper.batch.size</b>: Maximum number of queues deleted per batch (default: {@code 100}).</li>
+ * <li><b>seqism.queue.reaper.retry.max</b>: Maximum number of attempts per queue (default: {@code 3}).</li>
+ * <li><b>seqism.queue.reaper.retry.delay</b>: Delay in milliseconds before a failed batch is retried (default:
+ * {@code 1000}).</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class QueueReaper {
+    /**
+     * A queue waiting to be deleted.
+     *
+     * @param queueName
+     *            the name of the queue
+     * @param attempt
+     *            the number of failed attempts so far
+     */
+    record Deletion(String queueName, int attempt) {}
+
+    /**
+     * Used to delete queues on the calling thread when the reaper is disabled.
+     */
+    private final RabbitAdmin rabbitAdmin;
+    /**
+     * Used to delete a batch of queues on a single channel.
+     */
+    private final RabbitTemplate rabbitTemplate;
+    /**
+     * Whether queues are deleted in the background.
+     */
+    private final boolean enabled;
+    /**
+     * Maximum number of queues deleted per batch.
+     */
+    private final int batchSize;
+    /**
+     * Maximum number of attempts per queue.
+     */
+    private final int maxAttempts;
+    /**
+     * Delay in milliseconds before a failed batch is retried.
+     */
+    private final long retryDelay;
+    /**
+     * Queues waiting to be deleted.
+     */
+    private final BlockingQueue<Deletion> pending = new LinkedBlockingQueue<>();
+    /**
+     * Deletes the pending queues; {@code null} when the reaper is disabled.
+     */
+    private final Thread worker;
+    /**
+     * Number of queues deleted.
+     */
+    private final LongAdder deletedCount = new LongAdder();
+    /**
+     * Number of queues given up after the maximum number of attempts.
+     */
+    private final LongAdder abandonedCount = new LongAdder();
+
+    /**
+     * Constructs a new {@code QueueReaper} and, when enabled, starts its worker thread.
+     *
+     * @param rabbitAdmin
+     *            the {@link RabbitAdmin} used to delete queues when the reaper is disabled.
+     * @param rabbitTemplate
+     *            the {@link RabbitTemplate} used to delete batches of queues.
+     * @param enabled
+     *            whether queues are deleted in the background, injected from the property
+     *            {@code seqism.queue.reaper.enabled} or defaults to {@code true}.
+     * @param batchSize
+     *            the maximum number of queues deleted per batch, injected from the property
+     *            {@code seqism.queue.reaper.batch.size}.
+     * @param maxAttempts
+     *            the maximum number of attempts per queue, injected from the property
+     *            {@code seqism.queue.reaper.retry.max}.
+     * @param retryDelay
+     *            the delay (in milliseconds) before a failed batch is retried, injected from the property
+     *            {@code seqism.queue.reaper.retry.delay}.
+     */
+    public QueueReaper(
+            RabbitAdmin rabbitAdmin,
+            RabbitTemplate rabbitTemplate,
+            @Value("${seqism.queue.reaper.enabled:true}") boolean enabled,
+            @Value("${seqism.queue.reaper.batch.size:100}") int batchSize,
+            @Value("${seqism.queue.reaper.retry.max:3}") int maxAttempts,
+            @Value("${seqism.queue.reaper.retry.delay:1000}") long retryDelay) {
+        this.rabbitAdmin = rabbitAdmin;
+        this.rabbitTemplate = rabbitTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelay = retryDelay;
+
+        if (enabled) {
+            worker = new Thread(this::run, "seqism-queue-reaper");
+            worker.setDaemon(true);
+            worker.start();
+        } else {
+            worker = null;
+        }
+    }
+
+    /**
+     * Schedules the given queues for deletion, or deletes them right away when the reaper is disabled.
+     *
+     * @param queueNames
+     *            the names of the queues to delete
+     */
+    public void delete(Collection<String> queueNames) {
+        if (!enabled) {
+            queueNames.forEach(rabbitAdmin::deleteQueue);
+            deletedCount.add(queueNames.size());
+            return;
+        }
+
+        queueNames.forEach(queueName -> pending.add(new Deletion(queueName, 0)));
+    }
+
+    /**
+     * Deletes the pending queues batch by batch until the worker thread is interrupted.
+     */
+    void run() {
+        List<Deletion> batch = new ArrayList<>(batchSize);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Deletion first = pending.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, batchSize - 1);
+
+                if (!deleteBatch(batch)) {
+                    Thread.sleep(retryDelay);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Deletes a batch of queues on a single channel. Queues left over by a failure are queued again, or given up
+     * once they reached the maximum number of attempts.
+     *
+     * @param batch
+     *            the queues to delete
+     * @return {@code true} if the whole batch was deleted, {@code false} if it failed
+     */
+    boolean deleteBatch(List<Deletion> batch) {
+        int[] deleted = { 0 };
+
+        try {
+            rabbitTemplate.execute(channel -> {
+                for (Deletion deletion : batch) {
+                    channel.queueDelete(deletion.queueName());
+                    deleted[0]++;
+                }
+                return null;
+            });
+            deletedCount.add(batch.size());
+            log.debug("Deleted queues : [{}]", batch.size());
+            return true;
+        } catch (AmqpException e) {
+            deletedCount.add(deleted[0]);
+            log.warn("Failed to delete queues, {} left", batch.size() - deleted[0], e);
+
+            for (Deletion deletion : batch.subList(deleted[0], batch.size())) {
+                if (deletion.attempt() + 1 < maxAttempts) {
+                    pending.add(new Deletion(deletion.queueName(), deletion.attempt() + 1));
+                } else {
+                    abandonedCount.increment();
+                    log.warn("Gave up deleting queue, left to expire : [{}]", deletion.queueName());
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Stops the worker thread. Queues still pending are left to expire.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+            if (!pending.isEmpty()) {
+                log.info("Queues left to expire : [{}]", pending.size());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of queues waiting to be deleted.
+     *
+     * @return the backlog of the reaper
+     */
+    public int getBacklog() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the number of queues deleted.
+     *
+     * @return the deleted count
+     */
+    public long getDeletedCount() {
+        return deletedCount.sum();
+    }
+
+    /**
+     * Returns the number of queues given up after the maximum number of attempts and left to expire.
+     *
+     * @return the abandoned count
+     */
+    public long getAbandonedCount() {
+        return abandonedCount.sum();
+    }
+}
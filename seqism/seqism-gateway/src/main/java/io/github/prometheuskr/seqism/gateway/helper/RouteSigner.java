@@ -0,0 +1,144 @@
+package io.github.prometheuskr.seqism.gateway.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signs the routes of the next steps handed to the clients, so that any gateway instance sharing the key can route
+ * the next step of a conversation whose previous reply another instance received.
+ * <p>
+ * A signed route is the queue name followed by its expiry time and an HMAC-SHA256 of the transaction ID, the queue
+ * name and the expiry time, separated by dots: {@code <queue>.<expiry>.<mac>}. A client can echo it but not steer a
+ * conversation to another queue, nor reuse the route of another conversation or an expired one.
+ * <p>
+ * The signer is configurable via application properties:
+ * <ul>
+ * <li><b>seqism.queue.route.key</b>: The key shared by the gateway instances; when empty, routes are not signed and
+ * the next step of a conversation must reach the gateway instance that received its previous reply (default:
+ * empty).</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class RouteSigner {
+    /**
+     * The MAC algorithm.
+     */
+    static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * The key shared by the gateway instances; {@code null} when routes are not signed.
+     */
+    private final SecretKeySpec key;
+
+    /**
+     * Constructs a new {@code RouteSigner}.
+     *
+     * @param key
+     *            the key shared by the gateway instances, injected from the property {@code seqism.queue.route.key}
+     *            or defaults to empty, which disables signing.
+     */
+    public RouteSigner(@Value("${seqism.queue.route.key:}") String key) {
+        this.key = key == null || key.isEmpty() ? null
+                : new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * Returns whether routes are signed.
+     *
+     * @return {@code true} if a key is configured
+     */
+    public boolean isEnabled() {
+        return key != null;
+    }
+
+    /**
+     * Signs the route of the next step of a conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param queueName
+     *            the queue the next step is sent to
+     * @param expiry
+     *            the time, in milliseconds since the epoch, after which the route is refused
+     * @return the signed route
+     * @throws IllegalStateException
+     *             if routes are not signed
+     */
+    public String sign(String tranId, String queueName, long expiry) {
+        return queueName + "." + expiry + "." + mac(tranId, queueName, expiry);
+    }
+
+    /**
+     * Verifies a signed route of a conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param route
+     *            the signed route echoed by the client; may be {@code null}
+     * @return the queue the next step is sent to, or {@code null} if routes are not signed or the route is not
+     *         signed, forged, of another conversation or expired
+     */
+    public String verify(String tranId, String route) {
+        if (key == null || route == null || tranId == null) {
+            return null;
+        }
+        int macAt = route.lastIndexOf('.');
+        int expiryAt = macAt > 0 ? route.lastIndexOf('.', macAt - 1) : -1;
+        if (expiryAt <= 0) {
+            return null;
+        }
+
+        String queueName = route.substring(0, expiryAt);
+        long expiry;
+        try {
+            expiry = Long.parseLong(route.substring(expiryAt + 1, macAt));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        byte[] expected = mac(tranId, queueName, expiry).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, route.substring(macAt + 1).getBytes(StandardCharsets.US_ASCII))) {
+            log.warn("Refused route of tranId [{}] with an invalid signature", tranId);
+            return null;
+        }
+        return expiry > System.currentTimeMillis() ? queueName : null;
+    }
+
+    /**
+     * Computes the MAC of a route.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param queueName
+     *            the queue the next step is sent to
+     * @param expiry
+     *            the expiry time of the route
+     * @return the MAC, Base64 URL encoded without padding
+     * @throws IllegalStateException
+     *             if routes are not signed or the MAC cannot be computed
+     */
+    String mac(String tranId, String queueName, long expiry) {
+        if (key == null) {
+            throw new IllegalStateException("No key configured to sign routes with");
+        }
+        try {
+            // Mac instances are not thread-safe
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal((tranId + "\n" + queueName + "\n" + expiry).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign the route of tranId [" + tranId + "]", e);
+        }
+    }
+}
@@ -3,26 +3,44 @@ package io.github.prometheuskr.seqism.gateway.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.audit.AuditPoint;
+import io.github.prometheuskr.seqism.common.helper.DeltaHelper;
+import io.github.prometheuskr.seqism.common.helper.PriorityHelper;
+import io.github.prometheuskr.seqism.common.transport.GatewayTransport;
 import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
 import io.github.prometheuskr.seqism.common.vo.SeqismException;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
-import io.github.prometheuskr.seqism.gateway.helper.GateWayQueueHelper;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
 
 import java.util.UUID;
 import java.util.function.Function;
 
 /**
  * GatewayService provides methods to initialize and progress Seqism message flows
- * by interacting with the GateWayQueueHelper. It handles the sending and receiving
- * of messages, manages transaction IDs, and ensures proper error handling and logging.
+ * by interacting with the {@link GatewayTransport} selected by {@code seqism.transport.type}. It handles the
+ * sending and receiving of messages, manages transaction IDs, and ensures proper error handling and logging.
  * <p>
  * Main responsibilities:
  * <ul>
- * <li>Initialize a new Seqism message flow with a unique transaction ID.</li>
+ * <li>Initialize a new Seqism message flow with a unique transaction ID and, when conversations are prioritized,
+ * its priority.</li>
  * <li>Progress an existing Seqism message flow to the next step.</li>
  * <li>Handle exceptions and convert them into standardized error responses.</li>
+ * <li>Record every step and its reply in the {@link AuditLog}, when auditing is enabled.</li>
+ * <li>Delta encode the steps, when {@code seqism.delta.enabled=true}.</li>
  * </ul>
  * <p>
+ * When delta encoding is enabled, the steps exchanged with the processors carry a step sequence number, and the
+ * {@link DeltaHelper} replaces their body by a JSON Patch against the body of the previous step whenever it knows
+ * that body. A step the processor rejects with {@link ErrorInfo#ERROR_0002_0008}, because it does not know the body
+ * patched, is sent again with its full body, as long as the rejection left the conversation in progress; a failure
+ * ended it, and is returned to the client. A client opts in by setting the step sequence number of its requests,
+ * {@code 0} for the first step: it may then send a patch against the body of the last reply, and receives the replies
+ * as patches against the body of its request whenever the processor sent one. A patch whose base is not known to the
+ * gateway, for instance after the conversation moved to another gateway instance, is rejected with
+ * {@link ErrorInfo#ERROR_0001_0006}, and the client sends its request again with its full body.
+ * <p>
  * Usage:
  * 
  * <pre>
@@ -34,24 +52,49 @@ import java.util.function.Function;
 @Service
 public class GatewayService {
     /**
-     * Helper class responsible for managing gateway queue operations.
+     * Transport responsible for carrying the conversation steps to the processors.
      * Used to interact with and manipulate the gateway's request queue.
      */
-    private final GateWayQueueHelper queueHelper;
+    private final GatewayTransport queueHelper;
+    /**
+     * Resolves the priority of the conversations.
+     */
+    private final PriorityHelper priorityHelper;
+    /**
+     * Records the steps exchanged with the processors.
+     */
+    private final AuditLog auditLog;
+    /**
+     * Delta encodes the steps.
+     */
+    private final DeltaHelper deltaHelper;
 
     /**
-     * Constructs a new {@code GatewayService} with the specified {@code GateWayQueueHelper}.
+     * Constructs a new {@code GatewayService} with the specified {@code GatewayTransport}.
      *
      * @param queueHelper
-     *            the helper used for managing gateway queues
+     *            the transport used for carrying the conversation steps
+     * @param priorityHelper
+     *            the helper resolving the priority of the conversations
+     * @param auditLog
+     *            the audit log recording the steps, disabled unless {@code seqism.audit.enabled=true}
+     * @param deltaHelper
+     *            the helper delta encoding the steps, disabled unless {@code seqism.delta.enabled=true}
      */
-    public GatewayService(GateWayQueueHelper queueHelper) {
+    public GatewayService(GatewayTransport queueHelper, PriorityHelper priorityHelper, AuditLog auditLog,
+            DeltaHelper deltaHelper) {
         this.queueHelper = queueHelper;
+        this.priorityHelper = priorityHelper;
+        this.auditLog = auditLog;
+        this.deltaHelper = deltaHelper;
     }
 
     /**
      * Initializes a Seqism process by marking the provided message as "in progress" with a generated transaction ID,
      * then sends the message to the appropriate queue and waits for a response.
+     * <p>
+     * When conversations are prioritized, the message carries the priority of the conversation: the one set by the
+     * client in the header, if any, otherwise the one configured for its business code.
      *
      * @param <R>
      *            the type of the response message payload
@@ -62,7 +105,11 @@ public class GatewayService {
      * @return the response message received after initialization
      */
     public <R, C> SeqismMessage<C> initSeqism(SeqismMessage<R> message) {
-        return sendAndReceive(message.toInProgress(generateTranId()), queueHelper::sendAndReceiveInit);
+        SeqismMessage<R> first = message.toInProgress(generateTranId());
+        if (priorityHelper.isEnabled()) {
+            first = first.withPriority(priorityHelper.getPriority(first.getHeader()));
+        }
+        return relay(first, message.getHeader().getSeq() != null, queueHelper::sendAndReceiveInit);
     }
 
     /**
@@ -78,7 +125,7 @@ public class GatewayService {
      * @return the response message received after processing the input message
      */
     public <R, C> SeqismMessage<C> nextSeqism(SeqismMessage<R> message) {
-        return sendAndReceive(message.toInProgress(), queueHelper::sendAndReceiveNext);
+        return relay(message.toInProgress(), message.getHeader().getSeq() != null, queueHelper::sendAndReceiveNext);
     }
 
     /**
@@ -90,6 +137,66 @@ public class GatewayService {
         return UUID.randomUUID().toString();
     }
 
+    /**
+     * Relays a step of the client to the processor and returns its reply, delta encoding both when enabled.
+     * <p>
+     * The step is patched against the last body of the conversation if it is delta encoded, numbered, and delta
+     * encoded against that body for the processor. The reply is patched against the step, and becomes the last body
+     * of the conversation. The client receives the reply as delta encoded by the processor if it opted in, with its
+     * full body otherwise.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the step of the client, in progress
+     * @param clientDelta
+     *            whether the client opted in for delta encoding
+     * @param sender
+     *            the function that sends the message and returns a response
+     * @return the response message, or a failure message if an error occurs
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    <R, C> SeqismMessage<C> relay(SeqismMessage<R> message, boolean clientDelta,
+            Function<SeqismMessage<R>, SeqismMessage<C>> sender) {
+        if (!deltaHelper.isEnabled()) {
+            return sendAndReceive(message, sender);
+        }
+
+        Function<SeqismMessage<Object>, SeqismMessage<Object>> objectSender = (Function) sender;
+        SeqismMessage<Object> step;
+        try {
+            step = deltaHelper.resolve(message, null);
+        } catch (SeqismException e) {
+            log.warn("Delta base not found, full body required : [{}]", message.getHeader().getTranId());
+            return message.toFailure(e.getErrorInfo());
+        }
+        if (step.getHeader().getSeq() == null) {
+            step = step.withSeq(0L, false);
+        }
+
+        DeltaHelper.Encoded encoded = deltaHelper.encode(step);
+        SeqismMessage<Object> reply = sendAndReceive(encoded.message(), objectSender);
+        if (Boolean.TRUE.equals(encoded.message().getHeader().getDelta())
+                && reply.getHeader().getStatus() == SeqismMessageStatus.IN_PROGRESS
+                && DeltaHelper.isMissingBase(reply, ErrorInfo.ERROR_0002_0008)) {
+            log.info("Delta base not found by the processor, sending the full body : [{}]",
+                    step.getHeader().getTranId());
+            reply = sendAndReceive(step.withSeq(encoded.body().seq(), false), objectSender);
+        }
+
+        try {
+            SeqismMessage<Object> decoded = deltaHelper.decode(reply, encoded.body());
+            return (SeqismMessage<C>) (clientDelta && Boolean.TRUE.equals(reply.getHeader().getDelta()) ? reply
+                    : decoded);
+        } catch (SeqismException e) {
+            log.error("Error in GatewayService", e);
+            deltaHelper.forget(step.getHeader().getTranId());
+            return step.toFailure(e.getErrorInfo());
+        }
+    }
+
     /**
      * Sends a {@link SeqismMessage} using the provided sender function and waits for a response.
      * <p>
@@ -98,7 +205,7 @@ public class GatewayService {
      * If a {@link SeqismException} is thrown, a failure message is returned with the exception's error info.
      * For any other exceptions, a failure message is returned with error info {@link ErrorInfo#ERROR_0001_0001} and the
      * exception message.
-     * All errors are logged.
+     * All errors are logged. The message and the returned reply are recorded in the audit log.
      *
      * @param <R>
      *            the type of the response message payload
@@ -112,6 +219,27 @@ public class GatewayService {
      */
     <R, C> SeqismMessage<C> sendAndReceive(SeqismMessage<R> message,
             Function<SeqismMessage<R>, SeqismMessage<C>> sender) {
+        auditLog.record(AuditPoint.GATEWAY_REQUEST, message);
+        SeqismMessage<C> reply = exchange(message, sender);
+        auditLog.record(AuditPoint.GATEWAY_REPLY, reply);
+        return reply;
+    }
+
+    /**
+     * Sends a {@link SeqismMessage} using the provided sender function and returns its response, or a failure
+     * message as described in {@link #sendAndReceive(SeqismMessage, Function)}.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the message to send
+     * @param sender
+     *            the function that sends the message and returns a response
+     * @return the response message, or a failure message if an error occurs
+     */
+    <R, C> SeqismMessage<C> exchange(SeqismMessage<R> message, Function<SeqismMessage<R>, SeqismMessage<C>> sender) {
         try {
             SeqismMessage<C> response = sender.apply(message);
             return response != null ? response : message.toFailure(ErrorInfo.ERROR_0001_0002);
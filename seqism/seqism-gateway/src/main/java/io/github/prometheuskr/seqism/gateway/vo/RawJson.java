@@ -0,0 +1,208 @@
+package io.github.prometheuskr.seqism.gateway.vo;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.json.UTF8StreamJsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import io.github.prometheuskr.seqism.common.helper.CodecMessageConverter;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * An opaque message body held as the bytes of its JSON text, which the gateway relays without looking into it.
+ * <p>
+ * Reading a {@code RawJson} from the JSON text decoded by the {@link CodecMessageConverter} slices the value out of
+ * the bytes decoded, and reading it from any other source, such as an HTTP request, copies the tokens of the value
+ * to its JSON text, neither of them building any map, list or bean. Writing it to JSON text writes the bytes as they
+ * are. The body of a {@link SeqismMessage} declared as
+ * {@code RawJson} thus goes from an HTTP request to an AMQP message, and from an AMQP reply to an HTTP response,
+ * with only its header bound.
+ * <p>
+ * Written to any other format, such as Smile, CBOR or a token buffer converting it to a tree or a bean, the body is
+ * parsed back and copied token by token, so that a {@code RawJson} body is read as any other body by the
+ * processors and the helpers of the gateway.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * &#64;PostMapping("/init")
+ * public SeqismMessage&lt;Object&gt; init(&#64;RequestBody SeqismMessage&lt;RawJson&gt; message) {
+ *     return gatewayService.initSeqism(message);
+ * }
+ * </pre>
+ */
+@JsonSerialize(using = RawJson.Serializer.class)
+@JsonDeserialize(using = RawJson.Deserializer.class)
+public final class RawJson implements Serializable {
+    /**
+     * Parses the JSON text of the bodies written to a format other than JSON text, and writes the bodies read.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * The JSON text of the body, encoded in UTF-8.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Constructs a new {@code RawJson} holding the given JSON text, which is trusted to be a single well-formed JSON
+     * value.
+     *
+     * @param bytes
+     *            the JSON text, encoded in UTF-8
+     */
+    public RawJson(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the JSON text of the body.
+     *
+     * @return the JSON text, encoded in UTF-8
+     */
+    public byte[] toByteArray() {
+        return bytes.clone();
+    }
+
+    /**
+     * Returns the size of the JSON text of the body.
+     *
+     * @return the size in bytes
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RawJson raw && Arrays.equals(bytes, raw.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    /**
+     * Returns the JSON text of the body.
+     *
+     * @return the JSON text
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the JSON text of a body as it is to JSON text, and copies its tokens to any other format.
+     */
+    static final class Serializer extends JsonSerializer<RawJson> {
+        @Override
+        public void serialize(RawJson value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            if (gen instanceof JsonGeneratorImpl) {
+                gen.writeRawValue(value.toString());
+                return;
+            }
+            try (JsonParser parser = JSON_FACTORY.createParser(value.bytes)) {
+                parser.nextToken();
+                gen.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    /**
+     * Reads a body by slicing its object or array out of the JSON text being decoded, when the bytes decoded are
+     * available as the {@link CodecMessageConverter#SOURCE_ATTRIBUTE} attribute, or else by copying the tokens of its
+     * value to JSON text.
+     * <p>
+     * Unlike {@link JsonGenerator#copyCurrentStructure(JsonParser)}, the numbers are copied as their text, without
+     * being parsed and formatted again, and the strings as the characters of the parser buffer.
+     */
+    static final class Deserializer extends JsonDeserializer<RawJson> {
+        @Override
+        public RawJson deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (context.getAttribute(CodecMessageConverter.SOURCE_ATTRIBUTE) instanceof byte[] source
+                    && parser instanceof UTF8StreamJsonParser
+                    && (parser.isExpectedStartObjectToken() || parser.isExpectedStartArrayToken())) {
+                long start = parser.currentTokenLocation().getByteOffset();
+                parser.skipChildren();
+                long end = parser.currentLocation().getByteOffset();
+                if (start >= 0 && end <= source.length) {
+                    return new RawJson(Arrays.copyOfRange(source, (int) start, (int) end));
+                }
+                throw new JsonParseException(parser, "Body out of the source bytes");
+            }
+            try (ByteArrayBuilder out = new ByteArrayBuilder();
+                    JsonGenerator gen = JSON_FACTORY.createGenerator(out)) {
+                int depth = 0;
+                do {
+                    copyToken(parser, gen);
+                    if (parser.isExpectedStartArrayToken() || parser.isExpectedStartObjectToken()) {
+                        depth++;
+                    } else if (parser.hasToken(JsonToken.END_ARRAY) || parser.hasToken(JsonToken.END_OBJECT)) {
+                        depth--;
+                    }
+                } while (depth > 0 && parser.nextToken() != null);
+                gen.flush();
+                return new RawJson(out.toByteArray());
+            }
+        }
+
+        /**
+         * Copies the current token of the parser.
+         *
+         * @param parser
+         *            the parser of the body
+         * @param gen
+         *            the generator of the JSON text
+         * @throws IOException
+         *             if the token cannot be read or written
+         */
+        static void copyToken(JsonParser parser, JsonGenerator gen) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == null) {
+                return;
+            }
+            switch (token) {
+            case FIELD_NAME:
+                gen.writeFieldName(parser.currentName());
+                break;
+            case VALUE_STRING:
+                if (parser.hasTextCharacters()) {
+                    gen.writeString(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                } else {
+                    gen.writeString(parser.getText());
+                }
+                break;
+            case VALUE_NUMBER_INT:
+                gen.writeNumber(parser.getText());
+                break;
+            case VALUE_NUMBER_FLOAT:
+                if (parser.isNaN()) {
+                    gen.copyCurrentEvent(parser);
+                } else {
+                    gen.writeNumber(parser.getText());
+                }
+                break;
+            default:
+                gen.copyCurrentEvent(parser);
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.prometheuskr.seqism.gateway.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.QueueNameHelper;
+
+class ConversationQueuePoolTest {
+    static final long LEASE_TIMEOUT = 50;
+
+    private final RecordingRabbitAdmin rabbitAdmin = new RecordingRabbitAdmin();
+    private final QueueNameHelper queueNameHelper = new QueueNameHelper(SeqismConstant.SEQISM_STATIC_QUEUE,
+            SeqismConstant.COMMAND_QUEUE_PREFIX, SeqismConstant.RESPONSE_QUEUE_PREFIX);
+    // a single slot, no idle slot kept ready and no wait when exhausted
+    private final ConversationQueuePool pool = new ConversationQueuePool(rabbitAdmin, queueNameHelper, true, 0, 1,
+            60_000, 0, LEASE_TIMEOUT, LEASE_TIMEOUT, false, false);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void givesSlotOfEndedConversationBackAtOnce() {
+        String ended = pool.lease("tran-1");
+        assertThat(pool.release(ended)).isTrue();
+
+        String next = pool.lease("tran-2");
+        assertThat(next).isNotNull();
+        assertThat(queueNameHelper.getQueueKey(next)).isEqualTo(queueNameHelper.getQueueKey(ended));
+        assertThat(rabbitAdmin.purged).isEmpty();
+    }
+
+    @Test
+    void doesNotLeaseSlotOfTimedOutConversationToNextOne() {
+        String timedOut = pool.lease("tran-1");
+        assertThat(pool.quarantine(timedOut)).isTrue();
+
+        // the late processor of tran-1 may still take the next step sent to the slot, so the pool stays exhausted
+        assertThat(pool.lease("tran-2")).isNull();
+        assertThat(pool.getQuarantinedCount()).isEqualTo(1);
+        assertThat(pool.getQuarantineCount()).isEqualTo(1);
+    }
+
+    @Test
+    void purgesQuarantinedSlotBeforeLeasingItAgain() throws InterruptedException {
+        String timedOut = pool.lease("tran-1");
+        pool.quarantine(timedOut);
+
+        Thread.sleep(LEASE_TIMEOUT + 10);
+        pool.maintain();
+
+        assertThat(pool.getQuarantinedCount()).isZero();
+        assertThat(rabbitAdmin.purged)
+                .containsExactlyElementsOf(queueNameHelper.getConversationQueueNames(timedOut, true, true));
+        String next = pool.lease("tran-2");
+        assertThat(next).isNotNull();
+        assertThat(queueNameHelper.getQueueKey(next)).isEqualTo(queueNameHelper.getQueueKey(timedOut));
+    }
+
+    @Test
+    void refusesStaleTranIdAfterSlotIsReleased() {
+        String ended = pool.lease("tran-1");
+        assertThat(pool.touch(ended)).isTrue();
+        pool.release(ended);
+        assertThat(pool.touch(ended)).isFalse();
+
+        String next = pool.lease("tran-2");
+        assertThat(queueNameHelper.getQueueKey(next)).isEqualTo(queueNameHelper.getQueueKey(ended));
+
+        // the stale tranId neither keeps alive nor gives back the slot now leased by tran-2
+        assertThat(pool.touch(ended)).isFalse();
+        assertThat(pool.release(ended)).isTrue();
+        assertThat(pool.quarantine(ended)).isTrue();
+        assertThat(pool.getLeasedCount()).isEqualTo(1);
+        assertThat(pool.getIdleCount()).isZero();
+        assertThat(pool.getQuarantinedCount()).isZero();
+
+        assertThat(pool.touch(next)).isTrue();
+        assertThat(pool.release(next)).isTrue();
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresConversationOnDedicatedQueues() {
+        assertThat(pool.touch("tran-1")).isTrue();
+        assertThat(pool.quarantine("tran-1")).isFalse();
+        assertThat(pool.release("tran-1")).isFalse();
+    }
+
+    /**
+     * Records the purged queues instead of talking to a broker.
+     */
+    static class RecordingRabbitAdmin extends RabbitAdmin {
+        final List<String> purged = new CopyOnWriteArrayList<>();
+
+        RecordingRabbitAdmin() {
+            super(new CachingConnectionFactory());
+        }
+
+        @Override
+        public String declareQueue(Queue queue) {
+            return queue.getName();
+        }
+
+        @Override
+        public boolean deleteQueue(String queueName) {
+            return true;
+        }
+
+        @Override
+        public int purgeQueue(String queueName) {
+            purged.add(queueName);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.prometheuskr.seqism.gateway.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class RouteSignerTest {
+    static final String QUEUE = "seqism-inbox-queue.processor-1";
+
+    private final RouteSigner signer = new RouteSigner("shared-key");
+
+    @Test
+    void verifiesRouteSignedByAnotherInstanceSharingKey() {
+        String route = signer.sign("tran-1", QUEUE, future());
+
+        assertThat(route).startsWith(QUEUE + ".");
+        assertThat(new RouteSigner("shared-key").verify("tran-1", route)).isEqualTo(QUEUE);
+    }
+
+    @Test
+    void refusesForgedForeignAndExpiredRoutes() {
+        long expiry = future();
+        String route = signer.sign("tran-1", QUEUE, expiry);
+        String mac = route.substring(route.lastIndexOf('.') + 1);
+
+        // another queue, another expiry, another conversation, another key
+        assertThat(signer.verify("tran-1", "seqism-inbox-queue.processor-2." + expiry + "." + mac)).isNull();
+        assertThat(signer.verify("tran-1", QUEUE + "." + (expiry + 1) + "." + mac)).isNull();
+        assertThat(signer.verify("tran-2", route)).isNull();
+        assertThat(new RouteSigner("other-key").verify("tran-1", route)).isNull();
+
+        assertThat(signer.verify("tran-1", signer.sign("tran-1", QUEUE, System.currentTimeMillis() - 1))).isNull();
+    }
+
+    @Test
+    void refusesRoutesThatAreNotSigned() {
+        assertThat(signer.verify("tran-1", QUEUE)).isNull();
+        assertThat(signer.verify("tran-1", "queue.not-a-time.mac")).isNull();
+        assertThat(signer.verify("tran-1", ".")).isNull();
+        assertThat(signer.verify("tran-1", null)).isNull();
+    }
+
+    @Test
+    void signsNothingWithoutKey() {
+        RouteSigner disabled = new RouteSigner("");
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.verify("tran-1", signer.sign("tran-1", QUEUE, future()))).isNull();
+        assertThatThrownBy(() -> disabled.sign("tran-1", QUEUE, future())).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static long future() {
+        return System.currentTimeMillis() + 60_000;
+    }
+}
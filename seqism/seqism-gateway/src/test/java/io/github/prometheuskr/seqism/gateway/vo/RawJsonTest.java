@@ -0,0 +1,98 @@
+package io.github.prometheuskr.seqism.gateway.vo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.core.ParameterizedTypeReference;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.CodecHelper;
+import io.github.prometheuskr.seqism.common.helper.CodecMessageConverter;
+import io.github.prometheuskr.seqism.common.helper.PayloadCompressor;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+class RawJsonTest {
+    // numbers whose text differs from the one a double or a long would be formatted to, escaped strings and
+    // nested arrays, laid out with whitespace kept by a slice only
+    static final String OBJECT = "{ \"price\": 1.50e3, \"big\": 123456789012345678901234567890, \"zero\": -0.0,"
+            + " \"text\": \"a\\\"b\\\\c\\u00e9\\n\\t\", \"nested\": [[1, [2.50, []]], {\"x\": [null, true]}] }";
+    static final String COMPACT_OBJECT = "{\"price\":1.50e3,\"big\":123456789012345678901234567890,\"zero\":-0.0,"
+            + "\"text\":\"a\\\"b\\\\c\u00e9\\n\\t\",\"nested\":[[1,[2.50,[]]],{\"x\":[null,true]}]}";
+    static final String ARRAY = "[ [ 1.0, \"\\u0041\" ], [], [[ -7 ]] ]";
+    static final String COMPACT_ARRAY = "[[1.0,\"A\"],[],[[-7]]]";
+    static final ParameterizedTypeReference<SeqismMessage<RawJson>> RAW_MESSAGE = new ParameterizedTypeReference<>() {};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CodecMessageConverter converter = new CodecMessageConverter(
+            new CodecHelper(SeqismConstant.CODEC_JSON, "SMILE:smile,CBOR:cbor"), new PayloadCompressor(false, 0, 1));
+
+    @Test
+    void slicesObjectsAndArraysOutOfDecodedJson() throws Exception {
+        for (String body : new String[] { OBJECT, ARRAY }) {
+            Message message = new Message(json("JSON", body).getBytes(StandardCharsets.UTF_8),
+                    properties(CodecHelper.JSON_CONTENT_TYPE));
+
+            SeqismMessage<?> decoded = (SeqismMessage<?>) converter.fromMessage(message, RAW_MESSAGE);
+            assertThat(decoded.getHeader().getTranId()).isEqualTo("tran-1");
+            assertThat(decoded.getBody()).isInstanceOf(RawJson.class);
+            assertThat(decoded.getBody().toString()).isEqualTo(body);
+        }
+    }
+
+    @Test
+    void copiesTokensWithoutSourceBytes() throws Exception {
+        TypeReference<SeqismMessage<RawJson>> type = new TypeReference<>() {};
+        String[][] bodies = { { OBJECT, COMPACT_OBJECT }, { ARRAY, COMPACT_ARRAY }, { " \"a\\u0041\" ", "\"aA\"" },
+                { "1.50e3", "1.50e3" } };
+
+        for (String[] body : bodies) {
+            String json = json("JSON", body[0]);
+            // a character source, then a byte source without the source attribute
+            assertThat(mapper.readValue(json, type).getBody().toString()).isEqualTo(body[1]);
+            assertThat(mapper.readValue(json.getBytes(StandardCharsets.UTF_8), type).getBody().toString())
+                    .isEqualTo(body[1]);
+        }
+    }
+
+    @Test
+    void roundTripsThroughEachCodec() throws Exception {
+        RawJson body = new RawJson(OBJECT.getBytes(StandardCharsets.UTF_8));
+
+        for (String bizCode : new String[] { "JSON", "SMILE", "CBOR" }) {
+            Message message = converter.toMessage(new SeqismMessage<>(header(bizCode), body), new MessageProperties());
+            SeqismMessage<?> decoded = (SeqismMessage<?>) converter.fromMessage(message, RAW_MESSAGE);
+
+            RawJson copy = (RawJson) decoded.getBody();
+            assertThat(mapper.readTree(copy.toByteArray())).isEqualTo(mapper.readTree(OBJECT));
+            assertThat(mapper.readTree(copy.toByteArray()).get("text").asText()).isEqualTo("a\"b\\c\u00e9\n\t");
+            assertThat(mapper.readTree(copy.toByteArray()).get("big").bigIntegerValue())
+                    .hasToString("123456789012345678901234567890");
+            if (bizCode.equals("JSON")) {
+                assertThat(copy).isEqualTo(body);
+            }
+        }
+    }
+
+    private String json(String bizCode, String body) throws Exception {
+        return "{\"header\":" + mapper.writeValueAsString(header(bizCode)) + ",\"body\":" + body + "}";
+    }
+
+    private static SeqismMessageHeader header(String bizCode) {
+        return new SeqismMessageHeader(bizCode, "tran-1", SeqismMessageStatus.IN_PROGRESS, null);
+    }
+
+    private static MessageProperties properties(String contentType) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(contentType);
+        return properties;
+    }
+}
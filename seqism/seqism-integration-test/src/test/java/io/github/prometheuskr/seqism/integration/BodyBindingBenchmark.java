@@ -0,0 +1,227 @@
+package io.github.prometheuskr.seqism.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import io.github.prometheuskr.seqism.integration.CodecBenchmark.Meta;
+import io.github.prometheuskr.seqism.integration.CodecBenchmark.Sample003Body;
+import io.github.prometheuskr.seqism.integration.CodecBenchmark.Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the reflective Jackson binding of a processor body with a hand-written streaming serializer and
+ * deserializer, the code a compile-time generator would emit: getters and setters called directly, field names
+ * switched on while reading. The body is the one of the {@code Sample003} example processor with
+ * {@value #TRANSACTIONS} transactions.
+ * <p>
+ * Only run with {@code -Dseqism.benchmark=true}. Both bindings run in alternating rounds on the same thread, and each
+ * figure is logged as the mean of the rounds and their standard deviation, so that the difference between the
+ * bindings can be read against the noise between rounds. Generated codecs were dropped because the difference stays
+ * within that noise.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "seqism.benchmark", matches = "true")
+class BodyBindingBenchmark {
+    static final int TRANSACTIONS = 20;
+    static final int WARMUP_ITERATIONS = 50_000;
+    static final int ITERATIONS = 50_000;
+    static final int ROUNDS = 10;
+
+    private final ObjectMapper reflective = new ObjectMapper();
+    private final ObjectMapper handWritten = new ObjectMapper().registerModule(new SimpleModule()
+            .addSerializer(Sample003Body.class, new Sample003BodySerializer())
+            .addDeserializer(Sample003Body.class, new Sample003BodyDeserializer()));
+
+    @Test
+    void comparesReflectiveBindingWithHandWrittenCodec() throws Exception {
+        Sample003Body body = body();
+        byte[] json = reflective.writeValueAsBytes(body);
+        assertThat(handWritten.writeValueAsBytes(body)).isEqualTo(json);
+        assertThat(handWritten.readValue(json, Sample003Body.class)).isEqualTo(body);
+
+        measure(body, json, WARMUP_ITERATIONS);
+        double[][] rounds = new double[4][ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            double[] result = measure(body, json, ITERATIONS);
+            for (int i = 0; i < result.length; i++) {
+                rounds[i][round] = result[i];
+            }
+        }
+
+        log.info("{} bytes, write: reflective {}, hand-written {}; read: reflective {}, hand-written {}", json.length,
+                summary(rounds[0]), summary(rounds[1]), summary(rounds[2]), summary(rounds[3]));
+    }
+
+    /**
+     * Writes and reads the body the given number of times with each binding.
+     *
+     * @return the mean time, in nanoseconds, taken to write with the reflective and the hand-written binding, then to
+     *         read with each
+     */
+    private double[] measure(Sample003Body body, byte[] json, int iterations) throws IOException {
+        long[] nanos = new long[4];
+        Object sink = null;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink = reflective.writeValueAsBytes(body);
+            long reflectiveWritten = System.nanoTime();
+            sink = handWritten.writeValueAsBytes(body);
+            long handWrittenWritten = System.nanoTime();
+            sink = reflective.readValue(json, Sample003Body.class);
+            long reflectiveRead = System.nanoTime();
+            sink = handWritten.readValue(json, Sample003Body.class);
+            long handWrittenRead = System.nanoTime();
+
+            nanos[0] += reflectiveWritten - start;
+            nanos[1] += handWrittenWritten - reflectiveWritten;
+            nanos[2] += reflectiveRead - handWrittenWritten;
+            nanos[3] += handWrittenRead - reflectiveRead;
+        }
+        assertThat(sink).isEqualTo(body);
+        return Arrays.stream(nanos).mapToDouble(total -> (double) total / iterations).toArray();
+    }
+
+    /**
+     * Formats the mean and the standard deviation of the rounds, in microseconds.
+     */
+    private static String summary(double[] rounds) {
+        double mean = Arrays.stream(rounds).average().orElse(0);
+        double variance = Arrays.stream(rounds).map(value -> (value - mean) * (value - mean)).sum() / rounds.length;
+        return String.format("%.2f +/- %.2f us", mean / 1_000d, Math.sqrt(variance) / 1_000d);
+    }
+
+    private static Sample003Body body() {
+        List<Transaction> transactions = new ArrayList<>();
+        IntStream.rangeClosed(1, TRANSACTIONS)
+                .forEach(i -> transactions.add(new Transaction(String.format("TXN-%03d", i), i * 1000,
+                        String.format("2025-01-01T09:00:%02d", i), "DONE")));
+        return new Sample003Body("user-0001", transactions, new Meta("192.168.0.1", "MOBILE"));
+    }
+
+    /**
+     * Writes a {@link Sample003Body} through its getters, in the order of its fields.
+     */
+    static class Sample003BodySerializer extends JsonSerializer<Sample003Body> {
+        @Override
+        public void serialize(Sample003Body body, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("userId", body.getUserId());
+            gen.writeFieldName("transactions");
+            if (body.getTransactions() == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartArray();
+                for (Transaction transaction : body.getTransactions()) {
+                    gen.writeStartObject();
+                    gen.writeStringField("txnId", transaction.getTxnId());
+                    gen.writeNumberField("amount", transaction.getAmount());
+                    gen.writeStringField("timestamp", transaction.getTimestamp());
+                    gen.writeStringField("status", transaction.getStatus());
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+            }
+            gen.writeFieldName("meta");
+            if (body.getMeta() == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartObject();
+                gen.writeStringField("requestIp", body.getMeta().getRequestIp());
+                gen.writeStringField("deviceType", body.getMeta().getDeviceType());
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * Reads a {@link Sample003Body} through its setters, switching on the field names.
+     */
+    static class Sample003BodyDeserializer extends JsonDeserializer<Sample003Body> {
+        @Override
+        public Sample003Body deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            Sample003Body body = new Sample003Body();
+            for (String name = parser.nextFieldName(); name != null; name = parser.nextFieldName()) {
+                JsonToken token = parser.nextToken();
+                switch (name) {
+                    case "userId":
+                        body.setUserId(parser.getValueAsString());
+                        break;
+                    case "transactions":
+                        body.setTransactions(token == JsonToken.VALUE_NULL ? null : readTransactions(parser));
+                        break;
+                    case "meta":
+                        body.setMeta(token == JsonToken.VALUE_NULL ? null : readMeta(parser));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return body;
+        }
+
+        private static List<Transaction> readTransactions(JsonParser parser) throws IOException {
+            List<Transaction> transactions = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Transaction transaction = new Transaction();
+                for (String name = parser.nextFieldName(); name != null; name = parser.nextFieldName()) {
+                    parser.nextToken();
+                    switch (name) {
+                        case "txnId":
+                            transaction.setTxnId(parser.getValueAsString());
+                            break;
+                        case "amount":
+                            transaction.setAmount(parser.getIntValue());
+                            break;
+                        case "timestamp":
+                            transaction.setTimestamp(parser.getValueAsString());
+                            break;
+                        case "status":
+                            transaction.setStatus(parser.getValueAsString());
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+                transactions.add(transaction);
+            }
+            return transactions;
+        }
+
+        private static Meta readMeta(JsonParser parser) throws IOException {
+            Meta meta = new Meta();
+            for (String name = parser.nextFieldName(); name != null; name = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (name) {
+                    case "requestIp":
+                        meta.setRequestIp(parser.getValueAsString());
+                        break;
+                    case "deviceType":
+                        meta.setDeviceType(parser.getValueAsString());
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return meta;
+        }
+    }
+}
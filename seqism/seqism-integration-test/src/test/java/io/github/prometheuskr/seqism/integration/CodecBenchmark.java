@@ -0,0 +1,126 @@
+package io.github.prometheuskr.seqism.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.core.ParameterizedTypeReference;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.CodecHelper;
+import io.github.prometheuskr.seqism.common.helper.CodecMessageConverter;
+import io.github.prometheuskr.seqism.common.helper.PayloadCompressor;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the time taken to encode and decode a message, and the size of the message, for each codec of the
+ * {@link CodecMessageConverter}: JSON, Smile and CBOR. The body is the one of the {@code Sample003} example processor
+ * after its last step, a user, two transactions and the metadata of the request.
+ * <p>
+ * Only run with {@code -Dseqism.benchmark=true}. The messages are encoded and decoded in this thread without a broker
+ * and without compression, so the figures compare the codecs rather than predict the latency of a step.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "seqism.benchmark", matches = "true")
+class CodecBenchmark {
+    static final int WARMUP_ITERATIONS = 50_000;
+    static final int ITERATIONS = 200_000;
+    static final List<String> BIZ_CODES = List.of("JSON", "SMILE", "CBOR");
+    static final ParameterizedTypeReference<SeqismMessage<Sample003Body>> TYPE = new ParameterizedTypeReference<>() {};
+
+    private final CodecMessageConverter converter = new CodecMessageConverter(
+            new CodecHelper(SeqismConstant.CODEC_JSON, "SMILE:" + SeqismConstant.CODEC_SMILE + ",CBOR:"
+                    + SeqismConstant.CODEC_CBOR),
+            new PayloadCompressor(false, 0, 1));
+
+    @Test
+    void comparesJsonWithSmileAndCbor() {
+        for (String bizCode : BIZ_CODES) {
+            SeqismMessage<Sample003Body> message = message(bizCode);
+            measure(message, WARMUP_ITERATIONS);
+            Result result = measure(message, ITERATIONS);
+
+            log.info("{} : {} bytes, encode {} us, decode {} us", bizCode, result.bytes(),
+                    String.format("%.2f", result.encodeNanos() / 1_000d),
+                    String.format("%.2f", result.decodeNanos() / 1_000d));
+            assertThat(result.bytes()).isPositive();
+        }
+    }
+
+    /**
+     * Encodes and decodes the message the given number of times, checking that the message decoded is the one
+     * encoded.
+     *
+     * @return the size of the message encoded, and the mean time taken to encode and to decode it
+     */
+    private Result measure(SeqismMessage<Sample003Body> message, int iterations) {
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        Message encoded = null;
+        Object decoded = null;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            encoded = converter.toMessage(message, new MessageProperties());
+            long middle = System.nanoTime();
+            decoded = converter.fromMessage(encoded, TYPE);
+            decodeNanos += System.nanoTime() - middle;
+            encodeNanos += middle - start;
+        }
+        assertThat(decoded).isEqualTo(message);
+        return new Result(encoded.getBody().length, (double) encodeNanos / iterations,
+                (double) decodeNanos / iterations);
+    }
+
+    private static SeqismMessage<Sample003Body> message(String bizCode) {
+        return new SeqismMessage<>(new SeqismMessageHeader(bizCode, "tran-1", SeqismMessageStatus.IN_PROGRESS, null),
+                new Sample003Body("user-0001",
+                        List.of(new Transaction("TXN-001", 1000, "2025-01-01T09:00:00", "DONE"),
+                                new Transaction("TXN-002", 2000, "2025-01-01T09:00:01", "DONE")),
+                        new Meta("192.168.0.1", "MOBILE")));
+    }
+
+    /**
+     * The size of a message and the mean time taken to encode and decode it, in nanoseconds.
+     */
+    record Result(int bytes, double encodeNanos, double decodeNanos) {}
+
+    /**
+     * The body of the {@code Sample003} example, its timestamps held as the text they are formatted to.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Sample003Body {
+        private String userId;
+        private List<Transaction> transactions;
+        private Meta meta;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Transaction {
+        private String txnId;
+        private int amount;
+        private String timestamp;
+        private String status;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Meta {
+        private String requestIp;
+        private String deviceType;
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.prometheuskr.seqism.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.helper.DeltaHelper;
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.gateway.service.GatewayService;
+import io.github.prometheuskr.seqism.integration.SeqismApplications.GatewayApplication;
+import io.github.prometheuskr.seqism.integration.SeqismApplications.ProcessorApplication;
+import io.github.prometheuskr.seqism.processor.GraphSeqismProcessor;
+import io.github.prometheuskr.seqism.processor.graph.StepGraph;
+import io.github.prometheuskr.seqism.processor.graph.StepResult;
+import io.github.prometheuskr.seqism.processor.state.ConversationStore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Runs a delta encoded, resumable conversation whose processor loses the last body of the conversation between two
+ * steps, as when the next step is taken by another processor instance, over a RabbitMQ broker started in a container.
+ * Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class DeltaResendTest {
+    static final String BIZ_CODE = "BASKET";
+
+    @Container
+    static final RabbitMQContainer RABBIT = new RabbitMQContainer(DockerImageName.parse("rabbitmq:3.13-alpine"));
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void resendsFullBodyToProcessorThatLostDeltaBase() {
+        try (ConfigurableApplicationContext processor = run(BasketProcessorApplication.class);
+                ConfigurableApplicationContext gateway = run(GatewayApplication.class)) {
+            GatewayService service = gateway.getBean(GatewayService.class);
+
+            SeqismMessage<Object> step1 = service.initSeqism(new SeqismMessage<>(
+                    new SeqismMessageHeader(BIZ_CODE, null, SeqismMessageStatus.IN_PROGRESS, null),
+                    new Basket(List.of("apple"), "x".repeat(1000))));
+            assertThat(step1.getHeader().getStatus()).isEqualTo(SeqismMessageStatus.IN_PROGRESS);
+            Basket basket = mapper.convertValue(step1.getBody(), Basket.class);
+            assertThat(basket.getItems()).containsExactly("apple", "pear");
+
+            // the gateway sends the next step as a patch against a body the processor no longer knows
+            String tranId = step1.getHeader().getTranId();
+            processor.getBean(DeltaHelper.class).forget(tranId);
+            assertThat(gateway.getBean(DeltaHelper.class).get(tranId)).isNotNull();
+            basket.getItems().add("plum");
+
+            SeqismMessage<Object> step2 = service.nextSeqism(step1.withSeq(null, null).withBody(basket));
+            assertThat(step2.getHeader().getError()).isNull();
+            assertThat(step2.getHeader().getStatus()).isEqualTo(SeqismMessageStatus.SUCCESS);
+            assertThat(mapper.convertValue(step2.getBody(), Basket.class).getItems())
+                    .containsExactly("apple", "pear", "plum", "closed");
+        }
+    }
+
+    private static ConfigurableApplicationContext run(Class<?> application) {
+        return SeqismApplications.run(application,
+                "--spring.rabbitmq.host=" + RABBIT.getHost(),
+                "--spring.rabbitmq.port=" + RABBIT.getAmqpPort(),
+                "--spring.rabbitmq.username=" + RABBIT.getAdminUsername(),
+                "--spring.rabbitmq.password=" + RABBIT.getAdminPassword(),
+                "--seqism.delta.enabled=true");
+    }
+
+    /**
+     * The processor application, with a resumable {@link BasketProcessor}.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @Import({ ProcessorApplication.class, BasketProcessor.class })
+    static class BasketProcessorApplication {}
+
+    /**
+     * Adds a pear to the basket of the first step, then closes the basket of the second step. Its conversations are
+     * checkpointed between the two steps, so that the second step comes back through the static queue.
+     */
+    static class BasketProcessor extends GraphSeqismProcessor<Basket, Basket> {
+        BasketProcessor(ObjectMapper mapper, ProcessorTransport queueHelper, ConversationStore store) {
+            super(mapper, queueHelper, store);
+        }
+
+        @Override
+        public String getBizCode() {
+            return BIZ_CODE;
+        }
+
+        @Override
+        public Class<Basket> getBodyType() {
+            return Basket.class;
+        }
+
+        @Override
+        protected StepGraph<Basket, Basket> defineGraph() {
+            return StepGraph.<Basket, Basket>builder()
+                    .start("open", message -> StepResult.next("close", message.withBody(add(message.getBody(),
+                            "pear"))), "close")
+                    .step("close", message -> StepResult.complete(message.withBody(add(message.getBody(), "closed"))
+                            .toSuccess()))
+                    .build();
+        }
+
+        private static Basket add(Basket basket, String item) {
+            List<String> items = new ArrayList<>(basket.getItems());
+            items.add(item);
+            return new Basket(items, basket.getNote());
+        }
+    }
+
+    /**
+     * A body large enough for a patch to matter.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Basket {
+        private List<String> items;
+        private String note;
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.prometheuskr.seqism.integration;
+
+import static io.github.prometheuskr.seqism.integration.SeqismApplications.message;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.transport.FrameCodec;
+import io.github.prometheuskr.seqism.common.transport.JsonFrameCodec;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.gateway.helper.KafkaGatewayTransport;
+import io.github.prometheuskr.seqism.processor.helper.KafkaProcessorTransport;
+
+/**
+ * Runs a conversation between {@link KafkaGatewayTransport} and {@link KafkaProcessorTransport} over an embedded
+ * Kafka broker.
+ */
+@EmbeddedKafka(partitions = 2, topics = { KafkaTransportRoundTripTest.STATIC_TOPIC,
+        KafkaTransportRoundTripTest.COMMAND_TOPIC, KafkaTransportRoundTripTest.RESPONSE_TOPIC })
+class KafkaTransportRoundTripTest {
+    static final String STATIC_TOPIC = "test-static";
+    static final String COMMAND_TOPIC = "test-command";
+    static final String RESPONSE_TOPIC = "test-response";
+    static final long TIMEOUT = 30_000;
+
+    @Test
+    void runsConversationBetweenGatewayAndProcessor(EmbeddedKafkaBroker broker) throws Exception {
+        FrameCodec codec = new JsonFrameCodec(new ObjectMapper());
+        DefaultKafkaProducerFactory<String, byte[]> producerFactory = producerFactory(broker);
+        DefaultKafkaConsumerFactory<String, byte[]> consumerFactory = consumerFactory(broker);
+
+        try (KafkaProcessorTransport processor = new KafkaProcessorTransport(producerFactory, consumerFactory, codec,
+                STATIC_TOPIC, COMMAND_TOPIC, RESPONSE_TOPIC, "test-processors", TIMEOUT);
+                KafkaGatewayTransport gateway = new KafkaGatewayTransport(producerFactory, consumerFactory, codec,
+                        STATIC_TOPIC, COMMAND_TOPIC, RESPONSE_TOPIC, "test-gateways", TIMEOUT)) {
+            subscribeEcho(processor);
+
+            SeqismMessage<Object> step1 = gateway.sendAndReceiveInit(message("tran-1", "hello"));
+            assertThat(step1).isNotNull();
+            assertThat(step1.getHeader().getStatus()).isEqualTo(SeqismMessageStatus.IN_PROGRESS);
+            assertThat(step1.getBody()).isEqualTo("echo:hello");
+
+            SeqismMessage<Object> step2 = gateway.sendAndReceiveNext(step1.withBody("world"));
+            assertThat(step2).isNotNull();
+            assertThat(step2.getHeader().getStatus()).isEqualTo(SeqismMessageStatus.SUCCESS);
+            assertThat(step2.getBody()).isEqualTo("hello+world");
+        } finally {
+            producerFactory.destroy();
+        }
+    }
+
+    @Test
+    void sendsNextStepThroughAnotherGatewayInstance(EmbeddedKafkaBroker broker) throws Exception {
+        FrameCodec codec = new JsonFrameCodec(new ObjectMapper());
+        DefaultKafkaProducerFactory<String, byte[]> producerFactory = producerFactory(broker);
+        DefaultKafkaConsumerFactory<String, byte[]> consumerFactory = consumerFactory(broker);
+
+        try (KafkaProcessorTransport processor = new KafkaProcessorTransport(producerFactory, consumerFactory, codec,
+                STATIC_TOPIC, COMMAND_TOPIC, RESPONSE_TOPIC, "test-processors-2", TIMEOUT);
+                KafkaGatewayTransport gateway1 = new KafkaGatewayTransport(producerFactory, consumerFactory, codec,
+                        STATIC_TOPIC, COMMAND_TOPIC, RESPONSE_TOPIC, "test-gateways-2", TIMEOUT)) {
+            subscribeEcho(processor);
+
+            SeqismMessage<Object> step1 = gateway1.sendAndReceiveInit(message("tran-2", "hello"));
+            assertThat(step1).isNotNull();
+            assertThat(step1.getHeader().getRoute()).isNotNull();
+
+            // the second instance takes a partition of the response topic over, and the reply of the next step is
+            // sent to the partition it owns, not to the one of the first instance
+            try (KafkaGatewayTransport gateway2 = new KafkaGatewayTransport(producerFactory, consumerFactory, codec,
+                    STATIC_TOPIC, COMMAND_TOPIC, RESPONSE_TOPIC, "test-gateways-2", TIMEOUT)) {
+                SeqismMessage<Object> step2 = gateway2.sendAndReceiveNext(step1.withBody("world"));
+                assertThat(step2).isNotNull();
+                assertThat(step2.getBody()).isEqualTo("hello+world");
+            }
+        } finally {
+            producerFactory.destroy();
+        }
+    }
+
+    /**
+     * Subscribes a two-step conversation: echo the first body, then append the second body to it.
+     */
+    private static void subscribeEcho(KafkaProcessorTransport processor) {
+        processor.subscribe(first -> CompletableFuture.runAsync(() -> {
+            SeqismMessage<Object> next = processor.sendAndReceiveOrThrow(first.toInProgress()
+                    .withBody("echo:" + first.getBody()));
+            processor.sendFinal(next.toSuccess().withBody(first.getBody() + "+" + next.getBody()));
+        }));
+    }
+
+    private static DefaultKafkaProducerFactory<String, byte[]> producerFactory(EmbeddedKafkaBroker broker) {
+        return new DefaultKafkaProducerFactory<>(KafkaTestUtils.producerProps(broker), new StringSerializer(),
+                new ByteArraySerializer());
+    }
+
+    private static DefaultKafkaConsumerFactory<String, byte[]> consumerFactory(EmbeddedKafkaBroker broker) {
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("unused", "false", broker);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return new DefaultKafkaConsumerFactory<>(consumerProps, new StringDeserializer(),
+                new ByteArrayDeserializer());
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.prometheuskr.seqism.integration;
+
+import static io.github.prometheuskr.seqism.integration.SeqismApplications.message;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import io.github.prometheuskr.seqism.common.transport.GatewayTransport;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.integration.SeqismApplications.GatewayApplication;
+import io.github.prometheuskr.seqism.integration.SeqismApplications.ProcessorApplication;
+
+/**
+ * Runs a conversation between a gateway and a processor, each in an application context of its own, over a RabbitMQ
+ * broker started in a container. Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RabbitTransportRoundTripTest {
+    @Container
+    static final RabbitMQContainer RABBIT = new RabbitMQContainer(DockerImageName.parse("rabbitmq:3.13-alpine"));
+
+    @Test
+    void runsConversationBetweenGatewayAndProcessor() {
+        try (ConfigurableApplicationContext processor = run(ProcessorApplication.class);
+                ConfigurableApplicationContext gateway = run(GatewayApplication.class)) {
+            GatewayTransport transport = gateway.getBean(GatewayTransport.class);
+
+            SeqismMessage<Object> step1 = transport.sendAndReceiveInit(message("tran-1", "hello"));
+            assertThat(step1).isNotNull();
+            assertThat(step1.getHeader().getStatus()).isEqualTo(SeqismMessageStatus.IN_PROGRESS);
+            assertThat(step1.getBody()).isEqualTo("echo:hello");
+
+            SeqismMessage<Object> step2 = transport.sendAndReceiveNext(step1.withBody("world"));
+            assertThat(step2).isNotNull();
+            assertThat(step2.getHeader().getStatus()).isEqualTo(SeqismMessageStatus.SUCCESS);
+            assertThat(step2.getBody()).isEqualTo("hello+world");
+        }
+    }
+
+    private static ConfigurableApplicationContext run(Class<?> application) {
+        return SeqismApplications.run(application,
+                "--spring.rabbitmq.host=" + RABBIT.getHost(),
+                "--spring.rabbitmq.port=" + RABBIT.getAmqpPort(),
+                "--spring.rabbitmq.username=" + RABBIT.getAdminUsername(),
+                "--spring.rabbitmq.password=" + RABBIT.getAdminPassword());
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.prometheuskr.seqism.integration;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.gateway.helper.ConversationQueuePool;
+import io.github.prometheuskr.seqism.gateway.helper.GateWayQueueHelper;
+import io.github.prometheuskr.seqism.gateway.helper.QueueReaper;
+import io.github.prometheuskr.seqism.gateway.service.GatewayService;
+import io.github.prometheuskr.seqism.processor.SeqismProcessor;
+import io.github.prometheuskr.seqism.processor.config.ProcessorAuditConfig;
+import io.github.prometheuskr.seqism.processor.config.StateStoreConfig;
+import io.github.prometheuskr.seqism.processor.endpoint.DefaultSeqismMessageListener;
+import io.github.prometheuskr.seqism.processor.endpoint.ProcessorInboxListener;
+import io.github.prometheuskr.seqism.processor.helper.ConversationExecutor;
+import io.github.prometheuskr.seqism.processor.helper.FairScheduler;
+import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
+import io.github.prometheuskr.seqism.processor.helper.ReplyPublisher;
+
+/**
+ * Gateway and processor applications, each run in an application context of its own, configured as their starters
+ * do. The processor runs a single two-step {@link EchoProcessor}.
+ */
+final class SeqismApplications {
+    static final String BIZ_CODE = "TEST";
+
+    private SeqismApplications() {}
+
+    /**
+     * Runs the given application without a web server.
+     *
+     * @param application
+     *            {@link GatewayApplication} or {@link ProcessorApplication}
+     * @param args
+     *            the properties of the application, as {@code --name=value} arguments rather than default
+     *            properties, which the application.yml of the modules would override
+     * @return the running application context
+     */
+    static ConfigurableApplicationContext run(Class<?> application, String... args) {
+        return new SpringApplicationBuilder(application)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+
+    /**
+     * Creates the first step of a conversation of {@link #BIZ_CODE}.
+     */
+    static SeqismMessage<Object> message(String tranId, Object body) {
+        return new SeqismMessage<>(new SeqismMessageHeader(BIZ_CODE, tranId, SeqismMessageStatus.IN_PROGRESS, null),
+                body);
+    }
+
+    /**
+     * The gateway, as imported by its starter.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ RabbitAutoConfiguration.class, KafkaAutoConfiguration.class,
+            JacksonAutoConfiguration.class })
+    @Import({
+            io.github.prometheuskr.seqism.gateway.config.RabbitConfig.class,
+            io.github.prometheuskr.seqism.gateway.config.TransportConfig.class,
+            io.github.prometheuskr.seqism.gateway.config.KafkaConfig.class,
+            io.github.prometheuskr.seqism.gateway.config.GatewayAuditConfig.class,
+            GateWayQueueHelper.class,
+            GatewayService.class,
+            ConversationQueuePool.class,
+            QueueReaper.class
+    })
+    static class GatewayApplication {}
+
+    /**
+     * The processor, as imported by its starter, with a single two-step processor.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ RabbitAutoConfiguration.class, KafkaAutoConfiguration.class,
+            JacksonAutoConfiguration.class })
+    @Import({
+            io.github.prometheuskr.seqism.processor.config.RabbitConfig.class,
+            io.github.prometheuskr.seqism.processor.config.TransportConfig.class,
+            io.github.prometheuskr.seqism.processor.config.KafkaConfig.class,
+            ProcessorAuditConfig.class,
+            StateStoreConfig.class,
+            DefaultSeqismMessageListener.class,
+            ProcessorInboxListener.class,
+            ProcessorQueueHelper.class,
+            ReplyPublisher.class,
+            ConversationExecutor.class,
+            FairScheduler.class,
+            EchoProcessor.class
+    })
+    static class ProcessorApplication {}
+
+    /**
+     * Echoes the first body, then appends the second body to it.
+     */
+    static class EchoProcessor extends SeqismProcessor<String, String> {
+        EchoProcessor(ObjectMapper mapper, ProcessorTransport queueHelper) {
+            super(mapper, queueHelper);
+        }
+
+        @Override
+        public String getBizCode() {
+            return BIZ_CODE;
+        }
+
+        @Override
+        public Class<String> getBodyType() {
+            return String.class;
+        }
+
+        @Override
+        public void process(SeqismMessage<String> message) {
+            SeqismMessage<String> next = sendAndReceiveOrThrow(message.toInProgress()
+                    .withBody("echo:" + message.getBody()));
+            sendFinal(next.toSuccess().withBody(message.getBody() + "+" + next.getBody()));
+        }
+    }
+}
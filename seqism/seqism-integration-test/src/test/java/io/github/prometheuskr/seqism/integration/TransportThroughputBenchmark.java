@@ -0,0 +1,110 @@
+package io.github.prometheuskr.seqism.integration;
+
+import static io.github.prometheuskr.seqism.integration.SeqismApplications.message;
+import static io.github.prometheuskr.seqism.integration.SeqismApplications.run;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.transport.GatewayTransport;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.integration.SeqismApplications.GatewayApplication;
+import io.github.prometheuskr.seqism.integration.SeqismApplications.ProcessorApplication;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the throughput of two-step conversations over Kafka with the one over RabbitMQ, between a gateway and a
+ * processor application configured alike but for {@code seqism.transport.type}.
+ * <p>
+ * Only run with {@code -Dseqism.benchmark=true}, and skipped when Docker is not available. The RabbitMQ broker runs
+ * in a container and the Kafka broker in this JVM, so the figures compare the two paths on one host rather than
+ * predict a deployment.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "seqism.benchmark", matches = "true")
+@Testcontainers(disabledWithoutDocker = true)
+@EmbeddedKafka(partitions = 4, topics = { SeqismConstant.SEQISM_STATIC_TOPIC, SeqismConstant.SEQISM_COMMAND_TOPIC,
+        SeqismConstant.SEQISM_RESPONSE_TOPIC })
+class TransportThroughputBenchmark {
+    static final int CLIENTS = 16;
+    static final int WARMUP_CONVERSATIONS = 500;
+    static final int CONVERSATIONS = 5_000;
+
+    @Container
+    static final RabbitMQContainer RABBIT = new RabbitMQContainer(DockerImageName.parse("rabbitmq:3.13-alpine"));
+
+    @Test
+    void comparesKafkaWithRabbitMq(EmbeddedKafkaBroker broker) {
+        double rabbitMq = conversationsPerSecond(SeqismConstant.TRANSPORT_RABBITMQ, broker);
+        double kafka = conversationsPerSecond(SeqismConstant.TRANSPORT_KAFKA, broker);
+
+        log.info("{} conversations of two steps by {} clients : {} {}/s, {} {}/s", CONVERSATIONS, CLIENTS,
+                SeqismConstant.TRANSPORT_RABBITMQ, String.format("%.1f", rabbitMq),
+                SeqismConstant.TRANSPORT_KAFKA, String.format("%.1f", kafka));
+        assertThat(rabbitMq).isPositive();
+        assertThat(kafka).isPositive();
+    }
+
+    /**
+     * Runs the gateway and the processor over the given transport, warms them up, then measures.
+     */
+    private static double conversationsPerSecond(String transportType, EmbeddedKafkaBroker broker) {
+        String[] args = {
+                "--seqism.transport.type=" + transportType,
+                "--spring.rabbitmq.host=" + RABBIT.getHost(),
+                "--spring.rabbitmq.port=" + RABBIT.getAmqpPort(),
+                "--spring.rabbitmq.username=" + RABBIT.getAdminUsername(),
+                "--spring.rabbitmq.password=" + RABBIT.getAdminPassword(),
+                "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                // the first steps sent before the processors joined the group are not skipped
+                "--spring.kafka.consumer.auto-offset-reset=earliest"
+        };
+        try (ConfigurableApplicationContext processor = run(ProcessorApplication.class, args);
+                ConfigurableApplicationContext gateway = run(GatewayApplication.class, args)) {
+            GatewayTransport transport = gateway.getBean(GatewayTransport.class);
+
+            converse(transport, transportType + "-warmup-", WARMUP_CONVERSATIONS);
+            long start = System.nanoTime();
+            converse(transport, transportType + "-", CONVERSATIONS);
+            return CONVERSATIONS * 1_000_000_000d / (System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs the given number of conversations by {@link #CLIENTS} concurrent clients.
+     */
+    private static void converse(GatewayTransport transport, String tranIdPrefix, int conversations) {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            CompletableFuture.allOf(IntStream.range(0, conversations)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> converse(transport, tranIdPrefix + i), clients))
+                    .toArray(CompletableFuture[]::new))
+                    .join();
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static void converse(GatewayTransport transport, String tranId) {
+        SeqismMessage<Object> step1 = transport.sendAndReceiveInit(message(tranId, "hello"));
+        SeqismMessage<Object> step2 = step1 == null ? null : transport.sendAndReceiveNext(step1.withBody("world"));
+        if (step2 == null || step2.getHeader().getStatus() != SeqismMessageStatus.SUCCESS) {
+            throw new IllegalStateException("Conversation " + tranId + " did not succeed : " + step2);
+        }
+    }
+}
@@ -3,9 +3,19 @@ package io.github.prometheuskr.seqism.processor.autoconfig;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
+import io.github.prometheuskr.seqism.processor.config.KafkaConfig;
+import io.github.prometheuskr.seqism.processor.config.MetricsConfig;
+import io.github.prometheuskr.seqism.processor.config.ProcessorAuditConfig;
 import io.github.prometheuskr.seqism.processor.config.RabbitConfig;
+import io.github.prometheuskr.seqism.processor.config.StateStoreConfig;
+import io.github.prometheuskr.seqism.processor.config.TransportConfig;
 import io.github.prometheuskr.seqism.processor.endpoint.DefaultSeqismMessageListener;
+import io.github.prometheuskr.seqism.processor.endpoint.ProcessorInboxListener;
+import io.github.prometheuskr.seqism.processor.helper.CheckpointReaper;
+import io.github.prometheuskr.seqism.processor.helper.ConversationExecutor;
+import io.github.prometheuskr.seqism.processor.helper.FairScheduler;
 import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
+import io.github.prometheuskr.seqism.processor.helper.ReplyPublisher;
 
 /**
  * Auto-configuration class for the Seqism Processor module.
@@ -15,6 +25,16 @@ import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
  * <li>{@link RabbitConfig} - Configuration for RabbitMQ integration.</li>
  * <li>{@link DefaultSeqismMessageListener} - Registers the default message listener for processing messages.</li>
  * <li>{@link ProcessorQueueHelper} - Provides helper methods for queue management.</li>
+ * <li>{@link ReplyPublisher} - Publisher of the replies, with optional confirms and batching.</li>
+ * <li>{@link ConversationExecutor} - Executor of the conversations, by priority and with bounded concurrency.</li>
+ * <li>{@link FairScheduler} - Weighted fair scheduler of the conversations behind per-bizCode bulkheads.</li>
+ * <li>{@link ProcessorInboxListener} - Consumer of the inbox queue of this processor instance.</li>
+ * <li>{@link TransportConfig} - Selection of the transport used by the processors.</li>
+ * <li>{@link KafkaConfig} - Kafka transport of the processors.</li>
+ * <li>{@link StateStoreConfig} - Store of the checkpoints of the resumable conversations.</li>
+ * <li>{@link CheckpointReaper} - Purge of the checkpoints of abandoned conversations.</li>
+ * <li>{@link ProcessorAuditConfig} - Opt-in audit log of the exchanged steps.</li>
+ * <li>{@link MetricsConfig} - Micrometer meters of the processor, when Micrometer is present.</li>
  * </ul>
  * <p>
  * This class is automatically detected and applied by Spring Boot's auto-configuration mechanism.
@@ -23,7 +43,17 @@ import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
 @Import({
         RabbitConfig.class,
         DefaultSeqismMessageListener.class,
-        ProcessorQueueHelper.class
+        ProcessorQueueHelper.class,
+        ReplyPublisher.class,
+        ConversationExecutor.class,
+        FairScheduler.class,
+        ProcessorInboxListener.class,
+        TransportConfig.class,
+        KafkaConfig.class,
+        StateStoreConfig.class,
+        CheckpointReaper.class,
+        ProcessorAuditConfig.class,
+        MetricsConfig.class
 })
 public class SeqismProcessorAutoConfiguration {
     /**
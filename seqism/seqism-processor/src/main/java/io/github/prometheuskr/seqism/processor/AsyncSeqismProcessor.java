@@ -0,0 +1,148 @@
+package io.github.prometheuskr.seqism.processor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Abstract base class for processors that wait for the next steps of their conversations without holding a thread.
+ * <p>
+ * Instead of blocking in {@link #sendAndReceiveOrThrow(SeqismMessage)}, a subclass chains its steps on the stages
+ * returned by {@link #sendAndReceiveAsync(SeqismMessage)} and returns the stage of the whole conversation from
+ * {@link #processAsync(SeqismMessage)}. Between two steps the conversation is only a callback registered with the
+ * transport, so a processor instance can keep a large number of conversations waiting for their clients with a
+ * handful of threads. The continuations run on the common pool and must not block. The conversation still holds its
+ * slot in the executor and in the bulkhead of its business code until its stage completes, see
+ * {@link #start(SeqismMessage)}.
+ * <p>
+ * A conversation whose stage completes exceptionally is answered with a failure message: the error information of
+ * a {@link SeqismException}, or {@link ErrorInfo#ERROR_0002_0002} with the exception message for any other
+ * exception.
+ * <p>
+ * Waiting without a thread requires a transport with a non-blocking receive: the in-JVM, memory-mapped file and
+ * Kafka transports, or RabbitMQ with inbox queues ({@code seqism.queue.inbox.enabled=true}). Other configurations
+ * still work, with a thread waiting for each step.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * public CompletionStage&lt;Void&gt; processAsync(SeqismMessage&lt;Body&gt; message) {
+ *     return sendAndReceiveAsync(message.withBody(step1))
+ *             .thenCompose(response -&gt; sendAndReceiveAsync(response.withBody(step2)))
+ *             .thenAccept(response -&gt; sendFinal(response.withBody(done).toSuccess()));
+ * }
+ * </pre>
+ *
+ * @param <R>
+ *            the type of the response message payload
+ * @param <C>
+ *            the type of the command message payload
+ */
+@Slf4j
+public abstract class AsyncSeqismProcessor<R, C> extends SeqismProcessor<R, C> {
+    /**
+     * Constructs a new {@code AsyncSeqismProcessor} with the specified {@link ObjectMapper} and
+     * {@link ProcessorTransport}.
+     *
+     * @param mapper
+     *            the {@link ObjectMapper} used for JSON serialization and deserialization
+     * @param queueHelper
+     *            the {@link ProcessorTransport} used to manage processing queues
+     */
+    public AsyncSeqismProcessor(ObjectMapper mapper, ProcessorTransport queueHelper) {
+        super(mapper, queueHelper);
+    }
+
+    /**
+     * Sends the specified {@link SeqismMessage} and returns a stage completing with the response, its body decoded
+     * straight into the expected type where the transport supports it, or else converted using the configured
+     * {@code mapper}.
+     *
+     * @param message
+     *            the message to send
+     * @return a stage completing with the response, or exceptionally if the send or receive operation fails
+     */
+    protected CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message) {
+        return queueHelper.<R, C>sendAndReceiveAsync(message, getBodyType())
+                .thenApply(response -> response.withBody(toBodyType(response.getBody())));
+    }
+
+    /**
+     * Starts the conversation with {@link #processAsync(SeqismMessage)} and returns without waiting for it; a failure
+     * of the conversation is answered with a failure message once it occurs.
+     *
+     * @param message
+     *            the first step of the conversation; must not be {@code null}
+     */
+    @Override
+    public final void process(SeqismMessage<R> message) {
+        start(message);
+    }
+
+    /**
+     * Starts the conversation with {@link #processAsync(SeqismMessage)} and returns the stage completing once it
+     * ends, after its failure message if it fails.
+     *
+     * @param message
+     *            the first step of the conversation; must not be {@code null}
+     * @return the stage completing normally once the conversation ends, whether it succeeded or not
+     */
+    @Override
+    public final CompletionStage<Void> start(SeqismMessage<R> message) {
+        CompletionStage<Void> conversation;
+        try {
+            conversation = processAsync(message);
+        } catch (RuntimeException e) {
+            conversation = CompletableFuture.failedFuture(e);
+        }
+
+        return conversation.handle((ignored, e) -> {
+            if (e != null) {
+                sendFailure(message, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Answers a failed conversation with a failure message.
+     *
+     * @param message
+     *            the first step of the conversation
+     * @param cause
+     *            the failure of the conversation
+     */
+    void sendFailure(SeqismMessage<R> message, Throwable cause) {
+        log.error("An exception occurred while processing", cause);
+        try {
+            if (cause instanceof SeqismException e) {
+                queueHelper.sendFinal(message.toFailure(e.getErrorInfo()));
+            } else {
+                queueHelper.sendFinal(message.toFailure(ErrorInfo.ERROR_0002_0002, cause.getMessage()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to send the failure of tranId [{}]", message.getHeader().getTranId(), e);
+        }
+    }
+
+    /**
+     * Processes the given {@link SeqismMessage} asynchronously.
+     * <p>
+     * This method should be implemented to chain the steps of the conversation, ending it with
+     * {@link #sendFinal(SeqismMessage)}.
+     *
+     * @param message
+     *            the first step of the conversation; must not be {@code null}
+     * @return the stage completing once the conversation ends
+     */
+    public abstract CompletionStage<Void> processAsync(SeqismMessage<R> message);
+}
@@ -0,0 +1,164 @@
+package io.github.prometheuskr.seqism.processor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.processor.graph.StepEngine;
+import io.github.prometheuskr.seqism.processor.graph.StepGraph;
+import io.github.prometheuskr.seqism.processor.state.ConversationStore;
+
+/**
+ * Abstract base class for processors declaring the steps of their conversations as a {@link StepGraph}.
+ * <p>
+ * Instead of writing the conversation as one method, a subclass declares in {@link #defineGraph()} a handler for each
+ * step and the transitions between them. A {@link StepEngine} then runs each step when its message arrives, on top
+ * of {@link #sendAndReceiveAsync(SeqismMessage)}, so that the progress of a conversation is the step it waits for
+ * rather than the stack of a blocked thread. The engine counts and times every step, see {@link #getStepStats()}.
+ * <p>
+ * A processor constructed with a {@link ConversationStore} makes its conversations resumable: between two steps a
+ * conversation is only a checkpoint in the store, and its next step is routed to the static queues, where any
+ * processor instance sharing the store may take it. Processor instances can then be added or removed while
+ * conversations are in progress, and a long pause of the client costs no memory. This requires a transport that can
+ * send detached replies, that is RabbitMQ; with other transports the conversations wait in this instance as usual.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * protected StepGraph&lt;Body, Body&gt; defineGraph() {
+ *     return StepGraph.&lt;Body, Body&gt;builder()
+ *             .start("init", message -&gt; StepResult.next("confirm", message.withBody(prompt)), "confirm")
+ *             .step("confirm", message -&gt; StepResult.complete(message.withBody(done).toSuccess()))
+ *             .build();
+ * }
+ * </pre>
+ *
+ * @param <R>
+ *            the type of the response message payload
+ * @param <C>
+ *            the type of the command message payload
+ */
+@Slf4j
+public abstract class GraphSeqismProcessor<R, C> extends AsyncSeqismProcessor<R, C> {
+    /**
+     * The engine running the graph; created on the first conversation.
+     */
+    private volatile StepEngine<R, C> engine;
+    /**
+     * Stores the checkpoints of the conversations; {@code null} if conversations wait in this instance.
+     */
+    private final ConversationStore store;
+
+    /**
+     * Constructs a new {@code GraphSeqismProcessor} with the specified {@link ObjectMapper} and
+     * {@link ProcessorTransport}.
+     *
+     * @param mapper
+     *            the {@link ObjectMapper} used for JSON serialization and deserialization
+     * @param queueHelper
+     *            the {@link ProcessorTransport} used to manage processing queues
+     */
+    public GraphSeqismProcessor(ObjectMapper mapper, ProcessorTransport queueHelper) {
+        this(mapper, queueHelper, null);
+    }
+
+    /**
+     * Constructs a new {@code GraphSeqismProcessor} whose conversations are resumable by any processor instance
+     * sharing the given {@link ConversationStore}.
+     *
+     * @param mapper
+     *            the {@link ObjectMapper} used for JSON serialization and deserialization
+     * @param queueHelper
+     *            the {@link ProcessorTransport} used to manage processing queues
+     * @param store
+     *            the {@link ConversationStore} keeping the checkpoints of the conversations; {@code null} if
+     *            conversations wait in this instance
+     */
+    public GraphSeqismProcessor(ObjectMapper mapper, ProcessorTransport queueHelper, ConversationStore store) {
+        super(mapper, queueHelper);
+        this.store = store;
+    }
+
+    /**
+     * Runs the conversation through the steps of the graph.
+     *
+     * @param message
+     *            the first step of the conversation; must not be {@code null}
+     * @return the stage completing once the conversation ends
+     */
+    @Override
+    public final CompletionStage<Void> processAsync(SeqismMessage<R> message) {
+        return getEngine().start(message);
+    }
+
+    /**
+     * Returns the statistics of the steps of the graph.
+     *
+     * @return the statistics of each step, in declaration order
+     */
+    public List<StepEngine.StepStats> getStepStats() {
+        return getEngine().getStats();
+    }
+
+    /**
+     * Returns the step each conversation in progress waits for.
+     *
+     * @return the step names, keyed by transaction ID
+     */
+    public Map<String, String> getWaitingSteps() {
+        return getEngine().getWaitingSteps();
+    }
+
+    /**
+     * Returns the engine, creating it from {@link #defineGraph()} on first use, once subclass fields are set.
+     *
+     * @return the engine running the graph
+     */
+    StepEngine<R, C> getEngine() {
+        StepEngine<R, C> current = engine;
+        if (current == null) {
+            synchronized (this) {
+                current = engine;
+                if (current == null) {
+                    current = createEngine();
+                    engine = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Creates the engine running the graph, resumable if a store is given and the transport can send detached
+     * replies.
+     *
+     * @return the engine
+     */
+    StepEngine<R, C> createEngine() {
+        if (store == null) {
+            return new StepEngine<>(defineGraph(), this::sendAndReceiveAsync, this::sendFinal);
+        }
+        if (!queueHelper.canSendDetached()) {
+            log.warn("Transport cannot resume conversations of bizCode [{}] on other instances, they wait in this one",
+                    getBizCode());
+            return new StepEngine<>(defineGraph(), this::sendAndReceiveAsync, this::sendFinal);
+        }
+        return new StepEngine<>(defineGraph(), this::sendAndReceiveAsync, this::sendFinal, store,
+                queueHelper::sendDetached);
+    }
+
+    /**
+     * Declares the steps of the conversations of the processor.
+     * <p>
+     * Called once, before the first conversation.
+     *
+     * @return the graph of the conversations
+     */
+    protected abstract StepGraph<R, C> defineGraph();
+}
@@ -1,15 +1,18 @@
 package io.github.prometheuskr.seqism.processor;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
-import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
 
 /**
  * Abstract base class for processing Seqism messages with a specific body type.
  * <p>
  * This processor uses an {@link ObjectMapper} for converting message bodies and a
- * {@link ProcessorQueueHelper} for handling message queue operations. Subclasses must
+ * {@link ProcessorTransport} for handling message queue operations. Subclasses must
  * implement business-specific logic by providing the business code, body type, and
  * message processing implementation.
  *
@@ -28,18 +31,19 @@ public abstract class SeqismProcessor<R, C> {
      * Helper instance for managing and interacting with the processor's internal queue.
      * Provides utility methods to enqueue, dequeue, and inspect queued items during processing.
      */
-    protected final ProcessorQueueHelper queueHelper;
+    protected final ProcessorTransport queueHelper;
 
     /**
      * Constructs a new {@code SeqismProcessor} with the specified {@link ObjectMapper} and
-     * {@link ProcessorQueueHelper}.
+     * {@link ProcessorTransport}.
      *
      * @param mapper
      *            the {@link ObjectMapper} used for JSON serialization and deserialization
      * @param queueHelper
-     *            the {@link ProcessorQueueHelper} used to manage processing queues
+     *            the {@link ProcessorTransport} used to manage processing queues; the primary
+     *            {@link ProcessorTransport} bean is the one selected by {@code seqism.transport.type}
      */
-    public SeqismProcessor(ObjectMapper mapper, ProcessorQueueHelper queueHelper) {
+    public SeqismProcessor(ObjectMapper mapper, ProcessorTransport queueHelper) {
         this.mapper = mapper;
         this.queueHelper = queueHelper;
     }
@@ -47,8 +51,9 @@ public abstract class SeqismProcessor<R, C> {
     /**
      * Sends the specified {@link SeqismMessage} and waits for a response, throwing an exception if an error occurs.
      * <p>
-     * This method delegates the send-and-receive operation to {@code queueHelper}, then converts the response body
-     * to the expected type using the configured {@code mapper}. The returned message contains the converted body.
+     * This method delegates the send-and-receive operation to {@code queueHelper}, which decodes the response body
+     * straight into the expected type where the transport supports it; otherwise the body is converted using the
+     * configured {@code mapper}. The returned message contains the converted body.
      *
      * @param message
      *            the message to send
@@ -57,9 +62,20 @@ public abstract class SeqismProcessor<R, C> {
      *             if the send or receive operation fails
      */
     protected SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message) {
-        SeqismMessage<R> response = queueHelper.sendAndReceiveOrThrow(message);
-        R respBody = mapper.convertValue(response.getBody(), getBodyType());
-        return response.withBody(respBody);
+        SeqismMessage<R> response = queueHelper.sendAndReceiveOrThrow(message, getBodyType());
+        return response.withBody(toBodyType(response.getBody()));
+    }
+
+    /**
+     * Converts a body to the body type of this processor, unless it is already of that type.
+     *
+     * @param body
+     *            the body of a received message, decoded or not
+     * @return the body, of the body type
+     */
+    R toBodyType(Object body) {
+        Class<R> bodyType = getBodyType();
+        return bodyType.isInstance(body) ? bodyType.cast(body) : mapper.convertValue(body, bodyType);
     }
 
     /**
@@ -98,4 +114,21 @@ public abstract class SeqismProcessor<R, C> {
      *            the message to process; must not be {@code null}
      */
     public abstract void process(SeqismMessage<R> message);
+
+    /**
+     * Starts the conversation of the given {@link SeqismMessage} and returns the stage completing once it ends, so
+     * that the slot the conversation holds in the executor and in the bulkhead of its business code is released only
+     * then.
+     * <p>
+     * The default implementation runs {@link #process(SeqismMessage)} and returns a completed stage, the conversation
+     * having ended once it returns.
+     *
+     * @param message
+     *            the first step of the conversation; must not be {@code null}
+     * @return the stage completing once the conversation ends
+     */
+    public CompletionStage<Void> start(SeqismMessage<R> message) {
+        process(message);
+        return CompletableFuture.completedFuture(null);
+    }
 }
\ No newline at end of file
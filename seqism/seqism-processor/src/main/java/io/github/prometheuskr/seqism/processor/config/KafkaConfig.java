@@ -0,0 +1,87 @@
+package io.github.prometheuskr.seqism.processor.config;
+
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.processor.helper.KafkaProcessorTransport;
+
+/**
+ * Configuration class for the Kafka transport of the processors, selected by {@code seqism.transport.type=kafka}.
+ * <p>
+ * The connection is configured by the standard {@code spring.kafka.*} properties; the keys and values of the records
+ * are always strings and bytes. The topics are configured by the following properties, which must match those of
+ * the gateway:
+ * <ul>
+ * <li><code>seqism.kafka.topic.static</code> (defaults to {@link SeqismConstant#SEQISM_STATIC_TOPIC})</li>
+ * <li><code>seqism.kafka.topic.command</code> (defaults to {@link SeqismConstant#SEQISM_COMMAND_TOPIC})</li>
+ * <li><code>seqism.kafka.topic.response</code> (defaults to {@link SeqismConstant#SEQISM_RESPONSE_TOPIC})</li>
+ * <li><code>seqism.kafka.group</code> - the consumer group sharing the static topic, and suffixed with
+ * {@code -command} the command topic (defaults to {@link SeqismConstant#SEQISM_PROCESSOR_GROUP})</li>
+ * </ul>
+ * The topics must exist before the processors start, the command topic with at least as many partitions as processor
+ * instances. spring-kafka is an optional dependency of the processors:
+ * the application selecting the Kafka transport must declare it, and the configuration is skipped without it.
+ */
+@Configuration
+@ConditionalOnClass(name = "org.springframework.kafka.core.KafkaTemplate")
+public class KafkaConfig {
+    /**
+     * Default constructor for the {@code KafkaConfig} class.
+     * Initializes a new instance of the configuration without any parameters.
+     */
+    public KafkaConfig() {}
+
+    /**
+     * Creates the Kafka transport of the processors. The bean is lazy, so that no Kafka client is created unless the
+     * Kafka transport is selected.
+     *
+     * @param kafkaProperties
+     *            the {@code spring.kafka.*} properties
+     * @param objectMapper
+     *            the mapper encoding the records
+     * @param staticTopic
+     *            the topic of the first steps, resolved from the property {@code seqism.kafka.topic.static}
+     * @param commandTopic
+     *            the topic of the next steps, resolved from the property {@code seqism.kafka.topic.command}
+     * @param responseTopic
+     *            the topic of the replies, resolved from the property {@code seqism.kafka.topic.response}
+     * @param groupId
+     *            the consumer group of the processors on the static topic, resolved from the property
+     *            {@code seqism.kafka.group}
+     * @param messageReceiveTimeout
+     *            the timeout (in milliseconds) for receiving the next steps, resolved from the property
+     *            {@code seqism.queue.receive.timeout} or defaults to {@link SeqismConstant#RECEIVE_TIME_OUT}
+     * @return the Kafka transport
+     */
+    @Bean
+    @Lazy
+    public KafkaProcessorTransport kafkaProcessorTransport(KafkaProperties kafkaProperties, ObjectMapper objectMapper,
+            @Value("${seqism.kafka.topic.static:" + SeqismConstant.SEQISM_STATIC_TOPIC + "}") String staticTopic,
+            @Value("${seqism.kafka.topic.command:" + SeqismConstant.SEQISM_COMMAND_TOPIC + "}") String commandTopic,
+            @Value("${seqism.kafka.topic.response:" + SeqismConstant.SEQISM_RESPONSE_TOPIC
+                    + "}") String responseTopic,
+            @Value("${seqism.kafka.group:" + SeqismConstant.SEQISM_PROCESSOR_GROUP + "}") String groupId,
+            @Value("${seqism.queue.receive.timeout:" + SeqismConstant.RECEIVE_TIME_OUT
+                    + "}") long messageReceiveTimeout) {
+        return new KafkaProcessorTransport(
+                new DefaultKafkaProducerFactory<>(kafkaProperties.buildProducerProperties(null),
+                        new StringSerializer(), new ByteArraySerializer()),
+                new DefaultKafkaConsumerFactory<>(kafkaProperties.buildConsumerProperties(null),
+                        new StringDeserializer(), new ByteArrayDeserializer()),
+                TransportConfig.frameCodec(objectMapper), staticTopic, commandTopic, responseTopic, groupId,
+                messageReceiveTimeout);
+    }
+}
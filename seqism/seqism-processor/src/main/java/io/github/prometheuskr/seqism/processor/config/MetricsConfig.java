@@ -0,0 +1,141 @@
+package io.github.prometheuskr.seqism.processor.config;
+
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.github.prometheuskr.seqism.processor.helper.ConversationExecutor;
+import io.github.prometheuskr.seqism.processor.helper.FairScheduler;
+import io.github.prometheuskr.seqism.processor.helper.FairScheduler.LaneStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Configuration class binding the counters of the processor to Micrometer.
+ * <p>
+ * The binders are only created when Micrometer is on the classpath, and the meters are only registered when the
+ * application has a {@code MeterRegistry}, as with Spring Boot Actuator. Otherwise the counters remain available
+ * through the getters of the components.
+ * <p>
+ * The meters are named after the properties configuring the component they observe:
+ * <ul>
+ * <li><code>seqism.processor.executor.*</code>: the {@link ConversationExecutor}</li>
+ * <li><code>seqism.processor.bulkhead.*</code>: the lanes of the {@link FairScheduler}, tagged with their
+ * {@code bizCode} and registered as the lanes are created</li>
+ * </ul>
+ */
+@Configuration
+@ConditionalOnClass(MeterBinder.class)
+public class MetricsConfig {
+    /**
+     * Default constructor for the {@code MetricsConfig} class.
+     * Initializes a new instance of the configuration without any parameters.
+     */
+    public MetricsConfig() {}
+
+    /**
+     * Binds the in-flight conversations, the backlog and the rejections of the {@link ConversationExecutor}.
+     *
+     * @param executor
+     *            the executor of the conversations
+     * @return the binder of the executor meters
+     */
+    @Bean
+    public MeterBinder conversationExecutorMetrics(ConversationExecutor executor) {
+        return registry -> {
+            Gauge.builder("seqism.processor.executor.in-flight", executor, ConversationExecutor::getInFlight)
+                    .description("Conversations accepted and not yet completed")
+                    .register(registry);
+            Gauge.builder("seqism.processor.executor.backlog", executor, ConversationExecutor::getBacklog)
+                    .description("Conversations waiting for a worker")
+                    .register(registry);
+            FunctionCounter.builder("seqism.processor.executor.rejected", executor,
+                    ConversationExecutor::getRejectedCount)
+                    .description("Conversations rejected because none completed within the acquire timeout")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Binds the bulkhead counters of each lane of the {@link FairScheduler}.
+     *
+     * @param scheduler
+     *            the scheduler of the conversations by business code
+     * @return the binder of the bulkhead meters
+     */
+    @Bean
+    public MeterBinder bulkheadMetrics(FairScheduler scheduler) {
+        return registry -> scheduler.addLaneListener(bizCode -> bindLane(registry, scheduler, bizCode));
+    }
+
+    /**
+     * Registers the meters of the lane of a business code.
+     *
+     * @param registry
+     *            the registry of the meters
+     * @param scheduler
+     *            the scheduler owning the lane
+     * @param bizCode
+     *            the business code of the lane
+     */
+    static void bindLane(MeterRegistry registry, FairScheduler scheduler, String bizCode) {
+        gauge(registry, scheduler, bizCode, "queued", "Conversations waiting for a worker", LaneStats::queued);
+        gauge(registry, scheduler, bizCode, "running", "Conversations running", LaneStats::running);
+        gauge(registry, scheduler, bizCode, "wait.max", "Longest wait of a conversation for a worker, in ms",
+                LaneStats::maxWaitMillis);
+        FunctionCounter.builder("seqism.processor.bulkhead.started", scheduler,
+                s -> stat(s, bizCode, LaneStats::started))
+                .description("Conversations started")
+                .tag("bizCode", bizCode)
+                .register(registry);
+        FunctionCounter.builder("seqism.processor.bulkhead.rejected", scheduler,
+                s -> stat(s, bizCode, LaneStats::rejected))
+                .description("Conversations rejected by the bulkhead")
+                .tag("bizCode", bizCode)
+                .register(registry);
+    }
+
+    /**
+     * Registers a gauge of the lane of a business code.
+     *
+     * @param registry
+     *            the registry of the meters
+     * @param scheduler
+     *            the scheduler owning the lane
+     * @param bizCode
+     *            the business code of the lane
+     * @param name
+     *            the name of the gauge, under {@code seqism.processor.bulkhead}
+     * @param description
+     *            the description of the gauge
+     * @param value
+     *            reads the value of the gauge from the statistics of the lane
+     */
+    static void gauge(MeterRegistry registry, FairScheduler scheduler, String bizCode, String name,
+            String description, ToDoubleFunction<LaneStats> value) {
+        Gauge.builder("seqism.processor.bulkhead." + name, scheduler, s -> stat(s, bizCode, value))
+                .description(description)
+                .tag("bizCode", bizCode)
+                .register(registry);
+    }
+
+    /**
+     * Reads a statistic of the lane of a business code.
+     *
+     * @param scheduler
+     *            the scheduler owning the lane
+     * @param bizCode
+     *            the business code of the lane
+     * @param value
+     *            reads the statistic
+     * @return the statistic, or {@code 0} if the lane is unknown
+     */
+    static double stat(FairScheduler scheduler, String bizCode, ToDoubleFunction<LaneStats> value) {
+        LaneStats stats = scheduler.getStats(bizCode);
+        return stats != null ? value.applyAsDouble(stats) : 0;
+    }
+}
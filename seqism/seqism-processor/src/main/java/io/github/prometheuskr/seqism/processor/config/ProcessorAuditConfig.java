@@ -0,0 +1,38 @@
+package io.github.prometheuskr.seqism.processor.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.config.AuditConfig;
+
+/**
+ * Configuration class creating the {@link AuditLog} recording the steps exchanged by the processors, see
+ * {@link AuditConfig} for its properties.
+ * <p>
+ * The segments of this instance are named after {@code processor-<instance id>}.
+ */
+@Configuration
+public class ProcessorAuditConfig extends AuditConfig {
+    /**
+     * The ID of this processor instance.
+     */
+    private final String instanceId;
+
+    /**
+     * Constructs a new {@code ProcessorAuditConfig}.
+     *
+     * @param instanceId
+     *            the ID of this processor instance, resolved from the property {@code seqism.processor.instance.id}
+     *            or defaults to a random UUID
+     */
+    public ProcessorAuditConfig(
+            @Value("${seqism.processor.instance.id:#{T(java.util.UUID).randomUUID().toString()}}") String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    @Override
+    protected String getSegmentName() {
+        return "processor-" + instanceId;
+    }
+}
@@ -1,31 +1,57 @@
 package io.github.prometheuskr.seqism.processor.config;
 
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
+import io.github.prometheuskr.seqism.common.blob.FileBlobStore;
 import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.ClaimCheckHelper;
+import io.github.prometheuskr.seqism.common.helper.CodecHelper;
+import io.github.prometheuskr.seqism.common.helper.CodecMessageConverter;
+import io.github.prometheuskr.seqism.common.helper.PayloadCompressor;
+import io.github.prometheuskr.seqism.common.helper.PriorityHelper;
 import io.github.prometheuskr.seqism.common.helper.QueueNameHelper;
+import io.github.prometheuskr.seqism.processor.SeqismProcessor;
 
 /**
  * Configuration class for setting up RabbitMQ integration using Spring AMQP.
  * <p>
  * This class defines beans for message conversion, RabbitMQ template, administration,
- * queue declaration, and queue name management. It leverages Jackson for JSON
+ * queue declaration, and queue name management. It leverages Jackson for JSON, Smile or CBOR
  * serialization/deserialization of messages and provides configurable queue names
  * and prefixes via application properties.
  * <ul>
- * <li>Configures a {@link Jackson2JsonMessageConverter} for JSON message conversion.</li>
- * <li>Defines a {@link RabbitTemplate} for sending and receiving messages with JSON support.</li>
+ * <li>Configures a {@link CodecMessageConverter} encoding the messages with the codec of their business code.</li>
+ * <li>Optionally compresses the large messages with a {@link PayloadCompressor}.</li>
+ * <li>Optionally offloads the largest messages to a blob store with a {@link ClaimCheckHelper}.</li>
+ * <li>Defines a {@link RabbitTemplate} for sending and receiving messages with the configured codecs.</li>
+ * <li>Defines a second {@link RabbitTemplate}, {@code publisherTemplate}, publishing with confirms and returns and
+ * on a connection of its own when enabled.</li>
  * <li>Provides a {@link RabbitAdmin} for managing AMQP resources such as queues and exchanges.</li>
  * <li>Declares a configurable RabbitMQ {@link Queue} bean.</li>
+ * <li>Declares the static queues consumed by this processor instance, sharded per business code when enabled.</li>
+ * <li>Declares the inbox {@link Queue} of this processor instance when inbox queues are enabled.</li>
  * <li>Creates a {@link QueueNameHelper} bean for managing queue names and prefixes.</li>
+ * <li>Declares the queues shared by conversations with message priorities when conversations are prioritized.</li>
  * </ul>
  * <p>
  * Queue names and prefixes can be customized via the following application properties:
@@ -33,6 +59,37 @@ import io.github.prometheuskr.seqism.common.helper.QueueNameHelper;
  * <li><code>seqism.queue.static.name</code> (defaults to {@link SeqismConstant#SEQISM_STATIC_QUEUE})</li>
  * <li><code>seqism.queue.command.prefix</code> (defaults to {@link SeqismConstant#COMMAND_QUEUE_PREFIX})</li>
  * <li><code>seqism.queue.response.prefix</code> (defaults to {@link SeqismConstant#RESPONSE_QUEUE_PREFIX})</li>
+ * <li><code>seqism.queue.inbox.prefix</code> (defaults to {@link SeqismConstant#INBOX_QUEUE_PREFIX})</li>
+ * <li><code>seqism.queue.inbox.enabled</code> (defaults to {@code false})</li>
+ * <li><code>seqism.processor.instance.id</code> (defaults to a random UUID)</li>
+ * <li><code>seqism.queue.sharding.enabled</code> (defaults to {@code false})</li>
+ * <li><code>seqism.queue.sharding.exchange</code> (defaults to {@link SeqismConstant#SEQISM_STATIC_EXCHANGE})</li>
+ * <li><code>seqism.queue.sharding.shards</code> (defaults to {@code 1})</li>
+ * </ul>
+ * <p>
+ * The codecs of the messages sent can be chosen via the following application properties:
+ * <ul>
+ * <li><code>seqism.codec.default</code> (defaults to {@link SeqismConstant#CODEC_JSON})</li>
+ * <li><code>seqism.codec.biz-codes</code> ({@code <bizCode>:<codec>} entries, defaults to none)</li>
+ * <li><code>seqism.codec.trusted-packages</code> (packages whose classes the type headers of the messages received
+ * may name, besides {@link CodecMessageConverter#SEQISM_PACKAGE}; defaults to none)</li>
+ * <li><code>seqism.compression.enabled</code> (defaults to {@code false})</li>
+ * <li><code>seqism.compression.threshold</code> (defaults to {@link SeqismConstant#COMPRESSION_THRESHOLD})</li>
+ * <li><code>seqism.compression.level</code> (defaults to {@code 1}, the fastest; deflate is the only algorithm, LZ4
+ * is not supported)</li>
+ * <li><code>seqism.compression.max-size</code> (defaults to {@link SeqismConstant#COMPRESSION_MAX_SIZE})</li>
+ * <li><code>seqism.claim-check.enabled</code> (defaults to {@code false})</li>
+ * <li><code>seqism.claim-check.dir</code> (defaults to {@code seqism-blobs} under {@code java.io.tmpdir})</li>
+ * <li><code>seqism.claim-check.threshold</code> (defaults to {@link SeqismConstant#CLAIM_CHECK_THRESHOLD})</li>
+ * <li><code>seqism.claim-check.ttl</code> (defaults to {@code 600000})</li>
+ * <li><code>seqism.claim-check.purge.interval</code> (defaults to {@code 60000})</li>
+ * </ul>
+ * <p>
+ * Publishing can be tuned via the following application properties:
+ * <ul>
+ * <li><code>seqism.publisher.confirms.enabled</code> (defaults to {@code false}); requires
+ * {@code spring.rabbitmq.publisher-confirm-type=correlated} and {@code spring.rabbitmq.publisher-returns=true}</li>
+ * <li><code>seqism.publisher.connection.separate</code> (defaults to {@code false})</li>
  * </ul>
  */
 @Configuration
@@ -45,36 +102,209 @@ public class RabbitConfig {
     public RabbitConfig() {}
 
     /**
-     * Creates a {@link Jackson2JsonMessageConverter} bean for converting messages to and from JSON
-     * using the Jackson library. This converter is typically used with Spring AMQP to automatically
-     * serialize and deserialize message payloads.
+     * Creates the {@link CodecHelper} resolving the codec of the messages sent, by business code.
+     *
+     * @param defaultCodec
+     *            the codec of the business codes without a configured codec, resolved from the property
+     *            {@code seqism.codec.default} or defaults to {@link SeqismConstant#CODEC_JSON}
+     * @param bizCodeCodecs
+     *            the codecs of the business codes as {@code <bizCode>:<codec>} entries separated by commas,
+     *            resolved from the property {@code seqism.codec.biz-codes}
+     * @return a configured {@link CodecHelper} instance
+     */
+    @Bean
+    public CodecHelper codecHelper(
+            @Value("${seqism.codec.default:" + SeqismConstant.CODEC_JSON + "}") String defaultCodec,
+            @Value("${seqism.codec.biz-codes:}") String bizCodeCodecs) {
+        return new CodecHelper(defaultCodec, bizCodeCodecs);
+    }
+
+    /**
+     * Creates the {@link PayloadCompressor} compressing the large messages sent, and decompressing the compressed
+     * messages received whether compression is enabled or not.
+     *
+     * @param enabled
+     *            whether the messages sent are compressed, resolved from the property
+     *            {@code seqism.compression.enabled} or defaults to {@code false}
+     * @param threshold
+     *            the size in bytes from which the encoded messages are compressed, resolved from the property
+     *            {@code seqism.compression.threshold} or defaults to {@link SeqismConstant#COMPRESSION_THRESHOLD}
+     * @param level
+     *            the deflate compression level, resolved from the property {@code seqism.compression.level} or
+     *            defaults to {@code 1}
+     * @param maxSize
+     *            the largest size in bytes of a message received once decompressed, resolved from the property
+     *            {@code seqism.compression.max-size} or defaults to {@link SeqismConstant#COMPRESSION_MAX_SIZE}
+     * @return a configured {@link PayloadCompressor} instance
+     */
+    @Bean
+    public PayloadCompressor payloadCompressor(
+            @Value("${seqism.compression.enabled:false}") boolean enabled,
+            @Value("${seqism.compression.threshold:" + SeqismConstant.COMPRESSION_THRESHOLD + "}") int threshold,
+            @Value("${seqism.compression.level:1}") int level,
+            @Value("${seqism.compression.max-size:" + SeqismConstant.COMPRESSION_MAX_SIZE + "}") int maxSize) {
+        return new PayloadCompressor(enabled, threshold, level, maxSize);
+    }
+
+    /**
+     * Creates the {@link ClaimCheckHelper} offloading the large messages to a {@link FileBlobStore}, or the disabled
+     * helper unless {@code seqism.claim-check.enabled=true}. The directory of the store must be shared with the
+     * gateway and the processors, and the claim-check mode enabled on all of them. The purges stop with the
+     * application context.
+     *
+     * @param enabled
+     *            whether the large messages are offloaded, resolved from the property
+     *            {@code seqism.claim-check.enabled} or defaults to {@code false}
+     * @param dir
+     *            the directory of the blob store, resolved from the property {@code seqism.claim-check.dir} or
+     *            defaults to {@code seqism-blobs} under {@code java.io.tmpdir}
+     * @param threshold
+     *            the size in bytes from which the encoded messages are offloaded, resolved from the property
+     *            {@code seqism.claim-check.threshold} or defaults to {@link SeqismConstant#CLAIM_CHECK_THRESHOLD}
+     * @param ttl
+     *            the time to live of the blobs in milliseconds, resolved from the property
+     *            {@code seqism.claim-check.ttl} or defaults to {@code 600000}
+     * @param purgeInterval
+     *            the interval between two purges in milliseconds, resolved from the property
+     *            {@code seqism.claim-check.purge.interval} or defaults to {@code 60000}
+     * @return a configured {@link ClaimCheckHelper} instance
+     */
+    @Bean(destroyMethod = "close")
+    public ClaimCheckHelper claimCheckHelper(
+            @Value("${seqism.claim-check.enabled:false}") boolean enabled,
+            @Value("${seqism.claim-check.dir:${java.io.tmpdir}/seqism-blobs}") String dir,
+            @Value("${seqism.claim-check.threshold:" + SeqismConstant.CLAIM_CHECK_THRESHOLD + "}") int threshold,
+            @Value("${seqism.claim-check.ttl:600000}") long ttl,
+            @Value("${seqism.claim-check.purge.interval:60000}") long purgeInterval) {
+        if (!enabled) {
+            return ClaimCheckHelper.disabled();
+        }
+        return new ClaimCheckHelper(new FileBlobStore(Path.of(dir)), threshold, ttl, purgeInterval);
+    }
+
+    /**
+     * Creates a {@link CodecMessageConverter} bean for converting messages to and from JSON, Smile or CBOR
+     * using the Jackson library. This converter is used with Spring AMQP by the {@link RabbitTemplate} and the
+     * listeners to serialize the messages with the codec of their business code, and to deserialize the messages
+     * received by their content type, compressing the large ones and offloading the largest ones to the blob store.
+     *
+     * @param codecHelper
+     *            the helper resolving the codec of the messages sent
+     * @param payloadCompressor
+     *            the compressor of the messages
+     * @param claimCheckHelper
+     *            the helper offloading the large messages to the blob store
+     * @param trustedPackages
+     *            the packages whose classes the type headers may name, besides the Seqism ones, resolved from the
+     *            property {@code seqism.codec.trusted-packages}
+     * @return a configured {@link CodecMessageConverter} instance
+     */
+    @Bean
+    @Primary
+    public CodecMessageConverter codecMessageConverter(CodecHelper codecHelper, PayloadCompressor payloadCompressor,
+            ClaimCheckHelper claimCheckHelper,
+            @Value("${seqism.codec.trusted-packages:}") List<String> trustedPackages) {
+        return new CodecMessageConverter(codecHelper, payloadCompressor, claimCheckHelper, trustedPackages);
+    }
+
+    /**
+     * Creates the converter of the listeners taking the AMQP message itself, which leaves the messages received
+     * undecoded so that the listeners decode them into the type of their choice.
      *
-     * @return a configured {@link Jackson2JsonMessageConverter} instance
+     * @param codecMessageConverter
+     *            the message converter serializing the messages with their codecs
+     * @return the converter named by the {@code messageConverter} attribute of these listeners
      */
     @Bean
-    public Jackson2JsonMessageConverter jackson2JsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter undecodedMessageConverter(CodecMessageConverter codecMessageConverter) {
+        return codecMessageConverter.undecoded();
     }
 
     /**
      * Creates and configures a {@link RabbitTemplate} bean with the provided {@link ConnectionFactory}
-     * and {@link Jackson2JsonMessageConverter}. This template is used for sending and receiving messages
-     * to and from RabbitMQ, with message conversion handled by Jackson for JSON serialization and deserialization.
+     * and {@link CodecMessageConverter}. This template is used for sending and receiving messages
+     * to and from RabbitMQ, with message conversion handled by Jackson for serialization and deserialization.
      *
      * @param connectionFactory
      *            the connection factory to connect to RabbitMQ
-     * @param jackson2JsonMessageConverter
-     *            the message converter for JSON serialization
+     * @param codecMessageConverter
+     *            the message converter serializing the messages with their codecs
      * @return a configured {@link RabbitTemplate} instance
      */
     @Bean
+    @Primary
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory,
-            Jackson2JsonMessageConverter jackson2JsonMessageConverter) {
+            CodecMessageConverter codecMessageConverter) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(jackson2JsonMessageConverter);
+        template.setMessageConverter(codecMessageConverter);
         return template;
     }
 
+    /**
+     * Creates the {@link RabbitTemplate} publishing the replies, kept apart from the primary template so that the
+     * publishing mode applies to the publishes only: receives, request/reply and the {@link RabbitAdmin} stay on the
+     * primary template and its connection.
+     *
+     * @param connectionFactory
+     *            the connection factory to connect to RabbitMQ
+     * @param codecMessageConverter
+     *            the message converter serializing the messages with their codecs
+     * @param publisherConfirms
+     *            whether publisher confirms are enabled, resolved from the property
+     *            {@code seqism.publisher.confirms.enabled}
+     * @param separatePublisherConnection
+     *            whether the template publishes on a connection of its own, resolved from the property
+     *            {@code seqism.publisher.connection.separate}
+     * @return the publishing {@link RabbitTemplate}
+     * @throws IllegalStateException
+     *             if publisher confirms are enabled and the connection factory does not confirm and return publishes
+     */
+    @Bean
+    public RabbitTemplate publisherTemplate(ConnectionFactory connectionFactory,
+            CodecMessageConverter codecMessageConverter,
+            @Value("${seqism.publisher.confirms.enabled:false}") boolean publisherConfirms,
+            @Value("${seqism.publisher.connection.separate:false}") boolean separatePublisherConnection) {
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMessageConverter(codecMessageConverter);
+        configurePublishing(connectionFactory, template, publisherConfirms, separatePublisherConnection);
+        return template;
+    }
+
+    /**
+     * Applies the publishing mode to the publishing template.
+     * <p>
+     * With publisher confirms the template publishes as mandatory, so that unroutable messages are returned instead
+     * of silently dropped. The connection factory is shared with the rest of the application and is not
+     * reconfigured: it must already confirm every publish correlated with a
+     * {@link org.springframework.amqp.rabbit.connection.CorrelationData} and return unroutable messages, as set by
+     * {@code spring.rabbitmq.publisher-confirm-type=correlated} and {@code spring.rabbitmq.publisher-returns=true}.
+     * With a separate publisher connection the template uses the publisher connection of the factory, so that
+     * publishes are not throttled by the flow control of the connection shared with the consumers.
+     *
+     * @param connectionFactory
+     *            the connection factory of the template
+     * @param template
+     *            the template to configure
+     * @param publisherConfirms
+     *            whether publisher confirms are enabled
+     * @param separatePublisherConnection
+     *            whether the template publishes on a connection of its own
+     * @throws IllegalStateException
+     *             if publisher confirms are enabled and the connection factory does not confirm and return publishes
+     */
+    static void configurePublishing(ConnectionFactory connectionFactory, RabbitTemplate template,
+            boolean publisherConfirms, boolean separatePublisherConnection) {
+        if (publisherConfirms) {
+            if (!connectionFactory.isPublisherConfirms() || !connectionFactory.isPublisherReturns()) {
+                throw new IllegalStateException("seqism.publisher.confirms.enabled=true requires "
+                        + "spring.rabbitmq.publisher-confirm-type=correlated and "
+                        + "spring.rabbitmq.publisher-returns=true");
+            }
+            template.setMandatory(true);
+        }
+        template.setUsePublisherConnection(separatePublisherConnection);
+    }
+
     /**
      * Creates and configures a {@link RabbitAdmin} bean using the provided {@link RabbitTemplate}.
      * <p>
@@ -96,16 +326,103 @@ public class RabbitConfig {
      * <p>
      * The queue name is injected from the application properties using the key
      * {@code seqism.queue.static.name}. If the property is not set, it defaults to
-     * {@code seqism-static-queue}.
+     * {@code seqism-static-queue}. When conversations are prioritized the queue supports message priorities.
      *
      * @param queueName
      *            the name of the queue, resolved from application properties
+     * @param priorityHelper
+     *            the helper providing the priority arguments of the queue
      * @return a new {@link Queue} instance with the specified name
      */
     @Bean
     public Queue queue(
-            @Value("${seqism.queue.static.name:" + SeqismConstant.SEQISM_STATIC_QUEUE + "}") String queueName) {
-        return new Queue(queueName);
+            @Value("${seqism.queue.static.name:" + SeqismConstant.SEQISM_STATIC_QUEUE + "}") String queueName,
+            PriorityHelper priorityHelper) {
+        return new Queue(queueName, true, false, false, priorityHelper.getQueueArguments());
+    }
+
+    /**
+     * Defines the static queues consumed by this processor instance.
+     * <p>
+     * When sharded static queues are enabled ({@code seqism.queue.sharding.enabled=true}) the first steps of each
+     * business code go to queues of their own, so that a busy business code no longer delays the others and the
+     * load spreads over several broker queues. For every business code of the registered {@link SeqismProcessor}
+     * beans, this declares the configured number of shard queues, each bound to the static exchange with its own
+     * name as routing key; business codes served by no processor of this instance are left to other instances.
+     * When sharding is disabled the static queue is the only one.
+     *
+     * @param staticQueue
+     *            the static queue
+     * @param queueNameHelper
+     *            the helper used to build the names of the sharded static queues
+     * @param processors
+     *            the processors of this instance
+     * @param shardedQueues
+     *            whether sharded static queues are enabled, resolved from the property
+     *            {@code seqism.queue.sharding.enabled}
+     * @param exchangeName
+     *            the name of the static exchange, resolved from the property {@code seqism.queue.sharding.exchange}
+     * @param shards
+     *            the number of sharded static queues per business code, resolved from the property
+     *            {@code seqism.queue.sharding.shards}
+     * @param priorityHelper
+     *            the helper providing the priority arguments of the sharded static queues
+     * @return the static queues of this instance, with the static exchange and the bindings when sharded
+     */
+    @Bean
+    public Declarables processorStaticQueues(@Qualifier("queue") Queue staticQueue, QueueNameHelper queueNameHelper,
+            List<SeqismProcessor<?, ?>> processors,
+            @Value("${seqism.queue.sharding.enabled:false}") boolean shardedQueues,
+            @Value("${seqism.queue.sharding.exchange:" + SeqismConstant.SEQISM_STATIC_EXCHANGE
+                    + "}") String exchangeName,
+            @Value("${seqism.queue.sharding.shards:1}") int shards, PriorityHelper priorityHelper) {
+        if (!shardedQueues) {
+            return new Declarables(staticQueue);
+        }
+
+        DirectExchange exchange = new DirectExchange(exchangeName);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(exchange);
+        processors.stream().map(SeqismProcessor::getBizCode).distinct().forEach(bizCode -> {
+            for (int shard = 0; shard < Math.max(1, shards); shard++) {
+                Queue queue = new Queue(queueNameHelper.getStaticQueueName(bizCode, shard), true, false, false,
+                        priorityHelper.getQueueArguments());
+                declarables.add(queue);
+                declarables.add(BindingBuilder.bind(queue).to(exchange).with(queue.getName()));
+            }
+        });
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Defines the inbox queue owned by this processor instance.
+     * <p>
+     * When inbox queues are enabled ({@code seqism.queue.inbox.enabled=true}) the next steps of every conversation
+     * handled by this instance arrive on this queue instead of a response queue per conversation. The queue is
+     * non-durable and auto-deleted once its consumer goes away. When inbox queues are disabled the queue is not
+     * declared on the broker.
+     *
+     * @param queueNameHelper
+     *            the helper used to build the inbox queue name
+     * @param instanceId
+     *            the ID of this processor instance, resolved from the property {@code seqism.processor.instance.id}
+     *            or defaults to a random UUID
+     * @param inboxQueue
+     *            whether inbox queues are enabled, resolved from the property {@code seqism.queue.inbox.enabled}
+     * @param priorityHelper
+     *            the helper providing the priority arguments of the queue
+     * @return the inbox {@link Queue} of this processor instance
+     */
+    @Bean
+    public Queue processorInboxQueue(QueueNameHelper queueNameHelper,
+            @Value("${seqism.processor.instance.id:#{T(java.util.UUID).randomUUID().toString()}}") String instanceId,
+            @Value("${seqism.queue.inbox.enabled:false}") boolean inboxQueue, PriorityHelper priorityHelper) {
+        Queue queue = QueueBuilder.nonDurable(queueNameHelper.getInboxQueueName(instanceId))
+                .autoDelete()
+                .withArguments(priorityHelper.getQueueArguments())
+                .build();
+        queue.setShouldDeclare(inboxQueue);
+        return queue;
     }
 
     /**
@@ -120,6 +437,9 @@ public class RabbitConfig {
      * @param responseQueuePrefix
      *            the prefix for response queues, resolved from the property
      *            {@code seqism.queue.response.prefix} or defaults to {@link SeqismConstant#RESPONSE_QUEUE_PREFIX}
+     * @param inboxQueuePrefix
+     *            the prefix for processor inbox queues, resolved from the property
+     *            {@code seqism.queue.inbox.prefix} or defaults to {@link SeqismConstant#INBOX_QUEUE_PREFIX}
      * @return a configured {@link QueueNameHelper} instance
      */
     @Bean
@@ -128,7 +448,10 @@ public class RabbitConfig {
             @Value("${seqism.queue.command.prefix:" + SeqismConstant.COMMAND_QUEUE_PREFIX
                     + "}") String commandQueuePrefix,
             @Value("${seqism.queue.response.prefix:" + SeqismConstant.RESPONSE_QUEUE_PREFIX
-                    + "}") String responseQueuePrefix) {
-        return new QueueNameHelper(staticQueueName, commandQueuePrefix, responseQueuePrefix);
+                    + "}") String responseQueuePrefix,
+            @Value("${seqism.queue.inbox.prefix:" + SeqismConstant.INBOX_QUEUE_PREFIX
+                    + "}") String inboxQueuePrefix) {
+        return new QueueNameHelper(staticQueueName, commandQueuePrefix, responseQueuePrefix,
+                SeqismConstant.REPLY_QUEUE_PREFIX, inboxQueuePrefix);
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package io.github.prometheuskr.seqism.processor.config;
+
+import java.nio.file.Path;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.github.prometheuskr.seqism.processor.GraphSeqismProcessor;
+import io.github.prometheuskr.seqism.processor.state.ConversationStore;
+import io.github.prometheuskr.seqism.processor.state.FileConversationStore;
+import io.github.prometheuskr.seqism.processor.state.InMemoryConversationStore;
+import io.github.prometheuskr.seqism.processor.state.JdbcConversationStore;
+
+/**
+ * Configuration class creating the {@link ConversationStore} of the resumable conversations.
+ * <p>
+ * The store is only used by the {@link GraphSeqismProcessor}s constructed with it. It is selected by the property
+ * {@code seqism.processor.state.store}:
+ * <ul>
+ * <li>{@link #STORE_MEMORY} (default) - {@link InMemoryConversationStore}, in the heap of this instance.</li>
+ * <li>{@link #STORE_FILE} - {@link FileConversationStore}, in the directory {@code seqism.processor.state.dir}
+ * (defaults to {@code seqism-state} under {@code java.io.tmpdir}).</li>
+ * <li>{@link #STORE_JDBC} - {@link JdbcConversationStore}, in the table {@code seqism.processor.state.jdbc.table}
+ * (defaults to {@code seqism_checkpoint}) of the database of {@code seqism.processor.state.jdbc.url}, with
+ * {@code seqism.processor.state.jdbc.username} and {@code seqism.processor.state.jdbc.password}, or of the
+ * {@link DataSource} of the application when no URL is set.</li>
+ * </ul>
+ */
+@Configuration
+public class StateStoreConfig {
+    /**
+     * Value of the {@code seqism.processor.state.store} property selecting the in-memory store, the default.
+     */
+    public static final String STORE_MEMORY = "memory";
+    /**
+     * Value of the {@code seqism.processor.state.store} property selecting the file store.
+     */
+    public static final String STORE_FILE = "file";
+    /**
+     * Value of the {@code seqism.processor.state.store} property selecting the JDBC store.
+     */
+    public static final String STORE_JDBC = "jdbc";
+
+    /**
+     * Default constructor for the {@code StateStoreConfig} class.
+     * Initializes a new instance of the configuration without any parameters.
+     */
+    public StateStoreConfig() {}
+
+    /**
+     * Creates the {@link ConversationStore} selected by {@code seqism.processor.state.store}.
+     *
+     * @param storeType
+     *            the store type, resolved from the property {@code seqism.processor.state.store} or defaults to
+     *            {@link #STORE_MEMORY}
+     * @param dir
+     *            the directory of the file store, resolved from the property {@code seqism.processor.state.dir}
+     * @param jdbcUrl
+     *            the JDBC URL of the database of the JDBC store, resolved from the property
+     *            {@code seqism.processor.state.jdbc.url}; blank to use the {@link DataSource} of the application
+     * @param jdbcUsername
+     *            the user name of the database, resolved from the property
+     *            {@code seqism.processor.state.jdbc.username}
+     * @param jdbcPassword
+     *            the password of the database, resolved from the property
+     *            {@code seqism.processor.state.jdbc.password}
+     * @param jdbcTable
+     *            the table of the checkpoints, resolved from the property {@code seqism.processor.state.jdbc.table}
+     * @param dataSource
+     *            provides the {@link DataSource} of the application, used by the JDBC store without URL
+     * @return the selected {@link ConversationStore}
+     * @throws IllegalStateException
+     *             if the store type is unknown
+     */
+    @Bean
+    public ConversationStore conversationStore(
+            @Value("${seqism.processor.state.store:" + STORE_MEMORY + "}") String storeType,
+            @Value("${seqism.processor.state.dir:${java.io.tmpdir}/seqism-state}") String dir,
+            @Value("${seqism.processor.state.jdbc.url:}") String jdbcUrl,
+            @Value("${seqism.processor.state.jdbc.username:}") String jdbcUsername,
+            @Value("${seqism.processor.state.jdbc.password:}") String jdbcPassword,
+            @Value("${seqism.processor.state.jdbc.table:seqism_checkpoint}") String jdbcTable,
+            ObjectProvider<DataSource> dataSource) {
+        switch (storeType) {
+            case STORE_MEMORY:
+                return new InMemoryConversationStore();
+            case STORE_FILE:
+                return new FileConversationStore(Path.of(dir));
+            case STORE_JDBC:
+                if (jdbcUrl.isBlank()) {
+                    return JdbcConversationStore.of(dataSource.getObject(), jdbcTable);
+                }
+                return JdbcConversationStore.of(jdbcUrl, jdbcUsername.isBlank() ? null : jdbcUsername,
+                        jdbcPassword.isBlank() ? null : jdbcPassword, jdbcTable);
+            default:
+                throw new IllegalStateException("Unknown seqism.processor.state.store : " + storeType);
+        }
+    }
+}
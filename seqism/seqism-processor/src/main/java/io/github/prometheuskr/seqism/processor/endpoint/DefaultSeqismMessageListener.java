@@ -2,16 +2,28 @@ package io.github.prometheuskr.seqism.processor.endpoint;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.amqp.core.Message;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.CodecMessageConverter;
+import io.github.prometheuskr.seqism.common.helper.DeltaHelper;
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
 import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
 import io.github.prometheuskr.seqism.processor.SeqismProcessor;
+import io.github.prometheuskr.seqism.processor.helper.ConversationExecutor;
 import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
 
 /**
@@ -21,13 +33,29 @@ import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
  * This listener uses a map of processors, each keyed by its business code, to efficiently dispatch
  * messages to the correct processor. If no processor is found for a given bizCode, the message is marked as failed.
  * <p>
+ * A message received from RabbitMQ is routed by its {@link SeqismConstant#BIZ_CODE_HEADER} header before its body
+ * is decoded, so that the body is decoded once, straight into the body type of its processor. Messages without the
+ * header, and those delivered by other transports, have their body converted to the body type by the mapper.
+ * <p>
+ * When delta encoding is enabled, a delta encoded message, marked by its {@link SeqismConstant#DELTA_HEADER} header,
+ * is decoded untyped and patched by the {@link DeltaHelper} against the last body of its conversation. A message
+ * whose previous body is not known, such as the next step of a detached conversation resumed by another instance, is
+ * answered with {@link ErrorInfo#ERROR_0002_0008} and left in progress, routed to the static queue, so that the
+ * gateway keeps the conversation and sends the step again with its full body. A transport that cannot detach a
+ * conversation answers it with a failure instead.
+ * <p>
  * Dependencies:
  * <ul>
  * <li>{@link ObjectMapper} for converting message bodies to the required type.</li>
- * <li>{@link ProcessorQueueHelper} for queue operations and sending failure messages.</li>
+ * <li>{@link CodecMessageConverter} for decoding the messages received from RabbitMQ.</li>
+ * <li>{@link DeltaHelper} for decoding the delta encoded messages.</li>
+ * <li>{@link ProcessorTransport} for queue operations and sending failure messages.</li>
  * <li>A list of {@link SeqismProcessor} implementations, each handling a specific business code.</li>
  * </ul>
  * <p>
+ * The listener subscribes to the {@link ProcessorTransport}, so that transports other than RabbitMQ hand it the
+ * first steps.
+ * <p>
  * Logging is provided via Lombok's {@code @Slf4j} annotation.
  */
 @Slf4j
@@ -43,10 +71,28 @@ public class DefaultSeqismMessageListener extends SeqismMessageListener<Object>
      * based on their identifier.
      */
     private final Map<String, SeqismProcessor<?, ?>> processorMap;
+    /**
+     * Decodes the messages received from RabbitMQ.
+     */
+    private final CodecMessageConverter converter;
+    /**
+     * The type of the messages of each business code, with the body type of its processor.
+     */
+    private final Map<String, JavaType> messageTypes;
+    /**
+     * Decodes the delta encoded messages.
+     */
+    private final DeltaHelper deltaHelper;
+
+    /**
+     * The type of the messages with an untyped body.
+     */
+    static final JavaType UNTYPED_MESSAGE =
+            TypeFactory.defaultInstance().constructParametricType(SeqismMessage.class, Object.class);
 
     /**
      * Constructs a new {@code DefaultSeqismMessageListener} with the specified {@link ObjectMapper},
-     * {@link ProcessorQueueHelper}, and a list of {@link SeqismProcessor} instances.
+     * {@link ProcessorTransport}, and a list of {@link SeqismProcessor} instances.
      * <p>
      * This constructor initializes the message listener by setting up the object mapper for JSON
      * serialization/deserialization, the queue helper for processing message queues, and a map of
@@ -55,42 +101,101 @@ public class DefaultSeqismMessageListener extends SeqismMessageListener<Object>
      * @param mapper
      *            the {@link ObjectMapper} used for JSON processing
      * @param queueHelper
-     *            the {@link ProcessorQueueHelper} used to manage processing queues
+     *            the {@link ProcessorTransport} used to manage processing queues
+     * @param rabbitQueueHelper
+     *            the {@link ProcessorQueueHelper} recording the {@code reply-to} destinations of RabbitMQ messages
+     * @param executor
+     *            the {@link ConversationExecutor} running the conversations
+     * @param auditLog
+     *            the {@link AuditLog} recording the first steps
+     * @param converter
+     *            the {@link CodecMessageConverter} decoding the messages received from RabbitMQ
+     * @param deltaHelper
+     *            the {@link DeltaHelper} decoding the delta encoded messages
      * @param processors
      *            the list of {@link SeqismProcessor} instances to handle different business codes
      */
-    DefaultSeqismMessageListener(ObjectMapper mapper, ProcessorQueueHelper queueHelper,
-            List<SeqismProcessor<?, ?>> processors) {
-        super(queueHelper);
+    DefaultSeqismMessageListener(ObjectMapper mapper, ProcessorTransport queueHelper,
+            ProcessorQueueHelper rabbitQueueHelper, ConversationExecutor executor, AuditLog auditLog,
+            CodecMessageConverter converter, DeltaHelper deltaHelper, List<SeqismProcessor<?, ?>> processors) {
+        super(queueHelper, rabbitQueueHelper, executor, auditLog);
         this.mapper = mapper;
         this.processorMap = processors.stream().collect(Collectors.toMap(SeqismProcessor::getBizCode, p -> p));
+        this.converter = converter;
+        this.messageTypes = processors.stream()
+                .collect(Collectors.toMap(SeqismProcessor::getBizCode, p -> TypeFactory.defaultInstance()
+                        .constructParametricType(SeqismMessage.class, p.getBodyType())));
+        this.deltaHelper = deltaHelper;
+
+        queueHelper.subscribe(this::dispatch);
+    }
+
+    @Override
+    boolean isRegistered(String bizCode) {
+        return processorMap.containsKey(bizCode);
+    }
+
+    /**
+     * Decodes a message received from RabbitMQ, with the body type of the processor of the business code carried by
+     * its {@link SeqismConstant#BIZ_CODE_HEADER} header, or with an untyped body if there is no such processor or the
+     * message is delta encoded.
+     *
+     * @param amqpMessage
+     *            the message received
+     * @return the decoded message
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    SeqismMessage<Object> decode(Message amqpMessage) {
+        Object bizCode = amqpMessage.getMessageProperties().getHeader(SeqismConstant.BIZ_CODE_HEADER);
+        boolean delta = amqpMessage.getMessageProperties().getHeader(SeqismConstant.DELTA_HEADER) != null;
+        JavaType messageType = bizCode != null && !delta ? messageTypes.get(bizCode.toString()) : null;
+        return (SeqismMessage<Object>) converter.fromMessage(amqpMessage,
+                messageType != null ? messageType : UNTYPED_MESSAGE);
     }
 
     /**
      * Processes the given {@link SeqismMessage} by determining the appropriate processor
      * based on the message's business code. If a matching processor is found, it delegates
      * the message to the processor for handling. If no processor is found for the business code,
-     * logs an error and sends a failure response using the queue helper.
+     * logs an error and sends a failure response using the queue helper. A delta encoded message is first patched
+     * against the last body of its conversation.
      *
      * @param message
      *            the message to be processed, containing headers and payload
+     * @return the stage completing once the conversation ends
      */
     @Override
-    void proc(SeqismMessage<Object> message) {
+    CompletionStage<Void> proc(SeqismMessage<Object> message) {
+        if (deltaHelper.isEnabled()) {
+            try {
+                message = deltaHelper.decode(message, null);
+            } catch (SeqismException e) {
+                if (!queueHelper.canSendDetached()) {
+                    throw e;
+                }
+                String tranId = message.getHeader().getTranId();
+                log.warn("Delta base not found, full body required : [{}]", tranId);
+                deltaHelper.forget(tranId);
+                queueHelper.sendDetached(deltaHelper.toMissingBase(message));
+                return CompletableFuture.completedFuture(null);
+            }
+        }
         String bizCode = message.getHeader().getBizCode();
         SeqismProcessor<?, ?> processor = processorMap.get(bizCode);
 
         if (processor != null) {
-            callProcessor(processor, message);
-        } else {
-            log.error("No processor found for bizCode : [{}]", bizCode);
-            queueHelper.sendFinal(message.toFailure(ErrorInfo.ERROR_0002_0001, bizCode));
+            return callProcessor(processor, message);
         }
+
+        log.error("No processor found for bizCode : [{}]", bizCode);
+        queueHelper.sendFinal(message.toFailure(ErrorInfo.ERROR_0002_0001, bizCode));
+        return CompletableFuture.completedFuture(null);
     }
 
     /**
      * Invokes the specified {@link SeqismProcessor} with a message whose body is converted
-     * to the processor's expected type using the configured {@code mapper}.
+     * to the processor's expected type using the configured {@code mapper}, unless it was decoded into that type.
      *
      * @param <R>
      *            the type of the response message payload
@@ -100,8 +205,12 @@ public class DefaultSeqismMessageListener extends SeqismMessageListener<Object>
      *            the processor to handle the message
      * @param message
      *            the incoming message with a body to be converted and processed
+     * @return the stage completing once the conversation ends, see {@link SeqismProcessor#start(SeqismMessage)}
      */
-    <R, C> void callProcessor(SeqismProcessor<R, C> processor, SeqismMessage<Object> message) {
-        processor.process(message.withBody(mapper.convertValue(message.getBody(), processor.getBodyType())));
+    <R, C> CompletionStage<Void> callProcessor(SeqismProcessor<R, C> processor, SeqismMessage<Object> message) {
+        Class<R> bodyType = processor.getBodyType();
+        Object body = message.getBody();
+        return processor.start(message.withBody(
+                bodyType.isInstance(body) ? bodyType.cast(body) : mapper.convertValue(body, bodyType)));
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package io.github.prometheuskr.seqism.processor.endpoint;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
+
+/**
+ * Single consumer of the inbox queue owned by this processor instance.
+ * <p>
+ * Every step the gateway sends to the inbox queue is handed to {@link ProcessorQueueHelper}, which wakes the
+ * processor waiting for the step's transaction. The listener only starts when inbox queues are enabled with
+ * {@code seqism.queue.inbox.enabled=true}.
+ */
+@Component
+public class ProcessorInboxListener {
+    /**
+     * Helper correlating the received steps with the processors waiting for them.
+     */
+    private final ProcessorQueueHelper queueHelper;
+
+    /**
+     * Constructs a new {@code ProcessorInboxListener} with the specified {@link ProcessorQueueHelper}.
+     *
+     * @param queueHelper
+     *            the helper used to hand steps to the waiting processors
+     */
+    ProcessorInboxListener(ProcessorQueueHelper queueHelper) {
+        this.queueHelper = queueHelper;
+    }
+
+    /**
+     * Handles a message received on the inbox queue of this processor instance.
+     *
+     * @param message
+     *            the raw AMQP message sent by the gateway
+     */
+    @RabbitListener(queues = "#{@processorInboxQueue.name}", autoStartup = "${seqism.queue.inbox.enabled:false}",
+            messageConverter = "undecodedMessageConverter")
+    public void handleMessage(Message message) {
+        queueHelper.handleInboxMessage(message);
+    }
+}
@@ -3,28 +3,51 @@ package io.github.prometheuskr.seqism.processor.endpoint;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.audit.AuditPoint;
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
 import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
 import io.github.prometheuskr.seqism.common.vo.SeqismException;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.processor.helper.ConversationExecutor;
 import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
 
 /**
  * Abstract base class for message listeners that process {@link SeqismMessage} instances
  * received from a RabbitMQ queue. This listener handles asynchronous message processing,
- * error handling, and failure message dispatching using a {@link ProcessorQueueHelper}.
+ * error handling, and failure message dispatching using a {@link ProcessorTransport}.
+ * <p>
+ * The static queues declared by {@code processorStaticQueues} are only consumed with the RabbitMQ transport: the
+ * static queue, or with sharded static queues the queues of the business codes of the registered processors. Other
+ * transports hand the first step of each conversation to {@link #dispatch(SeqismMessage)}.
  * <p>
  * Subclasses must implement the {@link #proc(SeqismMessage)} method to define custom
- * message processing logic for messages of type {@code T}.
+ * message processing logic for messages of type {@code T}, and {@link #decode(Message)} to decode the messages
+ * received from RabbitMQ, typically routing them by their headers before decoding their body.
  * <p>
  * Error handling is performed as follows:
  * <ul>
+ * <li>If a message received from RabbitMQ cannot be decoded, a failure message with error code
+ * {@link ErrorInfo#ERROR_0002_0002} is sent to the conversation named by its {@link SeqismConstant#TRAN_ID_HEADER}
+ * header, so that the gateway does not wait for its timeout.</li>
  * <li>If a {@link SeqismException} is thrown during processing, the error is logged and
  * a failure message with the associated error information is sent to the final queue.</li>
  * <li>For any other exceptions, the error is logged and a generic failure message with
  * error code {@link ErrorInfo#ERROR_0002_0002} and the exception message is sent.</li>
+ * <li>If no processor is registered for the business code, a failure message with error code
+ * {@link ErrorInfo#ERROR_0002_0001} is sent without scheduling the conversation.</li>
+ * <li>If the bulkhead of the business code is full, a failure message with error code
+ * {@link ErrorInfo#ERROR_0002_0006} is sent without processing.</li>
+ * <li>If an acquire timeout is set and the limit of in-flight conversations is reached for longer, a failure message
+ * with error code {@link ErrorInfo#ERROR_0002_0010} is sent without processing.</li>
  * </ul>
  *
  * @param <T>
@@ -36,42 +59,171 @@ public abstract class SeqismMessageListener<T> {
      * Helper instance for managing and interacting with the processor's message queue.
      * Provides utility methods to enqueue, dequeue, and process messages within the system.
      */
-    protected final ProcessorQueueHelper queueHelper;
+    protected final ProcessorTransport queueHelper;
+    /**
+     * The RabbitMQ transport, recording the {@code reply-to} destination of the messages received from the static
+     * queue.
+     */
+    private final ProcessorQueueHelper rabbitQueueHelper;
+    /**
+     * Runs the conversations, by priority when conversations are prioritized.
+     */
+    private final ConversationExecutor executor;
+    /**
+     * Records the first steps received from the static queues.
+     */
+    private final AuditLog auditLog;
 
     /**
-     * Constructs a new {@code SeqismMessageListener} with the specified {@link ProcessorQueueHelper}.
+     * Constructs a new {@code SeqismMessageListener} with the specified {@link ProcessorTransport}.
      *
      * @param queueHelper
-     *            the helper used for processing message queues
+     *            the transport used for sending the replies
+     * @param rabbitQueueHelper
+     *            the RabbitMQ transport, recording the {@code reply-to} destinations
+     * @param executor
+     *            the executor running the conversations
+     * @param auditLog
+     *            the audit log recording the steps
      */
-    SeqismMessageListener(ProcessorQueueHelper queueHelper) {
+    SeqismMessageListener(ProcessorTransport queueHelper, ProcessorQueueHelper rabbitQueueHelper,
+            ConversationExecutor executor, AuditLog auditLog) {
         this.queueHelper = queueHelper;
+        this.rabbitQueueHelper = rabbitQueueHelper;
+        this.executor = executor;
+        this.auditLog = auditLog;
     }
 
     /**
      * Handles incoming messages from the configured RabbitMQ queue asynchronously.
-     * Processes the received {@link SeqismMessage} using the {@code proc} method.
+     * Decodes the message with {@link #decode(Message)} and processes the resulting {@link SeqismMessage} using the
+     * {@code proc} method.
      * If a {@link SeqismException} occurs during processing, logs the error and sends a failure message
      * with the associated error information to the final queue.
      * For any other exceptions, logs the error and sends a generic failure message with error code
      * {@link ErrorInfo#ERROR_0002_0002} and the exception message.
+     * The {@code reply-to} property of the message, if any, is registered as the reply destination of the
+     * conversation, and the message is recorded in the audit log. A message that cannot be decoded is answered with
+     * a failure message carrying {@link ErrorInfo#ERROR_0002_0002}, its header taken from the AMQP headers, and
+     * acknowledged; without a {@link SeqismConstant#TRAN_ID_HEADER} header it cannot be answered and is rejected.
+     * <p>
+     * The message is acknowledged once this method returns. With a limit of in-flight conversations
+     * ({@code seqism.processor.executor.max-in-flight}) it only returns once the conversation is accepted, so that the
+     * unacknowledged messages, bounded by the prefetch of the listener, hold back the broker. Only when
+     * {@code seqism.processor.executor.acquire-timeout} is set above zero is a conversation not accepted within it
+     * answered with a failure message carrying {@link ErrorInfo#ERROR_0002_0010}; interrupted while waiting, the
+     * listener throws and the message is requeued.
      *
-     * @param message
+     * @param amqpMessage
      *            the message received from the queue to be processed
      */
-    @RabbitListener(queues = "${seqism.queue.static.name:seqism-static-queue}")
-    public void handleMessage(SeqismMessage<T> message) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                this.proc(message);
-            } catch (SeqismException e) {
-                log.error("An exception occurred while processing", e);
-                queueHelper.sendFinal((message.toFailure(e.getErrorInfo())));
-            } catch (Exception e) {
-                log.error("An exception occurred while processing", e);
-                queueHelper.sendFinal((message.toFailure(ErrorInfo.ERROR_0002_0002, e.getMessage())));
+    @RabbitListener(queues = "#{@processorStaticQueues.getDeclarablesByType(T(org.springframework.amqp.core.Queue))}",
+            autoStartup = "#{'${seqism.transport.type:rabbitmq}' == 'rabbitmq'}",
+            messageConverter = "undecodedMessageConverter")
+    public void handleMessage(Message amqpMessage) {
+        SeqismMessage<T> message;
+        try {
+            message = decode(amqpMessage);
+        } catch (RuntimeException e) {
+            SeqismMessageHeader header = decodeHeader(amqpMessage);
+            if (header == null) {
+                throw e;
             }
-        });
+            log.error("Failed to decode message of tranId : [{}]", header.getTranId(), e);
+            rabbitQueueHelper.registerReplyTo(header.getTranId(), amqpMessage.getMessageProperties().getReplyTo());
+            queueHelper.sendFinal(new SeqismMessage<T>(header, null).toFailure(ErrorInfo.ERROR_0002_0002,
+                    e.getMessage()));
+            return;
+        }
+        rabbitQueueHelper.registerReplyTo(message.getHeader().getTranId(),
+                amqpMessage.getMessageProperties().getReplyTo());
+        auditLog.record(AuditPoint.PROCESSOR_RECEIVED, message);
+
+        try {
+            dispatch(message);
+        } catch (RuntimeException e) {
+            rabbitQueueHelper.registerReplyTo(message.getHeader().getTranId(), null);
+            throw e;
+        }
+    }
+
+    /**
+     * Processes the first step of a conversation asynchronously on the {@link ConversationExecutor}, sending a
+     * failure message if processing fails. The conversation holds its slot until the stage returned by
+     * {@link #proc(SeqismMessage)} completes, so an asynchronous conversation counts as in flight until its final
+     * reply. Blocks until the conversation is accepted when the number of in-flight conversations is limited, at most
+     * for the acquire timeout when one is set. A conversation rejected by the bulkhead of its business code, or not
+     * accepted in time, is answered at once with a failure message carrying {@link ErrorInfo#ERROR_0002_0006} or
+     * {@link ErrorInfo#ERROR_0002_0010}.
+     * <p>
+     * A conversation of a business code without a registered processor is answered at once with a failure message
+     * carrying {@link ErrorInfo#ERROR_0002_0001}, before reaching the executor, so that the scheduler only keeps
+     * lanes, and their meters, for the business codes of the registered processors.
+     *
+     * @param message
+     *            the first step of the conversation
+     */
+    public void dispatch(SeqismMessage<T> message) {
+        String bizCode = message.getHeader().getBizCode();
+        if (!isRegistered(bizCode)) {
+            log.error("No processor found for bizCode : [{}]", bizCode);
+            queueHelper.sendFinal(message.toFailure(ErrorInfo.ERROR_0002_0001, bizCode));
+            return;
+        }
+
+        try {
+            executor.execute(message.getHeader(), () -> {
+                try {
+                    return this.proc(message);
+                } catch (SeqismException e) {
+                    log.error("An exception occurred while processing", e);
+                    queueHelper.sendFinal((message.toFailure(e.getErrorInfo())));
+                } catch (Exception e) {
+                    log.error("An exception occurred while processing", e);
+                    queueHelper.sendFinal((message.toFailure(ErrorInfo.ERROR_0002_0002, e.getMessage())));
+                }
+                return CompletableFuture.completedFuture(null);
+            });
+        } catch (SeqismException e) {
+            queueHelper.sendFinal(message.toFailure(e.getErrorInfo()));
+        }
+    }
+
+    /**
+     * Returns whether a processor is registered for a business code.
+     *
+     * @param bizCode
+     *            the business code of a conversation
+     * @return {@code true} if the conversations of the business code can be processed
+     */
+    abstract boolean isRegistered(String bizCode);
+
+    /**
+     * Decodes a message received from the static queues.
+     *
+     * @param amqpMessage
+     *            the message received
+     * @return the decoded message
+     * @throws org.springframework.amqp.support.converter.MessageConversionException
+     *             if the message cannot be decoded
+     */
+    abstract SeqismMessage<T> decode(Message amqpMessage);
+
+    /**
+     * Decodes the header of a message received from the static queues from its AMQP headers, without its body.
+     *
+     * @param amqpMessage
+     *            the message received
+     * @return the header of the message, or {@code null} if it has no {@link SeqismConstant#TRAN_ID_HEADER} header
+     */
+    static SeqismMessageHeader decodeHeader(Message amqpMessage) {
+        Object tranId = amqpMessage.getMessageProperties().getHeader(SeqismConstant.TRAN_ID_HEADER);
+        if (tranId == null) {
+            return null;
+        }
+        Object bizCode = amqpMessage.getMessageProperties().getHeader(SeqismConstant.BIZ_CODE_HEADER);
+        return new SeqismMessageHeader(bizCode != null ? bizCode.toString() : null, tranId.toString(),
+                SeqismMessageStatus.IN_PROGRESS, null);
     }
 
     /**
@@ -82,6 +234,8 @@ public abstract class SeqismMessageListener<T> {
      *
      * @param seqismMessage
      *            the message to process
+     * @return the stage completing once the conversation ends; the conversation holds its slot in the
+     *         {@link ConversationExecutor} until then
      */
-    abstract void proc(SeqismMessage<T> seqismMessage);
+    abstract CompletionStage<?> proc(SeqismMessage<T> seqismMessage);
 }
\ No newline at end of file
@@ -0,0 +1,419 @@
+package io.github.prometheuskr.seqism.processor.graph;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.processor.state.Checkpoint;
+import io.github.prometheuskr.seqism.processor.state.ConversationStore;
+
+/**
+ * Runs the conversations of a {@link StepGraph}.
+ * <p>
+ * The engine runs the handler of a step only once the message of the step has arrived: the reply of the previous
+ * step is sent with a non-blocking exchange, and the arrival of the answer triggers the next step. Between two steps
+ * a conversation is only the name of the step it waits for, so no thread is held while the client thinks. A
+ * transition the current step did not declare fails the conversation with an {@link IllegalStateException}.
+ * <p>
+ * With a {@link ConversationStore} the conversations are resumable: instead of waiting for the next message, the
+ * engine saves a {@link Checkpoint} naming the next step and sends the reply detached, so that the next message goes
+ * to whichever processor instance takes it from the static queues. That instance loads the checkpoint and runs the
+ * step, and the checkpoint is removed once the conversation ends. A next message whose checkpoint cannot be found,
+ * because it expired or was saved to a store this instance does not share, fails the conversation with
+ * {@link ErrorInfo#ERROR_0002_0007}.
+ * <p>
+ * The checkpoints of a resumable conversation are numbered, and the detached reply carries the number of the next step
+ * as the {@code stepSeq} of its header, which the client echoes back. A message whose number is not the one of the
+ * checkpoint, such as a redelivered or duplicated message of a step already taken, is dropped without a reply. Since
+ * the store saves a checkpoint only in place of the previous one, of two instances taking the same step at once only
+ * one sends its reply; the other drops it.
+ * <p>
+ * The engine counts and times every step, see {@link #getStats()}, and tells which step each conversation waiting in
+ * this instance waits for, see {@link #getWaitingSteps()}. For resumable conversations the wait of a step is measured
+ * from the save time of its checkpoint.
+ *
+ * @param <R>
+ *            the type of the response message payload
+ * @param <C>
+ *            the type of the command message payload
+ */
+@Slf4j
+public final class StepEngine<R, C> {
+    /**
+     * Statistics of a step.
+     *
+     * @param step
+     *            the name of the step
+     * @param waiting
+     *            the number of conversations waiting for the message of the step
+     * @param executions
+     *            the number of times the step ran
+     * @param failures
+     *            the number of times the handler of the step failed or took an undeclared transition
+     * @param averageHandlerMillis
+     *            the average time, in milliseconds, the handler of the step ran
+     * @param averageWaitMillis
+     *            the average time, in milliseconds, between the reply of the previous step and the message of the step
+     */
+    public record StepStats(String step, long waiting, long executions, long failures, double averageHandlerMillis,
+            double averageWaitMillis) {}
+
+    /**
+     * The counters of a step.
+     */
+    static final class Counters {
+        /**
+         * Conversations waiting for the message of the step.
+         */
+        final LongAdder waiting = new LongAdder();
+        /**
+         * Runs of the step.
+         */
+        final LongAdder executions = new LongAdder();
+        /**
+         * Failed runs of the step.
+         */
+        final LongAdder failures = new LongAdder();
+        /**
+         * Messages of the step received.
+         */
+        final LongAdder received = new LongAdder();
+        /**
+         * Total running time of the handler, in nanoseconds.
+         */
+        final LongAdder handlerNanos = new LongAdder();
+        /**
+         * Total time waited for the message of the step, in nanoseconds.
+         */
+        final LongAdder waitNanos = new LongAdder();
+    }
+
+    /**
+     * The graph of the conversations.
+     */
+    private final StepGraph<R, C> graph;
+    /**
+     * Sends an intermediate reply and returns a stage completing with the next message.
+     */
+    private final Function<SeqismMessage<C>, CompletionStage<SeqismMessage<R>>> exchange;
+    /**
+     * Sends the final reply of a conversation.
+     */
+    private final Consumer<SeqismMessage<C>> finish;
+    /**
+     * The counters, keyed by step name.
+     */
+    private final Map<String, Counters> counters;
+    /**
+     * The step each conversation in progress waits for, keyed by transaction ID.
+     */
+    private final Map<String, String> waitingSteps = new ConcurrentHashMap<>();
+    /**
+     * Stores the checkpoints of the resumable conversations; {@code null} if conversations wait in this instance.
+     */
+    private final ConversationStore store;
+    /**
+     * Sends an intermediate reply without waiting for the next message; {@code null} if conversations wait in this
+     * instance.
+     */
+    private final Consumer<SeqismMessage<C>> detach;
+
+    /**
+     * Constructs a new {@code StepEngine} whose conversations wait for their next messages in this instance.
+     *
+     * @param graph
+     *            the graph of the conversations
+     * @param exchange
+     *            sends an intermediate reply and returns a stage completing with the next message, without blocking
+     * @param finish
+     *            sends the final reply of a conversation
+     */
+    public StepEngine(StepGraph<R, C> graph, Function<SeqismMessage<C>, CompletionStage<SeqismMessage<R>>> exchange,
+            Consumer<SeqismMessage<C>> finish) {
+        this(graph, exchange, finish, null, null);
+    }
+
+    /**
+     * Constructs a new {@code StepEngine} whose conversations are resumable by any processor instance sharing the
+     * given store.
+     *
+     * @param graph
+     *            the graph of the conversations
+     * @param exchange
+     *            sends an intermediate reply and returns a stage completing with the next message, without blocking
+     * @param finish
+     *            sends the final reply of a conversation
+     * @param store
+     *            stores the checkpoints of the conversations; {@code null} if conversations wait in this instance
+     * @param detach
+     *            sends an intermediate reply without waiting, routing the next message to any processor instance;
+     *            {@code null} if conversations wait in this instance
+     */
+    public StepEngine(StepGraph<R, C> graph, Function<SeqismMessage<C>, CompletionStage<SeqismMessage<R>>> exchange,
+            Consumer<SeqismMessage<C>> finish, ConversationStore store, Consumer<SeqismMessage<C>> detach) {
+        this.graph = graph;
+        this.exchange = exchange;
+        this.finish = finish;
+        this.store = detach != null ? store : null;
+        this.detach = store != null ? detach : null;
+
+        Map<String, Counters> map = new LinkedHashMap<>();
+        graph.getSteps().keySet().forEach(name -> map.put(name, new Counters()));
+        this.counters = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Starts a conversation at the first step of the graph, or resumes it at the step named by its checkpoint when
+     * conversations are resumable.
+     *
+     * @param message
+     *            the first message of the conversation, or of the step of a resumed conversation
+     * @return the stage completing once the final reply is sent, or once the reply is sent detached for a resumable
+     *         conversation, or at once if the message is dropped; exceptionally if a step fails
+     */
+    public CompletionStage<Void> start(SeqismMessage<R> message) {
+        String tranId = message.getHeader().getTranId();
+        long seq = sequenceOf(message);
+        StepGraph.Step<R, C> step;
+        try {
+            Checkpoint checkpoint = load(message, seq);
+            if (checkpoint != null && checkpoint.seq() != seq) {
+                log.warn("Dropped step [{}] of tranId [{}] whose checkpoint waits for step [{}]", seq, tranId,
+                        checkpoint.seq());
+                return CompletableFuture.completedFuture(null);
+            }
+            step = checkpoint != null ? resume(checkpoint) : null;
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (step == null) {
+            step = graph.getStep(graph.getStart());
+            counters.get(step.name()).received.increment();
+        }
+
+        return run(step, message, seq).whenComplete((ignored, e) -> {
+            waitingSteps.remove(tranId);
+            if (e != null && store != null) {
+                store.remove(tranId);
+            }
+        });
+    }
+
+    /**
+     * Returns the sequence number of the step of a message: the {@code stepSeq} of its header, or {@code 0} for the
+     * first step of a conversation.
+     *
+     * @param message
+     *            the message that arrived
+     * @return the sequence number of the step
+     */
+    static long sequenceOf(SeqismMessage<?> message) {
+        Long seq = message.getHeader().getStepSeq();
+        return seq != null ? seq : 0;
+    }
+
+    /**
+     * Loads the checkpoint of the conversation of a message when conversations are resumable.
+     *
+     * @param message
+     *            the message that arrived
+     * @param seq
+     *            the sequence number of the step of the message
+     * @return the checkpoint, or {@code null} if the message starts a new conversation
+     * @throws SeqismException
+     *             with {@link ErrorInfo#ERROR_0002_0007} if the message continues a conversation whose checkpoint is
+     *             missing
+     * @throws IllegalStateException
+     *             if the checkpoint cannot be loaded
+     */
+    Checkpoint load(SeqismMessage<R> message, long seq) {
+        if (store == null) {
+            return null;
+        }
+
+        String tranId = message.getHeader().getTranId();
+        Checkpoint checkpoint = store.load(tranId);
+        // A first step carries no route; a next step carries the static queue it was routed through
+        if (checkpoint == null && (seq > 0 || message.getHeader().getRoute() != null)) {
+            log.error("No checkpoint found for tranId [{}]", tranId);
+            throw new SeqismException(ErrorInfo.ERROR_0002_0007);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Returns the step a resumable conversation resumes at, as named by its checkpoint.
+     *
+     * @param checkpoint
+     *            the checkpoint of the conversation
+     * @return the step to run
+     * @throws IllegalStateException
+     *             if the checkpoint names an undeclared step
+     */
+    StepGraph.Step<R, C> resume(Checkpoint checkpoint) {
+        String tranId = checkpoint.tranId();
+        StepGraph.Step<R, C> step = graph.getStep(checkpoint.step());
+        if (step == null) {
+            throw new IllegalStateException(
+                    "Checkpoint of tranId [" + tranId + "] names an undeclared step : " + checkpoint.step());
+        }
+        log.trace("tranId [{}] resumes at step [{}]", tranId, step.name());
+        Counters stepCounters = counters.get(step.name());
+        stepCounters.received.increment();
+        stepCounters.waitNanos.add(TimeUnit.MILLISECONDS.toNanos(
+                Math.max(0, System.currentTimeMillis() - checkpoint.savedAt())));
+        return step;
+    }
+
+    /**
+     * Runs a step whose message has arrived, then sends its reply and either ends the conversation or registers the
+     * next step to run on the arrival of the next message.
+     *
+     * @param step
+     *            the step to run
+     * @param message
+     *            the message of the step
+     * @param seq
+     *            the sequence number of the step
+     * @return the stage completing once the conversation ends
+     */
+    CompletionStage<Void> run(StepGraph.Step<R, C> step, SeqismMessage<R> message, long seq) {
+        Counters stepCounters = counters.get(step.name());
+        StepResult<C> result;
+        long started = System.nanoTime();
+        try {
+            result = step.handler().handle(message);
+            if (result == null || result.reply() == null) {
+                throw new IllegalStateException("Step [" + step.name() + "] returned no reply");
+            }
+            if (!result.isFinal() && !step.transitions().contains(result.next())) {
+                throw new IllegalStateException(
+                        "Step [" + step.name() + "] took an undeclared transition : " + result.next());
+            }
+        } catch (RuntimeException e) {
+            stepCounters.failures.increment();
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            stepCounters.executions.increment();
+            stepCounters.handlerNanos.add(System.nanoTime() - started);
+        }
+
+        String tranId = message.getHeader().getTranId();
+        if (result.isFinal()) {
+            try {
+                finish.accept(result.reply());
+                if (store != null) {
+                    store.remove(tranId);
+                }
+                return CompletableFuture.completedFuture(null);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        StepGraph.Step<R, C> next = graph.getStep(result.next());
+        if (store != null) {
+            // Saved before sending, so that the next message cannot arrive before its checkpoint
+            try {
+                if (!store.save(new Checkpoint(tranId, message.getHeader().getBizCode(), next.name(), seq + 1,
+                        System.currentTimeMillis()))) {
+                    log.warn("Dropped reply of step [{}] of tranId [{}] taken by another instance", seq, tranId);
+                    return CompletableFuture.completedFuture(null);
+                }
+                detach.accept(result.reply().withStepSeq(seq + 1));
+                return CompletableFuture.completedFuture(null);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        Counters nextCounters = counters.get(next.name());
+        log.trace("tranId [{}] waits for step [{}]", tranId, next.name());
+        waitingSteps.put(tranId, next.name());
+        nextCounters.waiting.increment();
+        long sent = System.nanoTime();
+
+        CompletionStage<SeqismMessage<R>> response;
+        try {
+            response = exchange.apply(result.reply());
+        } catch (RuntimeException e) {
+            nextCounters.waiting.decrement();
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((ignored, e) -> {
+            nextCounters.waiting.decrement();
+            if (e == null) {
+                nextCounters.received.increment();
+                nextCounters.waitNanos.add(System.nanoTime() - sent);
+            }
+        }).thenCompose(nextMessage -> run(next, nextMessage, seq + 1));
+    }
+
+    /**
+     * Returns whether the conversations are resumable by any processor instance sharing the store.
+     *
+     * @return {@code true} if the conversations are checkpointed instead of waiting in this instance
+     */
+    public boolean isResumable() {
+        return store != null;
+    }
+
+    /**
+     * Returns the graph run by the engine.
+     *
+     * @return the graph
+     */
+    public StepGraph<R, C> getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the statistics of the steps, in declaration order.
+     *
+     * @return the statistics of each step
+     */
+    public List<StepStats> getStats() {
+        return counters.entrySet().stream().map(entry -> {
+            Counters c = entry.getValue();
+            long executions = c.executions.sum();
+            long received = c.received.sum();
+            return new StepStats(entry.getKey(), c.waiting.sum(), executions, c.failures.sum(),
+                    executions > 0 ? toMillis(c.handlerNanos.sum()) / executions : 0,
+                    received > 0 ? toMillis(c.waitNanos.sum()) / received : 0);
+        }).toList();
+    }
+
+    /**
+     * Returns the step each conversation waiting in this instance waits for. Resumable conversations wait in the
+     * store instead and are not listed.
+     *
+     * @return a snapshot of the step names, keyed by transaction ID
+     */
+    public Map<String, String> getWaitingSteps() {
+        return Map.copyOf(waitingSteps);
+    }
+
+    /**
+     * Converts nanoseconds to fractional milliseconds.
+     *
+     * @param nanos
+     *            the duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
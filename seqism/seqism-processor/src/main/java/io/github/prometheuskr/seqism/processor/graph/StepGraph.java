@@ -0,0 +1,198 @@
+package io.github.prometheuskr.seqism.processor.graph;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The steps of the conversations of a business code, declared as a graph of {@link StepHandler}s.
+ * <p>
+ * Every step has a name, a handler and the steps it may hand the conversation over to. The graph is checked when
+ * built, so that every transition leads to a declared step, and the {@link StepEngine} refuses at run time any
+ * transition a step did not declare.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * StepGraph&lt;Body, Body&gt; graph = StepGraph.&lt;Body, Body&gt;builder()
+ *         .start("init", this::init, "confirm")
+ *         .step("confirm", this::confirm, "confirm", "done")
+ *         .step("done", this::done)
+ *         .build();
+ * </pre>
+ *
+ * @param <R>
+ *            the type of the response message payload
+ * @param <C>
+ *            the type of the command message payload
+ */
+public final class StepGraph<R, C> {
+    /**
+     * A declared step.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param name
+     *            the name of the step
+     * @param handler
+     *            the handler of the step
+     * @param transitions
+     *            the names of the steps the step may hand the conversation over to
+     */
+    public record Step<R, C>(String name, StepHandler<R, C> handler, Set<String> transitions) {}
+
+    /**
+     * The name of the step handling the first message of each conversation.
+     */
+    private final String start;
+    /**
+     * The steps, keyed by name, in declaration order.
+     */
+    private final Map<String, Step<R, C>> steps;
+
+    /**
+     * Constructs a checked graph.
+     *
+     * @param start
+     *            the name of the first step
+     * @param steps
+     *            the steps, keyed by name
+     */
+    private StepGraph(String start, Map<String, Step<R, C>> steps) {
+        this.start = start;
+        this.steps = Collections.unmodifiableMap(steps);
+    }
+
+    /**
+     * Returns a builder of a graph.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @return an empty builder
+     */
+    public static <R, C> Builder<R, C> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns the name of the step handling the first message of each conversation.
+     *
+     * @return the name of the first step
+     */
+    public String getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the step of the given name.
+     *
+     * @param name
+     *            the name of the step
+     * @return the step, or {@code null} if no step has this name
+     */
+    public Step<R, C> getStep(String name) {
+        return steps.get(name);
+    }
+
+    /**
+     * Returns the steps of the graph.
+     *
+     * @return the steps keyed by name, in declaration order
+     */
+    public Map<String, Step<R, C>> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Builds a {@link StepGraph}.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     */
+    public static final class Builder<R, C> {
+        /**
+         * The name of the first step; {@code null} until declared.
+         */
+        private String start;
+        /**
+         * The declared steps, keyed by name.
+         */
+        private final Map<String, Step<R, C>> steps = new LinkedHashMap<>();
+
+        /**
+         * Constructs an empty builder.
+         */
+        Builder() {}
+
+        /**
+         * Declares the step handling the first message of each conversation.
+         *
+         * @param name
+         *            the name of the step
+         * @param handler
+         *            the handler of the step
+         * @param transitions
+         *            the names of the steps the step may hand the conversation over to
+         * @return this builder
+         * @throws IllegalStateException
+         *             if a first step is already declared
+         */
+        public Builder<R, C> start(String name, StepHandler<R, C> handler, String... transitions) {
+            if (start != null) {
+                throw new IllegalStateException("First step already declared : " + start);
+            }
+            start = name;
+            return step(name, handler, transitions);
+        }
+
+        /**
+         * Declares a step.
+         *
+         * @param name
+         *            the name of the step
+         * @param handler
+         *            the handler of the step
+         * @param transitions
+         *            the names of the steps the step may hand the conversation over to; none for a step that always
+         *            ends the conversation
+         * @return this builder
+         * @throws IllegalStateException
+         *             if a step of the same name is already declared
+         */
+        public Builder<R, C> step(String name, StepHandler<R, C> handler, String... transitions) {
+            if (steps.putIfAbsent(name, new Step<>(name, handler, Set.of(transitions))) != null) {
+                throw new IllegalStateException("Step already declared : " + name);
+            }
+            return this;
+        }
+
+        /**
+         * Checks and builds the graph.
+         *
+         * @return the graph
+         * @throws IllegalStateException
+         *             if no first step is declared or a transition leads to an undeclared step
+         */
+        public StepGraph<R, C> build() {
+            if (start == null) {
+                throw new IllegalStateException("No first step declared");
+            }
+            for (Step<R, C> step : steps.values()) {
+                for (String transition : step.transitions()) {
+                    if (!steps.containsKey(transition)) {
+                        throw new IllegalStateException(
+                                "Step [" + step.name() + "] leads to an undeclared step : " + transition);
+                    }
+                }
+            }
+            return new StepGraph<>(start, new LinkedHashMap<>(steps));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.prometheuskr.seqism.processor.graph;
+
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Handles one step of a conversation declared in a {@link StepGraph}.
+ * <p>
+ * A handler runs once the message of its step has arrived and returns at once: it never waits for the client. The
+ * {@link StepResult} it returns tells the {@link StepEngine} which reply to send and, unless the conversation ends,
+ * which step handles the next message.
+ *
+ * @param <R>
+ *            the type of the response message payload
+ * @param <C>
+ *            the type of the command message payload
+ */
+@FunctionalInterface
+public interface StepHandler<R, C> {
+    /**
+     * Handles the message of the step.
+     *
+     * @param message
+     *            the message that triggered the step, its body converted to the type of the processor
+     * @return the reply of the step and the transition to take
+     */
+    StepResult<C> handle(SeqismMessage<R> message);
+}
@@ -0,0 +1,59 @@
+package io.github.prometheuskr.seqism.processor.graph;
+
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * The outcome of a step of a {@link StepGraph}: the reply to send and the step handling the next message, if any.
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * return StepResult.next("confirm", message.withBody(body)); // asks the client, then runs "confirm"
+ * return StepResult.complete(message.withBody(body).toSuccess()); // ends the conversation
+ * </pre>
+ *
+ * @param <C>
+ *            the type of the command message payload
+ * @param next
+ *            the name of the step handling the next message; {@code null} if the reply ends the conversation
+ * @param reply
+ *            the reply of the step
+ */
+public record StepResult<C>(String next, SeqismMessage<C> reply) {
+    /**
+     * Returns a result sending the reply to the client and handing its answer to the given step.
+     *
+     * @param <C>
+     *            the type of the command message payload
+     * @param next
+     *            the name of the step handling the next message; must be a declared transition of the current step
+     * @param reply
+     *            the intermediate reply
+     * @return the result
+     */
+    public static <C> StepResult<C> next(String next, SeqismMessage<C> reply) {
+        return new StepResult<>(next, reply);
+    }
+
+    /**
+     * Returns a result ending the conversation with the given final reply.
+     *
+     * @param <C>
+     *            the type of the command message payload
+     * @param reply
+     *            the final reply
+     * @return the result
+     */
+    public static <C> StepResult<C> complete(SeqismMessage<C> reply) {
+        return new StepResult<>(null, reply);
+    }
+
+    /**
+     * Returns whether the reply ends the conversation.
+     *
+     * @return {@code true} if there is no next step
+     */
+    public boolean isFinal() {
+        return next == null;
+    }
+}
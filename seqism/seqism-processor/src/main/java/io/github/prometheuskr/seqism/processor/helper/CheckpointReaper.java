@@ -0,0 +1,106 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.github.prometheuskr.seqism.processor.state.ConversationStore;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Purges the checkpoints of the resumable conversations whose clients never came back.
+ * <p>
+ * The checkpoint of a conversation is removed when the conversation ends. A conversation abandoned by its client
+ * never ends, so its checkpoint is purged once older than the configured time to live, by a single daemon thread.
+ * <p>
+ * The reaper is configurable via application properties:
+ * <ul>
+ * <li><b>seqism.processor.state.ttl</b>: Time to live of the checkpoints in milliseconds; {@code 0} to keep them
+ * (default: {@code 600000}).</li>
+ * <li><b>seqism.processor.state.purge.interval</b>: Interval between two purges in milliseconds (default:
+ * {@code 60000}).</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class CheckpointReaper {
+    /**
+     * The store of the checkpoints.
+     */
+    private final ConversationStore store;
+    /**
+     * Time to live of the checkpoints in milliseconds.
+     */
+    private final long ttl;
+    /**
+     * Runs the purges; {@code null} if checkpoints are kept.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a new {@code CheckpointReaper} and schedules the purges.
+     *
+     * @param store
+     *            the store of the checkpoints
+     * @param ttl
+     *            the time to live of the checkpoints in milliseconds, injected from the property
+     *            {@code seqism.processor.state.ttl} or defaults to {@code 600000}
+     * @param interval
+     *            the interval between two purges in milliseconds, injected from the property
+     *            {@code seqism.processor.state.purge.interval} or defaults to {@code 60000}
+     */
+    public CheckpointReaper(ConversationStore store,
+            @Value("${seqism.processor.state.ttl:600000}") long ttl,
+            @Value("${seqism.processor.state.purge.interval:60000}") long interval) {
+        this.store = store;
+        this.ttl = ttl;
+
+        if (ttl > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "seqism-checkpoint-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, interval);
+            scheduler.scheduleWithFixedDelay(this::purge, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Purges the checkpoints older than the time to live.
+     *
+     * @return the number of purged checkpoints
+     */
+    public int purge() {
+        if (ttl <= 0) {
+            return 0;
+        }
+        try {
+            int purged = store.purge(System.currentTimeMillis() - ttl);
+            if (purged > 0) {
+                log.info("Purged {} expired checkpoints", purged);
+            }
+            return purged;
+        } catch (RuntimeException e) {
+            log.warn("Failed to purge the expired checkpoints", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Stops the purges.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.github.prometheuskr.seqism.common.helper.PriorityHelper;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs the conversations of the processors.
+ * <p>
+ * When conversations are prioritized ({@code seqism.priority.enabled=true}) the conversations run on a fixed pool of
+ * worker threads, and those waiting for a worker are served by priority, highest first, then in arrival order. A
+ * spike of low priority conversations then delays the high priority ones by at most the time a worker takes to free
+ * up.
+ * <p>
+ * With a limit of in-flight conversations ({@code seqism.processor.executor.max-in-flight} above zero) a conversation
+ * is only accepted once one of the permits is free: {@link #execute(SeqismMessageHeader, Runnable)} blocks the
+ * calling listener meanwhile, so that the first step is acknowledged only once its conversation is accepted, and the
+ * broker prefetch becomes the backpressure instead of an unbounded backlog in memory. By default the listener waits
+ * as long as it takes; only with an acquire timeout set above zero is a conversation still not accepted once it
+ * elapses rejected with {@link ErrorInfo#ERROR_0002_0010}, trading the backpressure for a failure reply the client
+ * gets before its own timeout. Conversations that are not
+ * prioritized then run each on a thread of its own: a virtual thread when the runtime supports them, a platform
+ * thread otherwise, so that conversations blocked waiting for their next step never starve a shared pool.
+ * <p>
+ * When conversations are scheduled by business code ({@code seqism.processor.scheduler.enabled=true}) they run on
+ * the workers of the {@link FairScheduler} instead, which shares them fairly between business codes behind bulkheads;
+ * priorities then order the conversations within each business code.
+ * <p>
+ * Otherwise the conversations run on the common pool, as they always did.
+ * <p>
+ * A conversation is given as the supplier of the stage completing once it ends. The permit of an in-flight
+ * conversation, like its slot in the bulkhead of its business code, is released when that stage completes rather
+ * than when the supplier returns, so that an asynchronous conversation waiting for its next step without a thread
+ * still counts as in flight until its final reply.
+ * <p>
+ * The executor is configurable via application properties:
+ * <ul>
+ * <li><b>seqism.processor.executor.threads</b>: Number of worker threads when conversations are prioritized
+ * (default: {@code 16}).</li>
+ * <li><b>seqism.processor.executor.max-in-flight</b>: Maximum number of conversations accepted and not yet
+ * completed; {@code 0} for no limit (default: {@code 0}).</li>
+ * <li><b>seqism.processor.executor.acquire-timeout</b>: Maximum time in milliseconds a conversation waits to be
+ * accepted before it is rejected, to be kept below the receive timeout of the gateways; {@code 0} to wait until it is
+ * accepted (default: {@code 0}).</li>
+ * <li><b>seqism.processor.executor.virtual-threads</b>: Whether conversations run on virtual threads, when the
+ * runtime supports them, with a limit of in-flight conversations (default: {@code true}).</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class ConversationExecutor {
+    /**
+     * A conversation waiting for a worker, ordered by priority then arrival.
+     *
+     * @param priority
+     *            the priority of the conversation
+     * @param sequence
+     *            the arrival order of the conversation
+     * @param conversation
+     *            starts the conversation and returns the stage completing once it ends
+     */
+    record Task(int priority, long sequence, Supplier<? extends CompletionStage<?>> conversation)
+            implements Runnable, Comparable<Task> {
+        @Override
+        public void run() {
+            start();
+        }
+
+        /**
+         * Starts the conversation.
+         *
+         * @return the stage completing once the conversation ends, exceptionally if it failed to start
+         */
+        CompletionStage<?> start() {
+            return ConversationExecutor.start(conversation);
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = Integer.compare(other.priority, priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Resolves the priority of the conversations.
+     */
+    private final PriorityHelper priorityHelper;
+    /**
+     * Schedules the conversations by business code, when enabled.
+     */
+    private final FairScheduler scheduler;
+    /**
+     * Runs the prioritized conversations; {@code null} when conversations are not prioritized.
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * Creates the thread of each conversation; {@code null} without a limit of in-flight conversations or when
+     * conversations are prioritized.
+     */
+    private final ThreadFactory perConversation;
+    /**
+     * Maximum number of in-flight conversations; {@code 0} for no limit.
+     */
+    private final int maxInFlight;
+    /**
+     * The permits of the in-flight conversations; {@code null} without a limit.
+     */
+    private final Semaphore inFlight;
+    /**
+     * Maximum time in milliseconds a conversation waits for a permit of the in-flight conversations; {@code 0} to
+     * wait until one is free.
+     */
+    private final long acquireTimeout;
+    /**
+     * Number of conversations rejected because no permit of the in-flight conversations was free in time.
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+    /**
+     * Numbers the conversations in arrival order.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Constructs a new {@code ConversationExecutor} and, when conversations are prioritized, its worker pool.
+     *
+     * @param priorityHelper
+     *            the helper resolving the priority of the conversations.
+     * @param scheduler
+     *            the scheduler of the conversations by business code.
+     * @param threads
+     *            the number of worker threads when conversations are prioritized, injected from the property
+     *            {@code seqism.processor.executor.threads} or defaults to {@code 16}.
+     * @param maxInFlight
+     *            the maximum number of in-flight conversations, {@code 0} for no limit, injected from the property
+     *            {@code seqism.processor.executor.max-in-flight} or defaults to {@code 0}.
+     * @param acquireTimeout
+     *            the maximum time (in milliseconds) a conversation waits to be accepted, {@code 0} to wait until it
+     *            is accepted, injected from the property {@code seqism.processor.executor.acquire-timeout} or
+     *            defaults to {@code 0}.
+     * @param virtualThreads
+     *            whether conversations run on virtual threads when supported, injected from the property
+     *            {@code seqism.processor.executor.virtual-threads} or defaults to {@code true}.
+     */
+    public ConversationExecutor(PriorityHelper priorityHelper, FairScheduler scheduler,
+            @Value("${seqism.processor.executor.threads:16}") int threads,
+            @Value("${seqism.processor.executor.max-in-flight:0}") int maxInFlight,
+            @Value("${seqism.processor.executor.acquire-timeout:0}") long acquireTimeout,
+            @Value("${seqism.processor.executor.virtual-threads:true}") boolean virtualThreads) {
+        this.priorityHelper = priorityHelper;
+        this.scheduler = scheduler;
+        this.maxInFlight = Math.max(0, maxInFlight);
+        this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+        this.acquireTimeout = Math.max(0, acquireTimeout);
+        this.perConversation = inFlight != null && !priorityHelper.isEnabled() && !scheduler.isEnabled()
+                ? threadFactory(virtualThreads)
+                : null;
+
+        if (priorityHelper.isEnabled() && !scheduler.isEnabled()) {
+            AtomicInteger count = new AtomicInteger();
+            int size = Math.max(1, threads);
+            executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "seqism-processor-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Runs a conversation asynchronously, after the waiting conversations of higher priority when conversations are
+     * prioritized. With a limit of in-flight conversations, blocks until the conversation is accepted, or the acquire
+     * timeout elapses when one is set; the conversation then holds its permit until the stage it returns completes.
+     *
+     * @param header
+     *            the header of the first step of the conversation
+     * @param conversation
+     *            starts the conversation and returns the stage completing once it ends
+     * @throws SeqismException
+     *             with {@link ErrorInfo#ERROR_0002_0006} if the bulkhead of the business code is full, or with
+     *             {@link ErrorInfo#ERROR_0002_0010} if the conversation is not accepted within the acquire timeout set
+     * @throws IllegalStateException
+     *             if the calling thread is interrupted while waiting for the conversation to be accepted, or if the
+     *             executor is shut down
+     */
+    public void execute(SeqismMessageHeader header, Supplier<? extends CompletionStage<?>> conversation) {
+        Supplier<? extends CompletionStage<?>> task = conversation;
+        if (inFlight != null) {
+            acquire(header.getTranId());
+            task = () -> start(conversation).whenComplete((ignored, e) -> inFlight.release());
+        }
+
+        try {
+            if (scheduler.isEnabled()) {
+                int priority = priorityHelper.isEnabled() ? priorityHelper.getPriority(header) : 0;
+                scheduler.submit(header.getBizCode(), new Task(priority, sequence.getAndIncrement(), task));
+            } else if (executor != null) {
+                int priority = priorityHelper.getPriority(header);
+                log.trace("Queued tranId [{}] with priority {}", header.getTranId(), priority);
+                executor.execute(new Task(priority, sequence.getAndIncrement(), task));
+            } else if (perConversation != null) {
+                perConversation.newThread(new Task(0, sequence.getAndIncrement(), task)).start();
+            } else {
+                CompletableFuture.runAsync(new Task(0, sequence.getAndIncrement(), task));
+            }
+        } catch (RejectedExecutionException e) {
+            release();
+            throw new IllegalStateException("Conversation executor is shut down", e);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a conversation, turning a failure to start into a stage completed exceptionally.
+     *
+     * @param conversation
+     *            starts the conversation and returns the stage completing once it ends
+     * @return the stage completing once the conversation ends
+     */
+    static CompletionStage<?> start(Supplier<? extends CompletionStage<?>> conversation) {
+        try {
+            CompletionStage<?> stage = conversation.get();
+            return stage != null ? stage : CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Waits for a permit of the in-flight conversations, up to the acquire timeout when one is set.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation waiting to be accepted
+     * @throws SeqismException
+     *             with {@link ErrorInfo#ERROR_0002_0010} if an acquire timeout is set and no permit is free within it
+     * @throws IllegalStateException
+     *             if the calling thread is interrupted while waiting
+     */
+    void acquire(String tranId) {
+        if (inFlight.tryAcquire()) {
+            return;
+        }
+
+        log.debug("Waiting for a free slot for tranId [{}]", tranId);
+        try {
+            if (acquireTimeout == 0) {
+                inFlight.acquire();
+            } else if (!inFlight.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                rejectedCount.increment();
+                log.warn("No free slot for tranId [{}] within {} ms, {} conversations in flight", tranId,
+                        acquireTimeout, maxInFlight);
+                throw new SeqismException(ErrorInfo.ERROR_0002_0010);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a free slot", e);
+        }
+    }
+
+    /**
+     * Releases the permit of a conversation that was not accepted, if the number of in-flight conversations is
+     * limited.
+     */
+    void release() {
+        if (inFlight != null) {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Returns the number of conversations waiting for a worker.
+     *
+     * @return the backlog of the executor, always {@code 0} when conversations run on the common pool or a thread of
+     *         their own
+     */
+    public int getBacklog() {
+        if (scheduler.isEnabled()) {
+            return scheduler.getBacklog();
+        }
+        return executor != null ? executor.getQueue().size() : 0;
+    }
+
+    /**
+     * Returns the number of conversations accepted and not yet completed.
+     *
+     * @return the number of in-flight conversations, always {@code 0} without a limit of in-flight conversations
+     */
+    public int getInFlight() {
+        return inFlight != null ? maxInFlight - inFlight.availablePermits() : 0;
+    }
+
+    /**
+     * Returns the number of conversations rejected because they were not accepted within the acquire timeout set.
+     *
+     * @return the number of conversations rejected by the limit of in-flight conversations
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Stops the worker pool. Conversations still waiting for a worker are dropped.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the factory of the threads running the conversations one per thread: virtual threads when requested
+     * and supported by the runtime, daemon platform threads otherwise.
+     *
+     * @param virtualThreads
+     *            whether virtual threads are requested
+     * @return the thread factory
+     */
+    static ThreadFactory threadFactory(boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                // Thread.ofVirtual().name("seqism-conversation-", 0).factory(), without requiring Java 21 to build
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class)
+                        .invoke(builder, "seqism-conversation-", 0L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                log.info("Virtual threads are not supported by this runtime, using platform threads");
+            }
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "seqism-conversation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
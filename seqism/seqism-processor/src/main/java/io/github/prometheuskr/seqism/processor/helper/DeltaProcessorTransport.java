@@ -0,0 +1,122 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+import io.github.prometheuskr.seqism.common.helper.DeltaHelper;
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * {@link ProcessorTransport} delta encoding the steps of the conversations over another transport.
+ * <p>
+ * Each reply sent is encoded by the {@link DeltaHelper} against the last body of its conversation, and each next
+ * step received is decoded against the full body of the reply it answers, which is held for the exchange, so that a
+ * next step can always be decoded. The first steps, and the next steps of detached conversations, are delivered by
+ * the transport to the listener, which decodes them against the last body of their conversation, and rejects with a
+ * detached reply those whose last body it does not know. The final reply forgets the last body of the conversation.
+ * <p>
+ * Conversations the gateway does not delta encode carry no step sequence number and pass through unchanged.
+ */
+public class DeltaProcessorTransport implements ProcessorTransport {
+    /**
+     * The transport carrying the steps.
+     */
+    private final ProcessorTransport delegate;
+    /**
+     * Encodes and decodes the steps.
+     */
+    private final DeltaHelper deltaHelper;
+
+    /**
+     * Constructs a new {@code DeltaProcessorTransport}.
+     *
+     * @param delegate
+     *            the transport carrying the steps
+     * @param deltaHelper
+     *            the helper encoding and decoding the steps
+     */
+    public DeltaProcessorTransport(ProcessorTransport delegate, DeltaHelper deltaHelper) {
+        this.delegate = delegate;
+        this.deltaHelper = deltaHelper;
+    }
+
+    @Override
+    public <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message) {
+        return sendAndReceiveOrThrow(message, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The next step is received untyped from the transport, since it may be delta encoded, and its full body is
+     * converted to the body type.
+     */
+    @Override
+    public <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message, Class<R> bodyType) {
+        DeltaHelper.Encoded encoded = deltaHelper.encode(message);
+        SeqismMessage<Object> received = delegate.sendAndReceiveOrThrow(encoded.message());
+        return decode(received, encoded, bodyType);
+    }
+
+    @Override
+    public <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message) {
+        return sendAndReceiveAsync(message, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The next step is received untyped from the transport, since it may be delta encoded, and its full body is
+     * converted to the body type.
+     */
+    @Override
+    public <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message,
+            Class<R> bodyType) {
+        DeltaHelper.Encoded encoded = deltaHelper.encode(message);
+        return delegate.<Object, Object>sendAndReceiveAsync(encoded.message())
+                .thenApply(received -> decode(received, encoded, bodyType));
+    }
+
+    @Override
+    public boolean canSendDetached() {
+        return delegate.canSendDetached();
+    }
+
+    @Override
+    public <T> void sendDetached(SeqismMessage<T> message) {
+        delegate.sendDetached(deltaHelper.encode(message).message());
+    }
+
+    @Override
+    public <T> void sendFinal(SeqismMessage<T> message) {
+        try {
+            delegate.sendFinal(deltaHelper.encode(message).message());
+        } finally {
+            deltaHelper.forget(message.getHeader().getTranId());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<SeqismMessage<Object>> dispatcher) {
+        delegate.subscribe(dispatcher);
+    }
+
+    /**
+     * Decodes a next step against the full body of the reply it answers, and converts its body to the body type.
+     *
+     * @param <R>
+     *            the type of the body of the next step
+     * @param received
+     *            the next step received
+     * @param encoded
+     *            the reply sent
+     * @param bodyType
+     *            the type of the body of the next step; {@code null} to keep the body as decoded
+     * @return the next step with its full body
+     */
+    <R> SeqismMessage<R> decode(SeqismMessage<Object> received, DeltaHelper.Encoded encoded, Class<R> bodyType) {
+        SeqismMessage<Object> decoded = deltaHelper.decode(received, encoded.body());
+        return decoded.withBody(deltaHelper.toBody(decoded.getBody(), bodyType));
+    }
+}
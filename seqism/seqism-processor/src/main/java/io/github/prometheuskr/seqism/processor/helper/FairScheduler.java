@@ -0,0 +1,468 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.github.prometheuskr.seqism.common.helper.PriorityHelper;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Schedules the conversations of the processors fairly between business codes, each behind a bulkhead of its own.
+ * <p>
+ * Every business code has a lane holding its conversations waiting for a worker. A free worker takes the next
+ * conversation from the lane that has received the least service relative to its weight (stride scheduling): over
+ * time the workers are shared between the busy business codes in proportion to their weights, and an idle business
+ * code gets served as soon as a worker frees up whatever the backlog of the others. Within a lane the conversations
+ * are taken by priority, then in arrival order.
+ * <p>
+ * The bulkhead of a business code caps the workers it may hold at once and the conversations it may keep waiting.
+ * A conversation arriving at a full bulkhead is rejected with {@link ErrorInfo#ERROR_0002_0006}, so that a slow or
+ * misbehaving processor can only stall its own business code. A conversation holds its slot in the bulkhead until
+ * the stage it returns completes: an asynchronous conversation frees its worker at its first wait, and keeps its
+ * slot until its final reply.
+ * <p>
+ * The time each conversation waited for a worker is recorded per business code, see {@link #getStats()}. The lanes
+ * are bound to Micrometer as they are created when it is present, see {@code MetricsConfig}. Lanes are never removed,
+ * so the listeners only submit the conversations of the business codes of registered processors.
+ * <p>
+ * The scheduler is configurable via application properties:
+ * <ul>
+ * <li><b>seqism.processor.scheduler.enabled</b>: Whether conversations are scheduled by business code (default:
+ * {@code false}).</li>
+ * <li><b>seqism.processor.executor.threads</b>: Number of worker threads (default: {@code 16}).</li>
+ * <li><b>seqism.processor.scheduler.weights</b>: Weights of the business codes, as {@code <bizCode>:<weight>}
+ * entries separated by commas; other business codes weigh {@code 1}.</li>
+ * <li><b>seqism.processor.bulkhead.max-concurrent</b>: Maximum number of workers held by one business code; {@code 0}
+ * for all of them (default: {@code 0}).</li>
+ * <li><b>seqism.processor.bulkhead.max-queued</b>: Maximum number of conversations of one business code waiting for
+ * a worker, at least {@code 1} (default: {@code 100}).</li>
+ * <li><b>seqism.processor.bulkhead.biz-codes</b>: Maximum number of workers of specific business codes, as
+ * {@code <bizCode>:<workers>} entries separated by commas.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class FairScheduler {
+    /**
+     * The pass advance of a lane of weight one for each conversation taken; heavier lanes advance less.
+     */
+    private static final long STRIDE = 1 << 20;
+
+    /**
+     * Statistics of the lane of a business code.
+     *
+     * @param bizCode
+     *            the business code
+     * @param queued
+     *            the number of conversations waiting for a worker
+     * @param running
+     *            the number of conversations running
+     * @param started
+     *            the number of conversations started
+     * @param rejected
+     *            the number of conversations rejected by the bulkhead
+     * @param averageWaitMillis
+     *            the average time, in milliseconds, the started conversations waited for a worker
+     * @param maxWaitMillis
+     *            the longest time, in milliseconds, a started conversation waited for a worker
+     */
+    public record LaneStats(String bizCode, int queued, int running, long started, long rejected,
+            double averageWaitMillis, double maxWaitMillis) {}
+
+    /**
+     * A conversation waiting in a lane.
+     *
+     * @param task
+     *            the conversation, ordering the lane by priority then arrival
+     * @param queuedAt
+     *            the {@link System#nanoTime()} at which the conversation was queued
+     */
+    record Pending(ConversationExecutor.Task task, long queuedAt) implements Comparable<Pending> {
+        @Override
+        public int compareTo(Pending other) {
+            return task.compareTo(other.task);
+        }
+    }
+
+    /**
+     * The conversations of a business code and their statistics, guarded by the lock of the scheduler.
+     */
+    static class Lane {
+        /**
+         * The business code of the lane.
+         */
+        final String bizCode;
+        /**
+         * The pass advance of the lane for each conversation taken.
+         */
+        final long stride;
+        /**
+         * Maximum number of conversations of the lane running at once.
+         */
+        final int maxConcurrent;
+        /**
+         * The conversations waiting for a worker.
+         */
+        final PriorityQueue<Pending> pending = new PriorityQueue<>();
+        /**
+         * The virtual time of the lane; the lane with the lowest pass is served first.
+         */
+        long pass;
+        /**
+         * Number of conversations running.
+         */
+        int running;
+        /**
+         * Number of conversations started.
+         */
+        long started;
+        /**
+         * Number of conversations rejected by the bulkhead.
+         */
+        long rejected;
+        /**
+         * Total time, in nanoseconds, the started conversations waited for a worker.
+         */
+        long totalWaitNanos;
+        /**
+         * Longest time, in nanoseconds, a started conversation waited for a worker.
+         */
+        long maxWaitNanos;
+
+        /**
+         * Constructs an empty lane.
+         *
+         * @param bizCode
+         *            the business code of the lane
+         * @param weight
+         *            the weight of the lane
+         * @param maxConcurrent
+         *            the maximum number of conversations of the lane running at once
+         */
+        Lane(String bizCode, int weight, int maxConcurrent) {
+            this.bizCode = bizCode;
+            this.stride = STRIDE / Math.max(1, weight);
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        /**
+         * Returns whether the lane has a conversation that may start.
+         *
+         * @return {@code true} if a conversation is waiting and the bulkhead has room for it
+         */
+        boolean isEligible() {
+            return !pending.isEmpty() && running < maxConcurrent;
+        }
+    }
+
+    /**
+     * Whether conversations are scheduled by business code.
+     */
+    private final boolean enabled;
+    /**
+     * The weights of the business codes.
+     */
+    private final Map<String, Integer> weights;
+    /**
+     * The maximum number of workers held by business codes with their own limit.
+     */
+    private final Map<String, Integer> maxConcurrentByBizCode;
+    /**
+     * The maximum number of workers held by one business code.
+     */
+    private final int maxConcurrent;
+    /**
+     * The maximum number of conversations of one business code waiting for a worker.
+     */
+    private final int maxQueued;
+    /**
+     * The lanes, keyed by business code; guarded by itself, which is also the lock of the scheduler.
+     */
+    private final Map<String, Lane> lanes = new HashMap<>();
+    /**
+     * Notified with the business code of each lane created.
+     */
+    private final List<Consumer<String>> laneListeners = new CopyOnWriteArrayList<>();
+    /**
+     * The workers; empty when conversations are not scheduled by business code.
+     */
+    private final List<Thread> workers = new ArrayList<>();
+    /**
+     * The pass of the lane served last, from which lanes becoming busy start.
+     */
+    private long virtualTime;
+    /**
+     * Whether the scheduler is shut down; guarded by the lock of the scheduler.
+     */
+    private boolean shutdown;
+
+    /**
+     * Constructs a new {@code FairScheduler} and, when enabled, starts its workers.
+     *
+     * @param enabled
+     *            whether conversations are scheduled by business code, injected from the property
+     *            {@code seqism.processor.scheduler.enabled} or defaults to {@code false}.
+     * @param threads
+     *            the number of worker threads, injected from the property {@code seqism.processor.executor.threads}
+     *            or defaults to {@code 16}.
+     * @param weights
+     *            the weights of the business codes, injected from the property
+     *            {@code seqism.processor.scheduler.weights}.
+     * @param maxConcurrent
+     *            the maximum number of workers held by one business code, {@code 0} for all of them, injected from
+     *            the property {@code seqism.processor.bulkhead.max-concurrent} or defaults to {@code 0}.
+     * @param maxQueued
+     *            the maximum number of conversations of one business code waiting for a worker, injected from the
+     *            property {@code seqism.processor.bulkhead.max-queued} or defaults to {@code 100}.
+     * @param maxConcurrentByBizCode
+     *            the maximum number of workers of specific business codes, injected from the property
+     *            {@code seqism.processor.bulkhead.biz-codes}.
+     * @throws IllegalArgumentException
+     *             if the weights or the limits of the business codes are malformed
+     */
+    public FairScheduler(
+            @Value("${seqism.processor.scheduler.enabled:false}") boolean enabled,
+            @Value("${seqism.processor.executor.threads:16}") int threads,
+            @Value("${seqism.processor.scheduler.weights:}") String weights,
+            @Value("${seqism.processor.bulkhead.max-concurrent:0}") int maxConcurrent,
+            @Value("${seqism.processor.bulkhead.max-queued:100}") int maxQueued,
+            @Value("${seqism.processor.bulkhead.biz-codes:}") String maxConcurrentByBizCode) {
+        int size = Math.max(1, threads);
+        this.enabled = enabled;
+        this.weights = PriorityHelper.parseBizCodeValues(weights);
+        this.maxConcurrentByBizCode = PriorityHelper.parseBizCodeValues(maxConcurrentByBizCode);
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : size;
+        this.maxQueued = Math.max(1, maxQueued);
+
+        if (enabled) {
+            for (int i = 1; i <= size; i++) {
+                Thread worker = new Thread(this::work, "seqism-scheduler-" + i);
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+        }
+    }
+
+    /**
+     * Returns whether conversations are scheduled by business code.
+     *
+     * @return {@code true} if the scheduler is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a conversation in the lane of its business code.
+     *
+     * @param bizCode
+     *            the business code of the conversation, which must have a registered processor; {@code null} is a
+     *            lane of its own
+     * @param task
+     *            the conversation
+     * @throws SeqismException
+     *             with {@link ErrorInfo#ERROR_0002_0006} if the bulkhead of the business code is full
+     * @throws IllegalStateException
+     *             if the scheduler is shut down
+     */
+    public void submit(String bizCode, ConversationExecutor.Task task) {
+        String key = String.valueOf(bizCode);
+        boolean created = false;
+
+        try {
+            synchronized (lanes) {
+                if (shutdown) {
+                    throw new IllegalStateException("Scheduler is shut down");
+                }
+
+                Lane lane = lanes.get(key);
+                if (lane == null) {
+                    lane = new Lane(key, weights.getOrDefault(key, 1),
+                            Math.max(1, maxConcurrentByBizCode.getOrDefault(key, maxConcurrent)));
+                    lanes.put(key, lane);
+                    created = true;
+                }
+                if (lane.pending.size() >= maxQueued) {
+                    lane.rejected++;
+                    log.warn("Rejected tranId of bizCode [{}] : {} running, {} queued", key, lane.running,
+                            lane.pending.size());
+                    throw new SeqismException(ErrorInfo.ERROR_0002_0006.addMessage(key));
+                }
+
+                if (lane.pending.isEmpty() && lane.running == 0) {
+                    lane.pass = Math.max(lane.pass, virtualTime);
+                }
+                lane.pending.add(new Pending(task, System.nanoTime()));
+                lanes.notifyAll();
+            }
+        } finally {
+            if (created) {
+                laneListeners.forEach(listener -> listener.accept(key));
+            }
+        }
+    }
+
+    /**
+     * Registers a callback notified, outside of the lock of the scheduler, with the business code of each lane
+     * created from now on, and right away with those of the lanes already created.
+     *
+     * @param listener
+     *            the callback, given the business code of the lane
+     */
+    public void addLaneListener(Consumer<String> listener) {
+        List<String> bizCodes;
+        synchronized (lanes) {
+            laneListeners.add(listener);
+            bizCodes = new ArrayList<>(lanes.keySet());
+        }
+        bizCodes.forEach(listener);
+    }
+
+    /**
+     * Runs the conversations taken from the lanes until the scheduler is shut down.
+     */
+    void work() {
+        while (true) {
+            Lane lane;
+            Pending next;
+
+            synchronized (lanes) {
+                while ((lane = nextLane()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    try {
+                        lanes.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                next = lane.pending.poll();
+                lane.running++;
+                lane.started++;
+                virtualTime = lane.pass;
+                lane.pass += lane.stride;
+
+                long waited = System.nanoTime() - next.queuedAt();
+                lane.totalWaitNanos += waited;
+                lane.maxWaitNanos = Math.max(lane.maxWaitNanos, waited);
+            }
+
+            Lane started = lane;
+            next.task().start().whenComplete((ignored, e) -> {
+                if (e != null) {
+                    log.error("Conversation of bizCode [{}] failed", started.bizCode, e);
+                }
+                synchronized (lanes) {
+                    started.running--;
+                    lanes.notifyAll();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the eligible lane with the lowest pass; must hold the lock of the scheduler.
+     *
+     * @return the lane to serve next, or {@code null} if no conversation may start
+     */
+    Lane nextLane() {
+        Lane next = null;
+        for (Lane lane : lanes.values()) {
+            if (lane.isEligible() && (next == null || lane.pass < next.pass)) {
+                next = lane;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Returns the statistics of the lanes.
+     *
+     * @return the statistics of each business code seen so far
+     */
+    public List<LaneStats> getStats() {
+        synchronized (lanes) {
+            return lanes.values()
+                    .stream()
+                    .map(FairScheduler::toStats)
+                    .toList();
+        }
+    }
+
+    /**
+     * Returns the statistics of a lane; must hold the lock of the scheduler.
+     *
+     * @param lane
+     *            the lane
+     * @return the statistics of the lane
+     */
+    static LaneStats toStats(Lane lane) {
+        return new LaneStats(lane.bizCode, lane.pending.size(), lane.running, lane.started, lane.rejected,
+                lane.started > 0 ? toMillis(lane.totalWaitNanos) / lane.started : 0, toMillis(lane.maxWaitNanos));
+    }
+
+    /**
+     * Returns the statistics of the lane of a business code.
+     *
+     * @param bizCode
+     *            the business code, as given to {@link #submit(String, ConversationExecutor.Task)}
+     * @return the statistics of the lane, or {@code null} if no conversation of the business code was seen
+     */
+    public LaneStats getStats(String bizCode) {
+        synchronized (lanes) {
+            Lane lane = lanes.get(String.valueOf(bizCode));
+            return lane != null ? toStats(lane) : null;
+        }
+    }
+
+    /**
+     * Returns the number of conversations waiting for a worker, all lanes included.
+     *
+     * @return the backlog of the scheduler
+     */
+    public int getBacklog() {
+        synchronized (lanes) {
+            return lanes.values().stream().mapToInt(lane -> lane.pending.size()).sum();
+        }
+    }
+
+    /**
+     * Stops the workers once they are done with their current conversation. Conversations still waiting for a
+     * worker are dropped.
+     */
+    @PreDestroy
+    public void shutdown() {
+        synchronized (lanes) {
+            shutdown = true;
+            lanes.values().forEach(lane -> lane.pending.clear());
+            lanes.notifyAll();
+        }
+    }
+
+    /**
+     * Converts nanoseconds to fractional milliseconds.
+     *
+     * @param nanos
+     *            the duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.ReplyCorrelator;
+import io.github.prometheuskr.seqism.common.transport.FrameCodec;
+import io.github.prometheuskr.seqism.common.transport.KafkaInbox;
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+
+/**
+ * Kafka implementation of {@link ProcessorTransport}.
+ * <p>
+ * The processor instances share the static topic through one consumer group, so that each first step is handled by
+ * a single instance, handed to the dispatcher registered with {@link #subscribe(Consumer)}. Replies are sent to the
+ * response topic and the next steps are read from the command topic, every record keyed by transaction ID so that a
+ * conversation stays ordered on one partition.
+ * <p>
+ * The processor instances share the partitions of the command topic through a second consumer group, see
+ * {@link KafkaInbox}, so that each instance reads its own partitions only; the command topic needs at least as many
+ * partitions as processor instances. A reply waiting for a next step carries the partition of this instance as its
+ * route, which the client echoes and the gateway sends the next step to, and the next step is handed to the waiting
+ * processor through a {@link ReplyCorrelator}. Replies are sent to the partition of the response topic named by the
+ * {@link SeqismConstant#REPLY_PARTITION_HEADER} header of the last step received, read by the gateway instance
+ * waiting for them.
+ * <p>
+ * Records carry the {@link SeqismMessage} encoded by a {@link FrameCodec}.
+ */
+@Slf4j
+public class KafkaProcessorTransport implements ProcessorTransport, AutoCloseable {
+    /**
+     * Appended to the consumer group of the static topic to name the consumer group of the command topic.
+     */
+    static final String COMMAND_GROUP_SUFFIX = "-command";
+
+    /**
+     * Sends the replies of the conversations.
+     */
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    /**
+     * Creates the consumers of the static and command topics.
+     */
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    /**
+     * Encodes and decodes the messages.
+     */
+    private final FrameCodec codec;
+    /**
+     * The topic of the first steps.
+     */
+    private final String staticTopic;
+    /**
+     * The topic of the replies.
+     */
+    private final String responseTopic;
+    /**
+     * The consumer group of the processors on the static topic.
+     */
+    private final String groupId;
+    /**
+     * Maximum time, in milliseconds, to wait for a send acknowledgment and for a next step.
+     */
+    private final long receiveTimeout;
+    /**
+     * Hands the next steps read from the command topic to the processors waiting for them.
+     */
+    private final ReplyCorrelator<SeqismMessage<Object>> inboxCorrelator = new ReplyCorrelator<>();
+    /**
+     * The partition of the response topic the replies of each conversation are sent to, keyed by transaction ID.
+     */
+    private final Map<String, Integer> replyPartitions = new ConcurrentHashMap<>();
+    /**
+     * Reads the partitions of the command topic owned by this instance.
+     */
+    private final KafkaInbox commandInbox;
+    /**
+     * Reads the static topic; {@code null} until a dispatcher subscribes.
+     */
+    private volatile KafkaMessageListenerContainer<String, byte[]> staticContainer;
+
+    /**
+     * Constructs the transport and starts reading the command topic. The static topic is read once a dispatcher
+     * subscribes.
+     *
+     * @param producerFactory
+     *            the factory of the producers sending the replies
+     * @param consumerFactory
+     *            the factory of the consumers reading the steps
+     * @param codec
+     *            the codec of the messages
+     * @param staticTopic
+     *            the topic of the first steps
+     * @param commandTopic
+     *            the topic of the next steps
+     * @param responseTopic
+     *            the topic of the replies
+     * @param groupId
+     *            the consumer group of the processors on the static topic; the group suffixed with
+     *            {@value #COMMAND_GROUP_SUFFIX} shares the command topic
+     * @param receiveTimeout
+     *            the maximum time, in milliseconds, to wait for a send acknowledgment and for a next step
+     * @throws IllegalStateException
+     *             if no partition of the command topic is assigned to this instance
+     */
+    public KafkaProcessorTransport(ProducerFactory<String, byte[]> producerFactory,
+            ConsumerFactory<String, byte[]> consumerFactory, FrameCodec codec, String staticTopic, String commandTopic,
+            String responseTopic, String groupId, long receiveTimeout) {
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        this.consumerFactory = consumerFactory;
+        this.codec = codec;
+        this.staticTopic = staticTopic;
+        this.responseTopic = responseTopic;
+        this.groupId = groupId;
+        this.receiveTimeout = receiveTimeout;
+
+        this.commandInbox = new KafkaInbox(consumerFactory, commandTopic, groupId + COMMAND_GROUP_SUFFIX,
+                (MessageListener<String, byte[]>) this::handleCommand);
+        this.commandInbox.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Joins the consumer group of the static topic; must be called once.
+     */
+    @Override
+    public void subscribe(Consumer<SeqismMessage<Object>> dispatcher) {
+        ContainerProperties properties = new ContainerProperties(staticTopic);
+        properties.setGroupId(groupId);
+        properties.setMessageListener((MessageListener<String, byte[]>) record -> {
+            rememberReplyPartition(record);
+            dispatcher.accept(codec.decode(record.value()));
+        });
+        staticContainer = new KafkaMessageListenerContainer<>(consumerFactory, properties);
+        staticContainer.start();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message) {
+        String tranId = message.getHeader().getTranId();
+        CompletableFuture<SeqismMessage<Object>> pending = inboxCorrelator.register(tranId);
+
+        if (!sendWaiting(message)) {
+            inboxCorrelator.cancel(tranId);
+            replyPartitions.remove(tranId);
+            throw new SeqismException(ErrorInfo.ERROR_0002_0004);
+        }
+
+        SeqismMessage<Object> next = inboxCorrelator.await(tranId, pending, receiveTimeout);
+        if (next == null) {
+            replyPartitions.remove(tranId);
+            throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+        }
+        return (SeqismMessage<R>) (SeqismMessage<?>) next;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message) {
+        String tranId = message.getHeader().getTranId();
+        CompletableFuture<SeqismMessage<Object>> pending = inboxCorrelator.register(tranId);
+
+        if (!sendWaiting(message)) {
+            inboxCorrelator.cancel(tranId);
+            replyPartitions.remove(tranId);
+            return CompletableFuture.failedFuture(new SeqismException(ErrorInfo.ERROR_0002_0004));
+        }
+
+        return inboxCorrelator.awaitAsync(tranId, pending, receiveTimeout).thenApply(next -> {
+            if (next == null) {
+                replyPartitions.remove(tranId);
+                throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+            }
+            return (SeqismMessage<R>) (SeqismMessage<?>) next;
+        });
+    }
+
+    @Override
+    public <T> void sendFinal(SeqismMessage<T> message) {
+        if (!send(message, replyPartitions.remove(message.getHeader().getTranId()))) {
+            throw new SeqismException(ErrorInfo.ERROR_0002_0004);
+        }
+    }
+
+    /**
+     * Sends a reply waiting for a next step, routed to the partition of the command topic this instance reads.
+     *
+     * @param message
+     *            the reply
+     * @return {@code true} if the reply was acknowledged within the timeout, {@code false} if it was not or no
+     *         partition of the command topic is assigned to this instance
+     */
+    private boolean sendWaiting(SeqismMessage<?> message) {
+        Integer partition = commandInbox.partition();
+        if (partition == null) {
+            log.error("No partition of the command topic assigned to this processor instance");
+            return false;
+        }
+        return send(message.withRoute(partition.toString()), replyPartitions.get(message.getHeader().getTranId()));
+    }
+
+    /**
+     * Sends a reply to the response topic and waits for its acknowledgment.
+     *
+     * @param message
+     *            the reply
+     * @param partition
+     *            the partition read by the gateway instance waiting for the reply, or {@code null} to choose it by
+     *            transaction ID
+     * @return {@code true} if the reply was acknowledged within the timeout
+     */
+    private boolean send(SeqismMessage<?> message, Integer partition) {
+        try {
+            kafkaTemplate.send(new ProducerRecord<>(responseTopic, partition, message.getHeader().getTranId(),
+                    codec.encode(message))).get(receiveTimeout, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            log.error("Failed to send message to topic [{}] : {}", responseTopic, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Hands a next step read from the command topic to the processor waiting for it, if any.
+     *
+     * @param record
+     *            the record of the next step
+     */
+    void handleCommand(ConsumerRecord<String, byte[]> record) {
+        if (!inboxCorrelator.isPending(record.key())) {
+            log.trace("Skipped step of tranId [{}]", record.key());
+            return;
+        }
+        // the next step may come from another gateway instance than the previous one
+        rememberReplyPartition(record);
+        if (!inboxCorrelator.complete(record.key(), codec.decode(record.value()))) {
+            log.trace("Skipped step of tranId [{}]", record.key());
+        }
+    }
+
+    /**
+     * Remembers the partition of the response topic named by a step, read by the gateway instance that sent it.
+     *
+     * @param record
+     *            the record of the step
+     */
+    private void rememberReplyPartition(ConsumerRecord<String, byte[]> record) {
+        Integer partition = KafkaInbox.partitionOf(record, SeqismConstant.REPLY_PARTITION_HEADER);
+        if (partition != null && record.key() != null) {
+            replyPartitions.put(record.key(), partition);
+        }
+    }
+
+    /**
+     * Stops reading the static and command topics.
+     */
+    @Override
+    public void close() {
+        if (staticContainer != null) {
+            staticContainer.stop();
+        }
+        commandInbox.close();
+    }
+}
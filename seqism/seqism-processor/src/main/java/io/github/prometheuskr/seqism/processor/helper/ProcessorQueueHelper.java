@@ -2,23 +2,46 @@ package io.github.prometheuskr.seqism.processor.helper;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Address;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.amqp.support.converter.SmartMessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.audit.AuditPoint;
 import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
 import io.github.prometheuskr.seqism.common.helper.QueueNameHelper;
+import io.github.prometheuskr.seqism.common.helper.ReplyCorrelator;
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
 import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
 import io.github.prometheuskr.seqism.common.vo.SeqismException;
 import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import jakarta.annotation.PreDestroy;
 
 /**
  * Helper component for managing message sending and receiving operations with RabbitMQ queues
  * in the processor module. This class provides utility methods for sending messages to command
  * queues and receiving responses from response queues, handling queue name resolution and
- * message timeouts.
+ * message timeouts. This is the RabbitMQ implementation of {@link ProcessorTransport}.
  * <p>
  * Dependencies such as {@link RabbitTemplate} and {@link QueueNameHelper} are injected to
  * facilitate message operations and queue name management. The message receive timeout is
@@ -29,15 +52,45 @@ import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
  * <li>Sending {@link SeqismMessage} instances to the appropriate command queue.</li>
  * <li>Receiving {@link SeqismMessage} responses from the corresponding response queue,
  * with timeout and error handling.</li>
- * <li>Providing a combined send-and-receive operation for synchronous messaging patterns.</li>
+ * <li>Providing a combined send-and-receive operation for synchronous messaging patterns, and its asynchronous
+ * counterpart.</li>
  * </ul>
  * <p>
+ * When the gateway asks for replies on a shared reply queue, every message it sends carries that queue as its
+ * {@code reply-to} property. The reply destination of each conversation is tracked by transaction ID and refreshed
+ * on every received message, so replies follow the gateway instance that sent the latest step. Conversations
+ * without a {@code reply-to} are answered on their command queue as before.
+ * <p>
+ * When inbox queues are enabled ({@code seqism.queue.inbox.enabled=true}) this processor instance receives the next
+ * steps of all its conversations on a single inbox queue. Every outgoing message carries the inbox queue as the
+ * {@code route} of its header, so that the gateway sends the next step straight there, and the inbox consumer wakes
+ * the waiting processor through {@link #handleInboxMessage(Message)}.
+ * <p>
+ * Without inbox queues the next step of each conversation arrives on a response queue of its own.
+ * {@link #sendAndReceiveOrThrow(SeqismMessage)} reads it with a blocking receive, while
+ * {@link #sendAndReceiveAsync(SeqismMessage, Class)} adds the queue to a single listener container consuming the
+ * response queues of the waiting asynchronous conversations, and removes it once the next step arrives or the receive
+ * timeout elapses: no thread waits for the next step, however many conversations wait.
+ * <p>
+ * Resumable conversations reply with {@link #sendDetached(SeqismMessage)} instead, which routes their next steps to
+ * the static queues, so that any processor instance can take them.
+ * <p>
+ * When the gateway starts a conversation over RabbitMQ direct reply-to ({@code seqism.queue.lazy.enabled=true} on
+ * the gateway) no conversation queue exists yet. The first reply goes back over direct reply-to, which accepts a
+ * single reply only, and the response queue is declared by this helper the first time the processor calls
+ * {@link #sendAndReceiveOrThrow(SeqismMessage)}, right before sending the reply that asks for the next step.
+ * <p>
+ * Replies are published through the {@link ReplyPublisher}, which confirms them when publisher confirms are enabled
+ * and micro-batches the final replies sent by {@link #sendFinal(SeqismMessage)}.
+ * <p>
+ * Every message sent and every next step received is recorded in the {@link AuditLog}, when auditing is enabled.
+ * <p>
  * Exceptions encountered during message operations are wrapped and rethrown as
  * {@link SeqismException} with appropriate error information.
  */
 @Slf4j
 @Component
-public class ProcessorQueueHelper {
+public class ProcessorQueueHelper implements ProcessorTransport {
     /**
      * The {@code RabbitTemplate} instance used for sending and receiving messages
      * to and from a RabbitMQ message broker. This template provides convenient
@@ -45,6 +98,10 @@ public class ProcessorQueueHelper {
      * messages, as well as receiving and converting messages.
      */
     private final RabbitTemplate rabbitTemplate;
+    /**
+     * Used to declare the response queues of conversations started over direct reply-to.
+     */
+    private final RabbitAdmin rabbitAdmin;
     /**
      * Helper instance for managing and generating queue names within the processor.
      */
@@ -55,26 +112,119 @@ public class ProcessorQueueHelper {
      * value may indicate an indefinite wait, depending on implementation.
      */
     private final long messageReceiveTimeout;
+    /**
+     * Expiration time (ms) of the response queues declared by this helper, loaded from application properties.
+     */
+    private final long queueDeleteTimeout;
+    /**
+     * The {@code reply-to} destination of each in-flight conversation, keyed by transaction ID.
+     * Conversations without an entry are answered on their command queue.
+     */
+    private final Map<String, String> replyRoutes = new ConcurrentHashMap<>();
+    /**
+     * The name of the inbox queue of this processor instance, or {@code null} if inbox queues are disabled.
+     */
+    private final String inboxQueueName;
+    /**
+     * Hands the messages arriving on the inbox queue to the processors waiting for them.
+     */
+    private final ReplyCorrelator<Message> inboxCorrelator = new ReplyCorrelator<>();
+    /**
+     * Publishes the replies, confirming and batching them as configured.
+     */
+    private final ReplyPublisher replyPublisher;
+    /**
+     * Whether the first steps go to sharded static queues, to which detached replies route the next steps too.
+     */
+    private final boolean shardedQueues;
+    /**
+     * The number of sharded static queues per business code.
+     */
+    private final int shards;
+    /**
+     * Records the steps exchanged with the gateway.
+     */
+    private final AuditLog auditLog;
+    /**
+     * The type of the messages whose body is decoded straight into a body type, keyed by body type.
+     */
+    private final Map<Class<?>, JavaType> messageTypes = new ConcurrentHashMap<>();
+    /**
+     * Hands the messages arriving on the response queues of the asynchronous conversations to the stages waiting for
+     * them, when inbox queues are disabled.
+     */
+    private final ReplyCorrelator<Message> responseCorrelator = new ReplyCorrelator<>();
+    /**
+     * The transaction ID of the asynchronous conversation waiting on each response queue, keyed by queue name.
+     */
+    private final Map<String, String> awaitedResponseQueues = new ConcurrentHashMap<>();
+    /**
+     * Consumes the response queues of the waiting asynchronous conversations; created on first use.
+     */
+    private DirectMessageListenerContainer responseConsumer;
+
+    /**
+     * The type of the messages whose body is left untyped.
+     */
+    static final JavaType UNTYPED_MESSAGE =
+            TypeFactory.defaultInstance().constructParametricType(SeqismMessage.class, Object.class);
 
     /**
      * Constructs a new {@code ProcessorQueueHelper} with the specified dependencies.
      *
      * @param rabbitTemplate
      *            the {@link RabbitTemplate} used for sending and receiving messages from RabbitMQ
+     * @param rabbitAdmin
+     *            the {@link RabbitAdmin} used for declaring the response queues of conversations started over direct
+     *            reply-to
      * @param queueNameHelper
      *            the {@link QueueNameHelper} used for resolving queue names
      * @param messageReceiveTimeout
-     *            the timeout value (in milliseconds) for receiving messages from the queue,
-     *            injected from the application properties or defaults to {@link SeqismConstant#RECEIVE_TIME_OUT}
+     *            the timeout value (in milliseconds) for receiving messages from the queue, injected from the
+     *            property {@code seqism.queue.receive.timeout} or defaults to {@link SeqismConstant#RECEIVE_TIME_OUT}
+     * @param queueDeleteTimeout
+     *            the expiration time (in milliseconds) of the response queues declared by this helper, injected from
+     *            the property {@code seqism.queue.delete.timeout} or defaults to
+     *            {@link SeqismConstant#QUEUE_DELETE_TIME}
+     * @param processorInboxQueue
+     *            the inbox queue owned by this processor instance
+     * @param inboxQueue
+     *            whether inbox queues are enabled, injected from the property {@code seqism.queue.inbox.enabled}
+     *            or defaults to {@code false}
+     * @param replyPublisher
+     *            the {@link ReplyPublisher} publishing the replies
+     * @param shardedQueues
+     *            whether sharded static queues are enabled, injected from the property
+     *            {@code seqism.queue.sharding.enabled} or defaults to {@code false}
+     * @param shards
+     *            the number of sharded static queues per business code, injected from the property
+     *            {@code seqism.queue.sharding.shards} or defaults to {@code 1}
+     * @param auditLog
+     *            the audit log recording the steps, disabled unless {@code seqism.audit.enabled=true}
      */
     public ProcessorQueueHelper(
             RabbitTemplate rabbitTemplate,
+            RabbitAdmin rabbitAdmin,
             QueueNameHelper queueNameHelper,
             @Value("${seqism.queue.receive.timeout:" + SeqismConstant.RECEIVE_TIME_OUT
-                    + "}") long messageReceiveTimeout) {
+                    + "}") long messageReceiveTimeout,
+            @Value("${seqism.queue.delete.timeout:" + SeqismConstant.QUEUE_DELETE_TIME + "}") long queueDeleteTimeout,
+            @Qualifier("processorInboxQueue") Queue processorInboxQueue,
+            @Value("${seqism.queue.inbox.enabled:false}") boolean inboxQueue,
+            ReplyPublisher replyPublisher,
+            @Value("${seqism.queue.sharding.enabled:false}") boolean shardedQueues,
+            @Value("${seqism.queue.sharding.shards:1}") int shards,
+            AuditLog auditLog) {
         this.rabbitTemplate = rabbitTemplate;
+        this.rabbitAdmin = rabbitAdmin;
         this.queueNameHelper = queueNameHelper;
-        this.messageReceiveTimeout = SeqismConstant.RECEIVE_TIME_OUT;
+        this.messageReceiveTimeout = messageReceiveTimeout;
+        this.queueDeleteTimeout = queueDeleteTimeout;
+        this.inboxQueueName = inboxQueue ? processorInboxQueue.getName() : null;
+        this.replyPublisher = replyPublisher;
+        this.shardedQueues = shardedQueues;
+        this.shards = Math.max(1, shards);
+        this.auditLog = auditLog;
     }
 
     /**
@@ -82,6 +232,8 @@ public class ProcessorQueueHelper {
      * <p>
      * This method first sends the provided message using {@code sendMessage(message)},
      * then waits for and returns the received message using {@code receivedMessage(message)}.
+     * When inbox queues are enabled the caller is registered for its transaction before the message is sent,
+     * and the response is handed over by the inbox consumer.
      *
      * @param <R>
      *            the type of the response message payload
@@ -93,48 +245,417 @@ public class ProcessorQueueHelper {
      * @throws RuntimeException
      *             if sending or receiving the message fails
      */
+    @Override
     public <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message) {
-        sendMessage(message);
-        return receivedMessage(message);
+        return sendAndReceiveOrThrow(message, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The next step is decoded once, straight into the body type.
+     *
+     * @param bodyType
+     *            the type of the body of the next step; {@code null} to leave the body untyped
+     */
+    @Override
+    public <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message, Class<R> bodyType) {
+        if (inboxQueueName == null) {
+            declareResponseQueueIfDirect(message.getHeader().getTranId());
+            sendMessage(message, false);
+            return receivedMessage(message, bodyType);
+        }
+
+        String tranId = message.getHeader().getTranId();
+        CompletableFuture<Message> pending = inboxCorrelator.register(tranId);
+        try {
+            sendMessage(message, false);
+        } catch (RuntimeException e) {
+            inboxCorrelator.cancel(tranId);
+            throw e;
+        }
+
+        return receivedInboxMessage(tranId, pending, bodyType);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * When inbox queues are enabled the caller is registered for its transaction before the message is sent, and
+     * the returned stage completes once the inbox consumer hands the response over: no thread waits meanwhile.
+     * Without inbox queues the response queue of the conversation is consumed by the listener container of the
+     * asynchronous conversations until the response arrives: no thread waits meanwhile either.
+     */
+    @Override
+    public <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message) {
+        return sendAndReceiveAsync(message, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The next step is decoded once, straight into the body type. The stage fails with
+     * {@link ErrorInfo#ERROR_0002_0003} if the next step does not arrive within the receive timeout.
+     *
+     * @param bodyType
+     *            the type of the body of the next step; {@code null} to leave the body untyped
+     */
+    @Override
+    public <R, C> CompletionStage<SeqismMessage<R>> sendAndReceiveAsync(SeqismMessage<C> message,
+            Class<R> bodyType) {
+        if (inboxQueueName == null) {
+            return sendAndConsumeAsync(message, bodyType);
+        }
+
+        String tranId = message.getHeader().getTranId();
+        CompletableFuture<Message> pending = inboxCorrelator.register(tranId);
+        try {
+            sendMessage(message, false);
+        } catch (RuntimeException e) {
+            inboxCorrelator.cancel(tranId);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return inboxCorrelator.awaitAsync(tranId, pending, this.messageReceiveTimeout).thenApply(received -> {
+            if (received == null) {
+                log.error("Timeout occurred while waiting for response from queue : [{}]", inboxQueueName);
+                throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+            }
+
+            try {
+                return convertReceived(tranId, received, bodyType);
+            } catch (AmqpException e) {
+                throw new SeqismException(ErrorInfo.ERROR_0002_0005, e);
+            }
+        });
+    }
+
+    /**
+     * Sends a message, then consumes the response queue of its conversation with the listener container of the
+     * asynchronous conversations until the next step arrives or the receive timeout elapses.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param <C>
+     *            the type of the command message payload
+     * @param message
+     *            the message to send
+     * @param bodyType
+     *            the type of the body of the next step; {@code null} to leave the body untyped
+     * @return the stage completing with the next step, or exceptionally with a {@link SeqismException}
+     */
+    <R, C> CompletionStage<SeqismMessage<R>> sendAndConsumeAsync(SeqismMessage<C> message, Class<R> bodyType) {
+        String tranId = message.getHeader().getTranId();
+        String responseQueueName = queueNameHelper.getResponseQueueName(tranId);
+        CompletableFuture<Message> pending = responseCorrelator.register(tranId);
+        try {
+            declareResponseQueueIfDirect(tranId);
+            sendMessage(message, false);
+            startConsuming(responseQueueName, tranId);
+        } catch (RuntimeException e) {
+            responseCorrelator.cancel(tranId);
+            stopConsuming(responseQueueName, tranId);
+            return CompletableFuture.failedFuture(e instanceof AmqpException
+                    ? new SeqismException(ErrorInfo.ERROR_0002_0005, e)
+                    : e);
+        }
+
+        return responseCorrelator.awaitAsync(tranId, pending, this.messageReceiveTimeout)
+                .whenComplete((received, e) -> stopConsuming(responseQueueName, tranId))
+                .thenApply(received -> {
+                    if (received == null) {
+                        log.error("Timeout occurred while waiting for response from queue : [{}]",
+                                responseQueueName);
+                        throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+                    }
+
+                    try {
+                        return convertReceived(tranId, received, bodyType);
+                    } catch (AmqpException e) {
+                        throw new SeqismException(ErrorInfo.ERROR_0002_0005, e);
+                    }
+                });
+    }
+
+    /**
+     * Hands a message received on the response queue of an asynchronous conversation to the stage waiting for it.
+     * <p>
+     * A message correlated with another transaction means that the queue is a pooled one which the gateway has since
+     * leased to another conversation: the queue is left to the processor of that conversation, the message put back
+     * on it, see {@link #requeue(String, Message)}, and the waiting stage times out as it would have without it,
+     * rather than failing at once. The messages are acknowledged on delivery, so those for which no stage is waiting
+     * any more, such as responses arriving after the receive timeout or delivered while the queue is being removed
+     * from the container, are put back on their queue too, left for a later receive as a blocking receive would leave
+     * them.
+     *
+     * @param message
+     *            the message received on a response queue
+     */
+    void handleResponseMessage(Message message) {
+        String responseQueueName = message.getMessageProperties().getConsumerQueue();
+        String tranId = responseQueueName != null ? awaitedResponseQueues.get(responseQueueName) : null;
+        if (tranId != null && !isCorrelatedWith(message, tranId)) {
+            // stop consuming first, so that the message put back is not delivered here again
+            stopConsuming(responseQueueName, tranId);
+            requeue(responseQueueName, message);
+        } else if ((tranId == null || !responseCorrelator.complete(tranId, message)) && responseQueueName != null) {
+            log.warn("Put back response with no waiting processor : [{}]", responseQueueName);
+            rabbitTemplate.send("", responseQueueName, message);
+        }
+    }
+
+    /**
+     * Starts consuming the response queue of an asynchronous conversation, with the listener container of the
+     * asynchronous conversations created and started on first use. The container starts without any queue; each
+     * waiting conversation adds its own, and a conversation taking over a pooled queue another one still waits on
+     * takes over its consumer.
+     *
+     * @param responseQueueName
+     *            the name of the response queue
+     * @param tranId
+     *            the transaction ID of the conversation waiting on it
+     * @throws AmqpException
+     *             if the queue cannot be consumed
+     */
+    synchronized void startConsuming(String responseQueueName, String tranId) {
+        if (responseConsumer == null) {
+            DirectMessageListenerContainer container =
+                    new DirectMessageListenerContainer(rabbitTemplate.getConnectionFactory());
+            container.setMessageListener(this::handleResponseMessage);
+            // acknowledged on delivery, so that removing a queue never leaves a step unacknowledged to redeliver
+            container.setAcknowledgeMode(AcknowledgeMode.NONE);
+            container.afterPropertiesSet();
+            container.start();
+            responseConsumer = container;
+        }
+
+        awaitedResponseQueues.put(responseQueueName, tranId);
+        if (!List.of(responseConsumer.getQueueNames()).contains(responseQueueName)) {
+            responseConsumer.addQueueNames(responseQueueName);
+        }
+    }
+
+    /**
+     * Stops consuming the response queue of an asynchronous conversation, unless another conversation waits on it
+     * since.
+     *
+     * @param responseQueueName
+     *            the name of the response queue
+     * @param tranId
+     *            the transaction ID of the conversation that waited on it
+     */
+    synchronized void stopConsuming(String responseQueueName, String tranId) {
+        if (awaitedResponseQueues.remove(responseQueueName, tranId) && responseConsumer != null
+                && List.of(responseConsumer.getQueueNames()).contains(responseQueueName)) {
+            responseConsumer.removeQueueNames(responseQueueName);
+        }
     }
 
     /**
      * Sends the specified {@link SeqismMessage} as a final message in the processing queue.
      * <p>
-     * This method delegates to {@code sendMessage} to perform the actual sending operation.
+     * This method delegates to {@code sendMessage} to perform the actual sending operation, publishing the message
+     * within the next batch of final replies.
      *
      * @param <T>
      *            the type of the payload contained in the message
      * @param message
      *            the message to be sent as final
      */
+    @Override
     public <T> void sendFinal(SeqismMessage<T> message) {
-        sendMessage(message);
+        try {
+            sendMessage(message, true);
+        } finally {
+            replyRoutes.remove(message.getHeader().getTranId());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code true}: the next steps can be routed to the static queues
+     */
+    @Override
+    public boolean canSendDetached() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The static queue of the conversation, or its sharded static queue when sharding is enabled, is set as the
+     * route of the header, so that the gateway sends the next step there and any processor instance consuming that
+     * queue takes it. The recorded {@code reply-to} destination is forgotten once the reply is sent, since the
+     * instance taking the next step records its own.
+     */
+    @Override
+    public <T> void sendDetached(SeqismMessage<T> message) {
+        try {
+            sendMessage(message, false, getStaticRoute(message));
+        } finally {
+            replyRoutes.remove(message.getHeader().getTranId());
+        }
+    }
+
+    /**
+     * Returns the static queue the next steps of a detached conversation are routed to: its sharded static queue
+     * when sharding is enabled, the static queue otherwise.
+     *
+     * @param message
+     *            a message of the conversation
+     * @return the name of the static queue
+     */
+    String getStaticRoute(SeqismMessage<?> message) {
+        if (!shardedQueues) {
+            return queueNameHelper.getStaticQueueName();
+        }
+        int shard = queueNameHelper.getShard(message.getHeader().getTranId(), shards);
+        return queueNameHelper.getStaticQueueName(message.getHeader().getBizCode(), shard);
+    }
+
+    /**
+     * Declares the response queue of a conversation whose replies still go over direct reply-to, that is a
+     * conversation started by the gateway without declaring its queues.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @throws SeqismException
+     *             if the queue cannot be declared
+     */
+    void declareResponseQueueIfDirect(String tranId) {
+        if (!isDirectReplyTo(replyRoutes.get(tranId))) {
+            return;
+        }
+
+        String responseQueueName = queueNameHelper.getResponseQueueName(tranId);
+        try {
+            rabbitAdmin.declareQueue(QueueBuilder.durable(responseQueueName)
+                    .withArgument("x-expires", this.queueDeleteTimeout)
+                    .build());
+            log.debug("Created queue : [{}]", responseQueueName);
+        } catch (AmqpException e) {
+            throw new SeqismException(ErrorInfo.ERROR_0002_0004, e);
+        }
+    }
+
+    /**
+     * Returns whether the given {@code reply-to} destination is a RabbitMQ direct reply-to address.
+     *
+     * @param replyTo
+     *            the {@code reply-to} destination; may be {@code null}
+     * @return {@code true} if the destination accepts a single direct reply
+     */
+    boolean isDirectReplyTo(String replyTo) {
+        return replyTo != null && replyTo.startsWith(Address.AMQ_RABBITMQ_REPLY_TO);
+    }
+
+    /**
+     * Hands a message received on the inbox queue of this processor instance to the processor waiting for it.
+     * <p>
+     * The message is correlated by its {@code correlation-id}, which the gateway sets to the transaction ID.
+     * Messages for which no processor is waiting, such as responses arriving after the receive timeout, are
+     * discarded.
+     *
+     * @param message
+     *            the message received on the inbox queue
+     */
+    public void handleInboxMessage(Message message) {
+        String tranId = message.getMessageProperties().getCorrelationId();
+
+        if (!inboxCorrelator.complete(tranId, message)) {
+            log.warn("Discarded inbox message with no waiting processor : [{}]", tranId);
+        }
+    }
+
+    /**
+     * Records the {@code reply-to} destination the gateway asked for in the latest message of a conversation.
+     * <p>
+     * A {@code null} destination clears the recorded one, so that replies go to the command queue of the
+     * conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param replyTo
+     *            the {@code reply-to} property of the latest received message; may be {@code null}
+     */
+    public void registerReplyTo(String tranId, String replyTo) {
+        if (replyTo != null) {
+            replyRoutes.put(tranId, replyTo);
+        } else {
+            replyRoutes.remove(tranId);
+        }
     }
 
     /**
      * Sends a {@link SeqismMessage} to the appropriate command queue using RabbitMQ.
      * <p>
-     * The queue name is determined based on the transaction ID found in the message header.
-     * If the message cannot be sent due to an AMQP-related exception, a {@link SeqismException}
-     * is thrown with the corresponding error information.
+     * The queue name is determined based on the transaction ID found in the message header, unless the gateway
+     * asked for a {@code reply-to} destination, in which case the message is sent there with the transaction ID as
+     * its {@code correlation-id}. A direct reply-to destination is forgotten once used, since it accepts a single
+     * reply. When inbox queues are enabled the inbox queue is set as the route of the header. The priority of the
+     * conversation, if any, is the {@code priority} of the message.
+     * If the message cannot be sent due to an AMQP-related exception, or is reported as lost by publisher confirms, a
+     * {@link SeqismException} is thrown with the corresponding error information.
+     *
+     * @param <T>
+     *            the type of the payload contained in the message
+     * @param message
+     *            the message to be sent to the command queue
+     * @param batched
+     *            whether the message may be published within a batch of final replies
+     * @throws SeqismException
+     *             if an error occurs while sending the message to the queue
+     */
+    <T> void sendMessage(SeqismMessage<T> message, boolean batched) {
+        sendMessage(message, batched, inboxQueueName);
+    }
+
+    /**
+     * Sends a {@link SeqismMessage} as {@link #sendMessage(SeqismMessage, boolean)} does, with the given route set
+     * in its header.
      *
      * @param <T>
      *            the type of the payload contained in the message
      * @param message
      *            the message to be sent to the command queue
+     * @param batched
+     *            whether the message may be published within a batch of final replies
+     * @param route
+     *            the queue the gateway sends the next step to; {@code null} to leave the header as is
      * @throws SeqismException
      *             if an error occurs while sending the message to the queue
      */
-    <T> void sendMessage(SeqismMessage<T> message) {
+    <T> void sendMessage(SeqismMessage<T> message, boolean batched, String route) {
+        if (route != null) {
+            message = message.withRoute(route);
+        }
+
         log.debug("Sending message : [{}]", message);
-        String commandQueueName = queueNameHelper.getCommandQueueName(message.getHeader().getTranId());
+        auditLog.record(AuditPoint.PROCESSOR_SENT, message);
+        String tranId = message.getHeader().getTranId();
+        String replyTo = replyRoutes.get(tranId);
 
+        Message amqpMessage;
         try {
-            rabbitTemplate.convertAndSend(commandQueueName, message);
+            amqpMessage = rabbitTemplate.getMessageConverter().toMessage(message, new MessageProperties());
         } catch (AmqpException e) {
             throw new SeqismException(ErrorInfo.ERROR_0002_0004, e);
         }
+        amqpMessage.getMessageProperties().setPriority(message.getHeader().getPriority());
+        if (replyTo != null) {
+            amqpMessage.getMessageProperties().setCorrelationId(tranId);
+        }
+
+        String routingKey = replyTo != null ? replyTo : queueNameHelper.getCommandQueueName(tranId);
+        if (batched) {
+            replyPublisher.publishBatched(routingKey, amqpMessage, tranId);
+        } else {
+            replyPublisher.publish(routingKey, amqpMessage, tranId);
+        }
+        if (isDirectReplyTo(replyTo)) {
+            replyRoutes.remove(tranId, replyTo);
+        }
     }
 
     /**
@@ -143,6 +664,11 @@ public class ProcessorQueueHelper {
      * Waits for a response message from the queue for a specified timeout period. If a message is received,
      * it is returned; otherwise, a timeout error is logged and a {@link SeqismException} is thrown.
      * Handles AMQP exceptions by wrapping them in a {@link SeqismException}.
+     * <p>
+     * A message correlated with another transaction means that the queue is a pooled one which the gateway has since
+     * leased to another conversation: the message is put back on the queue for the processor of that conversation,
+     * see {@link #requeue(String, Message)}, and this one keeps waiting for its own until the receive timeout elapses,
+     * then gives up with {@link ErrorInfo#ERROR_0002_0003}.
      *
      * @param <R>
      *            the type of the response message payload
@@ -150,26 +676,138 @@ public class ProcessorQueueHelper {
      *            the type of the command message payload
      * @param message
      *            the original {@link SeqismMessage} for which a response is expected
+     * @param bodyType
+     *            the type of the body of the response; {@code null} to leave the body untyped
      * @return the received {@link SeqismMessage} from the response queue
      * @throws SeqismException
      *             if a timeout occurs or an AMQP error is encountered while receiving the message
      */
-    <R, C> SeqismMessage<R> receivedMessage(SeqismMessage<C> message) {
-        String responseQueueName = queueNameHelper.getResponseQueueName(message.getHeader().getTranId());
-        ParameterizedTypeReference<SeqismMessage<R>> typeRef = new ParameterizedTypeReference<SeqismMessage<R>>() {};
+    <R, C> SeqismMessage<R> receivedMessage(SeqismMessage<C> message, Class<R> bodyType) {
+        String tranId = message.getHeader().getTranId();
+        String responseQueueName = queueNameHelper.getResponseQueueName(tranId);
 
         try {
-            SeqismMessage<R> receivedMsg //
-                    = rabbitTemplate.receiveAndConvert(responseQueueName, this.messageReceiveTimeout, typeRef);
-            if (receivedMsg == null) {
+            long deadline = System.currentTimeMillis() + this.messageReceiveTimeout;
+            Message received = rabbitTemplate.receive(responseQueueName, this.messageReceiveTimeout);
+            while (received != null && !isCorrelatedWith(received, tranId)) {
+                requeue(responseQueueName, received);
+                long remaining = deadline - System.currentTimeMillis();
+                received = remaining > 0 ? rabbitTemplate.receive(responseQueueName, remaining) : null;
+            }
+            if (received == null) {
                 log.error("Timeout occurred while waiting for response from queue : [{}]", responseQueueName);
                 throw new SeqismException(ErrorInfo.ERROR_0002_0003);
             }
 
-            log.debug("Received message : [{}]", receivedMsg);
-            return receivedMsg;
+            return convertReceived(tranId, received, bodyType);
         } catch (AmqpException e) {
             throw new SeqismException(ErrorInfo.ERROR_0002_0005, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Puts a message taken by mistake back on the given queue, unchanged.
+     * <p>
+     * The message was acknowledged on receipt, so it is published again to the queue through the default exchange
+     * rather than rejected.
+     *
+     * @param queueName
+     *            the name of the queue the message was taken from
+     * @param message
+     *            the message to put back
+     * @throws AmqpException
+     *             if the message cannot be published
+     */
+    void requeue(String queueName, Message message) {
+        rabbitTemplate.send("", queueName, message);
+        log.warn("Requeued message of another transaction : [{}]", message.getMessageProperties().getCorrelationId());
+    }
+
+    /**
+     * Returns whether the given message belongs to the given transaction, judged by its {@code correlation-id}.
+     * Messages without a {@code correlation-id} are accepted.
+     *
+     * @param message
+     *            the received message
+     * @param tranId
+     *            the transaction ID of the waiting processor
+     * @return {@code false} if the message is correlated with another transaction
+     */
+    boolean isCorrelatedWith(Message message, String tranId) {
+        String correlationId = message.getMessageProperties().getCorrelationId();
+        return correlationId == null || correlationId.equals(tranId);
+    }
+
+    /**
+     * Waits for the inbox consumer to hand over the response of the given transaction.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param tranId
+     *            the transaction ID the caller registered with
+     * @param pending
+     *            the future registered with the inbox correlator
+     * @param bodyType
+     *            the type of the body of the response; {@code null} to leave the body untyped
+     * @return the received {@link SeqismMessage}
+     * @throws SeqismException
+     *             if a timeout occurs or an AMQP error is encountered while converting the message
+     */
+    <R> SeqismMessage<R> receivedInboxMessage(String tranId, CompletableFuture<Message> pending,
+            Class<R> bodyType) {
+        Message received = inboxCorrelator.await(tranId, pending, this.messageReceiveTimeout);
+        if (received == null) {
+            log.error("Timeout occurred while waiting for response from queue : [{}]", inboxQueueName);
+            throw new SeqismException(ErrorInfo.ERROR_0002_0003);
+        }
+
+        try {
+            return convertReceived(tranId, received, bodyType);
+        } catch (AmqpException e) {
+            throw new SeqismException(ErrorInfo.ERROR_0002_0005, e);
+        }
+    }
+
+    /**
+     * Converts a received AMQP message into a {@link SeqismMessage}, decoding its body straight into the given type.
+     * <p>
+     * The {@code reply-to} property of the received message becomes the reply destination of the conversation.
+     *
+     * @param <R>
+     *            the type of the response message payload
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param received
+     *            the received AMQP message
+     * @param bodyType
+     *            the type of the body; {@code null} to leave the body untyped
+     * @return the converted {@link SeqismMessage}
+     */
+    @SuppressWarnings("unchecked")
+    <R> SeqismMessage<R> convertReceived(String tranId, Message received, Class<R> bodyType) {
+        JavaType messageType = bodyType != null
+                ? messageTypes.computeIfAbsent(bodyType,
+                        type -> TypeFactory.defaultInstance().constructParametricType(SeqismMessage.class, type))
+                : UNTYPED_MESSAGE;
+
+        SmartMessageConverter converter = (SmartMessageConverter) rabbitTemplate.getMessageConverter();
+        SeqismMessage<R> receivedMsg = (SeqismMessage<R>) converter.fromMessage(received, messageType);
+        registerReplyTo(tranId, received.getMessageProperties().getReplyTo());
+
+        log.debug("Received message : [{}]", receivedMsg);
+        auditLog.record(AuditPoint.PROCESSOR_RECEIVED, receivedMsg);
+        return receivedMsg;
+    }
+
+    /**
+     * Stops consuming the response queues of the asynchronous conversations; the stages still waiting time out with
+     * their conversation.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (responseConsumer != null) {
+            responseConsumer.destroy();
+            responseConsumer = null;
+        }
+    }
+}
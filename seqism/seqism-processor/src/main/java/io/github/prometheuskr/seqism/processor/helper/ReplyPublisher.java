@@ -0,0 +1,366 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Publishes the replies of the processors, optionally with publisher confirms and micro-batching.
+ * <p>
+ * With publisher confirms every publish carries a {@link CorrelationData} identified by the transaction ID of the
+ * conversation. A reply is reported as lost, with {@link ErrorInfo#ERROR_0002_0004}, when the broker nacks it, returns
+ * it as unroutable or does not confirm it within the confirm timeout.
+ * <p>
+ * With a batch size above one, final replies handed to {@link #publishBatched(String, Message, String)} are queued
+ * and published by a single worker thread, in batches sharing one channel. A batch takes every queued reply up to
+ * the batch size, waiting up to the batch delay for more; the confirms of a batch are awaited by the callers, so the
+ * worker goes on with the next batch meanwhile.
+ * <p>
+ * The publisher is configurable via application properties:
+ * <ul>
+ * <li><b>seqism.publisher.confirms.enabled</b>: Whether publishes are confirmed (default: {@code false}).</li>
+ * <li><b>seqism.publisher.confirm.timeout</b>: Maximum time in milliseconds to wait for a confirm (default:
+ * {@link SeqismConstant#RECEIVE_TIME_OUT}).</li>
+ * <li><b>seqism.publisher.batch.size</b>: Maximum number of final replies per batch; {@code 1} publishes them on the
+ * calling thread (default: {@code 1}).</li>
+ * <li><b>seqism.publisher.batch.delay</b>: Maximum time in milliseconds a batch waits for more replies (default:
+ * {@code 0}).</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class ReplyPublisher {
+    /**
+     * A final reply waiting to be published.
+     *
+     * @param routingKey
+     *            the routing key of the reply on the exchange of the template
+     * @param message
+     *            the reply
+     * @param correlation
+     *            the correlation of the confirm; {@code null} without publisher confirms
+     * @param result
+     *            completed once the reply is published and, with publisher confirms, confirmed
+     */
+    record Pending(String routingKey, Message message, CorrelationData correlation, CompletableFuture<Void> result) {}
+
+    /**
+     * Used to publish the replies; the {@code publisherTemplate} bean, apart from the template consuming the queues.
+     */
+    private final RabbitTemplate rabbitTemplate;
+    /**
+     * Whether publishes are confirmed.
+     */
+    private final boolean confirms;
+    /**
+     * Maximum time in milliseconds to wait for a confirm.
+     */
+    private final long confirmTimeout;
+    /**
+     * Maximum number of final replies per batch.
+     */
+    private final int batchSize;
+    /**
+     * Maximum time in milliseconds a batch waits for more replies.
+     */
+    private final long batchDelay;
+    /**
+     * Final replies waiting to be published.
+     */
+    private final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    /**
+     * Publishes the pending final replies; {@code null} when batching is disabled.
+     */
+    private final Thread worker;
+    /**
+     * Number of replies published.
+     */
+    private final LongAdder publishedCount = new LongAdder();
+    /**
+     * Number of batches published.
+     */
+    private final LongAdder batchCount = new LongAdder();
+    /**
+     * Number of replies reported as lost.
+     */
+    private final LongAdder lostCount = new LongAdder();
+
+    /**
+     * Constructs a new {@code ReplyPublisher} and, when batching is enabled, starts its worker thread.
+     *
+     * @param rabbitTemplate
+     *            the {@code publisherTemplate} used to publish the replies.
+     * @param confirms
+     *            whether publishes are confirmed, injected from the property
+     *            {@code seqism.publisher.confirms.enabled} or defaults to {@code false}.
+     * @param confirmTimeout
+     *            the maximum time (in milliseconds) to wait for a confirm, injected from the property
+     *            {@code seqism.publisher.confirm.timeout}.
+     * @param batchSize
+     *            the maximum number of final replies per batch, injected from the property
+     *            {@code seqism.publisher.batch.size}.
+     * @param batchDelay
+     *            the maximum time (in milliseconds) a batch waits for more replies, injected from the property
+     *            {@code seqism.publisher.batch.delay}.
+     */
+    public ReplyPublisher(
+            @Qualifier("publisherTemplate") RabbitTemplate rabbitTemplate,
+            @Value("${seqism.publisher.confirms.enabled:false}") boolean confirms,
+            @Value("${seqism.publisher.confirm.timeout:" + SeqismConstant.RECEIVE_TIME_OUT
+                    + "}") long confirmTimeout,
+            @Value("${seqism.publisher.batch.size:1}") int batchSize,
+            @Value("${seqism.publisher.batch.delay:0}") long batchDelay) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.confirms = confirms;
+        this.confirmTimeout = confirmTimeout;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelay = Math.max(0, batchDelay);
+
+        if (this.batchSize > 1) {
+            worker = new Thread(this::run, "seqism-reply-publisher");
+            worker.setDaemon(true);
+            worker.start();
+        } else {
+            worker = null;
+        }
+    }
+
+    /**
+     * Publishes a reply on the calling thread and, with publisher confirms, waits for its confirm.
+     *
+     * @param routingKey
+     *            the routing key of the reply on the exchange of the template
+     * @param message
+     *            the reply
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @throws SeqismException
+     *             with {@link ErrorInfo#ERROR_0002_0004} if the reply cannot be published or is lost
+     */
+    public void publish(String routingKey, Message message, String tranId) {
+        CorrelationData correlation = confirms ? new CorrelationData(tranId) : null;
+
+        try {
+            rabbitTemplate.send(rabbitTemplate.getExchange(), routingKey, message, correlation);
+        } catch (AmqpException e) {
+            lostCount.increment();
+            throw new SeqismException(ErrorInfo.ERROR_0002_0004, e);
+        }
+        publishedCount.increment();
+        awaitConfirm(toResult(correlation), tranId);
+    }
+
+    /**
+     * Publishes a final reply within the next batch and waits until it is published and, with publisher confirms,
+     * confirmed. Publishes on the calling thread when batching is disabled.
+     *
+     * @param routingKey
+     *            the routing key of the reply on the exchange of the template
+     * @param message
+     *            the reply
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @throws SeqismException
+     *             with {@link ErrorInfo#ERROR_0002_0004} if the reply cannot be published or is lost
+     */
+    public void publishBatched(String routingKey, Message message, String tranId) {
+        if (worker == null) {
+            publish(routingKey, message, tranId);
+            return;
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        pending.add(new Pending(routingKey, message, confirms ? new CorrelationData(tranId) : null, result));
+        awaitConfirm(result, tranId);
+    }
+
+    /**
+     * Publishes the pending final replies batch by batch until the worker thread is interrupted.
+     */
+    void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Pending first = pending.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchDelay);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Publishes a batch of final replies on a single channel. The result of each reply completes once it is
+     * published or, with publisher confirms, once it is confirmed.
+     *
+     * @param batch
+     *            the replies to publish
+     */
+    void publishBatch(List<Pending> batch) {
+        int[] published = { 0 };
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (Pending reply : batch) {
+                    operations.send(rabbitTemplate.getExchange(), reply.routingKey(), reply.message(),
+                            reply.correlation());
+                    published[0]++;
+                }
+                return null;
+            });
+        } catch (AmqpException e) {
+            log.error("Failed to publish replies, {} left", batch.size() - published[0], e);
+            batch.subList(published[0], batch.size())
+                    .forEach(reply -> reply.result().completeExceptionally(e));
+        }
+
+        publishedCount.add(published[0]);
+        batchCount.increment();
+        for (Pending reply : batch.subList(0, published[0])) {
+            toResult(reply.correlation()).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    reply.result().completeExceptionally(e);
+                } else {
+                    reply.result().complete(null);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the future completed once the publish of the given correlation is confirmed, failing if it is nacked
+     * or returned as unroutable.
+     *
+     * @param correlation
+     *            the correlation of the publish; {@code null} without publisher confirms
+     * @return the future of the confirm, already completed without publisher confirms
+     */
+    CompletableFuture<Void> toResult(CorrelationData correlation) {
+        if (correlation == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return correlation.getFuture().thenApply(confirm -> {
+            if (!confirm.isAck()) {
+                throw new IllegalStateException("Nacked by the broker : " + confirm.getReason());
+            }
+            if (correlation.getReturned() != null) {
+                throw new IllegalStateException("Returned by the broker : " + correlation.getReturned().getReplyText());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the result of a publish.
+     *
+     * @param result
+     *            the result of the publish
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @throws SeqismException
+     *             with {@link ErrorInfo#ERROR_0002_0004} if the publish failed or was not confirmed in time
+     */
+    void awaitConfirm(CompletableFuture<Void> result, String tranId) {
+        try {
+            result.get(confirmTimeout + batchDelay, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lostCount.increment();
+            throw new SeqismException(ErrorInfo.ERROR_0002_0004, e);
+        } catch (ExecutionException | TimeoutException e) {
+            lostCount.increment();
+            log.error("Lost reply of tranId [{}] : {}", tranId,
+                    e instanceof ExecutionException ? e.getCause().getMessage() : "confirm timeout");
+            throw new SeqismException(ErrorInfo.ERROR_0002_0004, e);
+        }
+    }
+
+    /**
+     * Stops the worker thread. Final replies still pending are reported as lost to their callers.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+            List<Pending> left = new ArrayList<>();
+            pending.drainTo(left);
+            left.forEach(reply -> reply.result().completeExceptionally(new IllegalStateException("Shut down")));
+        }
+    }
+
+    /**
+     * Returns the number of final replies waiting to be published.
+     *
+     * @return the backlog of the publisher
+     */
+    public int getBacklog() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the number of replies published.
+     *
+     * @return the published count
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * Returns the number of batches of final replies published.
+     *
+     * @return the batch count
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * Returns the number of replies reported as lost.
+     *
+     * @return the lost count
+     */
+    public long getLostCount() {
+        return lostCount.sum();
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+/**
+ * The state of a resumable conversation between two of its steps: the step that handles its next message.
+ * <p>
+ * The data of the conversation travels in the bodies of its messages; the checkpoint only records where the
+ * conversation stands, so that any processor instance receiving the next message knows which step to run. The
+ * sequence number of the step is carried by the detached reply and echoed back with the next message, so that a message
+ * of another step of the conversation, redelivered or sent twice, is told apart from the one the checkpoint waits for.
+ *
+ * @param tranId
+ *            the transaction ID of the conversation
+ * @param bizCode
+ *            the business code of the conversation
+ * @param step
+ *            the name of the step handling the next message
+ * @param seq
+ *            the sequence number of the step handling the next message, counted from {@code 1} for the step after
+ *            the first
+ * @param savedAt
+ *            the time the checkpoint was saved, in milliseconds since the epoch
+ */
+public record Checkpoint(String tranId, String bizCode, String step, long seq, long savedAt) {}
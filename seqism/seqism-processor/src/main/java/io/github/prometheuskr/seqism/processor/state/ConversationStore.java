@@ -0,0 +1,62 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+/**
+ * Stores the {@link Checkpoint}s of the resumable conversations, keyed by transaction ID.
+ * <p>
+ * A conversation checkpointed by one processor instance is resumed by whichever instance takes its next step, so a
+ * store shared by the instances lets the steps of a conversation be spread over them. Implementations must be
+ * thread-safe, and their saves compare-and-set, see {@link #save(Checkpoint)}.
+ * <p>
+ * The following implementations are provided, selected by {@code seqism.processor.state.store}:
+ * <ul>
+ * <li>{@link InMemoryConversationStore} - in the heap of this instance; conversations resume on this instance only.
+ * </li>
+ * <li>{@link FileConversationStore} - one file per conversation in a directory, shared when the directory is.</li>
+ * <li>{@link JdbcConversationStore} - a table of a JDBC database, such as an embedded H2 database or a shared
+ * server.</li>
+ * </ul>
+ */
+public interface ConversationStore {
+    /**
+     * Saves the checkpoint of a conversation if it follows the stored one: the checkpoint numbered {@code 1} is saved
+     * only if the conversation has none, and any other one only in place of the checkpoint numbered one less. The
+     * test and the save are atomic, so that of two instances running the same step of a conversation, only one
+     * saves the checkpoint of the next step.
+     *
+     * @param checkpoint
+     *            the checkpoint to save
+     * @return {@code true} if the checkpoint was saved, {@code false} if the stored checkpoint is not the previous
+     *         one
+     * @throws IllegalStateException
+     *             if the checkpoint cannot be saved
+     */
+    boolean save(Checkpoint checkpoint);
+
+    /**
+     * Loads the checkpoint of a conversation.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return the checkpoint, or {@code null} if the conversation has none
+     * @throws IllegalStateException
+     *             if the checkpoint cannot be loaded
+     */
+    Checkpoint load(String tranId);
+
+    /**
+     * Removes the checkpoint of a conversation, if any.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     */
+    void remove(String tranId);
+
+    /**
+     * Removes the checkpoints saved before the given time, left by conversations whose clients never came back.
+     *
+     * @param savedBefore
+     *            the time, in milliseconds since the epoch, before which checkpoints are removed
+     * @return the number of removed checkpoints
+     */
+    int purge(long savedBefore);
+}
@@ -0,0 +1,231 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * {@link ConversationStore} keeping each checkpoint in a file of a directory.
+ * <p>
+ * Each checkpoint is a small properties file named after the transaction ID, written to a temporary file and then
+ * moved into place, so that a reader never sees a partial checkpoint. The checkpoints survive restarts, and a
+ * directory shared by several hosts, such as a network file system, lets the conversations resume on any of them.
+ * The last-modified time of the files is the save time used to purge abandoned checkpoints.
+ * <p>
+ * A save is a compare-and-set: before writing the checkpoint numbered {@code n}, the store creates an empty claim file
+ * for that number, which fails if it exists, so that of two instances saving the same step only one writes the
+ * checkpoint. The claims of a conversation are removed with its checkpoint.
+ */
+@Slf4j
+public class FileConversationStore implements ConversationStore {
+    /**
+     * The extension of the checkpoint files.
+     */
+    static final String EXTENSION = ".checkpoint";
+    /**
+     * The extension of the claim files.
+     */
+    static final String CLAIM_EXTENSION = ".claim";
+
+    /**
+     * The directory of the checkpoint files.
+     */
+    private final Path dir;
+
+    /**
+     * Constructs a store keeping the checkpoints in the given directory, creating it if needed.
+     *
+     * @param dir
+     *            the directory of the checkpoint files
+     * @throws UncheckedIOException
+     *             if the directory cannot be created
+     */
+    public FileConversationStore(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean save(Checkpoint checkpoint) {
+        if (!claim(checkpoint)) {
+            return false;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("tranId", checkpoint.tranId());
+        properties.setProperty("bizCode", checkpoint.bizCode() != null ? checkpoint.bizCode() : "");
+        properties.setProperty("step", checkpoint.step());
+        properties.setProperty("seq", Long.toString(checkpoint.seq()));
+        properties.setProperty("savedAt", Long.toString(checkpoint.savedAt()));
+
+        Path file = fileOf(checkpoint.tranId());
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(dir, null, ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            deleteQuietly(claimOf(checkpoint.tranId(), checkpoint.seq()));
+            throw new IllegalStateException("Failed to save the checkpoint of tranId [" + checkpoint.tranId() + "]",
+                    e);
+        }
+    }
+
+    @Override
+    public Checkpoint load(String tranId) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(fileOf(tranId))) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load the checkpoint of tranId [" + tranId + "]", e);
+        }
+
+        String bizCode = properties.getProperty("bizCode");
+        return new Checkpoint(tranId, bizCode == null || bizCode.isEmpty() ? null : bizCode,
+                properties.getProperty("step"), Long.parseLong(properties.getProperty("seq", "0")),
+                Long.parseLong(properties.getProperty("savedAt", "0")));
+    }
+
+    @Override
+    public void remove(String tranId) {
+        try {
+            Checkpoint checkpoint = load(tranId);
+            Files.deleteIfExists(fileOf(tranId));
+            for (long seq = checkpoint != null ? checkpoint.seq() : 0; seq > 0; seq--) {
+                Files.deleteIfExists(claimOf(tranId, seq));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to remove the checkpoint of tranId [{}]", tranId, e);
+        }
+    }
+
+    @Override
+    public int purge(long savedBefore) {
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < savedBefore && Files.deleteIfExists(file)) {
+                        purged++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to purge the checkpoint [{}]", file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list the checkpoints of [{}]", dir, e);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + CLAIM_EXTENSION)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < savedBefore) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to purge the claim [{}]", file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list the claims of [{}]", dir, e);
+        }
+        return purged;
+    }
+
+    /**
+     * Claims the sequence number of a checkpoint by creating its claim file, which is atomic, then checks that the
+     * stored checkpoint is the previous one. A claim whose check fails is given up.
+     *
+     * @param checkpoint
+     *            the checkpoint to save
+     * @return {@code true} if this store may write the checkpoint
+     * @throws IllegalStateException
+     *             if the claim cannot be created
+     */
+    boolean claim(Checkpoint checkpoint) {
+        Path claim = claimOf(checkpoint.tranId(), checkpoint.seq());
+        try {
+            Files.createFile(claim);
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to claim the checkpoint of tranId [" + checkpoint.tranId() + "]",
+                    e);
+        }
+
+        Checkpoint previous = load(checkpoint.tranId());
+        if (checkpoint.seq() == 1 ? previous == null : previous != null && previous.seq() == checkpoint.seq() - 1) {
+            return true;
+        }
+        deleteQuietly(claim);
+        return false;
+    }
+
+    /**
+     * Returns the file of the checkpoint of a conversation, named after its URL-encoded transaction ID.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @return the path of the checkpoint file
+     */
+    Path fileOf(String tranId) {
+        return dir.resolve(URLEncoder.encode(tranId, StandardCharsets.UTF_8) + EXTENSION);
+    }
+
+    /**
+     * Returns the claim file of a sequence number of a conversation, named after its URL-encoded transaction ID.
+     *
+     * @param tranId
+     *            the transaction ID of the conversation
+     * @param seq
+     *            the sequence number of the checkpoint
+     * @return the path of the claim file
+     */
+    Path claimOf(String tranId, long seq) {
+        return dir.resolve(URLEncoder.encode(tranId, StandardCharsets.UTF_8) + "." + seq + CLAIM_EXTENSION);
+    }
+
+    /**
+     * Deletes a temporary or claim file left by a failed save, if any.
+     *
+     * @param file
+     *            the temporary or claim file; may be {@code null}
+     */
+    void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete [{}]", file, e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ConversationStore} keeping the checkpoints in the heap of this processor instance.
+ * <p>
+ * The checkpoints are lost on restart and not shared, so the conversations resume on this instance only; a
+ * conversation checkpointed this way costs a map entry instead of a waiting thread.
+ */
+public class InMemoryConversationStore implements ConversationStore {
+    /**
+     * The checkpoints, keyed by transaction ID.
+     */
+    private final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an empty store.
+     */
+    public InMemoryConversationStore() {}
+
+    @Override
+    public boolean save(Checkpoint checkpoint) {
+        if (checkpoint.seq() == 1) {
+            return checkpoints.putIfAbsent(checkpoint.tranId(), checkpoint) == null;
+        }
+        Checkpoint previous = checkpoints.get(checkpoint.tranId());
+        return previous != null && previous.seq() == checkpoint.seq() - 1
+                && checkpoints.replace(checkpoint.tranId(), previous, checkpoint);
+    }
+
+    @Override
+    public Checkpoint load(String tranId) {
+        return checkpoints.get(tranId);
+    }
+
+    @Override
+    public void remove(String tranId) {
+        checkpoints.remove(tranId);
+    }
+
+    @Override
+    public int purge(long savedBefore) {
+        int purged = 0;
+        for (Checkpoint checkpoint : checkpoints.values()) {
+            if (checkpoint.savedAt() < savedBefore && checkpoints.remove(checkpoint.tranId(), checkpoint)) {
+                purged++;
+            }
+        }
+        return purged;
+    }
+}
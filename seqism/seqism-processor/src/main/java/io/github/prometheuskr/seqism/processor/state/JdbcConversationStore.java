@@ -0,0 +1,220 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+/**
+ * {@link ConversationStore} keeping the checkpoints in a table of a JDBC database.
+ * <p>
+ * The database is either a {@link DataSource} of the application or a database opened from a JDBC URL, typically an
+ * embedded one such as {@code jdbc:h2:file:./seqism-state}; its driver must be on the classpath. A database server
+ * shared by the processor instances lets the conversations resume on any of them. The table is created if missing:
+ *
+ * <pre>
+ * CREATE TABLE IF NOT EXISTS seqism_checkpoint (
+ *     tran_id VARCHAR(255) PRIMARY KEY,
+ *     biz_code VARCHAR(255),
+ *     step VARCHAR(255) NOT NULL,
+ *     seq BIGINT NOT NULL,
+ *     saved_at BIGINT NOT NULL)
+ * </pre>
+ *
+ * Only portable SQL is used, and each save is a compare-and-set: the first checkpoint of a conversation is saved by an
+ * insert, which the primary key refuses when the conversation has one, and the next ones by an update conditional on
+ * the sequence number of the stored checkpoint.
+ */
+@Slf4j
+public class JdbcConversationStore implements ConversationStore {
+    /**
+     * Opens the connections to the database.
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        /**
+         * Opens a connection.
+         *
+         * @return a new connection, closed by the caller
+         * @throws SQLException
+         *             if the connection cannot be opened
+         */
+        Connection getConnection() throws SQLException;
+    }
+
+    /**
+     * Opens the connections to the database.
+     */
+    private final ConnectionSource connections;
+    /**
+     * Updates the checkpoint of a conversation.
+     */
+    private final String updateSql;
+    /**
+     * Inserts the checkpoint of a conversation.
+     */
+    private final String insertSql;
+    /**
+     * Selects the checkpoint of a conversation.
+     */
+    private final String selectSql;
+    /**
+     * Deletes the checkpoint of a conversation.
+     */
+    private final String deleteSql;
+    /**
+     * Deletes the checkpoints saved before a given time.
+     */
+    private final String purgeSql;
+
+    /**
+     * Constructs a store keeping the checkpoints in the given table, creating it if missing.
+     *
+     * @param connections
+     *            opens the connections to the database
+     * @param table
+     *            the name of the table
+     * @throws IllegalStateException
+     *             if the table cannot be created
+     */
+    public JdbcConversationStore(ConnectionSource connections, String table) {
+        this.connections = connections;
+        this.updateSql = "UPDATE " + table + " SET biz_code = ?, step = ?, seq = ?, saved_at = ?"
+                + " WHERE tran_id = ? AND seq = ?";
+        this.insertSql = "INSERT INTO " + table + " (tran_id, biz_code, step, seq, saved_at) VALUES (?, ?, ?, ?, ?)";
+        this.selectSql = "SELECT biz_code, step, seq, saved_at FROM " + table + " WHERE tran_id = ?";
+        this.deleteSql = "DELETE FROM " + table + " WHERE tran_id = ?";
+        this.purgeSql = "DELETE FROM " + table + " WHERE saved_at < ?";
+
+        try (Connection connection = connections.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + table + " (tran_id VARCHAR(255) PRIMARY KEY, "
+                    + "biz_code VARCHAR(255), step VARCHAR(255) NOT NULL, seq BIGINT NOT NULL, "
+                    + "saved_at BIGINT NOT NULL)");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to create the checkpoint table " + table, e);
+        }
+    }
+
+    /**
+     * Constructs a store keeping the checkpoints in a table of the given data source.
+     *
+     * @param dataSource
+     *            the data source of the database
+     * @param table
+     *            the name of the table
+     * @return the store
+     */
+    public static JdbcConversationStore of(DataSource dataSource, String table) {
+        return new JdbcConversationStore(dataSource::getConnection, table);
+    }
+
+    /**
+     * Constructs a store keeping the checkpoints in a table of the database of the given JDBC URL, opening a
+     * connection per operation.
+     *
+     * @param url
+     *            the JDBC URL of the database
+     * @param username
+     *            the user name; may be {@code null}
+     * @param password
+     *            the password; may be {@code null}
+     * @param table
+     *            the name of the table
+     * @return the store
+     */
+    public static JdbcConversationStore of(String url, String username, String password, String table) {
+        return new JdbcConversationStore(() -> DriverManager.getConnection(url, username, password), table);
+    }
+
+    @Override
+    public boolean save(Checkpoint checkpoint) {
+        try (Connection connection = connections.getConnection()) {
+            if (checkpoint.seq() == 1) {
+                try (PreparedStatement insert = connection.prepareStatement(insertSql)) {
+                    insert.setString(1, checkpoint.tranId());
+                    insert.setString(2, checkpoint.bizCode());
+                    insert.setString(3, checkpoint.step());
+                    insert.setLong(4, checkpoint.seq());
+                    insert.setLong(5, checkpoint.savedAt());
+                    return insert.executeUpdate() > 0;
+                } catch (SQLException e) {
+                    if (isDuplicateKey(e)) {
+                        return false;
+                    }
+                    throw e;
+                }
+            }
+            try (PreparedStatement update = connection.prepareStatement(updateSql)) {
+                update.setString(1, checkpoint.bizCode());
+                update.setString(2, checkpoint.step());
+                update.setLong(3, checkpoint.seq());
+                update.setLong(4, checkpoint.savedAt());
+                update.setString(5, checkpoint.tranId());
+                update.setLong(6, checkpoint.seq() - 1);
+                return update.executeUpdate() > 0;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to save the checkpoint of tranId [" + checkpoint.tranId() + "]",
+                    e);
+        }
+    }
+
+    @Override
+    public Checkpoint load(String tranId) {
+        try (Connection connection = connections.getConnection();
+                PreparedStatement select = connection.prepareStatement(selectSql)) {
+            select.setString(1, tranId);
+            try (ResultSet row = select.executeQuery()) {
+                return row.next()
+                        ? new Checkpoint(tranId, row.getString("biz_code"), row.getString("step"),
+                                row.getLong("seq"), row.getLong("saved_at"))
+                        : null;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load the checkpoint of tranId [" + tranId + "]", e);
+        }
+    }
+
+    @Override
+    public void remove(String tranId) {
+        try (Connection connection = connections.getConnection();
+                PreparedStatement delete = connection.prepareStatement(deleteSql)) {
+            delete.setString(1, tranId);
+            delete.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("Failed to remove the checkpoint of tranId [{}]", tranId, e);
+        }
+    }
+
+    @Override
+    public int purge(long savedBefore) {
+        try (Connection connection = connections.getConnection();
+                PreparedStatement purge = connection.prepareStatement(purgeSql)) {
+            purge.setLong(1, savedBefore);
+            return purge.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("Failed to purge the checkpoints", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Returns whether a statement failed because a row with the same primary key exists, that is an integrity
+     * constraint violation of SQL state class {@code 23}.
+     *
+     * @param e
+     *            the failure of the statement
+     * @return {@code true} if the row exists
+     */
+    static boolean isDuplicateKey(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+    }
+}
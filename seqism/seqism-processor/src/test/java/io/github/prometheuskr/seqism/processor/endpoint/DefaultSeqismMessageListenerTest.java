@@ -0,0 +1,205 @@
+package io.github.prometheuskr.seqism.processor.endpoint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.CodecHelper;
+import io.github.prometheuskr.seqism.common.helper.CodecMessageConverter;
+import io.github.prometheuskr.seqism.common.helper.DeltaHelper;
+import io.github.prometheuskr.seqism.common.helper.PayloadCompressor;
+import io.github.prometheuskr.seqism.common.helper.PriorityHelper;
+import io.github.prometheuskr.seqism.common.transport.ProcessorTransport;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.processor.SeqismProcessor;
+import io.github.prometheuskr.seqism.processor.helper.ConversationExecutor;
+import io.github.prometheuskr.seqism.processor.helper.FairScheduler;
+import io.github.prometheuskr.seqism.processor.helper.ProcessorQueueHelper;
+
+class DefaultSeqismMessageListenerTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CodecMessageConverter converter = new CodecMessageConverter(
+            new CodecHelper(SeqismConstant.CODEC_JSON, ""), new PayloadCompressor(false, 0, 1));
+    private final List<SeqismMessage<?>> finals = new CopyOnWriteArrayList<>();
+    private final CountDownLatch processed = new CountDownLatch(1);
+    private final ProcessorTransport transport = new RecordingTransport();
+    private final ConversationExecutor executor = new ConversationExecutor(new PriorityHelper(false, 9, 0, ""),
+            new FairScheduler(false, 1, "", 0, 100, ""), 1, 0, 1000, false);
+    private final DefaultSeqismMessageListener listener = new DefaultSeqismMessageListener(mapper, transport,
+            new ProcessorQueueHelper(null, null, null, 0, 0, null, false, null, false, 1, AuditLog.disabled()),
+            executor, AuditLog.disabled(), converter,
+            new DeltaHelper(false, 0, 0, mapper, ErrorInfo.ERROR_0002_0008),
+            List.of(new CountingProcessor(mapper, transport)));
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void decodesBodyIntoBodyTypeOfProcessor() throws InterruptedException {
+        listener.handleMessage(converter.toMessage(message("tran-1", 42), new MessageProperties()));
+
+        assertThat(processed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(finals).isEmpty();
+    }
+
+    @Test
+    void answersMessageFailingToDecodeWithFailure() {
+        listener.handleMessage(converter.toMessage(message("tran-1", "not a number"), new MessageProperties()));
+
+        assertThat(finals).hasSize(1);
+        SeqismMessageHeader header = finals.get(0).getHeader();
+        assertThat(header.getTranId()).isEqualTo("tran-1");
+        assertThat(header.getBizCode()).isEqualTo("COUNT");
+        assertThat(header.getStatus()).isEqualTo(SeqismMessageStatus.FAILURE);
+        assertThat(header.getError().getErrorCode()).isEqualTo(ErrorInfo.ERROR_0002_0002.getErrorCode());
+        assertThat(processed.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsMessageFailingToDecodeWithoutTranId() {
+        Message message = MessageBuilder.withBody("{".getBytes())
+                .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                .build();
+
+        assertThatThrownBy(() -> listener.handleMessage(message)).isInstanceOf(MessageConversionException.class);
+        assertThat(finals).isEmpty();
+    }
+
+    @Test
+    void answersUnknownBizCodeWithoutCreatingLane() {
+        FairScheduler scheduler = new FairScheduler(true, 1, "", 0, 100, "");
+        ConversationExecutor scheduled = new ConversationExecutor(new PriorityHelper(false, 9, 0, ""), scheduler, 1,
+                0, 1000, false);
+        try {
+            DefaultSeqismMessageListener scheduledListener = new DefaultSeqismMessageListener(mapper, transport,
+                    new ProcessorQueueHelper(null, null, null, 0, 0, null, false, null, false, 1, AuditLog.disabled()),
+                    scheduled, AuditLog.disabled(), converter,
+                    new DeltaHelper(false, 0, 0, mapper, ErrorInfo.ERROR_0002_0008),
+                    List.of(new CountingProcessor(mapper, transport)));
+
+            scheduledListener.dispatch(message("UNKNOWN", "tran-1", 42));
+
+            assertThat(finals).hasSize(1);
+            SeqismMessageHeader header = finals.get(0).getHeader();
+            assertThat(header.getStatus()).isEqualTo(SeqismMessageStatus.FAILURE);
+            assertThat(header.getError().getErrorCode()).isEqualTo(ErrorInfo.ERROR_0002_0001.getErrorCode());
+            assertThat(scheduler.getStats()).isEmpty();
+        } finally {
+            scheduled.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void answersDeltaWhoseBaseIsNotKnownWithoutEndingConversation() {
+        DetachingTransport detaching = new DetachingTransport();
+        SeqismMessage<Object> step = message("tran-1", mapper.createArrayNode()).withSeq(1L, true);
+
+        assertThat(deltaListener(detaching).proc(step)).isCompleted();
+
+        assertThat(finals).isEmpty();
+        assertThat(detaching.detached).hasSize(1);
+        SeqismMessageHeader header = detaching.detached.get(0).getHeader();
+        assertThat(header.getTranId()).isEqualTo("tran-1");
+        assertThat(header.getStatus()).isEqualTo(SeqismMessageStatus.IN_PROGRESS);
+        assertThat(header.getError().getErrorCode()).isEqualTo(ErrorInfo.ERROR_0002_0008.getErrorCode());
+        assertThat(processed.getCount()).isEqualTo(1);
+
+        // a transport that cannot detach the conversation answers it with a failure
+        assertThatThrownBy(() -> deltaListener(transport).proc(step)).isInstanceOf(SeqismException.class);
+    }
+
+    private DefaultSeqismMessageListener deltaListener(ProcessorTransport transport) {
+        return new DefaultSeqismMessageListener(mapper, transport,
+                new ProcessorQueueHelper(null, null, null, 0, 0, null, false, null, false, 1, AuditLog.disabled()),
+                executor, AuditLog.disabled(), converter,
+                new DeltaHelper(true, 60_000, 100, mapper, ErrorInfo.ERROR_0002_0008),
+                List.of(new CountingProcessor(mapper, transport)));
+    }
+
+    private static SeqismMessage<Object> message(String tranId, Object body) {
+        return message("COUNT", tranId, body);
+    }
+
+    private static SeqismMessage<Object> message(String bizCode, String tranId, Object body) {
+        return new SeqismMessage<>(new SeqismMessageHeader(bizCode, tranId, SeqismMessageStatus.IN_PROGRESS, null),
+                body);
+    }
+
+    /**
+     * Records the final replies.
+     */
+    class RecordingTransport implements ProcessorTransport {
+        @Override
+        public <R, C> SeqismMessage<R> sendAndReceiveOrThrow(SeqismMessage<C> message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> void sendFinal(SeqismMessage<T> message) {
+            finals.add(message);
+        }
+    }
+
+    /**
+     * Records the final replies and the detached ones.
+     */
+    class DetachingTransport extends RecordingTransport {
+        final List<SeqismMessage<?>> detached = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean canSendDetached() {
+            return true;
+        }
+
+        @Override
+        public <T> void sendDetached(SeqismMessage<T> message) {
+            detached.add(message);
+        }
+    }
+
+    /**
+     * Takes integer bodies and counts down the conversations processed.
+     */
+    class CountingProcessor extends SeqismProcessor<Integer, Integer> {
+        CountingProcessor(ObjectMapper mapper, ProcessorTransport queueHelper) {
+            super(mapper, queueHelper);
+        }
+
+        @Override
+        public String getBizCode() {
+            return "COUNT";
+        }
+
+        @Override
+        public Class<Integer> getBodyType() {
+            return Integer.class;
+        }
+
+        @Override
+        public void process(SeqismMessage<Integer> message) {
+            processed.countDown();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package io.github.prometheuskr.seqism.processor.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+import io.github.prometheuskr.seqism.processor.graph.StepEngine.StepStats;
+import io.github.prometheuskr.seqism.processor.state.Checkpoint;
+import io.github.prometheuskr.seqism.processor.state.InMemoryConversationStore;
+
+class StepEngineTest {
+    private final List<SeqismMessage<String>> exchanged = new CopyOnWriteArrayList<>();
+    private final List<SeqismMessage<String>> finished = new CopyOnWriteArrayList<>();
+    private final List<SeqismMessage<String>> detached = new CopyOnWriteArrayList<>();
+
+    private CompletableFuture<SeqismMessage<String>> nextMessage = new CompletableFuture<>();
+
+    @Test
+    void runsNextStepOnArrivalOfNextMessage() throws Exception {
+        StepEngine<String, String> engine = new StepEngine<>(graph(), this::exchange, finished::add);
+
+        CompletableFuture<Void> conversation = engine.start(message("tran-1", "hello")).toCompletableFuture();
+        assertThat(conversation).isNotDone();
+        assertThat(exchanged).extracting(SeqismMessage::getBody).containsExactly("echo:hello");
+        assertThat(engine.getWaitingSteps()).containsEntry("tran-1", "second");
+        assertThat(stats(engine, "second").waiting()).isEqualTo(1);
+
+        nextMessage.complete(message("tran-1", "world"));
+        conversation.get(5, TimeUnit.SECONDS);
+
+        assertThat(finished).extracting(SeqismMessage::getBody).containsExactly("hello-world");
+        assertThat(engine.getWaitingSteps()).isEmpty();
+        StepStats second = stats(engine, "second");
+        assertThat(second.waiting()).isZero();
+        assertThat(second.executions()).isEqualTo(1);
+        assertThat(second.failures()).isZero();
+        assertThat(stats(engine, "first").executions()).isEqualTo(1);
+    }
+
+    @Test
+    void failsConversationTakingUndeclaredTransition() {
+        StepGraph<String, String> graph = StepGraph.<String, String>builder()
+                .start("first", message -> StepResult.next("other", message.toInProgress()), "second")
+                .step("second", message -> StepResult.complete(message.toSuccess()))
+                .step("other", message -> StepResult.complete(message.toSuccess()))
+                .build();
+        StepEngine<String, String> engine = new StepEngine<>(graph, this::exchange, finished::add);
+
+        assertThatThrownBy(() -> engine.start(message("tran-1", "hello")).toCompletableFuture().get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(exchanged).isEmpty();
+        assertThat(stats(engine, "first").failures()).isEqualTo(1);
+    }
+
+    @Test
+    void failsConversationWhoseHandlerFails() {
+        StepEngine<String, String> engine = new StepEngine<>(graph(), this::exchange, finished::add);
+        CompletableFuture<Void> conversation = engine.start(message("tran-1", "hello")).toCompletableFuture();
+
+        nextMessage.complete(message("tran-1", null));
+
+        assertThatThrownBy(() -> conversation.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(finished).isEmpty();
+        assertThat(engine.getWaitingSteps()).isEmpty();
+        assertThat(stats(engine, "second").failures()).isEqualTo(1);
+    }
+
+    @Test
+    void failsConversationWhoseNextMessageNeverComes() {
+        StepEngine<String, String> engine = new StepEngine<>(graph(), this::exchange, finished::add);
+        CompletableFuture<Void> conversation = engine.start(message("tran-1", "hello")).toCompletableFuture();
+
+        nextMessage.completeExceptionally(new SeqismException(ErrorInfo.ERROR_0002_0002));
+
+        assertThat(conversation).isCompletedExceptionally();
+        assertThat(engine.getWaitingSteps()).isEmpty();
+        assertThat(stats(engine, "second").waiting()).isZero();
+        assertThat(stats(engine, "second").executions()).isZero();
+    }
+
+    @Test
+    void checkpointsResumableConversationAndResumesItAtSavedStep() throws Exception {
+        InMemoryConversationStore store = new InMemoryConversationStore();
+        StepEngine<String, String> engine = new StepEngine<>(graph(), this::exchange, finished::add, store,
+                detached::add);
+        assertThat(engine.isResumable()).isTrue();
+
+        engine.start(message("tran-1", "hello")).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertThat(detached).extracting(SeqismMessage::getBody).containsExactly("echo:hello");
+        assertThat(exchanged).isEmpty();
+        assertThat(engine.getWaitingSteps()).isEmpty();
+        Checkpoint checkpoint = store.load("tran-1");
+        assertThat(checkpoint.step()).isEqualTo("second");
+        assertThat(checkpoint.bizCode()).isEqualTo("TEST");
+        assertThat(checkpoint.seq()).isEqualTo(1);
+        assertThat(detached.get(0).getHeader().getStepSeq()).isEqualTo(1);
+
+        // the next message comes back through a static queue, possibly to another instance sharing the store
+        StepEngine<String, String> other = new StepEngine<>(graph(), this::exchange, finished::add, store,
+                detached::add);
+        other.start(message("tran-1", "world").withRoute("static").withStepSeq(1L)).toCompletableFuture()
+                .get(5, TimeUnit.SECONDS);
+
+        // without the first message, the second step has no state of the first to combine with
+        assertThat(finished).extracting(SeqismMessage::getBody).containsExactly("null-world");
+        assertThat(store.load("tran-1")).isNull();
+        assertThat(stats(other, "second").executions()).isEqualTo(1);
+    }
+
+    @Test
+    void dropsMessageWhoseStepIsNotTheCheckpointedOne() throws Exception {
+        InMemoryConversationStore store = new InMemoryConversationStore();
+        StepEngine<String, String> engine = new StepEngine<>(graph(), this::exchange, finished::add, store,
+                detached::add);
+        engine.start(message("tran-1", "hello")).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        // the first message delivered again, then a message of a step the conversation has not reached
+        engine.start(message("tran-1", "hello")).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        engine.start(message("tran-1", "world").withRoute("static").withStepSeq(2L)).toCompletableFuture()
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(detached).hasSize(1);
+        assertThat(finished).isEmpty();
+        assertThat(store.load("tran-1").seq()).isEqualTo(1);
+        assertThat(stats(engine, "first").executions()).isEqualTo(1);
+        assertThat(stats(engine, "second").executions()).isZero();
+    }
+
+    @Test
+    void dropsReplyOfStepTakenByAnotherInstance() throws Exception {
+        InMemoryConversationStore store = new InMemoryConversationStore();
+        Checkpoint taken = new Checkpoint("tran-1", "TEST", "second", 1, 1_000);
+        StepGraph<String, String> graph = StepGraph.<String, String>builder()
+                .start("first", message -> {
+                    // another instance takes the same step meanwhile and saves its checkpoint first
+                    store.save(taken);
+                    return StepResult.next("second", message.toInProgress());
+                }, "second")
+                .step("second", message -> StepResult.complete(message.toSuccess()))
+                .build();
+        StepEngine<String, String> engine = new StepEngine<>(graph, this::exchange, finished::add, store,
+                detached::add);
+
+        engine.start(message("tran-1", "hello")).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertThat(detached).isEmpty();
+        assertThat(store.load("tran-1")).isEqualTo(taken);
+    }
+
+    @Test
+    void failsResumedConversationWhoseCheckpointIsMissing() {
+        StepEngine<String, String> engine = new StepEngine<>(graph(), this::exchange, finished::add,
+                new InMemoryConversationStore(), detached::add);
+
+        assertThatThrownBy(() -> engine.start(message("tran-1", "world").withRoute("static")).toCompletableFuture()
+                .get())
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOf(SeqismException.class)
+                .extracting(e -> ((SeqismException) e).getErrorInfo())
+                .isEqualTo(ErrorInfo.ERROR_0002_0007);
+        assertThat(stats(engine, "first").executions()).isZero();
+    }
+
+    @Test
+    void waitsInInstanceWithoutDetachedSender() {
+        StepEngine<String, String> engine = new StepEngine<>(graph(), this::exchange, finished::add,
+                new InMemoryConversationStore(), null);
+
+        assertThat(engine.isResumable()).isFalse();
+        engine.start(message("tran-1", "hello"));
+        assertThat(exchanged).hasSize(1);
+        assertThat(detached).isEmpty();
+    }
+
+    @Test
+    void rejectsInvalidGraphs() {
+        assertThatThrownBy(() -> StepGraph.<String, String>builder()
+                .step("second", message -> StepResult.complete(message.toSuccess()))
+                .build())
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> StepGraph.<String, String>builder()
+                .start("first", message -> StepResult.complete(message.toSuccess()), "missing")
+                .build())
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> StepGraph.<String, String>builder()
+                .start("first", message -> StepResult.complete(message.toSuccess()))
+                .step("first", message -> StepResult.complete(message.toSuccess())))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Echoes the first body, then joins the first and the second bodies. The second step keeps the first body in the
+     * handler chain only, which a resumed conversation does not have.
+     */
+    private static StepGraph<String, String> graph() {
+        String[] first = new String[1];
+        return StepGraph.<String, String>builder()
+                .start("first", message -> {
+                    first[0] = message.getBody();
+                    return StepResult.next("second", message.toInProgress().withBody("echo:" + message.getBody()));
+                }, "second")
+                .step("second", message -> {
+                    if (message.getBody() == null) {
+                        throw new IllegalArgumentException("No body");
+                    }
+                    return StepResult.complete(message.toSuccess().withBody(first[0] + "-" + message.getBody()));
+                })
+                .build();
+    }
+
+    private CompletionStage<SeqismMessage<String>> exchange(SeqismMessage<String> reply) {
+        exchanged.add(reply);
+        return nextMessage;
+    }
+
+    private static StepStats stats(StepEngine<?, ?> engine, String step) {
+        return engine.getStats().stream().filter(stats -> stats.step().equals(step)).findFirst().orElseThrow();
+    }
+
+    private static SeqismMessage<String> message(String tranId, String body) {
+        return new SeqismMessage<>(new SeqismMessageHeader("TEST", tranId, SeqismMessageStatus.IN_PROGRESS, null),
+                body);
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.prometheuskr.seqism.common.helper.PriorityHelper;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+class ConversationExecutorTest {
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    private ConversationExecutor executor;
+
+    @AfterEach
+    void unblock() {
+        blocked.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsConversationNotAcceptedWithinAcquireTimeoutSet() {
+        executor = executor(1, 50);
+        executor.execute(header("tran-1"), this::awaitUnblocked);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> executor.execute(header("tran-2"), ConversationExecutorTest::done))
+                .isInstanceOf(SeqismException.class)
+                .extracting(e -> ((SeqismException) e).getErrorInfo())
+                .isEqualTo(ErrorInfo.ERROR_0002_0010);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50);
+        assertThat(executor.getInFlight()).isEqualTo(1);
+        assertThat(executor.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void blocksListenerUntilSlotIsReleasedWithoutAcquireTimeout() throws InterruptedException {
+        executor = executor(1, 0);
+        CountDownLatch second = new CountDownLatch(1);
+        executor.execute(header("tran-1"), this::awaitUnblocked);
+
+        // the listener thread is held, well beyond any acquire timeout, rather than answering with a failure
+        Thread listener = new Thread(() -> executor.execute(header("tran-2"), () -> {
+            second.countDown();
+            return done();
+        }));
+        listener.start();
+        assertThat(second.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(listener.isAlive()).isTrue();
+
+        blocked.countDown();
+        assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+        listener.join(5_000);
+        assertThat(executor.getRejectedCount()).isZero();
+    }
+
+    @Test
+    void acceptsConversationOnceSlotIsReleased() throws InterruptedException {
+        executor = executor(1, 5_000);
+        CountDownLatch second = new CountDownLatch(1);
+        executor.execute(header("tran-1"), this::awaitUnblocked);
+
+        Thread release = new Thread(() -> {
+            sleep(50);
+            blocked.countDown();
+        });
+        release.start();
+        executor.execute(header("tran-2"), () -> {
+            second.countDown();
+            return done();
+        });
+
+        assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getRejectedCount()).isZero();
+        release.join();
+    }
+
+    @Test
+    void holdsSlotOfAsyncConversationUntilItsStageCompletes() throws InterruptedException {
+        executor = executor(1, 50);
+        CompletableFuture<Void> conversation = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(header("tran-1"), () -> {
+            started.countDown();
+            return conversation;
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // the conversation returned without a thread, waiting for its next step: its slot is still held
+        assertThatThrownBy(() -> executor.execute(header("tran-2"), ConversationExecutorTest::done))
+                .isInstanceOf(SeqismException.class);
+        assertThat(executor.getInFlight()).isEqualTo(1);
+
+        conversation.complete(null);
+        assertThat(executor.getInFlight()).isZero();
+        executor.execute(header("tran-3"), ConversationExecutorTest::done);
+    }
+
+    @Test
+    void releasesSlotOfConversationFailingToStart() {
+        executor = executor(1, 5_000);
+        executor.execute(header("tran-1"), () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        executor.execute(header("tran-2"), ConversationExecutorTest::done);
+        assertThat(executor.getRejectedCount()).isZero();
+    }
+
+    private ConversationExecutor executor(int maxInFlight, long acquireTimeout) {
+        return new ConversationExecutor(new PriorityHelper(false, 9, 0, ""),
+                new FairScheduler(false, 1, "", 0, 100, ""), 1, maxInFlight, acquireTimeout, false);
+    }
+
+    private CompletionStage<Void> awaitUnblocked() {
+        try {
+            blocked.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return done();
+    }
+
+    private static CompletionStage<Void> done() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static SeqismMessageHeader header(String tranId) {
+        return new SeqismMessageHeader("TEST", tranId, SeqismMessageStatus.IN_PROGRESS, null);
+    }
+}
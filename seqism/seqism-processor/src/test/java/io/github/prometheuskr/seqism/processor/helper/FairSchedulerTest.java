@@ -0,0 +1,201 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.processor.helper.FairScheduler.LaneStats;
+
+class FairSchedulerTest {
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private FairScheduler scheduler;
+
+    @AfterEach
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void sharesWorkerBetweenLanesByWeight() throws InterruptedException {
+        scheduler = new FairScheduler(true, 1, "A:2", 0, 100, "");
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(12);
+
+        // hold the only worker until both lanes have their backlog
+        scheduler.submit("X", task(0, () -> {
+            await(blocker);
+            return done();
+        }));
+        for (int i = 0; i < 6; i++) {
+            scheduler.submit("A", task(0, record(order, "A", done)));
+            scheduler.submit("B", task(0, record(order, "B", done)));
+        }
+        blocker.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order.subList(0, 6)).filteredOn("A"::equals).hasSize(4);
+    }
+
+    @Test
+    void takesConversationsOfLaneByPriority() throws InterruptedException {
+        scheduler = new FairScheduler(true, 1, "", 0, 100, "");
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+
+        scheduler.submit("A", task(0, () -> {
+            await(blocker);
+            return done();
+        }));
+        scheduler.submit("A", task(1, record(order, "low", done)));
+        scheduler.submit("A", task(5, record(order, "high", done)));
+        scheduler.submit("A", task(1, record(order, "low-later", done)));
+        blocker.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly("high", "low", "low-later");
+    }
+
+    @Test
+    void rejectsConversationsBeyondQueueOfBulkhead() {
+        scheduler = new FairScheduler(true, 1, "", 0, 1, "");
+        CountDownLatch blocker = new CountDownLatch(1);
+        try {
+            scheduler.submit("A", task(0, () -> {
+                await(blocker);
+                return done();
+            }));
+            awaitRunning("A", 1);
+            scheduler.submit("A", task(0, FairSchedulerTest::done));
+
+            assertThatThrownBy(() -> scheduler.submit("A", task(0, FairSchedulerTest::done)))
+                    .isInstanceOf(SeqismException.class)
+                    .extracting(e -> ((SeqismException) e).getErrorInfo().getErrorCode())
+                    .isEqualTo(ErrorInfo.ERROR_0002_0006.getErrorCode());
+            // other business codes are not affected
+            scheduler.submit("B", task(0, FairSchedulerTest::done));
+
+            LaneStats stats = scheduler.getStats("A");
+            assertThat(stats.queued()).isEqualTo(1);
+            assertThat(stats.running()).isEqualTo(1);
+            assertThat(stats.rejected()).isEqualTo(1);
+        } finally {
+            blocker.countDown();
+        }
+    }
+
+    @Test
+    void capsRunningConversationsOfLane() throws InterruptedException {
+        scheduler = new FairScheduler(true, 4, "", 0, 100, "A:1");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(5);
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit("A", task(0, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                running.decrementAndGet();
+                done.countDown();
+                return done();
+            }));
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(1);
+        assertThat(scheduler.getStats("A").started()).isEqualTo(5);
+    }
+
+    @Test
+    void holdsSlotOfAsyncConversationUntilItsStageCompletes() throws InterruptedException {
+        scheduler = new FairScheduler(true, 2, "", 1, 100, "");
+        CompletableFuture<Void> conversation = new CompletableFuture<>();
+        CountDownLatch second = new CountDownLatch(1);
+
+        scheduler.submit("A", task(0, () -> conversation));
+        awaitRunning("A", 1);
+        scheduler.submit("A", task(0, () -> {
+            second.countDown();
+            return done();
+        }));
+
+        // a worker is free, but the first conversation still holds the only slot of its lane
+        assertThat(second.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(scheduler.getStats("A").running()).isEqualTo(1);
+
+        conversation.complete(null);
+        assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void notifiesLaneListenersOfExistingAndNewLanes() {
+        scheduler = new FairScheduler(true, 1, "", 0, 100, "");
+        scheduler.submit("A", task(0, FairSchedulerTest::done));
+
+        List<String> lanes = new CopyOnWriteArrayList<>();
+        scheduler.addLaneListener(lanes::add);
+        scheduler.submit("B", task(0, FairSchedulerTest::done));
+        scheduler.submit("B", task(0, FairSchedulerTest::done));
+
+        assertThat(lanes).containsExactly("A", "B");
+    }
+
+    private ConversationExecutor.Task task(int priority, Supplier<? extends CompletionStage<?>> conversation) {
+        return new ConversationExecutor.Task(priority, sequence.getAndIncrement(), conversation);
+    }
+
+    private void awaitRunning(String bizCode, int running) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getStats(bizCode).running() < running && System.nanoTime() < deadline) {
+            sleep(1);
+        }
+        assertThat(scheduler.getStats(bizCode).running()).isEqualTo(running);
+    }
+
+    private static Supplier<CompletionStage<Void>> record(List<String> order, String name, CountDownLatch done) {
+        return () -> {
+            order.add(name);
+            done.countDown();
+            return done();
+        };
+    }
+
+    private static CompletionStage<Void> done() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.prometheuskr.seqism.processor.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import io.github.prometheuskr.seqism.common.audit.AuditLog;
+import io.github.prometheuskr.seqism.common.constant.SeqismConstant;
+import io.github.prometheuskr.seqism.common.helper.CodecHelper;
+import io.github.prometheuskr.seqism.common.helper.CodecMessageConverter;
+import io.github.prometheuskr.seqism.common.helper.PayloadCompressor;
+import io.github.prometheuskr.seqism.common.helper.QueueNameHelper;
+import io.github.prometheuskr.seqism.common.vo.ErrorInfo;
+import io.github.prometheuskr.seqism.common.vo.SeqismException;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessage;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageHeader;
+import io.github.prometheuskr.seqism.common.vo.SeqismMessageStatus;
+
+/**
+ * Receives steps from pooled and asynchronously consumed response queues of a RabbitMQ broker started in a
+ * container. Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ProcessorQueueHelperTest {
+    static final long LATE_RECEIVE_TIMEOUT = 1000;
+
+    @Container
+    static final RabbitMQContainer RABBIT = new RabbitMQContainer(DockerImageName.parse("rabbitmq:3.13-alpine"));
+
+    private final QueueNameHelper queueNameHelper = new QueueNameHelper(SeqismConstant.SEQISM_STATIC_QUEUE,
+            SeqismConstant.COMMAND_QUEUE_PREFIX, SeqismConstant.RESPONSE_QUEUE_PREFIX);
+    private CachingConnectionFactory connectionFactory;
+    private RabbitTemplate rabbitTemplate;
+    private ReplyPublisher replyPublisher;
+    private ProcessorQueueHelper helper;
+
+    @BeforeEach
+    void connect() {
+        connectionFactory = new CachingConnectionFactory(RABBIT.getHost(), RABBIT.getAmqpPort());
+        connectionFactory.setUsername(RABBIT.getAdminUsername());
+        connectionFactory.setPassword(RABBIT.getAdminPassword());
+        rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setMessageConverter(new CodecMessageConverter(
+                new CodecHelper(SeqismConstant.CODEC_JSON, ""), new PayloadCompressor(false, 0, 1)));
+        replyPublisher = new ReplyPublisher(rabbitTemplate, false, SeqismConstant.RECEIVE_TIME_OUT, 1, 0);
+        helper = helper(SeqismConstant.RECEIVE_TIME_OUT);
+    }
+
+    @AfterEach
+    void disconnect() {
+        helper.shutdown();
+        replyPublisher.shutdown();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void lateConsumerPutsStepOfNextConversationBackOnRecycledSlot() {
+        String lateTranId = queueNameHelper.getPooledTranId("slot-1", "tran-1");
+        String nextTranId = queueNameHelper.getPooledTranId("slot-1", "tran-2");
+        String responseQueue = queueNameHelper.getResponseQueueName(nextTranId);
+        new RabbitAdmin(connectionFactory).declareQueue(new Queue(responseQueue, false));
+        ProcessorQueueHelper lateHelper = helper(LATE_RECEIVE_TIMEOUT);
+
+        // the processor of tran-1 still waits on the slot, which the gateway has since leased to tran-2
+        long start = System.nanoTime();
+        CompletableFuture<SeqismMessage<Object>> late = CompletableFuture
+                .supplyAsync(() -> lateHelper.receivedMessage(message(lateTranId, null), null));
+        rabbitTemplate.convertAndSend("", responseQueue, message(nextTranId, "step"), amqpMessage -> {
+            amqpMessage.getMessageProperties().setCorrelationId(nextTranId);
+            return amqpMessage;
+        });
+
+        SeqismMessage<Object> step = helper.receivedMessage(message(nextTranId, null), null);
+        assertThat(step.getHeader().getTranId()).isEqualTo(nextTranId);
+        assertThat(step.getBody()).isEqualTo("step");
+
+        // the late processor skipped the step of tran-2 and waited for its own until its timeout
+        assertThatThrownBy(late::join).isInstanceOf(CompletionException.class)
+                .cause()
+                .isInstanceOfSatisfying(SeqismException.class, e -> assertThat(e.getErrorInfo().getErrorCode())
+                        .isEqualTo(ErrorInfo.ERROR_0002_0003.getErrorCode()));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .isGreaterThanOrEqualTo(LATE_RECEIVE_TIMEOUT);
+        lateHelper.shutdown();
+    }
+
+    @Test
+    void waitsForNextStepsOfAsynchronousConversationsWithoutThreads() {
+        // more conversations than any pool of receive threads would hold
+        int conversations = 64;
+        RabbitAdmin rabbitAdmin = new RabbitAdmin(connectionFactory);
+        List<CompletableFuture<SeqismMessage<Object>>> steps = new ArrayList<>();
+        for (int i = 0; i < conversations; i++) {
+            String tranId = "async-" + i;
+            rabbitAdmin.declareQueue(new Queue(queueNameHelper.getResponseQueueName(tranId), false));
+            steps.add(helper.sendAndReceiveAsync(message(tranId, "ask"), null).toCompletableFuture());
+        }
+        assertThat(steps).noneMatch(CompletableFuture::isDone);
+
+        for (int i = conversations - 1; i >= 0; i--) {
+            String tranId = "async-" + i;
+            rabbitTemplate.convertAndSend("", queueNameHelper.getResponseQueueName(tranId),
+                    message(tranId, "step-" + i));
+        }
+        for (int i = 0; i < conversations; i++) {
+            SeqismMessage<Object> step = steps.get(i).join();
+            assertThat(step.getHeader().getTranId()).isEqualTo("async-" + i);
+            assertThat(step.getBody()).isEqualTo("step-" + i);
+        }
+    }
+
+    private ProcessorQueueHelper helper(long receiveTimeout) {
+        return new ProcessorQueueHelper(rabbitTemplate, new RabbitAdmin(connectionFactory), queueNameHelper,
+                receiveTimeout, SeqismConstant.QUEUE_DELETE_TIME, null, false, replyPublisher, false, 1,
+                AuditLog.disabled());
+    }
+
+    private static SeqismMessage<Object> message(String tranId, Object body) {
+        return new SeqismMessage<>(new SeqismMessageHeader("TEST", tranId, SeqismMessageStatus.IN_PROGRESS, null),
+                body);
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The behavior every {@link ConversationStore} shares; each store runs it with a test class of its own.
+ */
+abstract class ConversationStoreTest {
+    abstract ConversationStore store();
+
+    @Test
+    void loadsSavedCheckpoint() {
+        ConversationStore store = store();
+        assertThat(store.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000))).isTrue();
+
+        assertThat(store.load("tran-1")).isEqualTo(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+        assertThat(store.load("tran-2")).isNull();
+    }
+
+    @Test
+    void replacesCheckpointOfConversation() {
+        ConversationStore store = store();
+        store.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+        assertThat(store.save(new Checkpoint("tran-1", "TEST", "third", 2, 2_000))).isTrue();
+
+        assertThat(store.load("tran-1")).isEqualTo(new Checkpoint("tran-1", "TEST", "third", 2, 2_000));
+    }
+
+    @Test
+    void refusesCheckpointNotFollowingStoredOne() {
+        ConversationStore store = store();
+        // a next checkpoint of a conversation that has none
+        assertThat(store.save(new Checkpoint("tran-1", "TEST", "third", 2, 1_000))).isFalse();
+        assertThat(store.load("tran-1")).isNull();
+
+        store.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+        // the same step saved twice, then a step skipped
+        assertThat(store.save(new Checkpoint("tran-1", "TEST", "other", 1, 2_000))).isFalse();
+        assertThat(store.save(new Checkpoint("tran-1", "TEST", "fourth", 3, 2_000))).isFalse();
+
+        assertThat(store.load("tran-1")).isEqualTo(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+    }
+
+    @Test
+    void keepsCheckpointWithoutBusinessCode() {
+        ConversationStore store = store();
+        store.save(new Checkpoint("tran-1", null, "second", 1, 1_000));
+
+        assertThat(store.load("tran-1").bizCode()).isNull();
+    }
+
+    @Test
+    void removesCheckpoint() {
+        ConversationStore store = store();
+        store.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+        store.remove("tran-1");
+        store.remove("tran-2");
+
+        assertThat(store.load("tran-1")).isNull();
+        // a conversation started again under the same transaction ID
+        assertThat(store.save(new Checkpoint("tran-1", "TEST", "second", 1, 2_000))).isTrue();
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileConversationStoreTest extends ConversationStoreTest {
+    @TempDir
+    Path dir;
+
+    @Override
+    FileConversationStore store() {
+        return new FileConversationStore(dir.resolve("checkpoints"));
+    }
+
+    @Test
+    void keepsTransactionIdsThatAreNotFileNames() {
+        FileConversationStore store = store();
+        store.save(new Checkpoint("../tran/1", "TEST", "second", 1, 1_000));
+
+        assertThat(store.fileOf("../tran/1").getParent()).isEqualTo(dir.resolve("checkpoints"));
+        assertThat(store.load("../tran/1").step()).isEqualTo("second");
+    }
+
+    @Test
+    void leavesNoTemporaryFilesBehind() throws IOException {
+        FileConversationStore store = store();
+        store.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+        store.save(new Checkpoint("tran-1", "TEST", "third", 2, 2_000));
+
+        try (var files = Files.list(dir.resolve("checkpoints"))) {
+            assertThat(files).containsExactlyInAnyOrder(store.fileOf("tran-1"), store.claimOf("tran-1", 1),
+                    store.claimOf("tran-1", 2));
+        }
+
+        // the claims go with the checkpoint
+        store.remove("tran-1");
+        try (var files = Files.list(dir.resolve("checkpoints"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void purgesCheckpointsWrittenBeforeGivenTime() throws IOException {
+        FileConversationStore store = store();
+        store.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+        store.save(new Checkpoint("tran-2", "TEST", "second", 1, 1_000));
+        // the store ages its checkpoints by the time their files were written
+        Files.setLastModifiedTime(store.fileOf("tran-1"), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(store.fileOf("tran-2"), FileTime.fromMillis(3_000));
+        Files.setLastModifiedTime(store.claimOf("tran-1", 1), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(store.claimOf("tran-2", 1), FileTime.fromMillis(3_000));
+
+        assertThat(store.purge(2_000)).isEqualTo(1);
+        assertThat(store.load("tran-1")).isNull();
+        assertThat(store.load("tran-2")).isNotNull();
+        assertThat(store.claimOf("tran-1", 1)).doesNotExist();
+        assertThat(store.claimOf("tran-2", 1)).exists();
+    }
+}
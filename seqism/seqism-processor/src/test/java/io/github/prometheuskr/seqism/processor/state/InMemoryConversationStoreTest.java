@@ -0,0 +1,23 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class InMemoryConversationStoreTest extends ConversationStoreTest {
+    @Override
+    ConversationStore store() {
+        return new InMemoryConversationStore();
+    }
+
+    @Test
+    void purgesCheckpointsSavedBeforeGivenTime() {
+        ConversationStore store = store();
+        store.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+        store.save(new Checkpoint("tran-2", "TEST", "second", 1, 3_000));
+
+        assertThat(store.purge(2_000)).isEqualTo(1);
+        assertThat(store.load("tran-1")).isNull();
+        assertThat(store.load("tran-2")).isNotNull();
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.prometheuskr.seqism.processor.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class JdbcConversationStoreTest extends ConversationStoreTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @Override
+    ConversationStore store() {
+        // a database of its own per test, kept until the JVM exits
+        return JdbcConversationStore.of("jdbc:h2:mem:checkpoints" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1",
+                "sa", "", "seqism_checkpoint");
+    }
+
+    @Test
+    void sharesCheckpointsBetweenStoresOfSameTable() {
+        String url = "jdbc:h2:mem:shared" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        ConversationStore first = JdbcConversationStore.of(url, "sa", "", "seqism_checkpoint");
+        ConversationStore second = JdbcConversationStore.of(url, "sa", "", "seqism_checkpoint");
+
+        first.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+
+        assertThat(second.load("tran-1")).isEqualTo(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+    }
+
+    @Test
+    void purgesCheckpointsSavedBeforeGivenTime() {
+        ConversationStore store = store();
+        store.save(new Checkpoint("tran-1", "TEST", "second", 1, 1_000));
+        store.save(new Checkpoint("tran-2", "TEST", "second", 1, 3_000));
+
+        assertThat(store.purge(2_000)).isEqualTo(1);
+        assertThat(store.load("tran-1")).isNull();
+        assertThat(store.load("tran-2")).isNotNull();
+    }
+}